@@ -0,0 +1,163 @@
+package ru.alexeymz.rubikscube;
+
+import android.view.Choreographer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+public class FrameGovernorTest extends TestCase {
+    private static final long VSYNC = 16666666;
+    private static final long MS = 1000000;
+
+    /** Vsync which fires only when the test says so. */
+    private static final class ManualVsync implements FrameGovernor.Vsync {
+        Choreographer.FrameCallback callback;
+        long delayMillis = -1;
+        int postCount;
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            assertNull("callback already posted", this.callback);
+            this.callback = callback;
+            this.delayMillis = 0;
+            postCount++;
+        }
+
+        @Override
+        public void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis) {
+            assertNull("callback already posted", this.callback);
+            this.callback = callback;
+            this.delayMillis = delayMillis;
+            postCount++;
+        }
+
+        @Override
+        public void removeFrameCallback(Choreographer.FrameCallback callback) {
+            if (this.callback == callback) {
+                this.callback = null;
+                this.delayMillis = -1;
+            }
+        }
+
+        void fire(long frameTimeNanos) {
+            Choreographer.FrameCallback posted = callback;
+            assertNotNull("no callback posted", posted);
+            callback = null;
+            delayMillis = -1;
+            posted.doFrame(frameTimeNanos);
+        }
+    }
+
+    private ManualVsync vsync;
+    private EngineMetrics metrics;
+    private List<Long> frames;
+    private FrameGovernor governor;
+
+    @Override
+    protected void setUp() throws Exception {
+        vsync = new ManualVsync();
+        metrics = new EngineMetrics();
+        frames = new ArrayList<Long>();
+        governor = new FrameGovernor(vsync, new FrameGovernor.Listener() {
+            @Override
+            public void onFrame(long frameTimeNanos) {
+                frames.add(frameTimeNanos);
+            }
+        }, metrics, 10, 60);
+    }
+
+    public void testFullRateRequestsAreCoalesced() {
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        governor.requestFrame(FrameGovernor.Rate.IDLE);
+        assertEquals(1, vsync.postCount);
+        assertEquals(0, vsync.delayMillis);
+
+        vsync.fire(1000 * MS);
+        assertEquals(1, frames.size());
+        assertEquals(1, metrics.fullRateFrames.get());
+        assertEquals(0, metrics.idleRateFrames.get());
+        // nothing requested from the listener, so no more frames
+        assertNull(vsync.callback);
+
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        vsync.fire(1000 * MS + VSYNC);
+        assertEquals(2, frames.size());
+        assertEquals(0, metrics.skippedFrames.get());
+    }
+
+    public void testIdleFramesAreThrottled() {
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        vsync.fire(1000 * MS);
+
+        governor.requestFrame(FrameGovernor.Rate.IDLE);
+        assertEquals(0, vsync.delayMillis);
+        vsync.fire(1000 * MS + VSYNC);
+        // too early for the idle rate, waits for the rest of 100 ms
+        assertEquals(1, frames.size());
+        assertEquals((100 * MS - VSYNC) / MS, vsync.delayMillis);
+
+        vsync.fire(1100 * MS);
+        assertEquals(2, frames.size());
+        assertEquals(1100 * MS, (long)frames.get(1));
+        assertEquals(1, metrics.idleRateFrames.get());
+        assertEquals(5, metrics.skippedFrames.get());
+    }
+
+    public void testIdleFrameWithinJitterIsNotDelayed() {
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        vsync.fire(1000 * MS);
+        governor.requestFrame(FrameGovernor.Rate.IDLE);
+        vsync.fire(1095 * MS);
+        assertEquals(2, frames.size());
+        assertEquals(0, metrics.skippedFrames.get());
+    }
+
+    public void testFullRequestCancelsDelayedFrame() {
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        vsync.fire(1000 * MS);
+        governor.requestFrame(FrameGovernor.Rate.IDLE);
+        vsync.fire(1000 * MS + VSYNC);
+        assertTrue(vsync.delayMillis > 0);
+
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        assertEquals(0, vsync.delayMillis);
+        vsync.fire(1000 * MS + 3 * VSYNC);
+        assertEquals(2, frames.size());
+        assertEquals(2, metrics.fullRateFrames.get());
+        assertEquals(2, metrics.skippedFrames.get());
+    }
+
+    public void testStopCancelsRequest() {
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        governor.stop();
+        assertNull(vsync.callback);
+
+        // a callback already being dispatched does nothing after stop
+        governor.requestFrame(FrameGovernor.Rate.FULL);
+        Choreographer.FrameCallback callback = vsync.callback;
+        governor.stop();
+        callback.doFrame(1000 * MS);
+        assertTrue(frames.isEmpty());
+
+        governor.requestFrame(FrameGovernor.Rate.IDLE);
+        vsync.fire(2000 * MS);
+        assertEquals(1, frames.size());
+        assertEquals(1, metrics.idleRateFrames.get());
+    }
+
+    public void testInvalidRates() {
+        try {
+            new FrameGovernor(vsync, null, metrics, 0, 60);
+            fail();
+        } catch (IllegalArgumentException expected) {}
+        try {
+            new FrameGovernor(vsync, null, metrics, 10, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {}
+    }
+}
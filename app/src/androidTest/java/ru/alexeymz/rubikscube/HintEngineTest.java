@@ -0,0 +1,131 @@
+package ru.alexeymz.rubikscube;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.search.BidirectionalSearch;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.SolvedTracker;
+import ru.alexeymz.rubikscube.state.Symmetries;
+
+public class HintEngineTest extends TestCase {
+    private HintEngine engine;
+
+    @Override
+    protected void setUp() throws Exception {
+        File tableFile = new File(System.getProperty("java.io.tmpdir"), "hint-cube2-" + System.nanoTime());
+        engine = new HintEngine(new Handler(Looper.getMainLooper()), tableFile, 2000);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        engine.shutdown();
+    }
+
+    private static Rotation hint(HintEngine engine, int size, byte[] stickers) throws InterruptedException {
+        return engine.computeHint(size, stickers, System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+    }
+
+    /**
+     * Returns optimal number of moves to any orientation of the solved cube.
+     */
+    private static int distance(BidirectionalSearch search, byte[] stickers) throws InterruptedException {
+        byte[][] orientations = Symmetries.forSize(search.size).solvedOrientations();
+        return search.search(stickers, orientations, System.nanoTime() + TimeUnit.SECONDS.toNanos(10)).size();
+    }
+
+    public void testHintsSolveShortScrambles() throws InterruptedException {
+        MoveTable moves = MoveTable.forSize(3);
+        byte[] solved = new byte[moves.layout.stickerCount];
+        moves.layout.solved(solved);
+        byte[] scratch = new byte[solved.length];
+        BidirectionalSearch search = new BidirectionalSearch(3, 6, 1000000);
+        Random random = new Random(1);
+        for (int round = 0; round < 10; round++) {
+            byte[] stickers = solved.clone();
+            for (int i = 0; i < 4; i++) {
+                moves.applyInPlace(random.nextInt(moves.moveCount), stickers, scratch);
+            }
+            int distance = distance(search, stickers);
+            assertTrue(distance <= 4);
+            // every hint is the first move of an optimal solution
+            for (int left = distance; left > 0; left--) {
+                Rotation rotation = hint(engine, 3, stickers);
+                assertNotNull(rotation);
+                moves.applyInPlace(moves.indexOf(rotation), stickers, scratch);
+                assertEquals(left - 1, distance(search, stickers));
+            }
+            assertNull(hint(engine, 3, stickers));
+        }
+        search.close();
+    }
+
+    public void testReorientedCube() throws InterruptedException {
+        MoveTable moves = MoveTable.forSize(3);
+        Symmetries symmetries = Symmetries.forSize(3);
+        byte[] solved = new byte[moves.layout.stickerCount];
+        moves.layout.solved(solved);
+        byte[] rotated = new byte[solved.length];
+        byte[] scratch = new byte[solved.length];
+        symmetries.transform(7, solved, rotated);
+        assertNull(hint(engine, 3, rotated));
+
+        moves.applyInPlace(5, rotated, scratch);
+        Rotation rotation = hint(engine, 3, rotated);
+        assertNotNull(rotation);
+        moves.applyInPlace(moves.indexOf(rotation), rotated, scratch);
+        assertTrue(new SolvedTracker(3, rotated).isSolved());
+    }
+
+    public void testLargeCubeFallsBackToGreedyMove() throws InterruptedException {
+        MoveTable moves = MoveTable.forSize(5);
+        byte[] stickers = new byte[moves.layout.stickerCount];
+        byte[] scratch = new byte[stickers.length];
+        moves.layout.solved(stickers);
+        moves.applyInPlace(7, stickers, scratch);
+        Rotation rotation = hint(engine, 5, stickers);
+        assertEquals(moves.rotationOf(MoveTable.inverseOf(7)), rotation);
+    }
+
+    public void testRequestDeliversHint() throws InterruptedException {
+        MoveTable moves = MoveTable.forSize(3);
+        byte[] stickers = new byte[moves.layout.stickerCount];
+        byte[] scratch = new byte[stickers.length];
+        moves.layout.solved(stickers);
+        moves.applyInPlace(3, stickers, scratch);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Rotation> result = new AtomicReference<Rotation>();
+        engine.request(3, stickers, new HintEngine.Listener() {
+            @Override
+            public void onHint(Rotation rotation) {
+                result.set(rotation);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(moves.rotationOf(MoveTable.inverseOf(3)), result.get());
+    }
+
+    public void testShutdownTwiceAndRequestAfterShutdown() {
+        engine.shutdown();
+        engine.shutdown();
+        assertTrue(engine.isShutdown());
+        byte[] stickers = new byte[MoveTable.forSize(3).layout.stickerCount];
+        MoveTable.forSize(3).layout.solved(stickers);
+        engine.request(3, stickers, new HintEngine.Listener() {
+            @Override
+            public void onHint(Rotation rotation) {
+                fail("Shut down engine must not deliver hints.");
+            }
+        });
+    }
+}
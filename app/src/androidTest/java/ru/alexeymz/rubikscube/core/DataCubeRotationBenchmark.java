@@ -0,0 +1,54 @@
+package ru.alexeymz.rubikscube.core;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures sequential and parallel layer rotation of large cubes to find the size
+ * where parallel rotation starts to pay off, see {@link DataCube#PARALLEL_THRESHOLD}.
+ *
+ * Not a test: it takes long and asserts nothing. Run {@link #main} by hand on the
+ * target device or a desktop JVM; pass the thread count as the first argument.
+ */
+public final class DataCubeRotationBenchmark {
+    private static final int[] SIZES = { 16, 32, 64, 96, 128, 192 };
+    private static final int MOVES = 20;
+
+    private DataCubeRotationBenchmark() {}
+
+    public static void main(String[] args) {
+        int workerCount = args.length > 0
+            ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workerCount - 1));
+        try {
+            for (int size : SIZES) {
+                // shared boxed values keep memory of the largest cubes small
+                DataCube<Integer> cube = new DataCube<Integer>(size);
+                for (int i = 0; i < size * size * size; i++) {
+                    cube.set(CubeCoords.fromIndex(size, i), i & 0x7F);
+                }
+                long sequential = measure(cube);
+                cube.setExecutor(executor, workerCount, 1);
+                long parallel = measure(cube);
+                System.out.println(String.format(Locale.US,
+                    "size %d: sequential %.3f ms, parallel (%d threads) %.3f ms per turn",
+                    size, sequential / 1e6, workerCount, parallel / 1e6));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long measure(DataCube<?> cube) {
+        // warm up
+        for (int move = 0; move < MOVES; move++) {
+            cube.rotateLayer(Axis.fromOrdinal(move % Axis.ordinalCount()), move % cube.size, false);
+        }
+        long start = System.nanoTime();
+        for (int move = 0; move < MOVES; move++) {
+            cube.rotateLayer(Axis.fromOrdinal(move % Axis.ordinalCount()), move % cube.size, false);
+        }
+        return (System.nanoTime() - start) / MOVES;
+    }
+}
@@ -0,0 +1,179 @@
+package ru.alexeymz.rubikscube.core;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks parallel layer rotation against sequential one; the crossover size is
+ * measured by {@link DataCubeRotationBenchmark}.
+ */
+public class DataCubeRotationTest extends TestCase {
+    private final int workerCount = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor;
+
+    private static final class Cell implements Rotatable {
+        final int id;
+        final int[] rotations = new int[Axis.ordinalCount()];
+
+        Cell(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void rotateAround(Axis axis) {
+            rotations[axis.ordinal()]++;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(Math.max(1, workerCount - 1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testParallelMatchesSequential() {
+        for (int size = 1; size <= 9; size++) {
+            DataCube<Cell> sequential = createCube(size);
+            DataCube<Cell> parallel = createCube(size);
+            parallel.setExecutor(executor, Math.max(2, workerCount), 1);
+
+            rotateAndCompare(sequential, parallel, 50, new Random(size));
+        }
+    }
+
+    /**
+     * Sizes right below, at and above the threshold take different paths,
+     * both with a custom threshold and with the default one.
+     */
+    public void testThresholdBoundary() {
+        int threshold = 6;
+        for (int size = threshold - 1; size <= threshold + 1; size++) {
+            DataCube<Cell> sequential = createCube(size);
+            DataCube<Cell> parallel = createCube(size);
+            parallel.setExecutor(executor, Math.max(2, workerCount), threshold);
+            rotateAndCompare(sequential, parallel, 30, new Random(size));
+        }
+        for (int size = DataCube.PARALLEL_THRESHOLD - 1; size <= DataCube.PARALLEL_THRESHOLD + 1; size += 2) {
+            // shared boxed ids keep memory of the large cubes small
+            Integer[] ids = new Integer[size * size * size];
+            DataCube<Integer> sequential = new DataCube<Integer>(size);
+            DataCube<Integer> parallel = new DataCube<Integer>(size);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = i;
+                CubeCoords coords = CubeCoords.fromIndex(size, i);
+                sequential.set(coords, ids[i]);
+                parallel.set(coords, ids[i]);
+            }
+            parallel.setExecutor(executor, Math.max(2, workerCount));
+            Random random = new Random(size);
+            for (int move = 0; move < 6; move++) {
+                Axis axis = Axis.fromOrdinal(move % Axis.ordinalCount());
+                int layer = random.nextInt(size);
+                boolean clockwise = random.nextBoolean();
+                sequential.rotateLayer(axis, layer, clockwise);
+                parallel.rotateLayer(axis, layer, clockwise);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                CubeCoords coords = CubeCoords.fromIndex(size, i);
+                if (sequential.get(coords) != parallel.get(coords)) {
+                    fail("size " + size + " at " + coords);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executor accepting a fixed number of tasks and rejecting the following ones.
+     */
+    private static final class LimitedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private int accepted;
+
+        LimitedExecutor(ExecutorService delegate, int accepted) {
+            this.delegate = delegate;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (accepted == 0) { throw new RejectedExecutionException(); }
+            accepted--;
+            delegate.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return null;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    public void testRejectedWorkersLeaveRingsToCaller() {
+        for (int accepted = 0; accepted <= 2; accepted++) {
+            DataCube<Cell> sequential = createCube(9);
+            DataCube<Cell> parallel = createCube(9);
+            parallel.setExecutor(new LimitedExecutor(executor, accepted * 50), 4, 1);
+            rotateAndCompare(sequential, parallel, 50, new Random(accepted));
+        }
+    }
+
+    private static void rotateAndCompare(DataCube<Cell> sequential, DataCube<Cell> parallel,
+                                         int moveCount, Random random) {
+        int size = sequential.size;
+        for (int move = 0; move < moveCount; move++) {
+            Axis axis = Axis.fromOrdinal(random.nextInt(Axis.ordinalCount()));
+            int layer = random.nextInt(size);
+            boolean clockwise = random.nextBoolean();
+            sequential.rotateLayer(axis, layer, clockwise);
+            parallel.rotateLayer(axis, layer, clockwise);
+        }
+        for (int i = 0; i < size * size * size; i++) {
+            CubeCoords coords = CubeCoords.fromIndex(size, i);
+            Cell expected = sequential.get(coords);
+            Cell actual = parallel.get(coords);
+            assertEquals("size " + size + " at " + coords, expected.id, actual.id);
+            for (int axis = 0; axis < Axis.ordinalCount(); axis++) {
+                assertEquals(expected.rotations[axis], actual.rotations[axis]);
+            }
+        }
+    }
+
+    private static DataCube<Cell> createCube(int size) {
+        DataCube<Cell> cube = new DataCube<Cell>(size);
+        for (int i = 0; i < size * size * size; i++) {
+            cube.set(CubeCoords.fromIndex(size, i), new Cell(i));
+        }
+        return cube;
+    }
+}
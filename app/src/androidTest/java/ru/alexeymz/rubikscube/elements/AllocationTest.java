@@ -0,0 +1,89 @@
+package ru.alexeymz.rubikscube.elements;
+
+import android.os.Debug;
+
+import junit.framework.TestCase;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.graphics.RecordingGl;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+/**
+ * Checks that frames, moves and picking do not allocate in steady state.
+ */
+@SuppressWarnings("deprecation")
+public class AllocationTest extends TestCase {
+    private static final int SIZE = 5;
+    private static final int WARM_UP = 50;
+    private static final int ITERATIONS = 200;
+
+    private final float[] mvp = new float[16];
+    private RecordingGl gl;
+    private RubiksCube cube;
+    private double time;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        gl = new RecordingGl();
+        cube = new RubiksCube(SIZE, 640, 480, new EngineMetrics(), gl);
+        Debug.startAllocCounting();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Debug.stopAllocCounting();
+        super.tearDown();
+    }
+
+    public void testFrameDoesNotAllocate() {
+        cube.beginLayerRotation(Rotation.of(Axis.TOP, 1, true), 1e9, 0);
+        for (int i = 0; i < WARM_UP; i++) { frame(); }
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < ITERATIONS; i++) { frame(); }
+        assertEquals("allocations", 0, Debug.getThreadAllocCount());
+    }
+
+    public void testMoveDoesNotAllocate() {
+        for (int i = 0; i < WARM_UP; i++) { move(i); }
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < ITERATIONS; i++) { move(i); }
+        assertEquals("allocations", 0, Debug.getThreadAllocCount());
+    }
+
+    public void testPickDoesNotAllocate() {
+        CubeCoords from = new CubeCoords(0, 0, 0);
+        CubeCoords to = new CubeCoords(0, 0, SIZE - 1);
+        int partIndex = CubeCoords.toIndex(SIZE, 2, 0, 3);
+        gl.setReadPixel(partIndex >> 8, partIndex & 0xFF, CubeSide.UP.ordinal(), 255);
+        for (int i = 0; i < WARM_UP; i++) { pick(from, to); }
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < ITERATIONS; i++) { pick(from, to); }
+        assertEquals("allocations", 0, Debug.getThreadAllocCount());
+    }
+
+    private void frame() {
+        time += 16;
+        cube.updateAnimation(time);
+        cube.prepareFrame();
+        gl.beginFrame();
+        cube.draw(mvp, time);
+    }
+
+    private void move(int i) {
+        Rotation rotation = Rotation.of(Axis.fromOrdinal(i % 3), i % SIZE, i % 2 == 0);
+        cube.beginLayerRotation(rotation, 100, time);
+        time += 100;
+        cube.updateAnimation(time);
+        cube.beginLayerRotation(rotation.inverse(), 0, time);
+        cube.updateAnimation(time);
+    }
+
+    private void pick(CubeCoords from, CubeCoords to) {
+        assertNotNull(cube.locationAtPixel(10, 10));
+        assertNotNull(cube.createRotationFromSides(from, CubeSide.UP, to, CubeSide.UP));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OrientationBufferTest extends TestCase {
+    public void testPublishThenRead() {
+        OrientationBuffer buffer = new OrientationBuffer();
+        Quaternion q = new Quaternion().set(0, 1, 0, 0);
+        assertFalse(buffer.read(q));
+        // initial orientation is identity
+        assertEquals(1f, q.w);
+        assertEquals(0f, q.x);
+
+        buffer.publish(new Quaternion().set(0.5f, 0.5f, 0.5f, 0.5f));
+        buffer.publish(new Quaternion().set(0, 0, 1, 0));
+        assertTrue(buffer.read(q));
+        // only the latest publish is seen
+        assertEquals(1f, q.y);
+        assertFalse(buffer.read(q));
+        assertEquals(1f, q.y);
+
+        buffer.publish(new Quaternion().set(0, 0, 0, 1));
+        assertTrue(buffer.read(q));
+        assertEquals(1f, q.z);
+        assertEquals(0f, q.y);
+    }
+
+    /**
+     * Writer publishes (n, n, n, n) with increasing n; reader must never see torn
+     * or older values.
+     */
+    public void testConcurrentPublishAndRead() throws InterruptedException {
+        final OrientationBuffer buffer = new OrientationBuffer();
+        final int count = 2000000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Quaternion q = new Quaternion();
+        buffer.publish(q.set(1, 1, 1, 1));
+        assertTrue(buffer.read(q));
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Quaternion published = new Quaternion();
+                for (int i = 2; i <= count; i++) {
+                    buffer.publish(published.set(i, i, i, i));
+                }
+                done.set(true);
+            }
+        });
+        writer.start();
+
+        float last = 1;
+        int freshReads = 0;
+        boolean finished;
+        do {
+            finished = done.get();
+            boolean fresh = buffer.read(q);
+            if (q.x != q.w || q.y != q.w || q.z != q.w) {
+                failure.set("torn read " + q.w + " " + q.x + " " + q.y + " " + q.z);
+                break;
+            }
+            if (q.w < last || (fresh && q.w == last)) {
+                failure.set("stale read " + q.w + " after " + last);
+                break;
+            }
+            if (!fresh && q.w != last) {
+                failure.set("changed without fresh flag " + q.w + " after " + last);
+                break;
+            }
+            if (fresh) { freshReads++; }
+            last = q.w;
+        } while (!finished);
+        writer.join();
+
+        assertNull(failure.get(), failure.get());
+        // the read after the writer has finished sees the last value
+        assertEquals((float)count, last);
+        assertTrue(freshReads > 0);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+public class ProgramBinaryCacheTest extends TestCase {
+    private static final String VERTEX = "void main() { gl_Position = vec4(0.0); }";
+    private static final String FRAGMENT = "void main() { gl_FragColor = vec4(1.0); }";
+
+    private File directory;
+    private EngineMetrics metrics;
+    private ProgramBinaryCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = new File(System.getProperty("java.io.tmpdir"), "programs-" + System.nanoTime());
+        metrics = new EngineMetrics();
+        cache = new ProgramBinaryCache(directory, metrics);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) { file.delete(); }
+        }
+        directory.delete();
+    }
+
+    private static RecordingGl es3(boolean rejected) {
+        RecordingGl gl = new RecordingGl();
+        gl.setProgramBinaries(true, rejected);
+        gl.setLogging(true);
+        return gl;
+    }
+
+    /**
+     * Creates the program like on a new GL context.
+     */
+    private int create(RecordingGl gl) {
+        GlResources resources = new GlResources(gl);
+        GlProgram program = resources.add(new GlProgram(VERTEX, FRAGMENT, cache));
+        resources.ensureAllCreated();
+        assertTrue(program.handle() != 0);
+        return program.handle();
+    }
+
+    private File[] files() {
+        File[] files = directory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private static boolean logContains(RecordingGl gl, String prefix) {
+        for (String call : gl.getLog()) {
+            if (call.startsWith(prefix)) { return true; }
+        }
+        return false;
+    }
+
+    public void testUnsupportedContextCompiles() {
+        RecordingGl gl = new RecordingGl();
+        gl.setLogging(true);
+        assertFalse(ProgramBinaryCache.isSupported(gl));
+        create(gl);
+        create(gl);
+        assertEquals(2, metrics.programsCompiled.get());
+        assertEquals(0, metrics.programsLoaded.get());
+        assertEquals(0, files().length);
+        assertFalse(logContains(gl, "glProgramParameteri"));
+        assertFalse(logContains(gl, "glProgramBinary"));
+    }
+
+    public void testMissStoresBinaryAndHitLoadsIt() {
+        RecordingGl first = es3(false);
+        assertTrue(ProgramBinaryCache.isSupported(first));
+        create(first);
+        assertTrue(logContains(first, "glProgramParameteri"));
+        assertTrue(logContains(first, "glGetProgramBinary"));
+        assertEquals(1, metrics.programsCompiled.get());
+        assertEquals(0, metrics.programsLoaded.get());
+        assertEquals(1, files().length);
+
+        RecordingGl second = es3(false);
+        create(second);
+        assertTrue(logContains(second, "glProgramBinary"));
+        assertFalse(logContains(second, "glCompileShader"));
+        assertEquals(1, metrics.programsCompiled.get());
+        assertEquals(1, metrics.programsLoaded.get());
+        assertTrue(metrics.programNanosSaved.get() >= 0);
+        assertEquals(1, files().length);
+    }
+
+    public void testRejectedBinaryIsRecompiled() {
+        create(es3(false));
+        long stored = files()[0].lastModified();
+
+        RecordingGl rejecting = es3(true);
+        create(rejecting);
+        assertTrue(logContains(rejecting, "glProgramBinary"));
+        assertTrue(logContains(rejecting, "glDeleteProgram"));
+        assertTrue(logContains(rejecting, "glCompileShader"));
+        assertEquals(2, metrics.programsCompiled.get());
+        assertEquals(0, metrics.programsLoaded.get());
+        // binary of the recompiled program replaces the rejected one
+        assertEquals(1, files().length);
+        assertTrue(files()[0].lastModified() >= stored);
+
+        create(es3(false));
+        assertEquals(1, metrics.programsLoaded.get());
+    }
+
+    public void testCorruptFileIsReplaced() throws IOException {
+        create(es3(false));
+        File file = files()[0];
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[] {1, 2, 3});
+        } finally {
+            output.close();
+        }
+
+        create(es3(false));
+        assertEquals(2, metrics.programsCompiled.get());
+        assertEquals(0, metrics.programsLoaded.get());
+        assertTrue(file.length() > 3);
+
+        create(es3(false));
+        assertEquals(1, metrics.programsLoaded.get());
+    }
+
+    public void testMetricsFormat() {
+        create(es3(false));
+        create(es3(false));
+        assertTrue(metrics.format(), metrics.format().contains("programs    loaded 1 compiled 1"));
+    }
+}
@@ -0,0 +1,119 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import android.opengl.Matrix;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class QuaternionTest extends TestCase {
+    private static final float EPSILON = 1e-5f;
+
+    private static void assertMatrixEquals(float[] expected, float[] actual) {
+        for (int i = 0; i < 16; i++) {
+            assertEquals("element " + i, expected[i], actual[i], EPSILON);
+        }
+    }
+
+    private static float[] matrixOf(Quaternion q) {
+        float[] m = new float[16];
+        q.toMatrix(m, 0);
+        return m;
+    }
+
+    public void testKnownRotations() {
+        float[] m = matrixOf(new Quaternion().rotate(90, 0, 0, 1));
+        // x axis goes to y, y axis goes to -x
+        assertMatrixEquals(new float[] {
+             0, 1, 0, 0,
+            -1, 0, 0, 0,
+             0, 0, 1, 0,
+             0, 0, 0, 1,
+        }, m);
+
+        m = matrixOf(new Quaternion().rotate(180, 1, 0, 0));
+        assertMatrixEquals(new float[] {
+            1,  0,  0, 0,
+            0, -1,  0, 0,
+            0,  0, -1, 0,
+            0,  0,  0, 1,
+        }, m);
+
+        // axis length does not matter, zero angle or axis is identity
+        float[] expected = new float[16];
+        Matrix.setRotateM(expected, 0, 30, 0, 1, 0);
+        assertMatrixEquals(expected, matrixOf(new Quaternion().rotate(30, 0, 5, 0)));
+        Matrix.setIdentityM(expected, 0);
+        assertMatrixEquals(expected, matrixOf(new Quaternion().rotate(0, 1, 0, 0)));
+        assertMatrixEquals(expected, matrixOf(new Quaternion().rotate(45, 0, 0, 0)));
+    }
+
+    public void testComposeMatchesMatrices() {
+        Random random = new Random(1);
+        Quaternion local = new Quaternion();
+        Quaternion world = new Quaternion();
+        float[] localMatrix = new float[16];
+        float[] worldMatrix = new float[16];
+        float[] rotation = new float[16];
+        float[] temp = new float[16];
+        Matrix.setIdentityM(localMatrix, 0);
+        Matrix.setIdentityM(worldMatrix, 0);
+        for (int i = 0; i < 50; i++) {
+            float angle = random.nextFloat() * 720 - 360;
+            float x = random.nextFloat() - 0.5f, y = random.nextFloat() - 0.5f, z = random.nextFloat() - 0.5f;
+
+            local.rotate(angle, x, y, z);
+            Matrix.setRotateM(rotation, 0, angle, x, y, z);
+            Matrix.multiplyMM(temp, 0, localMatrix, 0, rotation, 0);
+            System.arraycopy(temp, 0, localMatrix, 0, 16);
+
+            world.rotateWorld(angle, x, y, z);
+            Matrix.multiplyMM(temp, 0, rotation, 0, worldMatrix, 0);
+            System.arraycopy(temp, 0, worldMatrix, 0, 16);
+        }
+        assertMatrixEquals(localMatrix, matrixOf(local));
+        assertMatrixEquals(worldMatrix, matrixOf(world));
+    }
+
+    public void testLocalAndWorldRotationOrder() {
+        // rotating in local space after A equals rotating in world space before A
+        Quaternion a = new Quaternion().rotate(90, 1, 0, 0).rotate(90, 0, 1, 0);
+        Quaternion b = new Quaternion().rotateWorld(90, 0, 1, 0).rotateWorld(90, 1, 0, 0);
+        assertMatrixEquals(matrixOf(a), matrixOf(b));
+        Quaternion c = new Quaternion().rotate(90, 0, 1, 0).rotate(90, 1, 0, 0);
+        assertFalse(Math.abs(matrixOf(a)[1] - matrixOf(c)[1]) < EPSILON
+            && Math.abs(matrixOf(a)[2] - matrixOf(c)[2]) < EPSILON);
+    }
+
+    public void testNormalize() {
+        Quaternion q = new Quaternion().set(2, 0, 0, 2).normalize();
+        float r = (float)Math.sqrt(0.5);
+        assertEquals(r, q.w, EPSILON);
+        assertEquals(r, q.z, EPSILON);
+        float[] expected = new float[16];
+        Matrix.setRotateM(expected, 0, 90, 0, 0, 1);
+        assertMatrixEquals(expected, matrixOf(q));
+
+        q.set(0, 0, 0, 0).normalize();
+        assertEquals(1f, q.w);
+        assertEquals(0f, q.x);
+
+        // many small steps drift off unit length without it
+        Quaternion drifting = new Quaternion();
+        for (int i = 0; i < 100000; i++) {
+            drifting.rotate(0.7f, 1, 2, 3).rotateWorld(1.3f, 3, 2, 1);
+        }
+        drifting.normalize();
+        float length = (float)Math.sqrt(drifting.w * drifting.w + drifting.x * drifting.x
+            + drifting.y * drifting.y + drifting.z * drifting.z);
+        assertEquals(1f, length, EPSILON);
+    }
+
+    public void testMatrixOffset() {
+        float[] m = new float[20];
+        new Quaternion().rotate(90, 0, 0, 1).toMatrix(m, 4);
+        assertEquals(0f, m[0]);
+        assertEquals(1f, m[5], EPSILON);
+        assertEquals(1f, m[19]);
+    }
+}
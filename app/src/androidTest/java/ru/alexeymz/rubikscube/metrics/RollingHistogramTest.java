@@ -0,0 +1,117 @@
+package ru.alexeymz.rubikscube.metrics;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+public class RollingHistogramTest extends TestCase {
+    private static final long WINDOW_MS = 10000;
+    private static final int SLICES = 10;
+
+    public void testPercentiles() {
+        RollingHistogram histogram = new RollingHistogram(WINDOW_MS, SLICES);
+        long now = 1000000;
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value, now);
+        }
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(now);
+        assertEquals(10000, snapshot.count);
+        assertEquals(10000L * 10001 / 2, snapshot.sum);
+        assertEquals(10000, snapshot.max);
+        assertEquals(5000.5, snapshot.mean(), 1e-9);
+        // log-linear buckets are within 1/16 of the value
+        assertEquals(5000, snapshot.percentile(0.50), 5000 / 16.0);
+        assertEquals(9500, snapshot.percentile(0.95), 9500 / 16.0);
+        assertEquals(9900, snapshot.percentile(0.99), 9900 / 16.0);
+        assertEquals(10000, snapshot.percentile(1.0), 10000 / 16.0);
+        assertEquals(1, snapshot.percentile(0.0));
+    }
+
+    public void testSmallValuesAreExact() {
+        RollingHistogram histogram = new RollingHistogram(WINDOW_MS, SLICES);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i % 4 == 3 ? 17 : 3, 0);
+        }
+        histogram.record(-5, 0);
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(0);
+        assertEquals(101, snapshot.count);
+        assertEquals(0, snapshot.percentile(0.001));
+        assertEquals(3, snapshot.percentile(0.5));
+        assertEquals(17, snapshot.percentile(0.9));
+    }
+
+    public void testWindowRollsOver() {
+        RollingHistogram histogram = new RollingHistogram(WINDOW_MS, SLICES);
+        long sliceMs = WINDOW_MS / SLICES;
+        histogram.record(1000, 0);
+        histogram.record(10, sliceMs * 5);
+        assertEquals(2, histogram.snapshot(sliceMs * 5).count);
+        assertEquals(1000, histogram.snapshot(sliceMs * 5).max);
+
+        // first slice leaves the window, the second one is still in it
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(WINDOW_MS);
+        assertEquals(1, snapshot.count);
+        assertEquals(10, snapshot.max);
+        assertEquals(0, histogram.snapshot(WINDOW_MS + sliceMs * 5).count);
+        assertEquals(0, histogram.snapshot(WINDOW_MS + sliceMs * 5).percentile(0.5));
+    }
+
+    public void testReusedSliceIsReset() {
+        RollingHistogram histogram = new RollingHistogram(WINDOW_MS, SLICES);
+        for (int i = 0; i < 50; i++) {
+            histogram.record(500, 0);
+        }
+        // same slice index, one window later
+        histogram.record(7, WINDOW_MS);
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(WINDOW_MS);
+        assertEquals(1, snapshot.count);
+        assertEquals(7, snapshot.sum);
+        assertEquals(7, snapshot.max);
+
+        // writers with stale clock do not resurrect the old slice
+        histogram.record(500, 0);
+        assertEquals(1, histogram.snapshot(WINDOW_MS).count);
+    }
+
+    public void testConcurrentRecording() throws InterruptedException {
+        final RollingHistogram histogram = new RollingHistogram(WINDOW_MS, SLICES);
+        final int perThread = 100000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int value = t + 1;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(value, 0);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(0);
+        assertEquals(threads.length * perThread, snapshot.count);
+        assertEquals(perThread * 10L, snapshot.sum);
+        assertEquals(4, snapshot.max);
+    }
+
+    public void testEngineMetricsFormat() {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.frameNanos.record(16000000);
+        // reported values are bucket bounds, so 16 ms may show up as 15.99
+        double frameMs = metrics.frameNanos.snapshot().percentile(0.5) / 1e6;
+        assertEquals(16.0, frameMs, 1.0);
+        metrics.drawCalls.record(54);
+        metrics.skippedFrames.incrementAndGet();
+        String report = metrics.format();
+        assertTrue(report, report.contains(String.format(Locale.US, "frame       p50 %6.2f", frameMs)));
+        assertTrue(report, report.contains("draws       p50     54"));
+        assertTrue(report, report.contains("skipped 1"));
+        assertFalse(report, report.contains("allocs"));
+        metrics.setAllocationCountingEnabled(true);
+        assertTrue(metrics.format().contains("allocs"));
+    }
+}
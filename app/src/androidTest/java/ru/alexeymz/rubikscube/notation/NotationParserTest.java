@@ -0,0 +1,185 @@
+package ru.alexeymz.rubikscube.notation;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StickerLayout;
+
+public class NotationParserTest extends TestCase {
+    private static final String TAG = "NotationParserTest";
+
+    private static final class Collector implements NotationParser.Listener {
+        int[] moves = new int[16];
+        int count;
+        int algorithms;
+
+        @Override
+        public void onMoves(int[] batch, int batchCount) {
+            if (count + batchCount > moves.length) {
+                moves = Arrays.copyOf(moves, Math.max(moves.length * 2, count + batchCount));
+            }
+            System.arraycopy(batch, 0, moves, count, batchCount);
+            count += batchCount;
+        }
+
+        @Override
+        public void onAlgorithmEnd(int line) {
+            algorithms++;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(moves, count);
+        }
+    }
+
+    public void testFaceTurns() {
+        MoveTable table = MoveTable.forSize(3);
+        assertMoves(3, "R L' U D2 F B'", new int[] {
+            table.indexOf(Axis.LEFT, 2, false),
+            table.indexOf(Axis.LEFT, 0, false),
+            table.indexOf(Axis.TOP, 0, true),
+            table.indexOf(Axis.TOP, 2, false),
+            table.indexOf(Axis.TOP, 2, false),
+            table.indexOf(Axis.DEPTH, 0, false),
+            table.indexOf(Axis.DEPTH, 2, false),
+        });
+    }
+
+    public void testWideTurnsSlicesAndRotations() {
+        MoveTable table = MoveTable.forSize(5);
+        int r1 = table.indexOf(Axis.LEFT, 4, false);
+        int r2 = table.indexOf(Axis.LEFT, 3, false);
+        int r3 = table.indexOf(Axis.LEFT, 2, false);
+        assertMoves(5, "3R", new int[] { r3 });
+        assertMoves(5, "Rw", new int[] { r1, r2 });
+        assertMoves(5, "r", new int[] { r1, r2 });
+        assertMoves(5, "3Rw", new int[] { r1, r2, r3 });
+        assertMoves(5, "3r'", new int[] {
+            MoveTable.inverseOf(r1), MoveTable.inverseOf(r2), MoveTable.inverseOf(r3) });
+        assertMoves(5, "M", new int[] {
+            table.indexOf(Axis.LEFT, 1, true),
+            table.indexOf(Axis.LEFT, 2, true),
+            table.indexOf(Axis.LEFT, 3, true),
+        });
+        Collector collector = parse(5, "x y' z2");
+        assertEquals(5 + 5 + 10, collector.count);
+    }
+
+    public void testLinesAndComments() {
+        Collector collector = parse(3, "R U R' U' // sexy move\n\n(R U2) R'\n// comment only\nF,B");
+        assertEquals(3, collector.algorithms);
+        assertEquals(4 + 4 + 2, collector.count);
+    }
+
+    public void testInvalidNotation() {
+        assertInvalid(3, "R U Q", "line 1, column 5");
+        assertInvalid(3, "R\nU4R", "line 2, column 1");
+        assertInvalid(3, "4R", "out of cube");
+        assertInvalid(2, "M", "no inner slices");
+        assertInvalid(3, "Rw2w", "unexpected 'w'");
+        assertInvalid(3, "R /", "'/' expected");
+    }
+
+    public void testFormatRoundTrip() {
+        for (int size = 1; size <= 7; size++) {
+            Random random = new Random(size);
+            int[] moves = new int[200];
+            for (int i = 0; i < moves.length; i++) {
+                // repeat moves often to produce double turns
+                moves[i] = i > 0 && random.nextInt(4) == 0 ? moves[i - 1] : random.nextInt(size * 6);
+            }
+            String text = new NotationFormatter(size).format(moves, 0, moves.length);
+            assertTrue(text, Arrays.equals(moves, parse(size, text).toArray()));
+        }
+    }
+
+    public void testStreamMatchesModel() throws Exception {
+        final int size = 4;
+        String text = randomAlgorithms(size, new Random(1), 100, 30);
+        NotationParser parser = new NotationParser(size);
+
+        StickerLayout layout = StickerLayout.forSize(size);
+        byte[] stickers = new byte[layout.stickerCount];
+        layout.read(RubiksCube.getDefaultCube(size), stickers);
+        MoveExecutor executor = new MoveExecutor(MoveTable.forSize(size), stickers);
+        parser.parse(Channels.newChannel(new ByteArrayInputStream(text.getBytes("US-ASCII"))), executor);
+        assertEquals(100, executor.algorithmCount());
+
+        Collector collector = parse(size, text);
+        DataCube<SmallCube> cube = RubiksCube.getDefaultCube(size);
+        MoveExecutor.apply(cube, collector.moves, 0, collector.count);
+        byte[] expected = new byte[layout.stickerCount];
+        layout.read(cube, expected);
+        assertEquals(collector.count, executor.moveCount());
+        assertTrue(Arrays.equals(expected, stickers));
+    }
+
+    public void testThroughput() throws Exception {
+        final int size = 3;
+        byte[] text = randomAlgorithms(size, new Random(2), 20000, 50).getBytes("US-ASCII");
+        NotationParser parser = new NotationParser(size);
+        StickerLayout layout = StickerLayout.forSize(size);
+        byte[] stickers = new byte[layout.stickerCount];
+        MoveExecutor executor = new MoveExecutor(MoveTable.forSize(size), stickers);
+
+        // warm up
+        parser.parse(Channels.newChannel(new ByteArrayInputStream(text)), executor);
+        long start = System.nanoTime();
+        parser.parse(Channels.newChannel(new ByteArrayInputStream(text)), executor);
+        long nanos = System.nanoTime() - start;
+        long moves = executor.moveCount() / 2;
+        Log.i(TAG, String.format(Locale.US, "%d moves from %d KB in %.1f ms, %.2f M moves/s",
+            moves, text.length / 1024, nanos / 1e6, moves * 1e3 / nanos));
+    }
+
+    private static String randomAlgorithms(int size, Random random, int count, int length) {
+        String[] faces = { "R", "L", "U", "D", "F", "B", "Rw", "u", "x", "y" };
+        String[] suffixes = { "", "'", "2" };
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                if (j > 0) { builder.append(' '); }
+                String face = faces[random.nextInt(faces.length)];
+                if (size > 3 && random.nextInt(4) == 0 && face.length() == 1
+                    && Character.isUpperCase(face.charAt(0))) {
+                    builder.append(2 + random.nextInt(size - 2));
+                }
+                builder.append(face).append(suffixes[random.nextInt(suffixes.length)]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static Collector parse(int size, String text) {
+        Collector collector = new Collector();
+        new NotationParser(size).parse(text, collector);
+        return collector;
+    }
+
+    private static void assertMoves(int size, String text, int[] expected) {
+        int[] actual = parse(size, text).toArray();
+        assertTrue(text + ": " + Arrays.toString(actual), Arrays.equals(expected, actual));
+    }
+
+    private static void assertInvalid(int size, String text, String message) {
+        try {
+            parse(size, text);
+            fail("'" + text + "' must be rejected.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
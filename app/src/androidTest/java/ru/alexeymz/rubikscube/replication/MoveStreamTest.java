@@ -0,0 +1,155 @@
+package ru.alexeymz.rubikscube.replication;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.state.CubeFixtures;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+public class MoveStreamTest extends TestCase {
+    private static final String TAG = "MoveStreamTest";
+    private static final int SIZE = 3;
+
+    public void testLoopbackReplica() throws Exception {
+        final MoveTable table = MoveTable.forSize(SIZE);
+        final byte[] source = CubeFixtures.solved(SIZE);
+        final int moveCount = 5000;
+        Pipe pipe = Pipe.open();
+        final OutputStream output = Channels.newOutputStream(pipe.sink());
+        final IOException[] failure = new IOException[1];
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MoveStreamWriter writer = new MoveStreamWriter(output, SIZE, source, 1000, 100);
+                    byte[] scratch = new byte[source.length];
+                    Random random = new Random(1);
+                    long timeMs = 1000;
+                    for (int i = 0; i < moveCount; i++) {
+                        int move = random.nextInt(table.moveCount);
+                        timeMs += random.nextInt(300);
+                        writer.move(move, timeMs);
+                        table.applyInPlace(move, source, scratch);
+                        if (i % 500 == 0) { writer.flush(); }
+                    }
+                    writer.flush();
+                    output.close();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        writerThread.start();
+
+        MoveStreamReader reader = new MoveStreamReader(Channels.newInputStream(pipe.source()));
+        int checkpoints = 0;
+        while (reader.next()) {
+            if (reader.type == MoveStreamReader.CHECKPOINT) { checkpoints++; }
+        }
+        writerThread.join();
+        assertNull(failure[0]);
+        assertEquals(moveCount, reader.moveCount);
+        assertEquals(moveCount / 100, checkpoints);
+        assertTrue(reader.isInSync());
+        byte[] replica = new byte[source.length];
+        reader.read(replica);
+        assertTrue(Arrays.equals(source, replica));
+    }
+
+    public void testLateJoinerCatchesUp() throws IOException {
+        MoveTable table = MoveTable.forSize(5);
+        byte[] source = CubeFixtures.solved(5);
+        byte[] scratch = new byte[source.length];
+        Random random = new Random(2);
+        for (int i = 0; i < 300; i++) {
+            table.applyInPlace(random.nextInt(table.moveCount), source, scratch);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MoveStreamWriter writer = new MoveStreamWriter(output, 5, source, 50000, 10);
+        int move = random.nextInt(table.moveCount);
+        // delta too large to be packed with the move
+        long timeMs = 50000 + (1L << 30);
+        writer.move(move, timeMs);
+        table.applyInPlace(move, source, scratch);
+        writer.flush();
+
+        MoveStreamReader reader = new MoveStreamReader(new ByteArrayInputStream(output.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(MoveStreamReader.SNAPSHOT, reader.type);
+        assertEquals(50000, reader.timeMs);
+        assertTrue(reader.next());
+        assertEquals(MoveStreamReader.MOVE, reader.type);
+        assertEquals(move, reader.move);
+        assertEquals(timeMs, reader.timeMs);
+        assertFalse(reader.next());
+        byte[] replica = new byte[source.length];
+        reader.read(replica);
+        assertTrue(Arrays.equals(source, replica));
+    }
+
+    public void testDivergenceIsDetected() throws IOException {
+        MoveTable table = MoveTable.forSize(SIZE);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MoveStreamWriter writer = new MoveStreamWriter(output, SIZE, CubeFixtures.solved(SIZE), 0, 10);
+        int headerLength = (int)writer.bytesWritten();
+        for (int i = 0; i < 10; i++) {
+            writer.move(i, 0);
+        }
+        writer.snapshot(0);
+        writer.flush();
+        byte[] data = output.toByteArray();
+        // replace the first move with its inverse
+        data[headerLength] = (byte)(MoveTable.inverseOf(0) << 2);
+
+        MoveStreamReader reader = new MoveStreamReader(new ByteArrayInputStream(data));
+        while (reader.next() && reader.type != MoveStreamReader.CHECKPOINT) { }
+        assertFalse(reader.isInSync());
+        assertEquals(1, reader.mismatchCount());
+        assertTrue(reader.next());
+        assertEquals(MoveStreamReader.SNAPSHOT, reader.type);
+        assertTrue(reader.isInSync());
+    }
+
+    public void testThroughput() throws IOException {
+        MoveTable table = MoveTable.forSize(SIZE);
+        int moveCount = 1 << 18;
+        int[] moves = new int[moveCount];
+        long[] times = new long[moveCount];
+        Random random = new Random(3);
+        for (int i = 0; i < moveCount; i++) {
+            moves[i] = random.nextInt(table.moveCount);
+            times[i] = (i == 0 ? 0 : times[i - 1]) + random.nextInt(250);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(moveCount * 3);
+        long start = System.nanoTime();
+        MoveStreamWriter writer = new MoveStreamWriter(output, SIZE, CubeFixtures.solved(SIZE), 0, 1000);
+        for (int i = 0; i < moveCount; i++) {
+            writer.move(moves[i], times[i]);
+        }
+        writer.flush();
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        MoveStreamReader reader = new MoveStreamReader(new ByteArrayInputStream(output.toByteArray()));
+        while (reader.next()) { }
+        long decodeNanos = System.nanoTime() - start;
+        assertEquals(moveCount, reader.moveCount);
+        assertTrue(reader.isInSync());
+
+        Log.i(TAG, String.format(Locale.US, "%.2f bytes per move, encode %.1f ns, decode %.1f ns per move",
+            (double)writer.bytesWritten() / moveCount,
+            (double)encodeNanos / moveCount, (double)decodeNanos / moveCount));
+    }
+}
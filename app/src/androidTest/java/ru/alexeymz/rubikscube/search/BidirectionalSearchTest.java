@@ -0,0 +1,73 @@
+package ru.alexeymz.rubikscube.search;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.CubeFixtures;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+public class BidirectionalSearchTest extends TestCase {
+    /**
+     * Depth-first check whether any sequence of at most <code>depth</code> moves solves the state.
+     */
+    private static boolean solvableWithin(MoveTable moves, byte[] stickers, byte[] solved, int depth) {
+        if (Arrays.equals(stickers, solved)) { return true; }
+        if (depth == 0) { return false; }
+        byte[] next = new byte[stickers.length];
+        for (int move = 0; move < moves.moveCount; move++) {
+            moves.apply(move, stickers, next);
+            if (solvableWithin(moves, next, solved, depth - 1)) { return true; }
+        }
+        return false;
+    }
+
+    public void testSolutionsAreOptimal() throws InterruptedException {
+        Random random = new Random(1);
+        for (int size = 2; size <= 3; size++) {
+            MoveTable moves = MoveTable.forSize(size);
+            byte[] solved = CubeFixtures.solved(size);
+            BidirectionalSearch search = new BidirectionalSearch(size, 8, 1000000);
+            for (int round = 0; round < 12; round++) {
+                int length = round % 6;
+                byte[] stickers = CubeFixtures.scramble(size, random, length);
+                List<Rotation> solution = search.search(stickers, solved);
+                assertNotNull(solution);
+                assertTrue(solution.size() <= length);
+                if (solution.size() > 0) {
+                    assertFalse(solvableWithin(moves, stickers, solved, solution.size() - 1));
+                }
+                CubeFixtures.apply(moves, stickers, solution);
+                assertTrue("size " + size + " round " + round, Arrays.equals(solved, stickers));
+            }
+        }
+    }
+
+    public void testFindsPathBetweenScrambledStates() throws InterruptedException {
+        MoveTable moves = MoveTable.forSize(4);
+        Random random = new Random(2);
+        byte[] from = CubeFixtures.scramble(4, random, 30);
+        byte[] to = from.clone();
+        CubeFixtures.scramble(moves, to, random, 5);
+        List<Rotation> path = new BidirectionalSearch(4, 6, 1000000).search(from, to);
+        assertNotNull(path);
+        assertTrue(path.size() <= 5);
+        CubeFixtures.apply(moves, from, path);
+        assertTrue(Arrays.equals(to, from));
+    }
+
+    public void testLimits() throws InterruptedException {
+        byte[] solved = CubeFixtures.solved(3);
+        byte[] stickers = CubeFixtures.scramble(3, new Random(3), 40);
+        assertNull(new BidirectionalSearch(3, 4, 1000000).search(stickers, solved));
+        assertNull(new BidirectionalSearch(3, 20, 1000).search(stickers, solved));
+
+        long start = System.nanoTime();
+        assertNull(new BidirectionalSearch(3, 20, Long.MAX_VALUE)
+            .search(stickers, solved, start + 50000000L));
+        assertTrue(System.nanoTime() - start < 5000000000L);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.alexeymz.rubikscube.search;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StateCodec;
+
+public class Cube2TableTest extends TestCase {
+    private static Cube2Table table;
+
+    @Override
+    protected void setUp() throws Exception {
+        if (table != null) { return; }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            table = Cube2Table.create(executor, 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testDistanceCounts() {
+        long[] counts = new long[4];
+        for (int index = 0; index < Cube2Table.STATE_COUNT; index++) {
+            counts[table.value(index)]++;
+        }
+        long[] expected = new long[4];
+        for (int depth = 0; depth < OffHeapStateSetTest.CUBE2_LAYERS.length; depth++) {
+            expected[depth % 3] += OffHeapStateSetTest.CUBE2_LAYERS[depth];
+        }
+        // every state is reachable, so no entry is left unvisited
+        assertTrue(Arrays.toString(counts), Arrays.equals(expected, counts));
+    }
+
+    public void testDistanceMatchesEnumeratedDepth() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        LayerEnumerator enumerator = new LayerEnumerator(2, executor, 2);
+        OffHeapStateSet visited = new OffHeapStateSet(enumerator.keyLength(), 0);
+        enumerator.enumerate(visited, 6, Long.MAX_VALUE, null);
+        executor.shutdown();
+
+        StateCodec codec = new StateCodec(2);
+        byte[] stickers = new byte[codec.layout().stickerCount];
+        for (int depth = 0; depth <= 6; depth++) {
+            long count = 0;
+            for (int segment = 0; segment < visited.segmentCount(); segment++) {
+                byte[] keys = visited.collect(segment, depth);
+                for (int offset = 0; offset < keys.length; offset += codec.encodedLength) {
+                    codec.decode(keys, offset, stickers);
+                    assertEquals(depth, table.distance(stickers));
+                    count++;
+                }
+            }
+            assertEquals(OffHeapStateSetTest.CUBE2_LAYERS[depth], count);
+        }
+        visited.close();
+    }
+
+    public void testSolveScrambles() {
+        MoveTable moves = MoveTable.forSize(2);
+        byte[] solved = new byte[moves.layout.stickerCount];
+        moves.layout.solved(solved);
+        byte[] scratch = new byte[solved.length];
+        StateCodec codec = new StateCodec(2);
+        byte[] solvedKey = new byte[codec.encodedLength];
+        codec.encode(solved, solvedKey, 0);
+        byte[] key = new byte[codec.encodedLength];
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            byte[] stickers = solved.clone();
+            int length = round % 30;
+            for (int i = 0; i < length; i++) {
+                moves.applyInPlace(random.nextInt(moves.moveCount), stickers, scratch);
+            }
+            List<Rotation> solution = table.solve(stickers);
+            assertTrue(solution.size() <= Math.min(length, OffHeapStateSetTest.CUBE2_LAYERS.length - 1));
+            for (Rotation rotation : solution) {
+                moves.applyInPlace(moves.indexOf(rotation), stickers, scratch);
+            }
+            // solved up to whole cube rotation
+            codec.encode(stickers, key, 0);
+            assertTrue(Arrays.equals(solvedKey, key));
+        }
+    }
+
+    public void testLoadWritesAndMapsFile() throws IOException, InterruptedException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "cube2-" + System.nanoTime() + ".tbl");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Cube2Table loaded = Cube2Table.load(file, executor, 4);
+            assertEquals(Cube2Table.TABLE_BYTES + 8, file.length());
+            Cube2Table mapped = Cube2Table.map(file);
+            Random random = new Random(2);
+            for (int i = 0; i < 10000; i++) {
+                int index = random.nextInt(Cube2Table.STATE_COUNT);
+                assertEquals(table.value(index), loaded.value(index));
+                assertEquals(table.value(index), mapped.value(index));
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(file.delete());
+        }
+    }
+}
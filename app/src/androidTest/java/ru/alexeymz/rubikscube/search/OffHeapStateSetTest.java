@@ -0,0 +1,122 @@
+package ru.alexeymz.rubikscube.search;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class OffHeapStateSetTest extends TestCase {
+    /** Quarter turn metric distance counts of all 2x2 states modulo whole cube rotation. */
+    static final long[] CUBE2_LAYERS = {
+        1, 6, 27, 120, 534, 2256, 8969, 33058, 114149, 360508, 930588, 1350852, 782536, 90280, 276,
+    };
+
+    private static final int KEY_LENGTH = 9;
+
+    private static void key(int value, byte[] key) {
+        Arrays.fill(key, (byte)0);
+        for (int i = 0; i < 4; i++) {
+            key[i * 2] = (byte)(value >>> (i * 8));
+        }
+    }
+
+    private static void fillAndCheck(OffHeapStateSet set, int count) {
+        byte[] key = new byte[KEY_LENGTH];
+        long initialBytes = set.capacityBytes();
+        for (int i = 0; i < count; i++) {
+            key(i, key);
+            assertTrue(set.add(key, 0));
+        }
+        assertEquals(count, set.size());
+        assertTrue(set.capacityBytes() > initialBytes);
+        for (int i = 0; i < count; i++) {
+            key(i, key);
+            assertTrue(set.contains(key, 0));
+            assertFalse(set.add(key, 0));
+        }
+        for (int i = count; i < count * 2; i++) {
+            key(i, key);
+            assertFalse(set.contains(key, 0));
+        }
+        assertEquals(count, set.size());
+    }
+
+    public void testGrowthKeepsKeys() {
+        OffHeapStateSet set = new OffHeapStateSet(KEY_LENGTH, 0);
+        fillAndCheck(set, 100000);
+        set.clear();
+        assertEquals(0, set.size());
+        byte[] key = new byte[KEY_LENGTH];
+        key(1, key);
+        assertFalse(set.contains(key, 0));
+        set.close();
+    }
+
+    public void testSpillToFiles() {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "state-set-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        OffHeapStateSet set = new OffHeapStateSet(KEY_LENGTH, 1000, directory);
+        fillAndCheck(set, 50000);
+        // grown segments replace their files
+        assertEquals(set.segmentCount(), directory.list().length);
+        set.close();
+        assertEquals(0, directory.list().length);
+        assertTrue(directory.delete());
+    }
+
+    public void testTagsAndCollect() {
+        OffHeapStateSet set = new OffHeapStateSet(KEY_LENGTH, 0);
+        byte[] key = new byte[KEY_LENGTH];
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            key(i, key);
+            assertEquals(-1, set.putIfAbsent(key, 0, i % 3));
+            assertEquals(i % 3, set.putIfAbsent(key, 0, OffHeapStateSet.MAX_TAG));
+        }
+        for (int i = 0; i < count; i++) {
+            key(i, key);
+            assertEquals(i % 3, set.get(key, 0));
+        }
+        int collected = 0;
+        for (int segment = 0; segment < set.segmentCount(); segment++) {
+            byte[] keys = set.collect(segment, 1);
+            for (int offset = 0; offset < keys.length; offset += KEY_LENGTH) {
+                assertEquals(1, set.get(keys, offset));
+                collected++;
+            }
+        }
+        assertEquals((count + 1) / 3, collected);
+        set.close();
+    }
+
+    public void testEnumerates2x2Layers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        LayerEnumerator enumerator = new LayerEnumerator(2, executor, 4);
+        OffHeapStateSet visited = new OffHeapStateSet(enumerator.keyLength(), 0);
+        long[] counts = enumerator.enumerate(visited, 8, Long.MAX_VALUE, null);
+        assertTrue(Arrays.toString(counts), Arrays.equals(Arrays.copyOf(CUBE2_LAYERS, 9), counts));
+        visited.close();
+        executor.shutdown();
+    }
+
+    public void testEnumerationStopsAtLimits() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        LayerEnumerator enumerator = new LayerEnumerator(3, executor, 2);
+        OffHeapStateSet visited = new OffHeapStateSet(enumerator.keyLength(), 0);
+        long[] counts = enumerator.enumerate(visited, 3, Long.MAX_VALUE, null);
+        // quarter turns of all nine layers stay distinct modulo whole cube rotation
+        assertEquals(4, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(18, counts[1]);
+        assertEquals(1 + counts[1] + counts[2] + counts[3], visited.size());
+
+        visited.clear();
+        counts = enumerator.enumerate(visited, 20, 1000, null);
+        assertTrue(counts.length < 20);
+        assertTrue(visited.size() > 1000);
+        visited.close();
+        executor.shutdown();
+    }
+}
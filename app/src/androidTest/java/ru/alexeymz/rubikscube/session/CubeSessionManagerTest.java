@@ -0,0 +1,166 @@
+package ru.alexeymz.rubikscube.session;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+public class CubeSessionManagerTest extends TestCase {
+    /**
+     * Executor running tasks only when asked.
+     */
+    private static final class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        boolean runOne() {
+            Runnable task = tasks.poll();
+            if (task == null) { return false; }
+            task.run();
+            return true;
+        }
+    }
+
+    private static int[] randomMoves(MoveTable table, int count, Random random, byte[] expected) {
+        byte[] scratch = new byte[expected.length];
+        int[] moves = new int[count];
+        for (int k = 0; k < count; k++) {
+            moves[k] = random.nextInt(table.moveCount);
+            table.applyInPlace(moves[k], expected, scratch);
+        }
+        return moves;
+    }
+
+    private static void assertState(CubeSessionManager manager, CubeSession session, byte[] expected) {
+        byte[] actual = new byte[expected.length];
+        manager.read(session, actual);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    public void testSessionsMatchMoveTable() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CubeSessionManager manager = new CubeSessionManager(executor);
+        int sessionCount = 300;
+        CubeSession[] sessions = new CubeSession[sessionCount];
+        byte[][] expected = new byte[sessionCount][];
+        Random random = new Random(1);
+        for (int i = 0; i < sessionCount; i++) {
+            int size = 2 + i % 3;
+            MoveTable table = MoveTable.forSize(size);
+            sessions[i] = manager.create(size);
+            expected[i] = new byte[table.layout.stickerCount];
+            table.layout.solved(expected[i]);
+            byte[] scratch = new byte[expected[i].length];
+            int[] moves = new int[200];
+            for (int k = 0; k < moves.length; k++) {
+                moves[k] = random.nextInt(table.moveCount);
+                table.applyInPlace(moves[k], expected[i], scratch);
+            }
+            for (int k = 0; k < moves.length; k += 50) {
+                assertTrue(manager.submit(sessions[i], moves, k, 50));
+            }
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (manager.appliedMoveCount() < sessionCount * 200L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(sessionCount * 200L, manager.appliedMoveCount());
+        for (int i = 0; i < sessionCount; i++) {
+            byte[] actual = new byte[expected[i].length];
+            manager.read(sessions[i], actual);
+            assertTrue("session " + i, Arrays.equals(expected[i], actual));
+            assertEquals(0, sessions[i].pendingMoveCount());
+            // idle session keeps no queue
+            assertEquals(actual.length + CubeSession.OVERHEAD_BYTES, sessions[i].memoryBytes());
+        }
+    }
+
+    public void testBackpressureAndReuse() {
+        // executor that never runs tasks keeps moves queued
+        CubeSessionManager manager = new CubeSessionManager(new Executor() {
+            @Override
+            public void execute(Runnable command) { }
+        }, 10);
+        CubeSession session = manager.create(3);
+        assertTrue(manager.submit(session, new int[10], 0, 10));
+        assertFalse(manager.submit(session, 0));
+        assertEquals(10, session.pendingMoveCount());
+
+        long pooled = manager.pooledBytes();
+        manager.close(session);
+        assertFalse(manager.submit(session, 0));
+        assertEquals(0, manager.sessionCount());
+        CubeSession reused = manager.create(3);
+        assertEquals(session.offset, reused.offset);
+        assertEquals(pooled, manager.pooledBytes());
+    }
+
+    public void testQueueWrapsAround() {
+        ManualExecutor executor = new ManualExecutor();
+        CubeSessionManager manager = new CubeSessionManager(executor);
+        CubeSession session = manager.create(3);
+        MoveTable table = MoveTable.forSize(3);
+        byte[] expected = new byte[table.layout.stickerCount];
+        table.layout.solved(expected);
+        Random random = new Random(2);
+
+        int[] first = randomMoves(table, 1500, random, expected);
+        assertTrue(manager.submit(session, first, 0, first.length));
+        assertTrue(executor.runOne());
+        assertEquals(1500 - CubeSessionManager.MOVES_PER_TASK, session.pendingMoveCount());
+        // moves queued after a drained batch are written past the end of the ring
+        int[] second = randomMoves(table, 1000, random, expected);
+        assertTrue(manager.submit(session, second, 0, second.length));
+        long queueBytes = session.memoryBytes();
+        while (executor.runOne()) { }
+
+        assertEquals(2500, session.appliedMoveCount());
+        assertState(manager, session, expected);
+        assertTrue(queueBytes > session.memoryBytes());
+    }
+
+    public void testRejectedFollowUpDrainsInline() {
+        final int[] executed = new int[1];
+        // runs the first task on the calling thread and rejects the follow-up ones
+        CubeSessionManager manager = new CubeSessionManager(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (executed[0]++ > 0) { throw new RejectedExecutionException(); }
+                command.run();
+            }
+        });
+        CubeSession session = manager.create(2);
+        MoveTable table = MoveTable.forSize(2);
+        byte[] expected = new byte[table.layout.stickerCount];
+        table.layout.solved(expected);
+        int[] moves = randomMoves(table, 3 * CubeSessionManager.MOVES_PER_TASK + 7, new Random(3), expected);
+
+        assertTrue(manager.submit(session, moves, 0, moves.length));
+        assertEquals(0, session.pendingMoveCount());
+        assertEquals(moves.length, session.appliedMoveCount());
+        assertState(manager, session, expected);
+        assertEquals(4, executed[0]);
+
+        // the session is not stuck as scheduled
+        executed[0] = 0;
+        assertTrue(manager.submit(session, moves, 0, 1));
+        assertEquals(1, executed[0]);
+        assertEquals(0, session.pendingMoveCount());
+    }
+}
@@ -0,0 +1,186 @@
+package ru.alexeymz.rubikscube.solver;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.CubeFixtures;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.SolvedTracker;
+import ru.alexeymz.rubikscube.state.Symmetries;
+
+public class SolverServiceTest extends TestCase {
+    private static boolean solves(MoveTable table, byte[] stickers, List<Rotation> solution) {
+        byte[] state = stickers.clone();
+        CubeFixtures.apply(table, state, solution);
+        return new SolvedTracker(table.layout.size, state).isSolved();
+    }
+
+    public void testRotatedCubeIsSolved() throws InterruptedException {
+        SolverService service = new SolverService(1, 4, 8, 1000000);
+        for (int size = 2; size <= 3; size++) {
+            MoveTable table = MoveTable.forSize(size);
+            byte[][] orientations = Symmetries.forSize(size).solvedOrientations();
+            byte[] rotated = orientations[Symmetries.ROTATION_COUNT - 1];
+            SolveTicket solved = service.submit(size, rotated, 10000, null);
+            assertEquals(SolveTicket.Status.SOLVED, solved.await());
+            assertTrue(solved.solution().isEmpty());
+
+            // one move from a rotated cube is one move from solved
+            byte[] state = new byte[rotated.length];
+            table.apply(table.indexOf(Axis.LEFT, 0, true), rotated, state);
+            SolveTicket ticket = service.submit(size, state, 10000, null);
+            assertEquals(SolveTicket.Status.SOLVED, ticket.await());
+            assertEquals(1, ticket.solution().size());
+            assertTrue(solves(table, state, ticket.solution()));
+        }
+        service.shutdown();
+    }
+
+    public void testSymmetricStatesShareSearch() throws InterruptedException {
+        SolverService service = new SolverService(2, 64, 8, 1000000);
+        MoveTable table = MoveTable.forSize(3);
+        Symmetries symmetries = Symmetries.forSize(3);
+        Random random = new Random(1);
+        for (int round = 0; round < 10; round++) {
+            byte[] state = CubeFixtures.scramble(3, random, 4);
+            SolveTicket[] tickets = new SolveTicket[6];
+            byte[][] states = new byte[tickets.length][];
+            for (int i = 0; i < tickets.length; i++) {
+                states[i] = new byte[state.length];
+                symmetries.conjugate((round * 7 + i * 11) % Symmetries.COUNT, state, states[i]);
+                tickets[i] = service.submit(3, states[i], 10000, null);
+            }
+            for (int i = 0; i < tickets.length; i++) {
+                assertEquals(SolveTicket.Status.SOLVED, tickets[i].await());
+                assertTrue("round " + round + " ticket " + i,
+                    solves(table, states[i], tickets[i].solution()));
+            }
+        }
+        assertEquals(60, service.submittedCount());
+        assertTrue(service.coalescedCount() > 0);
+        assertEquals(60, service.searchCount() + service.coalescedCount());
+        service.shutdown();
+    }
+
+    public void testCancelAndTimeout() throws InterruptedException {
+        SolverService service = new SolverService(1, 4, 20, Long.MAX_VALUE);
+        Random random = new Random(2);
+
+        SolveTicket slow = service.submit(3, CubeFixtures.scramble(3, random, 30), 100, null);
+        assertEquals(SolveTicket.Status.TIMEOUT, slow.await(5, TimeUnit.SECONDS));
+
+        SolveTicket running = service.submit(3, CubeFixtures.scramble(3, random, 30), 60000, null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.queueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        SolveTicket queued = service.submit(3, CubeFixtures.scramble(3, random, 30), 60000, null);
+        assertEquals(1, service.queueDepth());
+        queued.cancel();
+        assertEquals(0, service.queueDepth());
+        running.cancel();
+        assertEquals(SolveTicket.Status.CANCELLED, running.await(5, TimeUnit.SECONDS));
+        assertEquals(SolveTicket.Status.CANCELLED, queued.status());
+
+        // worker is free again after the interrupted search
+        SolveTicket quick = service.submit(3, CubeFixtures.scramble(3, random, 2), 10000, null);
+        assertEquals(SolveTicket.Status.SOLVED, quick.await(5, TimeUnit.SECONDS));
+        assertTrue(service.latencyMs(0.99) >= 100);
+        service.shutdown();
+    }
+
+    public void testRejectsWhenQueueIsFull() {
+        SolverService service = new SolverService(1, 1, 20, Long.MAX_VALUE);
+        Random random = new Random(3);
+        service.submit(3, CubeFixtures.scramble(3, random, 30), 60000, null);
+        service.submit(3, CubeFixtures.scramble(3, random, 30), 60000, null);
+        SolveTicket rejected = service.submit(3, CubeFixtures.scramble(3, random, 30), 60000, null);
+        assertEquals(SolveTicket.Status.REJECTED, rejected.status());
+        service.shutdown();
+    }
+
+    /**
+     * Returns solved state with two stickers of one corner swapped.
+     */
+    private static byte[] mirroredCorner(MoveTable table) {
+        byte[] stickers = CubeFixtures.solved(table.layout.size);
+        int up = table.layout.indexOf(CubeSide.UP, 0, 0);
+        int left = table.layout.indexOf(CubeSide.LEFT, 0, 0);
+        byte sticker = stickers[up];
+        stickers[up] = stickers[left];
+        stickers[left] = sticker;
+        return stickers;
+    }
+
+    public void testUnreachableStateIsRejected() throws Exception {
+        SolverService service = new SolverService(1, 4, 8, 1000000);
+        for (int size = 2; size <= 3; size++) {
+            try {
+                service.submit(size, mirroredCorner(MoveTable.forSize(size)), 10000, null);
+                fail("Unreachable state must be rejected.");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(0, service.searchCount());
+
+        SolverServer server = new SolverServer(service, 0);
+        Socket socket = new Socket("127.0.0.1", server.port());
+        Writer writer = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        StringBuilder digits = new StringBuilder();
+        for (byte sticker : mirroredCorner(MoveTable.forSize(2))) {
+            digits.append(sticker);
+        }
+        writer.write("STATE c 2 10000 " + digits + "\nSOLVE d 2 10000 R U\n");
+        writer.flush();
+        assertTrue(reader.readLine().startsWith("c ERROR "));
+        assertTrue(reader.readLine().startsWith("d SOLVED 2 "));
+
+        socket.close();
+        server.close();
+        service.shutdown();
+    }
+
+    public void testSocketProtocol() throws Exception {
+        SolverService service = new SolverService(2, 16, 8, 1000000);
+        SolverServer server = new SolverServer(service, 0);
+        Socket socket = new Socket("127.0.0.1", server.port());
+        Writer writer = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+
+        writer.write("SOLVE a 3 10000 R U F'\n");
+        writer.flush();
+        String[] reply = reader.readLine().split(" ", 4);
+        assertEquals("a", reply[0]);
+        assertEquals("SOLVED", reply[1]);
+        assertEquals("3", reply[2]);
+        List<Rotation> solution = SolverServer.parseScramble(3, reply[3]);
+        MoveTable table = MoveTable.forSize(3);
+        byte[] state = CubeFixtures.solved(3);
+        CubeFixtures.apply(table, state, SolverServer.parseScramble(3, "R U F'"));
+        assertTrue(solves(table, state, solution));
+
+        writer.write("SOLVE b 3 10000 Q\nSTATS\n");
+        writer.flush();
+        assertTrue(reader.readLine().startsWith("b ERROR "));
+        String stats = reader.readLine();
+        assertTrue(stats, stats.startsWith("STATS queue=0 "));
+        assertTrue(stats, stats.contains(" p99="));
+
+        socket.close();
+        server.close();
+        service.shutdown();
+    }
+}
@@ -0,0 +1,181 @@
+package ru.alexeymz.rubikscube.state;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+public class AlgorithmCompilerTest extends TestCase {
+    public void testCompiledMatchesMoves() {
+        AlgorithmCompiler compiler = new AlgorithmCompiler(100000);
+        for (int size = 1; size <= 5; size++) {
+            Random random = new Random(size);
+            StickerLayout layout = StickerLayout.forSize(size);
+            MoveTable table = MoveTable.forSize(size);
+            int[] moves = randomMoves(random, size, 20);
+            CompiledAlgorithm compiled = compiler.compile(size, moves, 0, moves.length);
+
+            byte[] expected = new byte[layout.stickerCount];
+            byte[] actual = new byte[layout.stickerCount];
+            byte[] scratch = new byte[layout.stickerCount];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = actual[i] = (byte)i;
+            }
+            for (int move : moves) {
+                table.applyInPlace(move, expected, scratch);
+            }
+            compiled.apply(actual, scratch);
+            assertTrue("size " + size, Arrays.equals(expected, actual));
+        }
+    }
+
+    public void testCompiledModelMatchesRotations() {
+        AlgorithmCompiler compiler = new AlgorithmCompiler(100000);
+        for (int size = 1; size <= 5; size++) {
+            int[] moves = randomMoves(new Random(size + 10), size, 20);
+            MoveTable table = MoveTable.forSize(size);
+            DataCube<SmallCube> expected = labelledCube(size);
+            DataCube<SmallCube> actual = labelledCube(size);
+            for (int move : moves) {
+                expected.rotateLayer(table.axisOf(move), table.layerOf(move), MoveTable.isClockwise(move));
+            }
+            CompiledAlgorithm compiled = compiler.compile(size, moves, 0, moves.length);
+            compiled.apply(actual, new Object[compiled.movedPartCount()]);
+
+            for (int i = 0; i < size * size * size; i++) {
+                CubeCoords coords = CubeCoords.fromIndex(size, i);
+                SmallCube expectedPart = expected.get(coords);
+                SmallCube actualPart = actual.get(coords);
+                if (expectedPart == null) {
+                    assertNull(actualPart);
+                    continue;
+                }
+                for (int side = 0; side < 6; side++) {
+                    assertEquals("size " + size + " at " + coords,
+                        expectedPart.getInt(side), actualPart.getInt(side));
+                }
+            }
+        }
+    }
+
+    public void testNormalization() {
+        int size = 3;
+        MoveTable table = MoveTable.forSize(size);
+        int r = table.indexOf(Axis.LEFT, 2, false);
+        int l = table.indexOf(Axis.LEFT, 0, true);
+        int u = table.indexOf(Axis.TOP, 0, true);
+
+        assertEquals(0, AlgorithmCompiler.normalize(size, new int[] { r, MoveTable.inverseOf(r) }, 0, 2).length);
+        assertEquals(0, AlgorithmCompiler.normalize(size, new int[] { r, u, MoveTable.inverseOf(u), MoveTable.inverseOf(r) }, 0, 4).length);
+        assertEquals(0, AlgorithmCompiler.normalize(size, new int[] { u, u, u, u }, 0, 4).length);
+        assertTrue(Arrays.equals(
+            AlgorithmCompiler.normalize(size, new int[] { r, l }, 0, 2),
+            AlgorithmCompiler.normalize(size, new int[] { l, r }, 0, 2)));
+        assertTrue(Arrays.equals(
+            AlgorithmCompiler.normalize(size, new int[] { r, r }, 0, 2),
+            AlgorithmCompiler.normalize(size, new int[] { MoveTable.inverseOf(r), MoveTable.inverseOf(r) }, 0, 2)));
+
+        AlgorithmCompiler compiler = new AlgorithmCompiler(100000);
+        CompiledAlgorithm first = compiler.compile(size, new int[] { r, l, u }, 0, 3);
+        CompiledAlgorithm second = compiler.compile(size, new int[] { l, u, MoveTable.inverseOf(u), r, u }, 0, 5);
+        assertSame(first, second);
+        assertEquals(1, compiler.hitCount());
+    }
+
+    public void testLruEviction() {
+        int size = 3;
+        CompiledAlgorithm single = new AlgorithmCompiler(1000).compile(size, new int[] { 1 }, 0, 1);
+        // room for two single moves only
+        AlgorithmCompiler compiler = new AlgorithmCompiler(single.movedStickerCount() * 2);
+        CompiledAlgorithm a = compiler.compile(size, new int[] { 1 }, 0, 1);
+        compiler.compile(size, new int[] { 3 }, 0, 1);
+        assertSame(a, compiler.compile(size, new int[] { 1 }, 0, 1));
+        compiler.compile(size, new int[] { 5 }, 0, 1);
+        assertEquals(2, compiler.cachedCount());
+        // move 1 was used recently, move 3 is evicted
+        assertSame(a, compiler.compile(size, new int[] { 1 }, 0, 1));
+        long misses = compiler.missCount();
+        compiler.compile(size, new int[] { 3 }, 0, 1);
+        assertEquals(misses + 1, compiler.missCount());
+    }
+
+    public void testAnalysis() {
+        int size = 3;
+        MoveTable table = MoveTable.forSize(size);
+        int r = table.indexOf(Axis.LEFT, 2, false);
+        int u = table.indexOf(Axis.TOP, 0, true);
+        AlgorithmCompiler compiler = new AlgorithmCompiler(100000);
+
+        AlgorithmAnalysis identity = AlgorithmAnalysis.of(compiler.compile(size, new int[] { r, r, r, r }, 0, 4));
+        assertTrue(identity.isIdentity());
+        assertEquals(1, identity.order.intValue());
+
+        AlgorithmAnalysis face = AlgorithmAnalysis.of(compiler.compile(size, new int[] { r }, 0, 1));
+        assertEquals(4, face.order.intValue());
+        // 8 moved parts and the turned center
+        assertEquals(9, face.affectedPartCount());
+
+        int[] sexy = { r, u, MoveTable.inverseOf(r), MoveTable.inverseOf(u) };
+        assertEquals(6, AlgorithmAnalysis.of(compiler.compile(size, sexy, 0, 4)).order.intValue());
+        assertEquals(105, AlgorithmAnalysis.of(compiler.compile(size, new int[] { r, u }, 0, 2)).order.intValue());
+        assertEquals(63, AlgorithmAnalysis.of(compiler.compile(size,
+            new int[] { r, MoveTable.inverseOf(u) }, 0, 2)).order.intValue());
+    }
+
+    public void testAnalysisMatchesSimulation() {
+        AlgorithmCompiler compiler = new AlgorithmCompiler(100000);
+        for (int size = 2; size <= 4; size++) {
+            StickerLayout layout = StickerLayout.forSize(size);
+            MoveTable table = MoveTable.forSize(size);
+            int[] moves = randomMoves(new Random(size + 20), size, 6);
+            AlgorithmAnalysis analysis = AlgorithmAnalysis.of(compiler.compile(size, moves, 0, moves.length));
+
+            byte[] labelled = new byte[layout.stickerCount];
+            byte[] solved = new byte[layout.stickerCount];
+            for (int i = 0; i < labelled.length; i++) {
+                labelled[i] = (byte)i;
+            }
+            layout.solved(solved);
+            byte[] scratch = new byte[layout.stickerCount];
+            byte[] initial = labelled.clone();
+            byte[] initialSolved = solved.clone();
+            int order = 0, solvedOrder = 0;
+            for (int repeat = 1; order == 0; repeat++) {
+                for (int move : moves) {
+                    table.applyInPlace(move, labelled, scratch);
+                    table.applyInPlace(move, solved, scratch);
+                }
+                if (solvedOrder == 0 && Arrays.equals(solved, initialSolved)) { solvedOrder = repeat; }
+                if (Arrays.equals(labelled, initial)) { order = repeat; }
+            }
+            assertEquals(order, analysis.order.intValue());
+            assertEquals(solvedOrder, analysis.solvedOrder.intValue());
+        }
+    }
+
+    private static int[] randomMoves(Random random, int size, int count) {
+        int[] moves = new int[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = random.nextInt(size * 6);
+        }
+        return moves;
+    }
+
+    private static DataCube<SmallCube> labelledCube(int size) {
+        DataCube<SmallCube> cube = RubiksCube.getDefaultCube(size);
+        for (int i = 0; i < size * size * size; i++) {
+            SmallCube part = cube.get(CubeCoords.fromIndex(size, i));
+            if (part == null) { continue; }
+            for (int side = 0; side < 6; side++) {
+                part.setInt(side, i * 6 + side);
+            }
+        }
+        return cube;
+    }
+}
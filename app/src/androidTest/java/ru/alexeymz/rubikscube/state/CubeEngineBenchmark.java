@@ -0,0 +1,60 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures move throughput of {@link PackedCubeEngine} against {@link StickerEngine},
+ * which backs the choice of {@link CubeEngines#create}.
+ *
+ * Not a test: it asserts nothing. Run {@link #main} by hand on the target device
+ * or a desktop JVM.
+ */
+public final class CubeEngineBenchmark {
+    private static final int MOVES = 1 << 16;
+    private static final int ROUNDS = 100;
+
+    private CubeEngineBenchmark() {}
+
+    public static void main(String[] args) {
+        int[] moves = new int[MOVES];
+        Random random = new Random(1);
+        for (int size = 2; size <= 3; size++) {
+            int moveCount = MoveTable.forSize(size).moveCount;
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = random.nextInt(moveCount);
+            }
+            PackedCubeEngine packed = new PackedCubeEngine(size);
+            StickerEngine sticker = new StickerEngine(size);
+            long packedNanos = Long.MAX_VALUE;
+            long stickerNanos = Long.MAX_VALUE;
+            // rounds interleave engines so both get the same cache conditions
+            for (int round = 0; round < ROUNDS; round++) {
+                packedNanos = Math.min(packedNanos, measure(packed, moves));
+                stickerNanos = Math.min(stickerNanos, measure(sticker, moves));
+            }
+            System.out.println(String.format(Locale.US,
+                "%dx%d: packed %.1f ns, sticker %.1f ns per move (best of %d)",
+                size, size, (double)packedNanos / moves.length,
+                (double)stickerNanos / moves.length, ROUNDS));
+        }
+    }
+
+    // one call site per engine class, so the JIT inlines apply into each loop
+
+    private static long measure(PackedCubeEngine engine, int[] moves) {
+        long start = System.nanoTime();
+        for (int move : moves) {
+            engine.apply(move);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long measure(StickerEngine engine, int[] moves) {
+        long start = System.nanoTime();
+        for (int move : moves) {
+            engine.apply(move);
+        }
+        return System.nanoTime() - start;
+    }
+}
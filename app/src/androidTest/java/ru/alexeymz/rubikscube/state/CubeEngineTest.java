@@ -0,0 +1,84 @@
+package ru.alexeymz.rubikscube.state;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+/**
+ * Differential test of engines against {@link DataCube} model.
+ */
+public class CubeEngineTest extends TestCase {
+    public void testFactoryChoosesEngineBySize() {
+        assertTrue(CubeEngines.create(2) instanceof PackedCubeEngine);
+        assertTrue(CubeEngines.create(1) instanceof StickerEngine);
+        assertTrue(CubeEngines.create(3) instanceof PackedCubeEngine);
+        assertTrue(CubeEngines.create(4) instanceof StickerEngine);
+    }
+
+    public void testEnginesMatchModel() {
+        for (int size = 1; size <= 5; size++) {
+            StickerLayout layout = StickerLayout.forSize(size);
+            MoveTable table = MoveTable.forSize(size);
+            DataCube<SmallCube> model = RubiksCube.getDefaultCube(size);
+            byte[] expected = new byte[layout.stickerCount];
+            byte[] actual = new byte[layout.stickerCount];
+            layout.read(model, expected);
+            CubeEngine[] engines = {
+                CubeEngines.create(size), new StickerEngine(size), new SolvedTracker(size, expected)
+            };
+            for (CubeEngine engine : engines) {
+                engine.read(actual);
+                assertTrue("size " + size, Arrays.equals(expected, actual));
+            }
+
+            Random random = new Random(size);
+            for (int i = 0; i < 500; i++) {
+                Rotation rotation = table.rotationOf(random.nextInt(table.moveCount));
+                model.rotateLayer(rotation.axis, rotation.layer, rotation.clockwise);
+                layout.read(model, expected);
+                for (CubeEngine engine : engines) {
+                    engine.apply(rotation);
+                    engine.read(actual);
+                    assertTrue(engine.getClass().getSimpleName() + " size " + size + ", move " + i,
+                        Arrays.equals(expected, actual));
+                }
+            }
+        }
+    }
+
+    public void testWriteReadRoundTrip() {
+        for (int size = 2; size <= 3; size++) {
+            MoveTable table = MoveTable.forSize(size);
+            byte[] stickers = new byte[table.layout.stickerCount];
+            byte[] scratch = new byte[stickers.length];
+            table.layout.solved(stickers);
+            Random random = new Random(size);
+            for (int i = 0; i < 100; i++) {
+                table.applyInPlace(random.nextInt(table.moveCount), stickers, scratch);
+            }
+            PackedCubeEngine engine = new PackedCubeEngine(size);
+            engine.write(stickers);
+            byte[] read = new byte[stickers.length];
+            engine.read(read);
+            assertTrue(Arrays.equals(stickers, read));
+        }
+    }
+
+    public void testInvalidStickersAreRejected() {
+        byte[] stickers = new byte[6 * 9];
+        StickerLayout.forSize(3).solved(stickers);
+        stickers[0] = stickers[9 * 3];
+        try {
+            new PackedCubeEngine(3).write(stickers);
+            fail("Invalid state must be rejected.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.List;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Cube states for tests, as stickers in {@link StickerLayout} order.
+ */
+public final class CubeFixtures {
+    private CubeFixtures() {}
+
+    public static byte[] solved(int size) {
+        byte[] stickers = new byte[StickerLayout.forSize(size).stickerCount];
+        StickerLayout.forSize(size).solved(stickers);
+        return stickers;
+    }
+
+    /**
+     * Returns solved cube after <code>length</code> random moves.
+     */
+    public static byte[] scramble(int size, Random random, int length) {
+        byte[] stickers = solved(size);
+        scramble(MoveTable.forSize(size), stickers, random, length);
+        return stickers;
+    }
+
+    /**
+     * Applies <code>length</code> random moves to the stickers in place.
+     */
+    public static void scramble(MoveTable table, byte[] stickers, Random random, int length) {
+        byte[] scratch = new byte[stickers.length];
+        for (int i = 0; i < length; i++) {
+            table.applyInPlace(random.nextInt(table.moveCount), stickers, scratch);
+        }
+    }
+
+    /**
+     * Applies the rotations to the stickers in place.
+     */
+    public static void apply(MoveTable table, byte[] stickers, List<Rotation> rotations) {
+        byte[] scratch = new byte[stickers.length];
+        for (Rotation rotation : rotations) {
+            table.applyInPlace(table.indexOf(rotation), stickers, scratch);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.alexeymz.rubikscube.state;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+
+public class SolvedTrackerTest extends TestCase {
+    public void testMatchesFullScan() {
+        for (int size = 1; size <= 5; size++) {
+            MoveTable table = MoveTable.forSize(size);
+            byte[] stickers = new byte[table.layout.stickerCount];
+            byte[] scratch = new byte[stickers.length];
+            byte[] read = new byte[stickers.length];
+            table.layout.solved(stickers);
+            SolvedTracker tracker = new SolvedTracker(size, stickers);
+            assertTrue(tracker.isSolved());
+            assertEquals(1f, tracker.progress());
+
+            Random random = new Random(size);
+            for (int i = 0; i < 100; i++) {
+                int move = random.nextInt(table.moveCount);
+                table.applyInPlace(move, stickers, scratch);
+                tracker.apply(move);
+                tracker.read(read);
+                assertTrue(Arrays.equals(stickers, read));
+                SolvedTracker scanned = new SolvedTracker(size, stickers);
+                assertEquals(scanned.isSolved(), tracker.isSolved());
+                for (CubeSide side : CubeSide.values()) {
+                    assertEquals(scanned.isSolved(side), tracker.isSolved(side));
+                    assertEquals(scanned.matchingCount(side), tracker.matchingCount(side));
+                }
+            }
+        }
+    }
+
+    public void testSolvedTransition() {
+        int size = 3;
+        MoveTable table = MoveTable.forSize(size);
+        byte[] stickers = new byte[table.layout.stickerCount];
+        table.layout.solved(stickers);
+        SolvedTracker tracker = new SolvedTracker(size, stickers);
+
+        tracker.apply(0);
+        assertFalse(tracker.isSolved());
+        // the opposite outer layer is still solved
+        assertTrue(tracker.isSolved(CubeSide.RIGHT));
+        assertEquals(6, tracker.matchingCount(CubeSide.UP));
+        tracker.apply(MoveTable.inverseOf(0));
+        assertTrue(tracker.isSolved());
+
+        // inner layer rotation of odd cube moves centers, whole cube turn keeps it solved
+        for (int layer = 0; layer < size; layer++) {
+            tracker.apply(table.indexOf(table.axisOf(0), layer, true));
+        }
+        assertTrue(tracker.isSolved());
+    }
+}
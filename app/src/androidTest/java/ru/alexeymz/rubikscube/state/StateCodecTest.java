@@ -0,0 +1,171 @@
+package ru.alexeymz.rubikscube.state;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+
+public class StateCodecTest extends TestCase {
+    private static final String TAG = "StateCodecTest";
+
+    public void testRoundTrip() {
+        Random random = new Random(1);
+        for (int size = 1; size <= 6; size++) {
+            StateCodec codec = new StateCodec(size);
+            Symmetries symmetries = Symmetries.forSize(size);
+            for (int round = 0; round < 20; round++) {
+                byte[] stickers = CubeFixtures.scramble(size, random, 100);
+                byte[] encoded = new byte[codec.encodedLength + 2];
+                codec.encode(stickers, encoded, 1);
+                byte[] decoded = new byte[stickers.length];
+                codec.decode(encoded, 1, decoded);
+                byte[] reencoded = new byte[encoded.length];
+                codec.encode(decoded, reencoded, 1);
+                assertTrue("size " + size, Arrays.equals(encoded, reencoded));
+                if (size == 2 || size == 3) {
+                    // cubie encodings drop whole cube orientation
+                    int rotation = 1 + round % (Symmetries.ROTATION_COUNT - 1);
+                    assertTrue(symmetries.isRotation(rotation));
+                    byte[] rotated = new byte[stickers.length];
+                    symmetries.transform(rotation, stickers, rotated);
+                    codec.encode(rotated, reencoded, 1);
+                    assertTrue("size " + size, Arrays.equals(encoded, reencoded));
+                } else {
+                    assertTrue("size " + size, Arrays.equals(stickers, decoded));
+                }
+            }
+        }
+    }
+
+    public void testCube2IndexCoversAllStates() {
+        CubieCodec codec = new CubieCodec(2);
+        byte[] stickers = new byte[24];
+        for (int index = 0; index < CubieCodec.CUBE2_STATE_COUNT; index += 997) {
+            codec.fromCube2Index(index, stickers);
+            assertEquals(index, codec.cube2Index(stickers));
+        }
+    }
+
+    public void testValidateRejectsUnreachableStates() {
+        Random random = new Random(4);
+        for (int size = 2; size <= 3; size++) {
+            CubieCodec codec = new CubieCodec(size);
+            for (int round = 0; round < 50; round++) {
+                codec.validate(CubeFixtures.scramble(size, random, 100));
+            }
+            byte[] stickers = new byte[6 * size * size];
+
+            codec.validate(CubeFixtures.scramble(size, random, 100));
+            codec.cornerOrientation[0] = (byte)((codec.cornerOrientation[0] + 1) % 3);
+            assertInvalid(codec, stickers);
+
+            codec.validate(CubeFixtures.scramble(size, random, 100));
+            codec.cornerPermutation[1] = codec.cornerPermutation[0];
+            assertInvalid(codec, stickers);
+
+            if (size == 3) {
+                codec.validate(CubeFixtures.scramble(size, random, 100));
+                codec.edgeOrientation[0] ^= 1;
+                assertInvalid(codec, stickers);
+
+                codec.validate(CubeFixtures.scramble(size, random, 100));
+                byte edge = codec.edgePermutation[0];
+                codec.edgePermutation[0] = codec.edgePermutation[1];
+                codec.edgePermutation[1] = edge;
+                assertInvalid(codec, stickers);
+
+                // swapped opposite centers
+                StickerLayout.forSize(3).solved(stickers);
+                int left = StickerLayout.forSize(3).indexOf(CubeSide.LEFT, 1, 1);
+                int right = StickerLayout.forSize(3).indexOf(CubeSide.RIGHT, 1, 1);
+                byte center = stickers[left];
+                stickers[left] = stickers[right];
+                stickers[right] = center;
+                try {
+                    codec.validate(stickers);
+                    fail("Swapped centers must be rejected.");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    /**
+     * Composes the changed pieces of the codec and checks the result is rejected.
+     */
+    private static void assertInvalid(CubieCodec codec, byte[] stickers) {
+        codec.compose(stickers);
+        try {
+            codec.validate(stickers);
+            fail("Unreachable state must be rejected.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCanonicalFormIsInvariantUnderSymmetries() {
+        Random random = new Random(2);
+        for (int size = 1; size <= 5; size++) {
+            Symmetries symmetries = Symmetries.forSize(size);
+            byte[] solved = CubeFixtures.solved(size);
+            byte[] stickers = CubeFixtures.scramble(size, random, 100);
+            byte[] canonical = new byte[stickers.length];
+            byte[] conjugated = new byte[stickers.length];
+            byte[] other = new byte[stickers.length];
+            symmetries.canonicalize(stickers, canonical);
+            for (int s = 0; s < Symmetries.COUNT; s++) {
+                symmetries.conjugate(s, solved, conjugated);
+                assertTrue("size " + size + " symmetry " + s, Arrays.equals(solved, conjugated));
+
+                symmetries.conjugate(s, stickers, conjugated);
+                int found = symmetries.canonicalize(conjugated, other);
+                assertTrue("size " + size + " symmetry " + s, Arrays.equals(canonical, other));
+                // canonicalize reports the symmetry that maps its input to the canonical form
+                symmetries.conjugate(found, conjugated, other);
+                assertTrue("size " + size + " symmetry " + s, Arrays.equals(canonical, other));
+            }
+        }
+    }
+
+    public void testThroughput() {
+        Random random = new Random(3);
+        int count = 1 << 14;
+        for (int size = 2; size <= 4; size++) {
+            StateCodec codec = new StateCodec(size);
+            byte[][] states = new byte[256][];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = CubeFixtures.scramble(size, random, 50);
+            }
+            byte[] key = new byte[codec.encodedLength];
+            byte[] canonical = new byte[states[0].length];
+            Symmetries symmetries = Symmetries.forSize(size);
+            long encodeNanos = Long.MAX_VALUE;
+            long canonicalNanos = Long.MAX_VALUE;
+            // best of several passes, so that JIT warm-up and scheduling noise are not measured
+            for (int pass = 0; pass < 20; pass++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    codec.encode(states[i & 255], key, 0);
+                }
+                encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    symmetries.canonicalize(states[i & 255], canonical);
+                }
+                canonicalNanos = Math.min(canonicalNanos, System.nanoTime() - start);
+            }
+            double encodePerSecond = count * 1e9 / encodeNanos;
+            double canonicalPerSecond = count * 1e9 / canonicalNanos;
+            Log.i(TAG, String.format(Locale.US, "%dx%d: %.0f encodes/s, %.0f canonicalizations/s",
+                size, size, encodePerSecond, canonicalPerSecond));
+            assertTrue(encodePerSecond > 10000);
+            assertTrue(canonicalPerSecond > 1000);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.alexeymz.rubikscube.trace;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+import ru.alexeymz.rubikscube.state.StickerLayout;
+
+public class TraceReplayTest extends TestCase {
+    private static final int SIZE = 4;
+
+    public void testRecordedSessionReplaysToSameState() throws Exception {
+        SessionTrace trace = recordSession(new Random(42), 500);
+        ReplayReport report = TraceReplayer.replay(trace);
+        assertTrue(report.toString(), report.isConsistent());
+        assertTrue(report.hasExpectedState);
+        assertEquals(trace.eventCount, report.eventCount);
+    }
+
+    public void testSerializationRoundTrip() throws Exception {
+        SessionTrace trace = recordSession(new Random(7), 100);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        trace.write(output);
+        SessionTrace read = SessionTrace.read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(trace, read);
+        assertTrue(TraceReplayer.replay(read).isConsistent());
+    }
+
+    public void testChangedStateIsDetected() throws Exception {
+        DataCube<SmallCube> cube = RubiksCube.getDefaultCube(SIZE);
+        byte[] stickers = new byte[6 * SIZE * SIZE];
+        StickerLayout.forSize(SIZE).read(cube, stickers);
+        TraceRecorder recorder = new TraceRecorder(SIZE, stickers, 0);
+        recorder.rotationQueued(10, new Rotation(Axis.TOP, 0, true));
+        recorder.rotationStarted(20, new Rotation(Axis.TOP, 0, true), false, 500);
+        // final state is recorded without the rotation
+        ReplayReport report = TraceReplayer.replay(recorder.finish(600, stickers));
+        assertFalse(report.stateMatches);
+        assertFalse(report.isConsistent());
+    }
+
+    /**
+     * Simulates user session the same way CubeSurfaceView drives the model.
+     */
+    private static SessionTrace recordSession(Random random, int steps) {
+        DataCube<SmallCube> cube = RubiksCube.getDefaultCube(SIZE);
+        StickerLayout layout = StickerLayout.forSize(SIZE);
+        byte[] stickers = new byte[layout.stickerCount];
+        layout.read(cube, stickers);
+
+        TraceRecorder recorder = new TraceRecorder(SIZE, stickers, 1000);
+        Deque<Rotation> queue = new ArrayDeque<Rotation>();
+        Deque<Rotation> undoStack = new ArrayDeque<Rotation>();
+        long time = 1000;
+        for (int step = 0; step < steps; step++) {
+            time += random.nextInt(300);
+            int action = random.nextInt(10);
+            if (action < 3) {
+                recorder.tap(time, random.nextInt(1080), random.nextInt(1920));
+            } else if (action < 5) {
+                recorder.scroll(time, random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50);
+            } else if (action < 8) {
+                Rotation rotation = new Rotation(Axis.fromOrdinal(random.nextInt(3)),
+                    random.nextInt(SIZE), random.nextBoolean());
+                queue.addLast(rotation);
+                recorder.rotationQueued(time, rotation);
+            } else if (action == 8 && !queue.isEmpty()) {
+                Rotation rotation = queue.pollFirst();
+                undoStack.push(rotation.inverse());
+                recorder.rotationStarted(time, rotation, false, 500);
+                cube.rotateLayer(rotation.axis, rotation.layer, rotation.clockwise);
+            } else if (action == 9 && !undoStack.isEmpty()) {
+                Rotation rotation = undoStack.pop();
+                recorder.rotationStarted(time, rotation, true, 200);
+                cube.rotateLayer(rotation.axis, rotation.layer, rotation.clockwise);
+            }
+        }
+        layout.read(cube, stickers);
+        return recorder.finish(time, stickers);
+    }
+}
@@ -0,0 +1,164 @@
+package ru.alexeymz.rubikscube.view;
+
+import android.opengl.GLES20;
+
+import junit.framework.TestCase;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.graphics.RecordingGl;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+/**
+ * Checks GL call budgets of a single frame using {@link RecordingGl}.
+ */
+public class CubeViewBudgetTest extends TestCase {
+    private static final int MIN_SIZE = 2;
+    private static final int MAX_SIZE = 40;
+
+    /** Uniform uploads per drawn part: world matrix, part index and sides (screen pass only). */
+    private static final int UNIFORMS_PER_PART = 3;
+    private static final int MAX_FRAME_UNIFORMS = 8;
+    private static final int MAX_STATE_CHANGES = 20;
+    private static final int MAX_QUERIES = 20;
+
+    private final float[] mvp = new float[16];
+
+    public void testFrameBudgets() {
+        for (int size = MIN_SIZE; size <= MAX_SIZE; size++) {
+            RecordingGl gl = new RecordingGl();
+            RubiksCube cube = new RubiksCube(size, 640, 480, new EngineMetrics(), gl);
+
+            gl.beginFrame();
+            cube.draw(mvp, 0);
+            RecordingGl.Frame frame = gl.endFrame();
+
+            // each surface part is drawn once to screen and once to picking framebuffer
+            int surfaceParts = size * size * size - (size - 2) * (size - 2) * (size - 2);
+            String message = "size " + size + ": " + frame;
+            assertTrue(message, frame.drawCalls <= 2 * surfaceParts);
+            assertTrue(message, frame.uniformUploads
+                <= 2 * surfaceParts * UNIFORMS_PER_PART + MAX_FRAME_UNIFORMS);
+            assertTrue(message, frame.stateChanges <= MAX_STATE_CHANGES);
+            assertTrue(message, frame.queries <= MAX_QUERIES);
+        }
+    }
+
+    public void testMetricsCountIssuedCalls() {
+        RecordingGl gl = new RecordingGl();
+        EngineMetrics metrics = new EngineMetrics();
+        RubiksCube cube = new RubiksCube(4, 640, 480, metrics, gl);
+
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        RecordingGl.Frame frame = gl.endFrame();
+        assertEquals(frame.drawCalls, metrics.drawCalls.snapshot().max);
+        assertEquals(frame.uniformUploads, metrics.uniformUploads.snapshot().max);
+        assertEquals(1, metrics.uniformUploads.snapshot().count);
+    }
+
+    public void testFramesAreEqual() {
+        RecordingGl gl = new RecordingGl();
+        gl.setLogging(true);
+        RubiksCube cube = new RubiksCube(3, 640, 480, new EngineMetrics(), gl);
+
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        String first = gl.getLog().toString();
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        assertEquals(first, gl.getLog().toString());
+    }
+
+    public void testDrawSubmitsPreparedFrame() {
+        RecordingGl gl = new RecordingGl();
+        gl.setLogging(true);
+        RubiksCube cube = new RubiksCube(3, 640, 480, new EngineMetrics(), gl);
+
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        String initial = gl.getLog().toString();
+
+        cube.setSelection(new PartSideCoords(new CubeCoords(0, 0, 0), CubeSide.UP));
+        cube.beginLayerRotation(new Rotation(Axis.TOP, 0, true), 100, 0);
+        cube.updateAnimation(50);
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        assertEquals("changes are not visible until prepared", initial, gl.getLog().toString());
+
+        cube.prepareFrame();
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        assertFalse(initial.equals(gl.getLog().toString()));
+    }
+
+    public void testUnchangedFrameIsNotPrepared() {
+        RecordingGl gl = new RecordingGl();
+        EngineMetrics metrics = new EngineMetrics();
+        RubiksCube cube = new RubiksCube(3, 640, 480, metrics, gl);
+        long prepared = metrics.framePrepNanos.snapshot().count;
+
+        // selection pulse frames change nothing in the draw list
+        cube.prepareFrame();
+        cube.prepareFrame();
+        assertEquals(prepared, metrics.framePrepNanos.snapshot().count);
+
+        cube.setSelection(new PartSideCoords(new CubeCoords(0, 0, 0), CubeSide.UP));
+        cube.prepareFrame();
+        cube.prepareFrame();
+        assertEquals(prepared + 1, metrics.framePrepNanos.snapshot().count);
+
+        cube.beginLayerRotation(new Rotation(Axis.TOP, 0, true), 100, 0);
+        cube.updateAnimation(50);
+        cube.prepareFrame();
+        cube.updateAnimation(100);
+        cube.prepareFrame();
+        cube.prepareFrame();
+        assertEquals(prepared + 3, metrics.framePrepNanos.snapshot().count);
+    }
+
+    public void testSurfaceChangesKeepCube() {
+        RecordingGl gl = new RecordingGl();
+        RubiksCube cube = new RubiksCube(3, 640, 480, new EngineMetrics(), gl);
+        gl.setLogging(true);
+        String storage = "glRenderbufferStorage(" + GLES20.GL_RENDERBUFFER + ", "
+            + GLES20.GL_DEPTH_COMPONENT16 + ", 480, 640)";
+
+        // rotation resizes picking framebuffer storage in place
+        cube.onSurfaceChanged(480, 640);
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        String resized = gl.getLog().toString();
+        assertTrue(resized, resized.contains(storage));
+        assertFalse(resized, resized.contains("glGen"));
+        assertFalse(resized, resized.contains("glCreateProgram"));
+
+        // context loss recreates GL objects on next frame
+        cube.onSurfaceCreated();
+        gl.beginFrame();
+        cube.draw(mvp, 0);
+        String recreated = gl.getLog().toString();
+        assertTrue(recreated, recreated.contains("glGenFramebuffers"));
+        assertTrue(recreated, recreated.contains("glCreateProgram"));
+        assertTrue(recreated, recreated.contains(storage));
+    }
+
+    public void testPickingDecodesPixel() {
+        int size = 5;
+        RecordingGl gl = new RecordingGl();
+        RubiksCube cube = new RubiksCube(size, 640, 480, new EngineMetrics(), gl);
+
+        int partIndex = CubeCoords.toIndex(size, 4, 0, 2);
+        gl.setReadPixel(partIndex >> 8, partIndex & 0xFF, CubeSide.UP.ordinal(), 255);
+        PartSideCoords location = cube.locationAtPixel(10, 10);
+        assertNotNull(location);
+        assertEquals(new CubeCoords(4, 0, 2), location.location);
+        assertEquals(CubeSide.UP, location.side);
+
+        gl.setReadPixel(255, 255, 255, 0);
+        assertNull(cube.locationAtPixel(10, 10));
+    }
+}
@@ -0,0 +1,105 @@
+package ru.alexeymz.rubikscube.view;
+
+import android.opengl.Matrix;
+
+import junit.framework.TestCase;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.graphics.MathUtils;
+
+public class PartTransformsTest extends TestCase {
+    private static final float SCALE = 0.45f;
+    private static final float[] ANGLES = {0, 17, 90, -45, 270};
+
+    /**
+     * Per-part world matrix as CubeView computed it before matrices were pooled:
+     * scale, move to the position, then rotate around the cube center.
+     */
+    private static float[] expectedWorld(int size, CubeCoords coords, Axis axis, float angle) {
+        float[] world = new float[16];
+        Matrix.setIdentityM(world, 0);
+        world[0] = world[5] = world[10] = SCALE;
+        float[] position = new float[3];
+        coords.getPositionInSpace(position, 0, size);
+        MathUtils.setPosition(world, position[0], position[1], position[2]);
+        if (axis != null) {
+            switch (axis) {
+                case LEFT:
+                    MathUtils.rotateAround(world, 0, 0, 0, -angle, 0, 0);
+                    break;
+                case TOP:
+                    MathUtils.rotateAround(world, 0, 0, 0, 0, angle, 0);
+                    break;
+                case DEPTH:
+                    MathUtils.rotateAround(world, 0, 0, 0, 0, 0, -angle);
+                    break;
+            }
+        }
+        return world;
+    }
+
+    private static boolean isVisible(int size, CubeCoords c) {
+        int last = size - 1;
+        return c.left == 0 || c.left == last || c.top == 0 || c.top == last
+            || c.depth == 0 || c.depth == last;
+    }
+
+    private static int coordinate(CubeCoords coords, Axis axis) {
+        switch (axis) {
+            case LEFT: return coords.left;
+            case TOP: return coords.top;
+            default: return coords.depth;
+        }
+    }
+
+    private static void assertMatches(PartTransforms transforms, Axis axis, int layer, float angle) {
+        int size = transforms.size;
+        for (int index = 0; index < size * size * size; index++) {
+            CubeCoords coords = CubeCoords.fromIndex(size, index);
+            int offset = PartTransforms.offsetOf(index);
+            String where = axis + " " + layer + " " + angle + " at " + index;
+            if (!isVisible(size, coords)) {
+                for (int i = 0; i < 16; i++) {
+                    assertEquals(where, 0f, transforms.data[offset + i]);
+                }
+                continue;
+            }
+            boolean rotated = coordinate(coords, axis) == layer;
+            float[] expected = expectedWorld(size, coords, rotated ? axis : null, angle);
+            for (int i = 0; i < 16; i++) {
+                assertEquals(where + " element " + i, expected[i], transforms.data[offset + i], 1e-5f);
+            }
+        }
+    }
+
+    public void testMatricesMatchPerPartComputation() {
+        for (int size = 1; size <= 4; size++) {
+            PartTransforms transforms = new PartTransforms(size, SCALE);
+            for (int index = 0; index < size * size * size; index++) {
+                transforms.setVisible(index, isVisible(size, CubeCoords.fromIndex(size, index)));
+            }
+            for (Axis axis : Axis.values()) {
+                for (int layer = 0; layer < size; layer++) {
+                    for (float angle : ANGLES) {
+                        transforms.rotateLayer(axis, layer, angle);
+                        assertMatches(transforms, axis, layer, angle);
+                    }
+                    transforms.resetLayer(axis, layer);
+                    assertMatches(transforms, axis, layer, 0);
+                }
+            }
+        }
+    }
+
+    public void testHiddenPartHasZeroMatrix() {
+        PartTransforms transforms = new PartTransforms(2, SCALE);
+        transforms.setVisible(3, true);
+        assertEquals(SCALE, transforms.data[PartTransforms.offsetOf(3)]);
+        transforms.setVisible(3, false);
+        transforms.rotateLayer(Axis.LEFT, 1, 30);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0f, transforms.data[PartTransforms.offsetOf(3) + i]);
+        }
+    }
+}
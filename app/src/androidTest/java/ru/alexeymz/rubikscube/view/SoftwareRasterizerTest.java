@@ -0,0 +1,155 @@
+package ru.alexeymz.rubikscube.view;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.graphics.PngEncoder;
+import ru.alexeymz.rubikscube.graphics.Quaternion;
+import ru.alexeymz.rubikscube.state.CubeFixtures;
+
+public class SoftwareRasterizerTest extends TestCase {
+    private static final String TAG = "SoftwareRasterizerTest";
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    public void testVisibleSides() {
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(3, WIDTH, HEIGHT);
+        byte[] stickers = CubeFixtures.solved(3);
+        int[] pixels = new int[WIDTH * HEIGHT];
+
+        rasterizer.render(stickers, new Quaternion(), pixels);
+        assertEquals(colorOf(CubeSide.FRONT), pixels[HEIGHT / 2 * WIDTH + WIDTH / 2]);
+        assertEquals(SoftwareRasterizer.DEFAULT_BACKGROUND, pixels[0]);
+
+        // counter-clockwise around Y turns the left side to the camera
+        rasterizer.render(stickers, new Quaternion().rotate(90, 0, 1, 0), pixels);
+        assertEquals(colorOf(CubeSide.LEFT), pixels[HEIGHT / 2 * WIDTH + WIDTH / 2]);
+
+        rasterizer.render(stickers, new Quaternion().rotate(90, 1, 0, 0), pixels);
+        assertEquals(colorOf(CubeSide.UP), pixels[HEIGHT / 2 * WIDTH + WIDTH / 2]);
+    }
+
+    public void testPngRoundTrip() throws IOException {
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(4, WIDTH, HEIGHT);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        rasterizer.render(CubeFixtures.scramble(4, new Random(1), 30), new Quaternion().rotate(30, 1, 1, 0), pixels);
+        PngEncoder encoder = new PngEncoder();
+        byte[] png = encoder.encode(pixels, WIDTH, HEIGHT);
+        assertTrue(Arrays.equals(pixels, decode(png)));
+        // header and buffers are reused by the next image
+        assertTrue(Arrays.equals(png, encoder.encode(pixels, WIDTH, HEIGHT)));
+
+        encoder.close();
+        encoder.close();
+        try {
+            encoder.encode(pixels, WIDTH, HEIGHT);
+            fail("Closed encoder must not be used.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testBatchMatchesSingleThread() throws Exception {
+        int count = 200;
+        final byte[][] states = new byte[count][];
+        Random random = new Random(2);
+        for (int i = 0; i < count; i++) {
+            states[i] = CubeFixtures.scramble(3, random, 30);
+        }
+        Quaternion[] orientations = { new Quaternion().rotate(30, 1, 0, 0).rotate(-40, 0, 1, 0) };
+
+        final byte[][] images = new byte[count][];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CubeImageExporter exporter = new CubeImageExporter(
+                3, WIDTH, WIDTH, SoftwareRasterizer.DEFAULT_COLORS, executor, 4);
+            long start = System.nanoTime();
+            exporter.export(states, orientations, new CubeImageExporter.ImageSink() {
+                @Override
+                public void onImage(int index, byte[] png) {
+                    images[index] = png;
+                }
+            });
+            long nanos = System.nanoTime() - start;
+            Log.i(TAG, String.format(Locale.US, "%dx%d: %.0f images/s",
+                WIDTH, WIDTH, count * 1e9 / nanos));
+        } finally {
+            executor.shutdown();
+        }
+
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(3, WIDTH, WIDTH);
+        PngEncoder encoder = new PngEncoder();
+        int[] pixels = new int[WIDTH * WIDTH];
+        for (int i = 0; i < count; i++) {
+            rasterizer.render(states[i], orientations[0], pixels);
+            assertTrue(Arrays.equals(encoder.encode(pixels, WIDTH, WIDTH), images[i]));
+        }
+        encoder.close();
+    }
+
+    private static int colorOf(CubeSide side) {
+        return SoftwareRasterizer.DEFAULT_COLORS[side.ordinal() + 1];
+    }
+
+    /**
+     * Decodes RGB PNG with Sub filtered rows written by {@link PngEncoder}.
+     */
+    private static int[] decode(byte[] png) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(png));
+        input.skipBytes(8);
+        int width = 0, height = 0;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        while (true) {
+            int length = input.readInt();
+            byte[] type = new byte[4];
+            input.readFully(type);
+            byte[] data = new byte[length];
+            input.readFully(data);
+            input.readInt();
+            String name = new String(type, "US-ASCII");
+            if (name.equals("IHDR")) {
+                width = new DataInputStream(new ByteArrayInputStream(data)).readInt();
+                height = new DataInputStream(new ByteArrayInputStream(data, 4, 4)).readInt();
+            } else if (name.equals("IDAT")) {
+                compressed.write(data);
+            } else if (name.equals("IEND")) {
+                break;
+            }
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed.toByteArray());
+        byte[] raw = new byte[height * (1 + width * 3)];
+        try {
+            assertEquals(raw.length, inflater.inflate(raw));
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage());
+        }
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * (1 + width * 3);
+            assertEquals(1, raw[row]);
+            int r = 0, g = 0, b = 0;
+            for (int x = 0; x < width; x++) {
+                r = (r + raw[row + 1 + x * 3]) & 0xFF;
+                g = (g + raw[row + 2 + x * 3]) & 0xFF;
+                b = (b + raw[row + 3 + x * 3]) & 0xFF;
+                pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+}
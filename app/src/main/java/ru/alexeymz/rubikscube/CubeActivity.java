@@ -1,18 +1,59 @@
 package ru.alexeymz.rubikscube;
 
 import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
 import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.view.Gravity;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ru.alexeymz.rubikscube.trace.SessionTrace;
+import ru.alexeymz.rubikscube.trace.TraceReplayer;
 
 public class CubeActivity extends Activity {
+    private static final String METRICS_TAG = "EngineMetrics";
+    private static final String TRACE_TAG = "SessionTrace";
+    private static final long HUD_UPDATE_INTERVAL_MS = 500;
+    private static final long METRICS_LOG_INTERVAL_MS = 30000;
 
     private CubeSurfaceView glView;
+    private TextView hudView;
 
     private MenuItem toggleUndoItem;
+    private MenuItem toggleHintItem;
+
+    private final Handler handler = new Handler();
+
+    private final Runnable updateHud = new Runnable() {
+        @Override
+        public void run() {
+            hudView.setText(glView.getMetrics().format());
+            handler.postDelayed(this, HUD_UPDATE_INTERVAL_MS);
+        }
+    };
+
+    private final Runnable logMetrics = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(METRICS_TAG, glView.getMetrics().format());
+            handler.postDelayed(this, METRICS_LOG_INTERVAL_MS);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -25,10 +66,84 @@ public class CubeActivity extends Activity {
                 String property = pce.getPropertyName();
                 if (property.equals(CubeSurfaceView.IN_UNDO_MODE_PROPERTY)) {
                     toggleUndoItem.setChecked((Boolean)pce.getNewValue());
+                } else if (property.equals(CubeSurfaceView.HINTS_ENABLED_PROPERTY)) {
+                    toggleHintItem.setChecked((Boolean)pce.getNewValue());
+                } else if (property.equals(CubeSurfaceView.SOLVED_PROPERTY)) {
+                    Toast.makeText(CubeActivity.this, "Solved!", Toast.LENGTH_SHORT).show();
                 }
             }
         });
-        setContentView(glView);
+
+        hudView = new TextView(this);
+        hudView.setTypeface(Typeface.MONOSPACE);
+        hudView.setTextSize(10);
+        hudView.setTextColor(Color.WHITE);
+        hudView.setBackgroundColor(Color.argb(128, 0, 0, 0));
+        hudView.setVisibility(View.GONE);
+
+        FrameLayout root = new FrameLayout(this);
+        root.addView(glView);
+        root.addView(hudView, new FrameLayout.LayoutParams(
+            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+            Gravity.TOP | Gravity.LEFT));
+        setContentView(root);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.postDelayed(logMetrics, METRICS_LOG_INTERVAL_MS);
+        if (isHudVisible()) { handler.post(updateHud); }
+    }
+
+    @Override
+    protected void onPause() {
+        handler.removeCallbacks(logMetrics);
+        handler.removeCallbacks(updateHud);
+        super.onPause();
+    }
+
+    private boolean isHudVisible() {
+        return hudView.getVisibility() == View.VISIBLE;
+    }
+
+    private void setHudVisible(boolean visible) {
+        hudView.setVisibility(visible ? View.VISIBLE : View.GONE);
+        // allocation counting slows the app down, so it is only enabled while watched
+        glView.getMetrics().setAllocationCountingEnabled(visible);
+        handler.removeCallbacks(updateHud);
+        if (visible) { handler.post(updateHud); }
+    }
+
+    private void toggleTraceRecording(MenuItem item) {
+        if (!glView.isTraceRecording()) {
+            item.setChecked(glView.startTraceRecording());
+            return;
+        }
+        final SessionTrace trace = glView.stopTraceRecording();
+        item.setChecked(false);
+        final File file = new File(new File(getFilesDir(), "traces"),
+            "session-" + System.currentTimeMillis() + ".trace");
+        Thread saver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    file.getParentFile().mkdirs();
+                    OutputStream output = new FileOutputStream(file);
+                    try {
+                        trace.write(output);
+                    } finally {
+                        output.close();
+                    }
+                    Log.i(TRACE_TAG, "Saved " + trace.eventCount + " events to " + file + ", replay:\n"
+                        + TraceReplayer.replay(trace));
+                } catch (IOException e) {
+                    Log.w(TRACE_TAG, "Failed to save session trace.", e);
+                }
+            }
+        }, TRACE_TAG);
+        saver.setPriority(Thread.MIN_PRIORITY);
+        saver.start();
     }
 
     @Override
@@ -36,6 +151,7 @@ public class CubeActivity extends Activity {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.cube, menu);
         toggleUndoItem = menu.findItem(R.id.action_toggle_undo);
+        toggleHintItem = menu.findItem(R.id.action_hint);
         return true;
     }
 
@@ -54,6 +170,16 @@ public class CubeActivity extends Activity {
             case R.id.action_toggle_undo:
                 glView.setInUndoMode(!glView.isInUndoMode());
                 return true;
+            case R.id.action_hint:
+                glView.setHintsEnabled(!glView.isHintsEnabled());
+                return true;
+            case R.id.action_toggle_hud:
+                setHudVisible(!isHudVisible());
+                item.setChecked(isHudVisible());
+                return true;
+            case R.id.action_record_trace:
+                toggleTraceRecording(item);
+                return true;
             case R.id.action_reset_view:
                 glView.resetView();
                 return true;
@@ -3,23 +3,46 @@ package ru.alexeymz.rubikscube;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
+import android.os.Debug;
+
+import java.io.File;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.graphics.AndroidGl;
+import ru.alexeymz.rubikscube.graphics.OrientationBuffer;
+import ru.alexeymz.rubikscube.graphics.ProgramBinaryCache;
+import ru.alexeymz.rubikscube.graphics.Quaternion;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
 
 public class CubeRenderer implements GLSurfaceView.Renderer {
 
     public RubiksCube cube;
-    public final float[] model = new float[16];
+    /** Whole cube orientation published by the UI thread. */
+    public final OrientationBuffer orientation = new OrientationBuffer();
     public volatile float absoluteTimeMs;
+    public final EngineMetrics metrics = new EngineMetrics();
+    private final ProgramBinaryCache programCache;
+
+    private long lastFrameStartNanos;
+    private boolean countingAllocations;
 
+    private final Quaternion frameOrientation = new Quaternion();
+    private float[] model = new float[16];
     private float[] projection = new float[16];
     private float[] view = new float[16];
     private float[] viewProjection = new float[16];
     private float[] mvp = new float[16];
 
+    /**
+     * @param programCacheDirectory directory for shader program binaries
+     */
+    public CubeRenderer(File programCacheDirectory) {
+        programCache = new ProgramBinaryCache(programCacheDirectory, metrics);
+    }
+
     @Override
     public void onSurfaceCreated(GL10 unused, EGLConfig config) {
         GLES20.glEnable(GLES20.GL_DEPTH_TEST);
@@ -29,7 +52,10 @@ public class CubeRenderer implements GLSurfaceView.Renderer {
             0, 0, 5, /* eye position */
             0, 0, 0, /* object position */
             0, 1, 0);/* up vector */
-        Matrix.setIdentityM(model, 0);
+        if (cube != null) {
+            // context was lost, keep the cube and recreate its GL objects
+            cube.onSurfaceCreated();
+        }
     }
 
     @Override
@@ -39,19 +65,49 @@ public class CubeRenderer implements GLSurfaceView.Renderer {
         Matrix.perspectiveM(projection, 0,
             45 /* (!) degrees */, aspectRatio, 1, 10);
         if (cube == null) {
-            cube = new RubiksCube(5, width, height);
+            cube = new RubiksCube(5, width, height, metrics, AndroidGl.INSTANCE, programCache);
+        } else {
+            cube.onSurfaceChanged(width, height);
         }
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
+        long frameStart = System.nanoTime();
+        if (lastFrameStartNanos != 0) {
+            metrics.frameIntervalNanos.record(frameStart - lastFrameStartNanos);
+        }
+        lastFrameStartNanos = frameStart;
+        updateAllocationCounting();
+
         // Redraw background color
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
         // Calculate VP matrix
         Matrix.multiplyMM(viewProjection, 0, projection, 0, view, 0);
-        synchronized (model) {
-            Matrix.multiplyMM(mvp, 0, viewProjection, 0, model, 0);
-        }
+        orientation.read(frameOrientation);
+        frameOrientation.toMatrix(model, 0);
+        Matrix.multiplyMM(mvp, 0, viewProjection, 0, model, 0);
         cube.draw(mvp, absoluteTimeMs);
+
+        metrics.frameNanos.record(System.nanoTime() - frameStart);
+        if (countingAllocations) {
+            metrics.allocations.record(Debug.getThreadAllocCount());
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void updateAllocationCounting() {
+        boolean enabled = metrics.isAllocationCountingEnabled();
+        if (enabled != countingAllocations) {
+            countingAllocations = enabled;
+            if (enabled) {
+                Debug.startAllocCounting();
+            } else {
+                Debug.stopAllocCounting();
+            }
+        }
+        if (countingAllocations) {
+            Debug.resetThreadAllocCount();
+        }
     }
 }
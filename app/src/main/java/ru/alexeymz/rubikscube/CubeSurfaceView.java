@@ -5,31 +5,51 @@ import static ru.alexeymz.rubikscube.graphics.MathUtils.*;
 import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
+import android.os.Build;
+import android.os.Handler;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.WindowManager;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.File;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Random;
 
-import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
 
 import ru.alexeymz.rubikscube.core.Axis;
 import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.graphics.Quaternion;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+import ru.alexeymz.rubikscube.trace.SessionTrace;
+import ru.alexeymz.rubikscube.trace.TraceRecorder;
 import ru.alexeymz.rubikscube.view.PartSideCoords;
 
 public class CubeSurfaceView extends GLSurfaceView {
     public static final String IN_UNDO_MODE_PROPERTY = "IN_UNDO_MODE";
+    public static final String HINTS_ENABLED_PROPERTY = "HINTS_ENABLED";
+    /** Fired with new value true by the rotation which solves the cube. */
+    public static final String SOLVED_PROPERTY = "SOLVED";
 
+    private static final String TAG = "CubeSurfaceView";
     private static final float MAX_ROTATION_SPEED = 1000;
     private static final double LAYER_ROTATION_DURATION_MS = 500;
     private static final double UNDO_ROTATION_DURATION_MS = 200;
+    private static final long HINT_BUDGET_MS = 16;
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    private static final float IDLE_FPS = 15;
+    /** Whole cube rotation is integrated with this fixed timestep. */
+    private static final float ROTATION_STEP_MS = 8;
+    private static final float ROTATION_DAMPING = (float)Math.pow(0.1f, ROTATION_STEP_MS / 1000);
 
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
@@ -41,45 +61,58 @@ public class CubeSurfaceView extends GLSurfaceView {
 
     private boolean hasSelection = false;
     private boolean inUndoMode = false;
+    private boolean hintsEnabled = false;
     private float rotationX, rotationY;
+    private float rotationTimeMs;
+    private final Quaternion orientation = new Quaternion();
+    private final float[] orientationMatrix = new float[16];
 
     private final Deque<Rotation> rotations = new ArrayDeque<Rotation>();
     private final Deque<Rotation> undoStack = new ArrayDeque<Rotation>();
 
     private Random random = new Random();
 
-    private final Runnable frameRendered = new Runnable() {
-        @Override
-        public void run() {
-            time = SystemClock.uptimeMillis();
-            update(time - previousTime);
-            previousTime = time;
-        }
-    };
+    /** Recreated when the view is attached again after a detach shut it down. */
+    private HintEngine hintEngine;
+    private PartSideCoords hintSelection;
+
+    private TraceRecorder traceRecorder;
+
+    private final FrameGovernor frameGovernor;
 
     public CubeSurfaceView(Context context) {
         super(context);
         detector = new GestureDetector(context, createGestureListener());
+        hintEngine = createHintEngine(context);
+        // config is chosen for ES 2.0, the context is ES 3.0 where available
         setEGLContextClientVersion(2);
-        this.renderer = new CubeRenderer() {
-            @Override
-            public void onDrawFrame(GL10 unused) {
-                super.onDrawFrame(unused);
-                post(frameRendered);
-            }
-        };
+        setEGLContextFactory(createContextFactory());
+        this.renderer = new CubeRenderer(new File(context.getCacheDir(), "programs"));
         setRenderer(renderer);
         // Render the view only when there is a change in the drawing data
         setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
         startTime = SystemClock.uptimeMillis();
+        WindowManager windowManager = (WindowManager)context.getSystemService(Context.WINDOW_SERVICE);
+        frameGovernor = new FrameGovernor(new FrameGovernor.Listener() {
+            @Override
+            public void onFrame(long frameTimeNanos) {
+                time = SystemClock.uptimeMillis();
+                update(time - previousTime);
+                previousTime = time;
+            }
+        }, renderer.metrics, IDLE_FPS, windowManager.getDefaultDisplay().getRefreshRate());
         pcs.addPropertyChangeListener(new PropertyChangeListener() {
             @Override
             public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
-                post(frameRendered);
+                frameGovernor.requestFrame(FrameGovernor.Rate.FULL);
             }
         });
     }
 
+    public EngineMetrics getMetrics() {
+        return renderer.metrics;
+    }
+
     public void addPropertyChangeListener(PropertyChangeListener listener) {
         pcs.addPropertyChangeListener(listener);
     }
@@ -95,9 +128,97 @@ public class CubeSurfaceView extends GLSurfaceView {
     public void setInUndoMode(boolean value) {
         boolean oldValue = inUndoMode;
         inUndoMode = value;
+        if (traceRecorder != null) { traceRecorder.undoMode(SystemClock.uptimeMillis(), value); }
         pcs.firePropertyChange(IN_UNDO_MODE_PROPERTY, oldValue, inUndoMode);
     }
 
+    public boolean isHintsEnabled() {
+        return hintsEnabled;
+    }
+
+    public void setHintsEnabled(boolean value) {
+        boolean oldValue = hintsEnabled;
+        hintsEnabled = value;
+        if (hintsEnabled) {
+            requestHint();
+        } else {
+            hintEngine.cancel();
+            clearHint();
+        }
+        pcs.firePropertyChange(HINTS_ENABLED_PROPERTY, oldValue, hintsEnabled);
+    }
+
+    private void requestHint() {
+        if (!hintsEnabled || renderer.cube == null) { return; }
+        byte[] stickers = new byte[6 * renderer.cube.size() * renderer.cube.size()];
+        renderer.cube.readState(stickers);
+        hintEngine.request(renderer.cube.size(), stickers, new HintEngine.Listener() {
+            @Override
+            public void onHint(Rotation rotation) {
+                PartSideCoords selection = renderer.cube.getSelection();
+                if (selection != null && selection != hintSelection) { return; }
+                hintSelection = rotation == null ? null : renderer.cube.getLayerSide(rotation);
+                renderer.cube.setSelection(hintSelection);
+                hasSelection = hintSelection != null;
+                frameGovernor.requestFrame(FrameGovernor.Rate.IDLE);
+                requestRenderProvidedTime();
+            }
+        });
+    }
+
+    public boolean isTraceRecording() {
+        return traceRecorder != null;
+    }
+
+    /**
+     * Starts recording user interaction into a {@link SessionTrace}
+     * which can be replayed by {@link ru.alexeymz.rubikscube.trace.TraceReplayer}.
+     *
+     * @return false if the cube is not created yet and nothing is recorded
+     */
+    public boolean startTraceRecording() {
+        if (renderer.cube == null) { return false; }
+        byte[] stickers = new byte[6 * renderer.cube.size() * renderer.cube.size()];
+        renderer.cube.readState(stickers);
+        traceRecorder = new TraceRecorder(renderer.cube.size(), stickers, SystemClock.uptimeMillis());
+        return true;
+    }
+
+    /**
+     * Stops recording and returns the trace including current model state checksum.
+     */
+    public SessionTrace stopTraceRecording() {
+        if (traceRecorder == null)
+            throw new IllegalStateException("Trace is not being recorded.");
+        byte[] stickers = new byte[6 * renderer.cube.size() * renderer.cube.size()];
+        renderer.cube.readState(stickers);
+        SessionTrace trace = traceRecorder.finish(SystemClock.uptimeMillis(), stickers);
+        traceRecorder = null;
+        return trace;
+    }
+
+    private void queueRotation(Rotation rotation) {
+        rotations.addLast(rotation);
+        if (traceRecorder != null) { traceRecorder.rotationQueued(SystemClock.uptimeMillis(), rotation); }
+    }
+
+    private void beginLayerRotation(Rotation rotation, boolean undo, double durationMs) {
+        if (traceRecorder != null) { traceRecorder.rotationStarted(time, rotation, undo, durationMs); }
+        boolean wasSolved = renderer.cube.isSolved();
+        renderer.cube.beginLayerRotation(rotation, durationMs, renderer.absoluteTimeMs);
+        if (!wasSolved && renderer.cube.isSolved()) {
+            pcs.firePropertyChange(SOLVED_PROPERTY, false, true);
+        }
+    }
+
+    private void clearHint() {
+        if (hintSelection != null && renderer.cube.getSelection() == hintSelection) {
+            renderer.cube.setSelection(null);
+            hasSelection = false;
+        }
+        hintSelection = null;
+    }
+
     public void randomize(int rotationCount) {
         Axis lastAxis = null;
         int lastLayer = -1;
@@ -106,21 +227,22 @@ public class CubeSurfaceView extends GLSurfaceView {
             int layer = random.nextInt(renderer.cube.size());
             if (axis == lastAxis && layer == lastLayer) { continue; }
             boolean clockwise = random.nextBoolean();
-            rotations.addLast(new Rotation(axis, layer, clockwise));
+            queueRotation(Rotation.of(axis, layer, clockwise));
             lastAxis = axis;
             lastLayer = layer;
             rotationCount--;
         }
-        post(frameRendered);
+        frameGovernor.requestFrame(FrameGovernor.Rate.FULL);
     }
 
     protected void update(long elapsed) {
         renderer.absoluteTimeMs = time - startTime;
-        boolean redraw = false;
-        redraw |= updateCubeRotation(elapsed);
-        redraw |= updateLayerRotation();
-        redraw |= hasSelection;
-        if (redraw) {
+        boolean moving = false;
+        moving |= updateCubeRotation(elapsed);
+        moving |= updateLayerRotation();
+        if (moving || hasSelection) {
+            // selection only pulses, so it does not need every vsync
+            frameGovernor.requestFrame(moving ? FrameGovernor.Rate.FULL : FrameGovernor.Rate.IDLE);
             requestRenderProvidedTime();
         }
     }
@@ -132,16 +254,18 @@ public class CubeSurfaceView extends GLSurfaceView {
         } else if (!rotations.isEmpty()) {
             Rotation rotation = rotations.pop();
             undoStack.push(rotation.inverse());
-            renderer.cube.beginLayerRotation(rotation,
-                LAYER_ROTATION_DURATION_MS, renderer.absoluteTimeMs);
+            beginLayerRotation(rotation, false, LAYER_ROTATION_DURATION_MS);
+            clearHint();
+            requestHint();
             return true;
         } else if (inUndoMode) {
             if (undoStack.isEmpty()) {
                 setInUndoMode(false);
                 return false;
             } else {
-                renderer.cube.beginLayerRotation(undoStack.pop(),
-                    UNDO_ROTATION_DURATION_MS, renderer.absoluteTimeMs);
+                beginLayerRotation(undoStack.pop(), true, UNDO_ROTATION_DURATION_MS);
+                clearHint();
+                requestHint();
                 return true;
             }
         } else {
@@ -150,29 +274,62 @@ public class CubeSurfaceView extends GLSurfaceView {
     }
 
     protected void requestRenderProvidedTime() {
+        if (renderer.cube != null) { renderer.cube.prepareFrame(); }
         requestRender();
     }
 
     public void resetView() {
-        synchronized (renderer.model) {
-            Matrix.setIdentityM(renderer.model, 0);
-            rotationX = rotationY = 0;
-        }
+        orientation.setIdentity();
+        rotationX = rotationY = 0;
+        renderer.orientation.publish(orientation);
         requestRenderProvidedTime();
     }
 
     private boolean updateCubeRotation(double elapsedMs) {
-        float dt = clamp((float)elapsedMs, 0, 48) / 100;
-        synchronized (renderer.model) {
-            Matrix.rotateM(renderer.model, 0, rotationX * dt, 0, 1, 0);
-            Matrix.rotateM(renderer.model, 0, rotationY * dt,
-                    renderer.model[RIGHT_X], renderer.model[RIGHT_Y], renderer.model[RIGHT_Z]);
+        rotationTimeMs += clamp((float)elapsedMs, 0, 48);
+        if (rotationTimeMs < ROTATION_STEP_MS) {
+            return Math.abs(rotationX) + Math.abs(rotationY) > 1f;
         }
-        rotationX *= Math.pow(0.1f, dt * 0.1f);
-        rotationY *= Math.pow(0.1f, dt * 0.1f);
+        float dt = ROTATION_STEP_MS / 100;
+        while (rotationTimeMs >= ROTATION_STEP_MS) {
+            rotationTimeMs -= ROTATION_STEP_MS;
+            // spin around own vertical axis, then tilt around the screen horizontal axis
+            orientation.rotate(rotationX * dt, 0, 1, 0);
+            orientation.rotateWorld(rotationY * dt, 1, 0, 0);
+            orientation.normalize();
+            rotationX *= ROTATION_DAMPING;
+            rotationY *= ROTATION_DAMPING;
+        }
+        renderer.orientation.publish(orientation);
         return Math.abs(rotationX) + Math.abs(rotationY) > 1f;
     }
 
+    /**
+     * Creates OpenGL ES 3.0 context if the device supports it, so shader program
+     * binaries can be cached, or falls back to 2.0 which is enough for rendering.
+     */
+    private static GLSurfaceView.EGLContextFactory createContextFactory() {
+        return new GLSurfaceView.EGLContextFactory() {
+            @Override
+            public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                    int[] attributes = {EGL_CONTEXT_CLIENT_VERSION, 3, EGL10.EGL_NONE};
+                    EGLContext context = egl.eglCreateContext(
+                        display, config, EGL10.EGL_NO_CONTEXT, attributes);
+                    if (context != null && context != EGL10.EGL_NO_CONTEXT) { return context; }
+                    Log.i(TAG, "OpenGL ES 3.0 context is not available, error " + egl.eglGetError() + ".");
+                }
+                int[] attributes = {EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE};
+                return egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attributes);
+            }
+
+            @Override
+            public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+                egl.eglDestroyContext(display, context);
+            }
+        };
+    }
+
     private GestureDetector.OnGestureListener createGestureListener() {
         return new GestureDetector.SimpleOnGestureListener() {
             @Override
@@ -192,6 +349,7 @@ public class CubeSurfaceView extends GLSurfaceView {
                 final long elapsed = time - previousTime;
                 final float x = e.getX();
                 final float y = e.getY();
+                if (traceRecorder != null) { traceRecorder.tap(time, x, y); }
                 queueEvent(new Runnable() {
                     @Override
                     public void run() {
@@ -205,7 +363,7 @@ public class CubeSurfaceView extends GLSurfaceView {
                                             currentSelection.location, currentSelection.side,
                                             coords.location, coords.side);
                                     if (rotation != null) {
-                                        rotations.addLast(rotation);
+                                        queueRotation(rotation);
                                         renderer.cube.setSelection(null);
                                     } else {
                                         renderer.cube.setSelection(coords);
@@ -229,9 +387,9 @@ public class CubeSurfaceView extends GLSurfaceView {
                 time = e2.getEventTime();
                 final long elapsed = time - previousTime;
                 float dx = -distanceX, dy = -distanceY;
-                synchronized (renderer.model) {
-                    if (renderer.model[UP_Y] < 0) { dx = -dx; }
-                }
+                if (traceRecorder != null) { traceRecorder.scroll(time, dx, dy); }
+                orientation.toMatrix(orientationMatrix, 0);
+                if (orientationMatrix[UP_Y] < 0) { dx = -dx; }
                 rotationX = clamp(dx, -MAX_ROTATION_SPEED, MAX_ROTATION_SPEED);
                 rotationY = clamp(dy, -MAX_ROTATION_SPEED, MAX_ROTATION_SPEED);
                 update(elapsed);
@@ -245,4 +403,22 @@ public class CubeSurfaceView extends GLSurfaceView {
     public boolean onTouchEvent(MotionEvent e) {
         return detector.onTouchEvent(e);
     }
+
+    private static HintEngine createHintEngine(Context context) {
+        return new HintEngine(new Handler(),
+            new File(context.getFilesDir(), "cube2.table"), HINT_BUDGET_MS);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (hintEngine.isShutdown()) { hintEngine = createHintEngine(getContext()); }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        frameGovernor.stop();
+        hintEngine.shutdown();
+        super.onDetachedFromWindow();
+    }
 }
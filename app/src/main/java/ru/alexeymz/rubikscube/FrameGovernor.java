@@ -0,0 +1,150 @@
+package ru.alexeymz.rubikscube;
+
+import android.view.Choreographer;
+
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+/**
+ * Schedules view updates on vsync with two rates: every vsync while something
+ * moves and a throttled rate for idle effects like the selection pulsing.
+ *
+ * Requests are coalesced, the highest requested rate wins. Throttled frames wait
+ * with {@link Choreographer#postFrameCallbackDelayed} instead of waking up on every
+ * vsync; vsyncs passed meanwhile are counted as skipped frames. Must be used on
+ * a looper thread.
+ */
+public class FrameGovernor implements Choreographer.FrameCallback {
+    public enum Rate { IDLE, FULL }
+
+    public interface Listener {
+        /**
+         * Called on vsync for requested frame. Request the next frame from here to keep updating.
+         */
+        void onFrame(long frameTimeNanos);
+    }
+
+    /**
+     * Source of vsync callbacks, {@link Choreographer} methods of the same names.
+     */
+    interface Vsync {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+        void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis);
+        void removeFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    private final Vsync choreographer;
+    private final Listener listener;
+    private final EngineMetrics metrics;
+    private final long idleIntervalNanos;
+    private final long vsyncPeriodNanos;
+
+    private Rate requested;
+    private boolean scheduled;
+    private boolean delayed;
+    private long lastFrameNanos;
+    private long deferredSinceNanos;
+
+    /**
+     * @param idleFps     frame rate for {@link Rate#IDLE} frames
+     * @param refreshRate display refresh rate in Hz
+     */
+    public FrameGovernor(Listener listener, EngineMetrics metrics, float idleFps, float refreshRate) {
+        this(choreographerVsync(), listener, metrics, idleFps, refreshRate);
+    }
+
+    FrameGovernor(Vsync vsync, Listener listener, EngineMetrics metrics, float idleFps, float refreshRate) {
+        if (idleFps <= 0)
+            throw new IllegalArgumentException("idleFps must be > 0.");
+        if (refreshRate <= 0)
+            throw new IllegalArgumentException("refreshRate must be > 0.");
+        this.choreographer = vsync;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.idleIntervalNanos = (long)(1e9 / idleFps);
+        this.vsyncPeriodNanos = (long)(1e9 / refreshRate);
+    }
+
+    private static Vsync choreographerVsync() {
+        final Choreographer choreographer = Choreographer.getInstance();
+        return new Vsync() {
+            @Override
+            public void postFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.postFrameCallback(callback);
+            }
+
+            @Override
+            public void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis) {
+                choreographer.postFrameCallbackDelayed(callback, delayMillis);
+            }
+
+            @Override
+            public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.removeFrameCallback(callback);
+            }
+        };
+    }
+
+    public void requestFrame(Rate rate) {
+        if (requested == null || rate.ordinal() > requested.ordinal()) {
+            requested = rate;
+        }
+        if (scheduled && delayed && requested == Rate.FULL) {
+            // do not wait for the throttled frame any more
+            choreographer.removeFrameCallback(this);
+            scheduled = false;
+        }
+        if (!scheduled) {
+            scheduled = true;
+            delayed = false;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancels requested frame.
+     */
+    public void stop() {
+        requested = null;
+        if (scheduled) {
+            choreographer.removeFrameCallback(this);
+            scheduled = false;
+        }
+        deferredSinceNanos = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        Rate rate = requested;
+        if (rate == null) { return; }
+
+        if (rate == Rate.IDLE) {
+            long remaining = lastFrameNanos + idleIntervalNanos - frameTimeNanos;
+            // tolerate vsync jitter, half of the period
+            if (remaining > vsyncPeriodNanos / 2) {
+                if (deferredSinceNanos == 0) { deferredSinceNanos = frameTimeNanos; }
+                scheduled = true;
+                delayed = true;
+                choreographer.postFrameCallbackDelayed(this, Math.max(1, remaining / 1000000));
+                return;
+            }
+        }
+        countSkippedFrames(frameTimeNanos);
+
+        requested = null;
+        lastFrameNanos = frameTimeNanos;
+        if (rate == Rate.FULL) {
+            metrics.fullRateFrames.incrementAndGet();
+        } else {
+            metrics.idleRateFrames.incrementAndGet();
+        }
+        listener.onFrame(frameTimeNanos);
+    }
+
+    private void countSkippedFrames(long frameTimeNanos) {
+        if (deferredSinceNanos == 0) { return; }
+        long skipped = (frameTimeNanos - deferredSinceNanos + vsyncPeriodNanos / 2) / vsyncPeriodNanos;
+        metrics.skippedFrames.addAndGet(Math.max(0, skipped));
+        deferredSinceNanos = 0;
+    }
+}
@@ -0,0 +1,232 @@
+package ru.alexeymz.rubikscube;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.search.BidirectionalSearch;
+import ru.alexeymz.rubikscube.search.Cube2Table;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.SolvedTracker;
+import ru.alexeymz.rubikscube.state.Symmetries;
+
+/**
+ * Computes "next best move" hints on a background thread.
+ *
+ * Each new request cancels the previous one. 2x2 hints are optimal moves from
+ * {@link Cube2Table} (once the table is loaded). 3x3 hints come from a short
+ * {@link BidirectionalSearch} to any orientation of the solved state, limited
+ * by the time budget, which finds a solution only within {@link #SEARCH_DEPTH}
+ * moves of solved. Otherwise, and for larger cubes where even that depth does not
+ * fit into the state limit, the hint is the move which puts most stickers in place
+ * of the closest solved orientation. Results are delivered on the handler thread.
+ */
+public class HintEngine {
+    private static final String TAG = "HintEngine";
+
+    private static final int SEARCH_DEPTH = 5;
+    private static final long SEARCH_STATES = 50000;
+    private static final int MAX_SEARCH_SIZE = 3;
+
+    public interface Listener {
+        /**
+         * @param rotation suggested rotation or <code>null</code> if the cube is solved
+         */
+        void onHint(Rotation rotation);
+    }
+
+    private final Handler handler;
+    private final File cube2TableFile;
+    private final long budgetNanos;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+    private Future<?> pending;
+    private int generation;
+    private boolean shutDown;
+
+    // accessed only by the executor thread
+    private BidirectionalSearch search;
+
+    private volatile Cube2Table cube2Table;
+    private boolean cube2TableRequested;
+
+    /**
+     * @param cube2TableFile cache file for 2x2 table, generated on first 2x2 request
+     * @param budgetMs       time limit for a single hint computation
+     */
+    public HintEngine(Handler handler, File cube2TableFile, long budgetMs) {
+        this.handler = handler;
+        this.cube2TableFile = cube2TableFile;
+        this.budgetNanos = budgetMs * 1000000L;
+    }
+
+    /**
+     * Cancels pending hint and starts computing a new one. Must be called on the handler thread.
+     * Does nothing after {@link #shutdown}.
+     *
+     * @param stickers snapshot of cube state, see {@link ru.alexeymz.rubikscube.state.StickerLayout}
+     */
+    public void request(final int size, final byte[] stickers, final Listener listener) {
+        cancel();
+        if (shutDown) { return; }
+        if (size == 2) { loadCube2Table(); }
+        final int requestGeneration = generation;
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Rotation hint;
+                try {
+                    hint = computeHint(size, stickers, System.nanoTime() + budgetNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestGeneration == generation) {
+                            pending = null;
+                            listener.onHint(hint);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels pending hint; its listener will not be called. Must be called on the handler thread.
+     */
+    public void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /**
+     * Cancels pending hint and stops the thread. Must be called on the handler thread;
+     * later calls do nothing.
+     */
+    public void shutdown() {
+        cancel();
+        if (shutDown) { return; }
+        shutDown = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (search != null) {
+                    search.close();
+                    search = null;
+                }
+            }
+        });
+        executor.shutdown();
+    }
+
+    public boolean isShutdown() {
+        return shutDown;
+    }
+
+    private void loadCube2Table() {
+        if (cube2TableRequested) { return; }
+        cube2TableRequested = true;
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int workers = Runtime.getRuntime().availableProcessors();
+                ExecutorService generator = Executors.newFixedThreadPool(workers);
+                try {
+                    cube2Table = Cube2Table.load(cube2TableFile, generator, workers);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to load 2x2 table.", e);
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "2x2 table loading interrupted.", e);
+                } finally {
+                    generator.shutdown();
+                }
+            }
+        }, TAG + "-table");
+        loader.setDaemon(true);
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
+    }
+
+    /**
+     * Called on the executor thread, or by tests while no requests are running.
+     */
+    Rotation computeHint(int size, byte[] stickers, long deadlineNanos)
+        throws InterruptedException
+    {
+        if (new SolvedTracker(size, stickers).isSolved()) { return null; }
+        MoveTable moves = MoveTable.forSize(size);
+
+        Cube2Table table = cube2Table;
+        if (size == 2 && table != null) {
+            List<Rotation> solution = table.solve(stickers);
+            return solution.isEmpty() ? null : solution.get(0);
+        }
+
+        byte[][] orientations = Symmetries.forSize(size).solvedOrientations();
+        if (size <= MAX_SEARCH_SIZE) {
+            if (search == null || search.size != size) {
+                if (search != null) { search.close(); }
+                search = new BidirectionalSearch(size, SEARCH_DEPTH, SEARCH_STATES);
+            }
+            List<Rotation> path = search.search(stickers, orientations, deadlineNanos);
+            if (path != null && !path.isEmpty()) { return path.get(0); }
+        }
+
+        byte[] closest = null;
+        int closestScore = -1;
+        for (byte[] solved : orientations) {
+            int score = matchingCount(solved, stickers);
+            if (score > closestScore) {
+                closestScore = score;
+                closest = solved;
+            }
+        }
+        return greedyMove(moves, stickers, closest);
+    }
+
+    private static int matchingCount(byte[] a, byte[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) { count++; }
+        }
+        return count;
+    }
+
+    private static Rotation greedyMove(MoveTable moves, byte[] stickers, byte[] solved) {
+        byte[] moved = new byte[stickers.length];
+        int bestMove = 0;
+        int bestScore = -1;
+        for (int move = 0; move < moves.moveCount; move++) {
+            moves.apply(move, stickers, moved);
+            int score = matchingCount(moved, solved);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return moves.rotationOf(bestMove);
+    }
+}
@@ -3,9 +3,24 @@ package ru.alexeymz.rubikscube.core;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class DataCube<T> implements Rotatable {
+    /**
+     * Default smallest cube size rotated in parallel: smaller layers are rotated faster
+     * than tasks are handed over to other threads. Measured by DataCubeRotationBenchmark
+     * in the instrumentation sources.
+     */
+    public static final int PARALLEL_THRESHOLD = 128;
+
     private final List<T> data;
+    private ExecutorService executor;
+    private int workerCount;
+    private int parallelThreshold;
 
     public final int size;
 
@@ -51,94 +66,142 @@ public final class DataCube<T> implements Rotatable {
         }
     }
 
+    public void setExecutor(ExecutorService executor, int workerCount) {
+        setExecutor(executor, workerCount, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Rotates layers of cubes of at least parallelThreshold size on the executor:
+     * concentric rings of the layer are independent and are claimed by workers one by one.
+     * Cells must not share elements, otherwise concurrent rotation of shared element races.
+     * If the executor rejects a task, the calling thread rotates the remaining rings.
+     * The app does not enable it, as cubes it renders are far below the default threshold.
+     * @param executor executor for rotations or null to always rotate on calling thread
+     * @param workerCount number of threads rotating a layer, including the calling one
+     */
+    public void setExecutor(ExecutorService executor, int workerCount, int parallelThreshold) {
+        if (executor != null && workerCount <= 0)
+            throw new IllegalArgumentException("workerCount must be > 0.");
+        this.executor = executor;
+        this.workerCount = workerCount;
+        this.parallelThreshold = parallelThreshold;
+    }
+
     public void rotateLayer(Axis axis, int layer, boolean clockwise) {
         if (layer < 0 || layer >= size)
             throw new IllegalArgumentException("layer must be in [0..size)");
 
-        int rotations = clockwise ? 3 : 1;
-        for (int i = 0; i < rotations; i++) {
-            switch (axis) {
-                case LEFT:
-                    rotateLeftLayer(layer);
-                    break;
-                case TOP:
-                    rotateTopLayer(layer);
-                    break;
-                case DEPTH:
-                    rotateDepthLayer(layer);
-                    break;
+        // the last ring of odd size is the center cell
+        int ringCount = (size + 1) / 2;
+        if (executor != null && workerCount > 1 && size >= parallelThreshold) {
+            rotateRingsInParallel(axis, layer, clockwise, ringCount);
+        } else {
+            for (int ring = 0; ring < ringCount; ring++) {
+                rotateRing(axis, layer, clockwise, ring);
             }
         }
     }
 
-    /**
-     * Counter-clockwise rotation of left layer
-     */
-    private void rotateLeftLayer(int left) {
-        final int max = size - 1;
-        for (int i = 0; i < size / 2; i++) {
-            for (int j = i; j < max - i; j++) {
-                T temp = get(left, i, j);
-                set(left, i, j, get(left, max - j, i));
-                set(left, max - j, i, get(left, max - i, max - j));
-                set(left, max - i, max - j, get(left, j, max - i));
-                set(left, j, max - i, temp);
+    private void rotateRingsInParallel(final Axis axis, final int layer, final boolean clockwise,
+                                       final int ringCount) {
+        final AtomicInteger nextRing = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(ringCount);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int ring;
+                while ((ring = nextRing.getAndIncrement()) < ringCount) {
+                    try {
+                        rotateRing(axis, layer, clockwise, ring);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        for (int i = 1; i < workerCount; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // fewer helpers, the calling thread takes their rings
+                break;
             }
         }
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                Object item = get(left, i, j);
-                if (item instanceof Rotatable) {
-                    ((Rotatable)item).rotateAround(Axis.LEFT);
-                }
+        // the calling thread works too, so the rotation completes even if the executor is busy
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                // rings being rotated by workers can not be abandoned
+                interrupted = true;
             }
         }
+        if (interrupted) { Thread.currentThread().interrupt(); }
+        if (failure.get() != null) { throw failure.get(); }
     }
 
     /**
-     * Counter-clockwise rotation of top layer
+     * Rotates cells of the ring of the layer around each other counter-clockwise
+     * (or clockwise) and reorients every cell in the same direction.
+     * Ring 0 is the outer one.
      */
-    private void rotateTopLayer(int top) {
+    private void rotateRing(Axis axis, int layer, boolean clockwise, int ring) {
         final int max = size - 1;
-        for (int i = 0; i < size / 2; i++) {
-            for (int j = i; j < max - i; j++) {
-                T temp = get(j, top, i);
-                set(j, top, i, get(i, top, max - j));
-                set(i, top, max - j, get(max - j, top, max - i));
-                set(max - j, top, max - i, get(max - i, top, j));
-                set(max - i, top, j, temp);
-            }
+        // counter-clockwise LEFT and TOP layers move cells a <- b <- c <- d <- a,
+        // in (u, v) coordinates DEPTH layers turn in the other direction
+        boolean backward = clockwise != (axis == Axis.DEPTH);
+        int rotations = clockwise ? 3 : 1;
+        if (ring == max - ring) {
+            reorient(index(axis, layer, ring, ring), axis, rotations);
+            return;
         }
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                Object item = get(i, top, j);
-                if (item instanceof Rotatable) {
-                    ((Rotatable)item).rotateAround(Axis.TOP);
-                }
+        for (int j = ring; j < max - ring; j++) {
+            int a = index(axis, layer, ring, j);
+            int b = index(axis, layer, max - j, ring);
+            int c = index(axis, layer, max - ring, max - j);
+            int d = index(axis, layer, j, max - ring);
+            T temp = data.get(a);
+            if (backward) {
+                data.set(a, data.get(d));
+                data.set(d, data.get(c));
+                data.set(c, data.get(b));
+                data.set(b, temp);
+            } else {
+                data.set(a, data.get(b));
+                data.set(b, data.get(c));
+                data.set(c, data.get(d));
+                data.set(d, temp);
             }
+            reorient(a, axis, rotations);
+            reorient(b, axis, rotations);
+            reorient(c, axis, rotations);
+            reorient(d, axis, rotations);
         }
     }
 
-    /**
-     * Counter-clockwise rotation of depth layer
-     */
-    private void rotateDepthLayer(int depth) {
-        final int max = size - 1;
-        for (int i = 0; i < size / 2; i++) {
-            for (int j = i; j < max - i; j++) {
-                T temp = get(i, j, depth);
-                set(i, j, depth, get(j, max - i, depth));
-                set(j, max - i, depth, get(max - i, max - j, depth));
-                set(max - i, max - j, depth, get(max - j, i, depth));
-                set(max - j, i, depth, temp);
-            }
+    private int index(Axis axis, int layer, int u, int v) {
+        switch (axis) {
+            case LEFT:
+                return CubeCoords.toIndex(size, layer, u, v);
+            case TOP:
+                return CubeCoords.toIndex(size, v, layer, u);
+            default:
+                return CubeCoords.toIndex(size, u, v, layer);
         }
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                Object item = get(i, j, depth);
-                if (item instanceof Rotatable) {
-                    ((Rotatable)item).rotateAround(Axis.DEPTH);
-                }
+    }
+
+    private void reorient(int index, Axis axis, int rotations) {
+        Object item = data.get(index);
+        if (item instanceof Rotatable) {
+            for (int i = 0; i < rotations; i++) {
+                ((Rotatable)item).rotateAround(axis);
             }
         }
     }
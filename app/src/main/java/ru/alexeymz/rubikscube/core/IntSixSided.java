@@ -0,0 +1,16 @@
+package ru.alexeymz.rubikscube.core;
+
+/**
+ * Primitive counterpart of {@link SixSided}, for hot paths which must not box values.
+ */
+public interface IntSixSided {
+    /**
+     * @param side {@link CubeSide} ordinal
+     */
+    int getInt(int side);
+
+    /**
+     * @param side {@link CubeSide} ordinal
+     */
+    void setInt(int side, int value);
+}
@@ -20,6 +20,49 @@ public final class RotateUtils {
         }
     }
 
+    private static final int LEFT = CubeSide.LEFT.ordinal();
+    private static final int RIGHT = CubeSide.RIGHT.ordinal();
+    private static final int UP = CubeSide.UP.ordinal();
+    private static final int DOWN = CubeSide.DOWN.ordinal();
+    private static final int FRONT = CubeSide.FRONT.ordinal();
+    private static final int BACK = CubeSide.BACK.ordinal();
+
+    /**
+     * Same as {@link #rotate(SixSided, Axis, boolean)} without boxing.
+     */
+    public static void rotate(IntSixSided cube, Axis axis, boolean clockwise) {
+        switch (axis) {
+            case LEFT:
+                cycle(cube, UP, FRONT, DOWN, BACK, clockwise);
+                break;
+            case TOP:
+                cycle(cube, FRONT, LEFT, BACK, RIGHT, clockwise);
+                break;
+            case DEPTH:
+                cycle(cube, UP, LEFT, DOWN, RIGHT, clockwise);
+                break;
+        }
+    }
+
+    /**
+     * Moves values counter-clockwise: <code>a <- b <- c <- d <- a</code>,
+     * or in the opposite direction if clockwise.
+     */
+    private static void cycle(IntSixSided cube, int a, int b, int c, int d, boolean clockwise) {
+        int temp = cube.getInt(a);
+        if (clockwise) {
+            cube.setInt(a, cube.getInt(d));
+            cube.setInt(d, cube.getInt(c));
+            cube.setInt(c, cube.getInt(b));
+            cube.setInt(b, temp);
+        } else {
+            cube.setInt(a, cube.getInt(b));
+            cube.setInt(b, cube.getInt(c));
+            cube.setInt(c, cube.getInt(d));
+            cube.setInt(d, temp);
+        }
+    }
+
     /**
      * Counter-clockwise rotation around left axis.
      */
@@ -1,6 +1,20 @@
 package ru.alexeymz.rubikscube.core;
 
 public final class Rotation {
+    /** Rotations of layers below this are preallocated by {@link #of}. */
+    private static final int CACHED_LAYERS = 64;
+    private static final Rotation[] cache = new Rotation[Axis.ordinalCount() * CACHED_LAYERS * 2];
+    static {
+        for (int axis = 0; axis < Axis.ordinalCount(); axis++) {
+            for (int layer = 0; layer < CACHED_LAYERS; layer++) {
+                for (int clockwise = 0; clockwise < 2; clockwise++) {
+                    cache[cacheIndex(axis, layer, clockwise != 0)] =
+                        new Rotation(Axis.fromOrdinal(axis), layer, clockwise != 0);
+                }
+            }
+        }
+    }
+
     public final Axis axis;
     public final int layer;
     public final boolean clockwise;
@@ -13,7 +27,34 @@ public final class Rotation {
         this.clockwise = clockwise;
     }
 
+    /**
+     * Returns shared instance of the rotation; allocates only for layers >= 64.
+     */
+    public static Rotation of(Axis axis, int layer, boolean clockwise) {
+        if (layer < 0)
+            throw new IllegalArgumentException("layer must be >= 0.");
+        if (layer >= CACHED_LAYERS) { return new Rotation(axis, layer, clockwise); }
+        return cache[cacheIndex(axis.ordinal(), layer, clockwise)];
+    }
+
+    private static int cacheIndex(int axis, int layer, boolean clockwise) {
+        return (axis * CACHED_LAYERS + layer) * 2 + (clockwise ? 1 : 0);
+    }
+
     public Rotation inverse() {
-        return new Rotation(axis, layer, !clockwise);
+        return of(axis, layer, !clockwise);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof Rotation)) { return false; }
+        Rotation other = (Rotation)o;
+        return axis == other.axis && layer == other.layer && clockwise == other.clockwise;
+    }
+
+    @Override
+    public int hashCode() {
+        return cacheIndex(axis.ordinal(), layer, clockwise);
     }
 }
@@ -7,6 +7,14 @@ import ru.alexeymz.rubikscube.core.CubeCoords;
 import ru.alexeymz.rubikscube.core.CubeSide;
 import ru.alexeymz.rubikscube.core.DataCube;
 import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.graphics.AndroidGl;
+import ru.alexeymz.rubikscube.graphics.Gl;
+import ru.alexeymz.rubikscube.graphics.ProgramBinaryCache;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+import ru.alexeymz.rubikscube.state.CubeEngine;
+import ru.alexeymz.rubikscube.state.CubeEngines;
+import ru.alexeymz.rubikscube.state.SolvedTracker;
+import ru.alexeymz.rubikscube.state.StickerLayout;
 import ru.alexeymz.rubikscube.view.CubeView;
 import ru.alexeymz.rubikscube.view.PartSideCoords;
 
@@ -42,10 +50,32 @@ public final class RubiksCube {
     private DataCube<SmallCube> dataCube;
     private CubeView view;
     private int[] colorMap;
+    private final EngineMetrics metrics;
+    /** Model state for {@link #readState}, {@link #dataCube} is the view model. */
+    private final CubeEngine engine;
+    /** Side color counters for solved checks. */
+    private final SolvedTracker solvedTracker;
 
     private volatile PartSideCoords selection;
 
     public RubiksCube(int size, int screenWidth, int screenHeight) {
+        this(size, screenWidth, screenHeight, new EngineMetrics());
+    }
+
+    public RubiksCube(int size, int screenWidth, int screenHeight, EngineMetrics metrics) {
+        this(size, screenWidth, screenHeight, metrics, AndroidGl.INSTANCE);
+    }
+
+    public RubiksCube(int size, int screenWidth, int screenHeight, EngineMetrics metrics, Gl gl) {
+        this(size, screenWidth, screenHeight, metrics, gl, null);
+    }
+
+    /**
+     * @param gl GL implementation used by the cube view
+     * @param programCache shader program binary cache or null to always compile
+     */
+    public RubiksCube(int size, int screenWidth, int screenHeight, EngineMetrics metrics, Gl gl,
+                      ProgramBinaryCache programCache) {
         if (size <= 0)
             throw new IllegalArgumentException("size must be > 0.");
         if (colorMap == null) { colorMap = defaultColors; }
@@ -54,8 +84,14 @@ public final class RubiksCube {
                 "colorMap.Length must be not less than 7 (non-color + face colors).");
         }
 
+        this.metrics = metrics;
         dataCube = getDefaultCube(size);
-        view = new CubeView(this, dataCube, colorMap, true, screenWidth, screenHeight);
+        byte[] stickers = new byte[6 * size * size];
+        StickerLayout.forSize(size).read(dataCube, stickers);
+        engine = CubeEngines.create(size);
+        solvedTracker = new SolvedTracker(size, stickers);
+        view = new CubeView(this, dataCube, colorMap, true,
+            screenWidth, screenHeight, metrics, gl, programCache);
     }
 
     public int size() {
@@ -107,12 +143,52 @@ public final class RubiksCube {
         this.selection = selection;
     }
 
+    /**
+     * Returns a visible part side on the rotated layer, used to point the layer out.
+     */
+    public PartSideCoords getLayerSide(Rotation rotation) {
+        switch (rotation.axis) {
+            case LEFT:
+                return new PartSideCoords(new CubeCoords(rotation.layer, 0, 0), CubeSide.FRONT);
+            case TOP:
+                return new PartSideCoords(new CubeCoords(0, rotation.layer, 0), CubeSide.FRONT);
+            default:
+                return new PartSideCoords(new CubeCoords(0, 0, rotation.layer), CubeSide.UP);
+        }
+    }
+
+    public boolean isSolved() {
+        return solvedTracker.isSolved();
+    }
+
+    /**
+     * Returns fraction of stickers matching their side, see {@link SolvedTracker#progress}.
+     */
+    public float getProgress() {
+        return solvedTracker.progress();
+    }
+
+    public int getMatchingCount(CubeSide side) {
+        return solvedTracker.matchingCount(side);
+    }
+
+    /**
+     * Copies current sticker colors in {@link StickerLayout} order.
+     */
+    public void readState(byte[] stickers) {
+        engine.read(stickers);
+    }
+
     public void beginLayerRotation(Rotation rotation, double durationMs, double currentTimeMs) {
         if (isAnimationInProgress()) {
             endAnimation();
         }
         view.beginLayerRotation(rotation, durationMs, currentTimeMs);
+        long start = System.nanoTime();
         dataCube.rotateLayer(rotation.axis, rotation.layer, rotation.clockwise);
+        metrics.rotateLayerNanos.record(System.nanoTime() - start);
+        engine.apply(rotation);
+        solvedTracker.apply(rotation);
     }
 
     public void updateAnimation(double absoluteTimeMs) {
@@ -128,13 +204,9 @@ public final class RubiksCube {
         CubeCoords b, CubeSide sb)
     {
         if (sa == sb && !a.equals(b)) {
-            EqualsWay equalsWay = getEqualsWay(sa,
+            return getEqualsWayRotation(sa, a,
                     a.left, a.top, a.depth,
                     b.left, b.top, b.depth);
-            if (equalsWay == null) { return null; }
-            Axis rotation = equalsWay.rotation;
-            int layer = rotation.getLayerFrom(a);
-            return new Rotation(rotation, layer, equalsWay.clockwise);
         } else if (sa != sb && a.equals(b)) {
             int sum = Axis.LEFT.ordinal() + Axis.TOP.ordinal() + Axis.DEPTH.ordinal();
             Axis rotation = Axis.fromOrdinal(sum - sa.axis().ordinal() - sb.axis().ordinal());
@@ -146,23 +218,13 @@ public final class RubiksCube {
                     break;
                 }
             }
-            return new Rotation(rotation, layer, clockwise);
+            return Rotation.of(rotation, layer, clockwise);
         } else {
             return null;
         }
     }
 
-    private static class EqualsWay {
-        public final Axis rotation;
-        public final boolean clockwise;
-
-        private EqualsWay(Axis rotation, boolean clockwise) {
-            this.rotation = rotation;
-            this.clockwise = clockwise;
-        }
-    }
-
-    private EqualsWay getEqualsWay(CubeSide side,
+    private Rotation getEqualsWayRotation(CubeSide side, CubeCoords from,
         int left1, int top1, int depth1,
         int left2, int top2, int depth2)
     {
@@ -196,7 +258,25 @@ public final class RubiksCube {
         }
 
         clockwise ^= side == CubeSide.RIGHT || side == CubeSide.DOWN || side == CubeSide.BACK;
-        return rotation == null ? null : new EqualsWay(rotation, clockwise);
+        return rotation == null ? null : Rotation.of(rotation, rotation.getLayerFrom(from), clockwise);
+    }
+
+    /**
+     * Called on GL thread when GL context has been recreated.
+     */
+    public void onSurfaceCreated() {
+        view.onSurfaceCreated();
+    }
+
+    public void onSurfaceChanged(int width, int height) {
+        view.onSurfaceChanged(width, height);
+    }
+
+    /**
+     * Prepares the next frame after changes of the cube; see {@link CubeView#prepareFrame}.
+     */
+    public void prepareFrame() {
+        view.prepareFrame();
     }
 
     public void draw(float[] mvp, double absoluteTimeMs) {
@@ -204,6 +284,9 @@ public final class RubiksCube {
     }
 
     public PartSideCoords locationAtPixel(int x, int y) {
-        return view.locationAtPixel(x, y);
+        long start = System.nanoTime();
+        PartSideCoords location = view.locationAtPixel(x, y);
+        metrics.pickNanos.record(System.nanoTime() - start);
+        return location;
     }
 }
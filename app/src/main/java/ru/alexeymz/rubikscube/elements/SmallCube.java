@@ -2,11 +2,12 @@ package ru.alexeymz.rubikscube.elements;
 
 import ru.alexeymz.rubikscube.core.Axis;
 import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.IntSixSided;
 import ru.alexeymz.rubikscube.core.Rotatable;
 import ru.alexeymz.rubikscube.core.RotateUtils;
 import ru.alexeymz.rubikscube.core.SixSided;
 
-public class SmallCube implements SixSided<Integer>, Rotatable {
+public class SmallCube implements SixSided<Integer>, IntSixSided, Rotatable {
     private int[] data = new int[6];
 
     @Override
@@ -19,8 +20,18 @@ public class SmallCube implements SixSided<Integer>, Rotatable {
         data[side.ordinal()] = value;
     }
 
+    @Override
+    public int getInt(int side) {
+        return data[side];
+    }
+
+    @Override
+    public void setInt(int side, int value) {
+        data[side] = value;
+    }
+
     @Override
     public void rotateAround(Axis axis) {
-        RotateUtils.rotate(this, axis, false);
+        RotateUtils.rotate((IntSixSided)this, axis, false);
     }
 }
@@ -0,0 +1,263 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import java.nio.Buffer;
+
+/**
+ * {@link Gl} which forwards calls to another one and counts uniform uploads
+ * and draw calls, e.g. per frame between {@link #resetCounts()} calls.
+ * Must be used on one thread, like the GL context itself.
+ */
+public final class CountingGl implements Gl {
+    private final Gl delegate;
+    private int uniformUploadCount;
+    private int drawCallCount;
+
+    public CountingGl(Gl delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Returns number of glUniform* calls since the last reset. */
+    public int uniformUploadCount() {
+        return uniformUploadCount;
+    }
+
+    /** Returns number of glDrawArrays calls since the last reset. */
+    public int drawCallCount() {
+        return drawCallCount;
+    }
+
+    public void resetCounts() {
+        uniformUploadCount = 0;
+        drawCallCount = 0;
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        delegate.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        delegate.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        delegate.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        delegate.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        delegate.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels) {
+        delegate.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        delegate.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+        delegate.glGenRenderbuffers(n, renderbuffers, offset);
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer) {
+        delegate.glBindRenderbuffer(target, renderbuffer);
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+        delegate.glRenderbufferStorage(target, internalformat, width, height);
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget,
+                                          int renderbuffer) {
+        delegate.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return delegate.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return delegate.glCreateProgram();
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        delegate.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        delegate.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        delegate.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        delegate.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return delegate.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return delegate.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        delegate.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        delegate.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        delegate.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return delegate.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        delegate.glEnable(cap);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        delegate.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glGetFloatv(int pname, float[] params, int offset) {
+        delegate.glGetFloatv(pname, params, offset);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        delegate.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        delegate.glClear(mask);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        delegate.glUseProgram(program);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        return delegate.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        delegate.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        delegate.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, Buffer ptr) {
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return delegate.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        uniformUploadCount++;
+        delegate.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+        uniformUploadCount++;
+        delegate.glUniform3fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        uniformUploadCount++;
+        delegate.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset) {
+        uniformUploadCount++;
+        delegate.glUniform1fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        drawCallCount++;
+        delegate.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        delegate.glReadPixels(x, y, width, height, format, type, pixels);
+    }
+
+    @Override
+    public String glGetString(int name) {
+        return delegate.glGetString(name);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        delegate.glProgramParameteri(program, pname, value);
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        delegate.glGetProgramBinary(program, bufSize, length, lengthOffset,
+            binaryFormat, binaryFormatOffset, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        delegate.glProgramBinary(program, binaryFormat, binary, length);
+    }
+}
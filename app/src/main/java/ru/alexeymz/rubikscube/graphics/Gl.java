@@ -0,0 +1,60 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import java.nio.Buffer;
+
+/**
+ * Subset of OpenGL ES 2.0 used by the renderer, with the same signatures as
+ * {@link android.opengl.GLES20} methods (and {@link android.opengl.GLES30} ones
+ * for program binaries). Allows to run rendering code without
+ * GL context, see {@link RecordingGl}.
+ */
+public interface Gl {
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+    void glBindFramebuffer(int target, int framebuffer);
+    void glGenTextures(int n, int[] textures, int offset);
+    void glBindTexture(int target, int texture);
+    void glTexParameteri(int target, int pname, int param);
+    void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                      int border, int format, int type, Buffer pixels);
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+    void glGenRenderbuffers(int n, int[] renderbuffers, int offset);
+    void glBindRenderbuffer(int target, int renderbuffer);
+    void glRenderbufferStorage(int target, int internalformat, int width, int height);
+    void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer);
+    int glCheckFramebufferStatus(int target);
+    int glCreateProgram();
+    void glDeleteProgram(int program);
+    void glAttachShader(int program, int shader);
+    void glLinkProgram(int program);
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+    String glGetProgramInfoLog(int program);
+    int glCreateShader(int type);
+    void glShaderSource(int shader, String string);
+    void glCompileShader(int shader);
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+    String glGetShaderInfoLog(int shader);
+    void glEnable(int cap);
+    void glViewport(int x, int y, int width, int height);
+    void glGetFloatv(int pname, float[] params, int offset);
+    void glClearColor(float red, float green, float blue, float alpha);
+    void glClear(int mask);
+    void glUseProgram(int program);
+    int glGetAttribLocation(int program, String name);
+    void glEnableVertexAttribArray(int index);
+    void glDisableVertexAttribArray(int index);
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+    int glGetUniformLocation(int program, String name);
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+    void glUniform3fv(int location, int count, float[] v, int offset);
+    void glUniform1f(int location, float x);
+    void glUniform1fv(int location, int count, float[] v, int offset);
+    void glDrawArrays(int mode, int first, int count);
+    void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+    String glGetString(int name);
+
+    // OpenGL ES 3.0 program binaries, see ProgramBinaryCache
+    void glProgramParameteri(int program, int pname, int value);
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                            int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+}
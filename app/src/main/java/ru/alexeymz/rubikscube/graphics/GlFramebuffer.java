@@ -0,0 +1,85 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import static android.opengl.GLES20.*;
+
+/**
+ * Offscreen framebuffer with RGBA texture and 16-bit depth renderbuffer attachments.
+ * Resizing reallocates attachment storage in place, the objects are kept.
+ */
+public final class GlFramebuffer extends GlResources.Resource {
+    private final int[] fbo = new int[1];
+    private final int[] texture = new int[1];
+    private final int[] depthRB = new int[1];
+
+    private Gl gl;
+    private int width, height;
+    private boolean resized;
+
+    public GlFramebuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    @Override
+    protected void create(Gl gl) {
+        this.gl = gl;
+        gl.glGenFramebuffers(1, fbo, 0);
+        gl.glBindFramebuffer(GL_FRAMEBUFFER, fbo[0]);
+
+        // texture
+        gl.glGenTextures(1, texture, 0);
+        gl.glBindTexture(GL_TEXTURE_2D, texture[0]);
+        gl.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        gl.glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture[0], 0);
+
+        // depth renderbuffer
+        gl.glGenRenderbuffers(1, depthRB, 0);
+        gl.glBindRenderbuffer(GL_RENDERBUFFER, depthRB[0]);
+        gl.glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depthRB[0]);
+
+        allocateStorage();
+        gl.glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Changes attachment size; storage is reallocated on next {@link #bind}.
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be > 0.");
+        if (width == this.width && height == this.height) { return; }
+        this.width = width;
+        this.height = height;
+        resized = true;
+    }
+
+    public void bind() {
+        gl.glBindFramebuffer(GL_FRAMEBUFFER, fbo[0]);
+        if (resized) { allocateStorage(); }
+    }
+
+    /**
+     * Allocates attachments storage of current size, the framebuffer must be bound.
+     */
+    private void allocateStorage() {
+        resized = false;
+        gl.glBindTexture(GL_TEXTURE_2D, texture[0]);
+        gl.glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, null);
+        gl.glBindRenderbuffer(GL_RENDERBUFFER, depthRB[0]);
+        gl.glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT16, width, height);
+
+        int status = gl.glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException(String.format(
+                "Error creating FBO: framebuffer is incomplete. Status: %s", status));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import static android.opengl.GLES20.*;
+
+import java.util.Locale;
+
+/**
+ * Shader program loaded from {@link ProgramBinaryCache} or compiled and linked
+ * from source on creation.
+ */
+public final class GlProgram extends GlResources.Resource {
+    private final String vertexShaderCode;
+    private final String fragmentShaderCode;
+    private final ProgramBinaryCache cache;
+    private final int[] status = new int[1];
+    private int handle;
+
+    /**
+     * @param cache binary cache or null to always compile
+     */
+    public GlProgram(String vertexShaderCode, String fragmentShaderCode, ProgramBinaryCache cache) {
+        this.vertexShaderCode = vertexShaderCode;
+        this.fragmentShaderCode = fragmentShaderCode;
+        this.cache = cache;
+    }
+
+    public int handle() {
+        return handle;
+    }
+
+    @Override
+    protected void create(Gl gl) {
+        if (cache != null) {
+            handle = cache.load(gl, vertexShaderCode, fragmentShaderCode);
+            if (handle != 0) { return; }
+        }
+
+        long start = System.nanoTime();
+        int vertexShader = loadShader(gl, GL_VERTEX_SHADER, vertexShaderCode);
+        int fragmentShader = loadShader(gl, GL_FRAGMENT_SHADER, fragmentShaderCode);
+
+        int program = gl.glCreateProgram();         // create empty OpenGL ES Program
+        gl.glAttachShader(program, vertexShader);   // add the vertex shader to program
+        gl.glAttachShader(program, fragmentShader); // add the fragment shader to program
+        if (cache != null) { cache.beforeLink(gl, program); }
+        gl.glLinkProgram(program);                  // creates OpenGL ES program executables
+        gl.glGetProgramiv(program, GL_LINK_STATUS, status, 0);
+        if (status[0] != GL_TRUE) {
+            throw new IllegalStateException(String.format(Locale.US,
+                "Shader link error:%n%s", gl.glGetProgramInfoLog(program)));
+        }
+        handle = program;
+        if (cache != null) {
+            cache.store(gl, program, vertexShaderCode, fragmentShaderCode, System.nanoTime() - start);
+        }
+    }
+
+    private int loadShader(Gl gl, int type, String shaderCode) {
+        // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
+        // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
+        int shader = gl.glCreateShader(type);
+
+        // add the source code to the shader and compile it
+        gl.glShaderSource(shader, shaderCode);
+        gl.glCompileShader(shader);
+        gl.glGetShaderiv(shader, GL_COMPILE_STATUS, status, 0);
+        if (status[0] != GL_TRUE) {
+            throw new IllegalStateException(String.format(
+                Locale.US, "Shader compile error:%n%s",
+                gl.glGetShaderInfoLog(shader)));
+        }
+
+        return shader;
+    }
+}
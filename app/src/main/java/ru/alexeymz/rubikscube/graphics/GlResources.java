@@ -0,0 +1,63 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks GL objects owned by a view, so they can be recreated after EGL context loss
+ * without rebuilding anything else.
+ *
+ * Every context creation starts a new generation: handles of the previous one are
+ * stale (the objects are gone with the context) and resources are created again
+ * on next use. Must be used on GL thread.
+ */
+public final class GlResources {
+    /**
+     * Group of GL objects created together.
+     */
+    public abstract static class Resource {
+        private int generation = -1;
+
+        /**
+         * Creates GL objects; previous handles, if any, must be treated as stale.
+         */
+        protected abstract void create(Gl gl);
+    }
+
+    private final Gl gl;
+    private final List<Resource> resources = new ArrayList<Resource>();
+    private int generation;
+
+    public GlResources(Gl gl) {
+        this.gl = gl;
+    }
+
+    public <T extends Resource> T add(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    /**
+     * Called when GL context has been (re)created.
+     */
+    public void onContextCreated() {
+        generation++;
+    }
+
+    public boolean isCreated(Resource resource) {
+        return resource.generation == generation;
+    }
+
+    public void ensureCreated(Resource resource) {
+        if (resource.generation != generation) {
+            resource.create(gl);
+            resource.generation = generation;
+        }
+    }
+
+    public void ensureAllCreated() {
+        for (int i = 0; i < resources.size(); i++) {
+            ensureCreated(resources.get(i));
+        }
+    }
+}
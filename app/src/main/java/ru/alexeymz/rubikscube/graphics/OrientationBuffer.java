@@ -0,0 +1,28 @@
+package ru.alexeymz.rubikscube.graphics;
+
+/**
+ * Hands orientation over from a single writer thread to a single reader thread
+ * without locks, by copying it through a {@link TripleBuffer}.
+ */
+public final class OrientationBuffer {
+    private final TripleBuffer<Quaternion> slots =
+        new TripleBuffer<Quaternion>(new Quaternion(), new Quaternion(), new Quaternion());
+
+    /**
+     * Called by the writer thread only.
+     */
+    public void publish(Quaternion orientation) {
+        slots.back().set(orientation);
+        slots.publish();
+    }
+
+    /**
+     * Called by the reader thread only.
+     * @return true if the orientation has changed since the previous read
+     */
+    public boolean read(Quaternion orientation) {
+        boolean fresh = slots.acquire();
+        orientation.set(slots.front());
+        return fresh;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes ARGB pixel arrays into 8-bit RGB PNG, dropping alpha.
+ *
+ * Rows use the Sub filter, which turns runs of flat color into zeros.
+ * Instances reuse their buffers and must not be shared between threads;
+ * call {@link #close} to release the native memory of the deflater.
+ */
+public final class PngEncoder {
+    private static final byte[] SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int FILTER_SUB = 1;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] header = new byte[8];
+    private final byte[] ihdr = new byte[13];
+    private final byte[] chunk = new byte[8192];
+    private byte[] row = new byte[0];
+    private boolean closed;
+    private final ByteArrayOutputStream image = new ByteArrayOutputStream();
+
+    public PngEncoder() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level deflate compression level, see {@link Deflater}
+     */
+    public PngEncoder(int level) {
+        deflater = new Deflater(level);
+    }
+
+    /**
+     * Returns PNG file contents of the first <code>width * height</code> pixels.
+     */
+    public byte[] encode(int[] pixels, int width, int height) throws IOException {
+        image.reset();
+        encode(pixels, width, height, image);
+        return image.toByteArray();
+    }
+
+    public void encode(int[] pixels, int width, int height, OutputStream output) throws IOException {
+        if (closed)
+            throw new IllegalStateException("Encoder is closed.");
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be > 0.");
+        if (pixels.length < width * height)
+            throw new IllegalArgumentException("pixels must have width * height elements.");
+        output.write(SIGNATURE);
+
+        writeInt(width, ihdr, 0);
+        writeInt(height, ihdr, 4);
+        ihdr[8] = 8; // bit depth
+        ihdr[9] = 2; // RGB
+        writeChunk(output, "IHDR", ihdr, 0, ihdr.length);
+
+        int rowLength = 1 + width * 3;
+        if (row.length < rowLength) { row = new byte[rowLength]; }
+        deflater.reset();
+        beginChunk("IDAT");
+        int chunkLength = 0;
+        for (int y = 0; y < height; y++) {
+            row[0] = FILTER_SUB;
+            int previous = 0;
+            for (int x = 0, i = 1, p = y * width; x < width; x++, i += 3, p++) {
+                int pixel = pixels[p];
+                row[i]     = (byte)((pixel >>> 16) - (previous >>> 16));
+                row[i + 1] = (byte)((pixel >>> 8) - (previous >>> 8));
+                row[i + 2] = (byte)(pixel - previous);
+                previous = pixel;
+            }
+            deflater.setInput(row, 0, rowLength);
+            if (y == height - 1) { deflater.finish(); }
+            while (y == height - 1 ? !deflater.finished() : !deflater.needsInput()) {
+                int count = deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+                chunkLength += count;
+                if (chunkLength == chunk.length) {
+                    // one IDAT chunk per filled buffer
+                    endChunk(output, chunkLength);
+                    beginChunk("IDAT");
+                    chunkLength = 0;
+                }
+            }
+        }
+        endChunk(output, chunkLength);
+        writeChunk(output, "IEND", chunk, 0, 0);
+    }
+
+    /**
+     * Releases the deflater; the encoder can not be used afterwards.
+     */
+    public void close() {
+        if (closed) { return; }
+        closed = true;
+        deflater.end();
+    }
+
+    private void writeChunk(OutputStream output, String type, byte[] data, int offset, int length)
+            throws IOException {
+        beginChunk(type);
+        crc.update(data, offset, length);
+        writeInt(length, header, 0);
+        output.write(header);
+        output.write(data, offset, length);
+        writeInt((int)crc.getValue(), header, 0);
+        output.write(header, 0, 4);
+    }
+
+    private void beginChunk(String type) {
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte)type.charAt(i);
+        }
+        crc.reset();
+        crc.update(header, 4, 4);
+    }
+
+    /**
+     * Writes the chunk started by {@link #beginChunk} with data in {@link #chunk}.
+     */
+    private void endChunk(OutputStream output, int length) throws IOException {
+        crc.update(chunk, 0, length);
+        writeInt(length, header, 0);
+        output.write(header);
+        output.write(chunk, 0, length);
+        writeInt((int)crc.getValue(), header, 0);
+        output.write(header, 0, 4);
+    }
+
+    private static void writeInt(int value, byte[] target, int offset) {
+        target[offset] = (byte)(value >>> 24);
+        target[offset + 1] = (byte)(value >>> 16);
+        target[offset + 2] = (byte)(value >>> 8);
+        target[offset + 3] = (byte)value;
+    }
+}
@@ -0,0 +1,176 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import static android.opengl.GLES20.*;
+import static android.opengl.GLES30.GL_PROGRAM_BINARY_LENGTH;
+import static android.opengl.GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+
+/**
+ * Keeps linked program binaries on disk, so shaders are not compiled again
+ * on next launches and context recreations.
+ *
+ * Binaries are keyed by program sources and driver vendor, renderer and version,
+ * so a driver update invalidates them; binaries rejected by the driver are deleted
+ * and the program is compiled. Program binaries require OpenGL ES 3.0 context
+ * (available since API 18, requested by {@link ru.alexeymz.rubikscube.CubeSurfaceView}
+ * where supported), otherwise the cache does nothing. Must be used on GL thread.
+ */
+public final class ProgramBinaryCache {
+    private static final String TAG = "ProgramBinaryCache";
+    private static final int MAGIC = 0x50524742;
+    private static final int MAX_BINARY_BYTES = 4 * 1024 * 1024;
+
+    private final File directory;
+    private final EngineMetrics metrics;
+    private final int[] values = new int[2];
+
+    public ProgramBinaryCache(File directory, EngineMetrics metrics) {
+        this.directory = directory;
+        this.metrics = metrics;
+    }
+
+    public static boolean isSupported(Gl gl) {
+        String version = gl.glGetString(GL_VERSION);
+        // "OpenGL ES N.M ..."
+        return version != null && version.startsWith("OpenGL ES ")
+            && version.length() > 10 && version.charAt(10) >= '3';
+    }
+
+    /**
+     * Returns linked program created from cached binary or 0 if there is no valid binary.
+     */
+    int load(Gl gl, String vertexShaderCode, String fragmentShaderCode) {
+        if (!isSupported(gl)) { return 0; }
+        File file = fileFor(gl, vertexShaderCode, fragmentShaderCode);
+        if (!file.isFile()) { return 0; }
+
+        long start = System.nanoTime();
+        int format;
+        long compileNanos;
+        byte[] bytes;
+        try {
+            DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != MAGIC)
+                    throw new IOException("Invalid program binary file: " + file + ".");
+                format = input.readInt();
+                compileNanos = input.readLong();
+                int length = input.readInt();
+                if (length <= 0 || length > MAX_BINARY_BYTES)
+                    throw new IOException("Invalid program binary length: " + length + ".");
+                bytes = new byte[length];
+                input.readFully(bytes);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read program binary.", e);
+            file.delete();
+            return 0;
+        }
+
+        ByteBuffer binary = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+        binary.put(bytes).position(0);
+        int program = gl.glCreateProgram();
+        gl.glProgramBinary(program, format, binary, bytes.length);
+        gl.glGetProgramiv(program, GL_LINK_STATUS, values, 0);
+        if (values[0] != GL_TRUE) {
+            // binary format is not accepted any more, e.g. after driver update
+            gl.glDeleteProgram(program);
+            file.delete();
+            return 0;
+        }
+        metrics.programsLoaded.incrementAndGet();
+        metrics.programNanosSaved.addAndGet(Math.max(0, compileNanos - (System.nanoTime() - start)));
+        return program;
+    }
+
+    /**
+     * Called before linking program compiled from source.
+     */
+    void beforeLink(Gl gl, int program) {
+        if (isSupported(gl)) {
+            gl.glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+    }
+
+    /**
+     * Stores binary of program compiled from source.
+     * @param compileNanos time of compilation and linking
+     */
+    void store(Gl gl, int program, String vertexShaderCode, String fragmentShaderCode,
+               long compileNanos) {
+        metrics.programsCompiled.incrementAndGet();
+        if (!isSupported(gl)) { return; }
+        gl.glGetProgramiv(program, GL_PROGRAM_BINARY_LENGTH, values, 0);
+        int length = values[0];
+        if (length <= 0 || length > MAX_BINARY_BYTES) { return; }
+        ByteBuffer binary = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+        gl.glGetProgramBinary(program, length, values, 0, values, 1, binary);
+        length = values[0];
+        int format = values[1];
+        if (length <= 0) { return; }
+        byte[] bytes = new byte[length];
+        binary.position(0);
+        binary.get(bytes);
+
+        File file = fileFor(gl, vertexShaderCode, fragmentShaderCode);
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Failed to create " + directory + ".");
+            DataOutputStream output = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(format);
+                output.writeLong(compileNanos);
+                output.writeInt(length);
+                output.write(bytes);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file))
+                throw new IOException("Failed to rename " + temp + " to " + file + ".");
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write program binary.", e);
+            temp.delete();
+        }
+    }
+
+    private File fileFor(Gl gl, String vertexShaderCode, String fragmentShaderCode) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, vertexShaderCode);
+        hash = hash(hash, fragmentShaderCode);
+        hash = hash(hash, gl.glGetString(GL_VENDOR));
+        hash = hash(hash, gl.glGetString(GL_RENDERER));
+        hash = hash(hash, gl.glGetString(GL_VERSION));
+        return new File(directory, String.format(Locale.US, "%016x.bin", hash));
+    }
+
+    /**
+     * 64-bit FNV-1a of the string chars followed by zero char.
+     */
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return hash * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.alexeymz.rubikscube.graphics;
+
+/**
+ * Mutable unit quaternion for orientations. Angles are in degrees and rotations
+ * are counter-clockwise, same as {@link android.opengl.Matrix#rotateM}.
+ */
+public final class Quaternion {
+    public float w = 1, x, y, z;
+
+    public Quaternion setIdentity() {
+        w = 1;
+        x = y = z = 0;
+        return this;
+    }
+
+    public Quaternion set(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Quaternion set(Quaternion other) {
+        return set(other.w, other.x, other.y, other.z);
+    }
+
+    /**
+     * Rotates around axis in local space, same as {@code Matrix.rotateM(m, 0, angle, ax, ay, az)}.
+     */
+    public Quaternion rotate(float angle, float ax, float ay, float az) {
+        return multiply(angle, ax, ay, az, false);
+    }
+
+    /**
+     * Rotates around axis in parent space, i.e. the rotation is applied after this one.
+     */
+    public Quaternion rotateWorld(float angle, float ax, float ay, float az) {
+        return multiply(angle, ax, ay, az, true);
+    }
+
+    private Quaternion multiply(float angle, float ax, float ay, float az, boolean before) {
+        float length = MathUtils.length(ax, ay, az);
+        if (length == 0 || angle == 0) { return this; }
+        double half = Math.toRadians(angle) / 2;
+        float s = (float)Math.sin(half) / length;
+        float qw = (float)Math.cos(half), qx = ax * s, qy = ay * s, qz = az * s;
+        if (before) {
+            return set(
+                qw * w - qx * x - qy * y - qz * z,
+                qw * x + qx * w + qy * z - qz * y,
+                qw * y - qx * z + qy * w + qz * x,
+                qw * z + qx * y - qy * x + qz * w);
+        } else {
+            return set(
+                w * qw - x * qx - y * qy - z * qz,
+                w * qx + x * qw + y * qz - z * qy,
+                w * qy - x * qz + y * qw + z * qx,
+                w * qz + x * qy - y * qx + z * qw);
+        }
+    }
+
+    /**
+     * Rescales to unit length to cancel accumulated rounding errors.
+     */
+    public Quaternion normalize() {
+        float length = (float)Math.sqrt(w * w + x * x + y * y + z * z);
+        if (length == 0) { return setIdentity(); }
+        float r = 1 / length;
+        return set(w * r, x * r, y * r, z * r);
+    }
+
+    /**
+     * Writes column-major rotation matrix, compatible with {@link android.opengl.Matrix}.
+     */
+    public void toMatrix(float[] m, int offset) {
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+        m[offset]      = 1 - 2 * (yy + zz);
+        m[offset + 1]  = 2 * (xy + wz);
+        m[offset + 2]  = 2 * (xz - wy);
+        m[offset + 3]  = 0;
+        m[offset + 4]  = 2 * (xy - wz);
+        m[offset + 5]  = 1 - 2 * (xx + zz);
+        m[offset + 6]  = 2 * (yz + wx);
+        m[offset + 7]  = 0;
+        m[offset + 8]  = 2 * (xz + wy);
+        m[offset + 9]  = 2 * (yz - wx);
+        m[offset + 10] = 1 - 2 * (xx + yy);
+        m[offset + 11] = 0;
+        m[offset + 12] = 0;
+        m[offset + 13] = 0;
+        m[offset + 14] = 0;
+        m[offset + 15] = 1;
+    }
+}
@@ -0,0 +1,532 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import static android.opengl.GLES20.*;
+import static android.opengl.GLES30.GL_PROGRAM_BINARY_LENGTH;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link Gl} which does not render anything but counts calls per frame,
+ * so render code can be exercised and measured without GL context.
+ *
+ * Object names are generated sequentially, shaders always compile and link,
+ * framebuffers are always complete and {@link #glReadPixels} returns the pixel
+ * set by {@link #setReadPixel}. Counting does not allocate, so the render path
+ * can be checked for allocations, unless logging is enabled. Not thread-safe.
+ *
+ * Reports OpenGL ES 2.0 by default; with {@link #setProgramBinaries} it reports 3.0
+ * and returns a fixed program binary, which links again unless binaries are rejected.
+ */
+public final class RecordingGl implements Gl {
+    /**
+     * Counters of a single frame.
+     */
+    public static final class Frame {
+        public final int calls;
+        public final int drawCalls;
+        public final long vertices;
+        public final int uniformUploads;
+        public final long uniformBytes;
+        /** Bytes of client buffers passed to GL: vertex arrays, texture data and read pixels. */
+        public final long bufferBytes;
+        /** Binds, program switches, capability and attribute array toggles, viewport and clear color. */
+        public final int stateChanges;
+        /** Calls which return data from GL, e.g. uniform location lookups. */
+        public final int queries;
+
+        private Frame(int calls, int drawCalls, long vertices, int uniformUploads, long uniformBytes,
+                      long bufferBytes, int stateChanges, int queries) {
+            this.calls = calls;
+            this.drawCalls = drawCalls;
+            this.vertices = vertices;
+            this.uniformUploads = uniformUploads;
+            this.uniformBytes = uniformBytes;
+            this.bufferBytes = bufferBytes;
+            this.stateChanges = stateChanges;
+            this.queries = queries;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%d calls: %d draws (%d vertices), %d uniforms (%d bytes), " +
+                "%d buffer bytes, %d state changes, %d queries",
+                calls, drawCalls, vertices, uniformUploads, uniformBytes,
+                bufferBytes, stateChanges, queries);
+        }
+    }
+
+    private int calls;
+    private int drawCalls;
+    private long vertices;
+    private int uniformUploads;
+    private long uniformBytes;
+    private long bufferBytes;
+    private int stateChanges;
+    private int queries;
+
+    private boolean logging;
+    private final List<String> log = new ArrayList<String>();
+
+    private int nextName = 1;
+    private final Map<String, Integer> locations = new HashMap<String, Integer>();
+    private final byte[] readPixel = new byte[4];
+
+    /** Binary format of programs returned by {@link #glGetProgramBinary}. */
+    public static final int PROGRAM_BINARY_FORMAT = 0x5247;
+    private static final byte[] PROGRAM_BINARY = "RecordingGl program".getBytes();
+
+    private boolean programBinaries;
+    private boolean rejectProgramBinaries;
+    private final Set<Integer> unlinkedPrograms = new HashSet<Integer>();
+
+    /**
+     * Resets counters and the call log.
+     */
+    public void beginFrame() {
+        calls = drawCalls = uniformUploads = stateChanges = queries = 0;
+        vertices = uniformBytes = bufferBytes = 0;
+        log.clear();
+    }
+
+    /**
+     * Returns counters since the last {@link #beginFrame()}.
+     */
+    public Frame endFrame() {
+        return new Frame(calls, drawCalls, vertices, uniformUploads, uniformBytes,
+            bufferBytes, stateChanges, queries);
+    }
+
+    /**
+     * Enables recording of every call with its arguments into {@link #getLog()}.
+     */
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    public List<String> getLog() {
+        return Collections.unmodifiableList(log);
+    }
+
+    /**
+     * Sets RGBA components returned by {@link #glReadPixels}.
+     */
+    public void setReadPixel(int r, int g, int b, int a) {
+        readPixel[0] = (byte)r;
+        readPixel[1] = (byte)g;
+        readPixel[2] = (byte)b;
+        readPixel[3] = (byte)a;
+    }
+
+    /**
+     * Switches to OpenGL ES 3.0 mode with program binaries.
+     * @param rejected whether {@link #glProgramBinary} fails to link, like after driver update
+     */
+    public void setProgramBinaries(boolean enabled, boolean rejected) {
+        this.programBinaries = enabled;
+        this.rejectProgramBinaries = rejected;
+    }
+
+    private void log(String name, Object... args) {
+        StringBuilder builder = new StringBuilder(name).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) { builder.append(", "); }
+            Object arg = args[i];
+            builder.append(arg instanceof Buffer || arg instanceof float[] || arg instanceof int[]
+                ? arg.getClass().getSimpleName() : String.valueOf(arg));
+        }
+        log.add(builder.append(')').toString());
+    }
+
+    private void uniform(int floats) {
+        calls++;
+        uniformUploads++;
+        uniformBytes += floats * 4;
+    }
+
+    private int generateName() {
+        return nextName++;
+    }
+
+    private void generateNames(int n, int[] names, int offset) {
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = generateName();
+        }
+    }
+
+    private static long byteCount(Buffer buffer) {
+        if (buffer == null) { return 0; }
+        int remaining = buffer.remaining();
+        if (buffer instanceof ByteBuffer) { return remaining; }
+        if (buffer instanceof ShortBuffer) { return remaining * 2L; }
+        if (buffer instanceof IntBuffer || buffer instanceof FloatBuffer) { return remaining * 4L; }
+        if (buffer instanceof LongBuffer || buffer instanceof DoubleBuffer) { return remaining * 8L; }
+        return remaining;
+    }
+
+    /**
+     * Returns the same location for the same name in every program, without allocations.
+     */
+    private int location(String name) {
+        Integer location = locations.get(name);
+        if (location == null) {
+            location = locations.size();
+            locations.put(name, location);
+        }
+        return location;
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        calls++;
+        if (logging) { log("glGenFramebuffers", n); }
+        generateNames(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glBindFramebuffer", target, framebuffer); }
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        calls++;
+        if (logging) { log("glGenTextures", n); }
+        generateNames(n, textures, offset);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glBindTexture", target, texture); }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glTexParameteri", target, pname, param); }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels) {
+        calls++;
+        if (logging) {
+            log("glTexImage2D", target, level, internalformat, width, height, border, format, type, pixels);
+        }
+        bufferBytes += byteCount(pixels);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        calls++;
+        if (logging) { log("glFramebufferTexture2D", target, attachment, textarget, texture, level); }
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+        calls++;
+        if (logging) { log("glGenRenderbuffers", n); }
+        generateNames(n, renderbuffers, offset);
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glBindRenderbuffer", target, renderbuffer); }
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+        calls++;
+        if (logging) { log("glRenderbufferStorage", target, internalformat, width, height); }
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+        calls++;
+        if (logging) { log("glFramebufferRenderbuffer", target, attachment, renderbuffertarget, renderbuffer); }
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        calls++;
+        if (logging) { log("glCheckFramebufferStatus", target); }
+        queries++;
+        return GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public int glCreateProgram() {
+        calls++;
+        if (logging) { log("glCreateProgram"); }
+        return generateName();
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        calls++;
+        if (logging) { log("glDeleteProgram", program); }
+        unlinkedPrograms.remove(program);
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        calls++;
+        if (logging) { log("glAttachShader", program, shader); }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        calls++;
+        if (logging) { log("glLinkProgram", program); }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        calls++;
+        if (logging) { log("glGetProgramiv", program, pname); }
+        queries++;
+        if (pname == GL_LINK_STATUS) {
+            params[offset] = unlinkedPrograms.contains(program) ? GL_FALSE : GL_TRUE;
+        } else if (pname == GL_PROGRAM_BINARY_LENGTH) {
+            params[offset] = programBinaries ? PROGRAM_BINARY.length : 0;
+        } else {
+            params[offset] = GL_TRUE;
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        calls++;
+        if (logging) { log("glGetProgramInfoLog", program); }
+        queries++;
+        return "";
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        calls++;
+        if (logging) { log("glCreateShader", type); }
+        return generateName();
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        calls++;
+        if (logging) { log("glShaderSource", shader); }
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        calls++;
+        if (logging) { log("glCompileShader", shader); }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        calls++;
+        if (logging) { log("glGetShaderiv", shader, pname); }
+        queries++;
+        params[offset] = GL_TRUE;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        calls++;
+        if (logging) { log("glGetShaderInfoLog", shader); }
+        queries++;
+        return "";
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glEnable", cap); }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glViewport", x, y, width, height); }
+    }
+
+    @Override
+    public void glGetFloatv(int pname, float[] params, int offset) {
+        calls++;
+        if (logging) { log("glGetFloatv", pname); }
+        queries++;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glClearColor", red, green, blue, alpha); }
+    }
+
+    @Override
+    public void glClear(int mask) {
+        calls++;
+        if (logging) { log("glClear", mask); }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glUseProgram", program); }
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        calls++;
+        if (logging) { log("glGetAttribLocation", program, name); }
+        queries++;
+        return location(name);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glEnableVertexAttribArray", index); }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glDisableVertexAttribArray", index); }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        calls++;
+        stateChanges++;
+        if (logging) { log("glVertexAttribPointer", index, size, type, normalized, stride, ptr); }
+        bufferBytes += byteCount(ptr);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        calls++;
+        if (logging) { log("glGetUniformLocation", program, name); }
+        queries++;
+        return location(name);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        uniform(count * 16);
+        if (logging) { log("glUniformMatrix4fv", location); }
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+        uniform(count * 3);
+        if (logging) { log("glUniform3fv", location); }
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        uniform(1);
+        if (logging) { log("glUniform1f", location, x); }
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset) {
+        uniform(count);
+        if (logging) { log("glUniform1fv", location); }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        calls++;
+        if (logging) { log("glDrawArrays", mode, first, count); }
+        drawCalls++;
+        vertices += count;
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        calls++;
+        if (logging) { log("glReadPixels", x, y, width, height, format, type, pixels); }
+        bufferBytes += (long)width * height * 4;
+        if (pixels instanceof ByteBuffer) {
+            ByteBuffer bytes = (ByteBuffer)pixels;
+            int count = Math.min(bytes.remaining(), width * height * 4);
+            for (int i = 0; i < count; i++) {
+                bytes.put(bytes.position() + i, readPixel[i % 4]);
+            }
+        }
+    }
+
+    @Override
+    public String glGetString(int name) {
+        calls++;
+        if (logging) { log("glGetString", name); }
+        queries++;
+        if (name != GL_VERSION) { return "RecordingGl"; }
+        return programBinaries ? "OpenGL ES 3.0 RecordingGl" : "OpenGL ES 2.0 RecordingGl";
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        calls++;
+        if (logging) { log("glProgramParameteri", program, pname, value); }
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        calls++;
+        if (logging) { log("glGetProgramBinary", program, bufSize); }
+        queries++;
+        if (!programBinaries || bufSize < PROGRAM_BINARY.length || !(binary instanceof ByteBuffer)) {
+            length[lengthOffset] = 0;
+            return;
+        }
+        ByteBuffer bytes = (ByteBuffer)binary;
+        for (int i = 0; i < PROGRAM_BINARY.length; i++) {
+            bytes.put(bytes.position() + i, PROGRAM_BINARY[i]);
+        }
+        length[lengthOffset] = PROGRAM_BINARY.length;
+        binaryFormat[binaryFormatOffset] = PROGRAM_BINARY_FORMAT;
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        calls++;
+        if (logging) { log("glProgramBinary", program, binaryFormat, length); }
+        bufferBytes += length;
+        boolean valid = programBinaries && !rejectProgramBinaries
+            && binaryFormat == PROGRAM_BINARY_FORMAT && length == PROGRAM_BINARY.length
+            && binary instanceof ByteBuffer;
+        for (int i = 0; valid && i < length; i++) {
+            valid = ((ByteBuffer)binary).get(binary.position() + i) == PROGRAM_BINARY[i];
+        }
+        if (!valid) { unlinkedPrograms.add(program); }
+    }
+}
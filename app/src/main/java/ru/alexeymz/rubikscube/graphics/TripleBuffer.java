@@ -0,0 +1,64 @@
+package ru.alexeymz.rubikscube.graphics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands values over from a single writer thread to a single reader thread without locks.
+ *
+ * Writer and reader each own a slot; the third slot is exchanged atomically
+ * on {@link #publish} and {@link #acquire}, so neither side waits for the other
+ * and the reader always gets the latest complete value. Slots are reused, never copied.
+ */
+public final class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Object[] slots;
+    /** Index of the exchanged slot, with {@link #FRESH} flag when it was published and not acquired. */
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 2;
+    private int front = 0;
+
+    /**
+     * @param initial value the reader gets before anything is published
+     */
+    public TripleBuffer(T initial, T second, T third) {
+        if (initial == null || second == null || third == null)
+            throw new IllegalArgumentException("slots must not be null.");
+        this.slots = new Object[] {initial, second, third};
+    }
+
+    /**
+     * Slot to fill, owned by the writer thread until {@link #publish}.
+     */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T)slots[back];
+    }
+
+    /**
+     * Called by the writer thread only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Called by the reader thread only. Takes the latest published slot, if any,
+     * as {@link #front}.
+     * @return true if a slot has been published since the previous call
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) { return false; }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Latest acquired slot, owned by the reader thread until the next {@link #acquire}.
+     */
+    @SuppressWarnings("unchecked")
+    public T front() {
+        return (T)slots[front];
+    }
+}
@@ -0,0 +1,104 @@
+package ru.alexeymz.rubikscube.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-frame and per-operation engine counters.
+ *
+ * Histograms keep the last {@link #WINDOW_MS} of samples and can be read from any thread.
+ */
+public final class EngineMetrics {
+    public static final long WINDOW_MS = 10000;
+    private static final int SLICES = 10;
+
+    /** Time of the whole frame on GL thread. */
+    public final RollingHistogram frameNanos = createHistogram();
+    /** Time between consecutive frames. */
+    public final RollingHistogram frameIntervalNanos = createHistogram();
+    /** glDrawArrays calls issued by CubeView.draw per frame. */
+    public final RollingHistogram drawCalls = createHistogram();
+    /** Uniform uploads issued by CubeView.draw per frame. */
+    public final RollingHistogram uniformUploads = createHistogram();
+    /** Time spent in CubeView.drawParts per frame (both render passes). */
+    public final RollingHistogram drawPartsNanos = createHistogram();
+    /** Time of CubeView.prepareFrame building the next draw list off GL thread. */
+    public final RollingHistogram framePrepNanos = createHistogram();
+    /** Time of DataCube.rotateLayer of the model. */
+    public final RollingHistogram rotateLayerNanos = createHistogram();
+    /** Latency of locationAtPixel. */
+    public final RollingHistogram pickNanos = createHistogram();
+    /** Objects allocated by GL thread per frame, when allocation counting is enabled. */
+    public final RollingHistogram allocations = createHistogram();
+
+    /** Frames scheduled at full rate for animations. */
+    public final AtomicLong fullRateFrames = new AtomicLong();
+    /** Frames scheduled at throttled rate for idle effects. */
+    public final AtomicLong idleRateFrames = new AtomicLong();
+    /** Vsyncs skipped by throttling idle effects. */
+    public final AtomicLong skippedFrames = new AtomicLong();
+
+    /** Shader programs loaded from binary cache. */
+    public final AtomicLong programsLoaded = new AtomicLong();
+    /** Shader programs compiled from source. */
+    public final AtomicLong programsCompiled = new AtomicLong();
+    /** Compilation time saved by loading programs from binary cache. */
+    public final AtomicLong programNanosSaved = new AtomicLong();
+
+    private volatile boolean allocationCountingEnabled;
+
+    private static RollingHistogram createHistogram() {
+        return new RollingHistogram(WINDOW_MS, SLICES);
+    }
+
+    public boolean isAllocationCountingEnabled() {
+        return allocationCountingEnabled;
+    }
+
+    /**
+     * Allocation counting slows the runtime down, so it is off by default.
+     */
+    public void setAllocationCountingEnabled(boolean enabled) {
+        this.allocationCountingEnabled = enabled;
+    }
+
+    /**
+     * Returns multi-line summary with p50/p95/p99 of every histogram and frame counts.
+     */
+    public String format() {
+        long now = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder();
+        appendNanos(builder, "frame", frameNanos.snapshot(now));
+        appendNanos(builder, "interval", frameIntervalNanos.snapshot(now));
+        appendNanos(builder, "drawParts", drawPartsNanos.snapshot(now));
+        appendNanos(builder, "framePrep", framePrepNanos.snapshot(now));
+        appendCount(builder, "draws", drawCalls.snapshot(now));
+        appendCount(builder, "uniforms", uniformUploads.snapshot(now));
+        appendNanos(builder, "rotateLayer", rotateLayerNanos.snapshot(now));
+        appendNanos(builder, "pick", pickNanos.snapshot(now));
+        if (allocationCountingEnabled) {
+            appendCount(builder, "allocs", allocations.snapshot(now));
+        }
+        builder.append(String.format(Locale.US, "frames      full %d idle %d skipped %d%n",
+            fullRateFrames.get(), idleRateFrames.get(), skippedFrames.get()));
+        builder.append(String.format(Locale.US, "programs    loaded %d compiled %d saved %.2f ms%n",
+            programsLoaded.get(), programsCompiled.get(), programNanosSaved.get() / 1e6));
+        return builder.toString();
+    }
+
+    private static void appendNanos(StringBuilder builder, String name, RollingHistogram.Snapshot snapshot) {
+        builder.append(String.format(Locale.US, "%-11s p50 %6.2f p95 %6.2f p99 %6.2f ms (n=%d)%n", name,
+            snapshot.percentile(0.50) / 1e6,
+            snapshot.percentile(0.95) / 1e6,
+            snapshot.percentile(0.99) / 1e6,
+            snapshot.count));
+    }
+
+    private static void appendCount(StringBuilder builder, String name, RollingHistogram.Snapshot snapshot) {
+        builder.append(String.format(Locale.US, "%-11s p50 %6d p95 %6d p99 %6d (n=%d)%n", name,
+            snapshot.percentile(0.50),
+            snapshot.percentile(0.95),
+            snapshot.percentile(0.99),
+            snapshot.count));
+    }
+}
@@ -0,0 +1,147 @@
+package ru.alexeymz.rubikscube.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values over a rolling time window.
+ *
+ * Values are counted in log-linear buckets (exact below 32, then 16 buckets per
+ * power of two, i.e. about 6% precision). The window is split into slices; a slice
+ * is lazily reset when it is reused for a newer time period, so recording is a few
+ * atomic increments and readers never block writers. Counts racing with a slice
+ * reset may be lost, which is acceptable for monitoring.
+ */
+public final class RollingHistogram {
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 5 + 1) * SUB_BUCKETS;
+
+    private final int sliceCount;
+    private final long sliceMs;
+
+    /** Per slice: BUCKET_COUNT counters followed by total sum and max. */
+    private final AtomicLongArray[] slices;
+    private final AtomicLongArray sliceEpochs;
+
+    /**
+     * @param windowMs   length of the rolling window
+     * @param sliceCount number of slices the window is split into
+     */
+    public RollingHistogram(long windowMs, int sliceCount) {
+        if (windowMs <= 0)
+            throw new IllegalArgumentException("windowMs must be > 0.");
+        if (sliceCount < 2)
+            throw new IllegalArgumentException("sliceCount must be >= 2.");
+        this.sliceCount = sliceCount;
+        this.sliceMs = Math.max(1, windowMs / sliceCount);
+        this.slices = new AtomicLongArray[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new AtomicLongArray(BUCKET_COUNT + 2);
+        }
+        this.sliceEpochs = new AtomicLongArray(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            sliceEpochs.set(i, -1);
+        }
+    }
+
+    public void record(long value) {
+        record(value, System.currentTimeMillis());
+    }
+
+    public void record(long value, long nowMs) {
+        if (value < 0) { value = 0; }
+        long epoch = nowMs / sliceMs;
+        int index = (int)(epoch % sliceCount);
+        AtomicLongArray slice = slices[index];
+        long sliceEpoch = sliceEpochs.get(index);
+        if (sliceEpoch != epoch) {
+            if (sliceEpoch > epoch) { return; } // stale clock of a racing writer
+            if (sliceEpochs.compareAndSet(index, sliceEpoch, epoch)) {
+                for (int i = 0; i < slice.length(); i++) {
+                    slice.set(i, 0);
+                }
+            }
+        }
+        slice.incrementAndGet(bucketOf(value));
+        slice.addAndGet(BUCKET_COUNT, value);
+        while (true) {
+            long max = slice.get(BUCKET_COUNT + 1);
+            if (value <= max || slice.compareAndSet(BUCKET_COUNT + 1, max, value)) { break; }
+        }
+    }
+
+    public Snapshot snapshot() {
+        return snapshot(System.currentTimeMillis());
+    }
+
+    public Snapshot snapshot(long nowMs) {
+        long epoch = nowMs / sliceMs;
+        long[] buckets = new long[BUCKET_COUNT];
+        long count = 0, sum = 0, max = 0;
+        for (int s = 0; s < sliceCount; s++) {
+            long sliceEpoch = sliceEpochs.get(s);
+            if (sliceEpoch < 0 || epoch - sliceEpoch >= sliceCount) { continue; }
+            AtomicLongArray slice = slices[s];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long bucket = slice.get(i);
+                buckets[i] += bucket;
+                count += bucket;
+            }
+            sum += slice.get(BUCKET_COUNT);
+            max = Math.max(max, slice.get(BUCKET_COUNT + 1));
+        }
+        return new Snapshot(buckets, count, sum, max);
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) { return (int)value; }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 5) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the middle of the value range counted by the bucket.
+     */
+    static long valueOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) { return bucket; }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 5;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = (long)(SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) / 2;
+    }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        public final long count;
+        public final long sum;
+        public final long max;
+
+        private Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double)sum / count;
+        }
+
+        /**
+         * @param fraction percentile in [0..1], e.g. 0.95 for p95
+         */
+        public long percentile(double fraction) {
+            if (count == 0) { return 0; }
+            long rank = (long)Math.ceil(fraction * count);
+            if (rank < 1) { rank = 1; }
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) { return Math.min(valueOf(i), max); }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.alexeymz.rubikscube.notation;
+
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Applies batches of parsed moves to stickers in
+ * {@link ru.alexeymz.rubikscube.state.StickerLayout} order using {@link MoveTable},
+ * so the cost of a move is proportional to the number of moved stickers only.
+ */
+public final class MoveExecutor implements NotationParser.Listener {
+    public final MoveTable table;
+    private final byte[] stickers;
+    private final byte[] scratch;
+    private long moveCount;
+    private int algorithmCount;
+
+    /**
+     * @param stickers state to apply moves to, changed in place
+     */
+    public MoveExecutor(MoveTable table, byte[] stickers) {
+        if (stickers.length != table.layout.stickerCount)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        this.table = table;
+        this.stickers = stickers;
+        this.scratch = new byte[stickers.length];
+    }
+
+    public long moveCount() {
+        return moveCount;
+    }
+
+    public int algorithmCount() {
+        return algorithmCount;
+    }
+
+    @Override
+    public void onMoves(int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            table.applyInPlace(moves[i], stickers, scratch);
+        }
+        moveCount += count;
+    }
+
+    @Override
+    public void onAlgorithmEnd(int line) {
+        algorithmCount++;
+    }
+
+    /**
+     * Applies moves to the model by rotating its layers.
+     */
+    public static void apply(DataCube<?> cube, int[] moves, int offset, int count) {
+        int size = cube.size;
+        for (int i = offset; i < offset + count; i++) {
+            int move = moves[i];
+            cube.rotateLayer(MoveTable.axisOf(size, move), MoveTable.layerOf(size, move),
+                MoveTable.isClockwise(move));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.alexeymz.rubikscube.notation;
+
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Formats move indices, see {@link NotationParser}, in NxN notation.
+ *
+ * Every layer is named from the nearest face (<code>R</code>, <code>2R</code>, <code>3L'</code>),
+ * two equal consecutive clockwise face turns are joined into <code>R2</code>.
+ * Parsing the result gives the same moves back.
+ */
+public final class NotationFormatter {
+    private static final char[] LOW_FACES = { 'L', 'U', 'F' };
+    private static final char[] HIGH_FACES = { 'R', 'D', 'B' };
+
+    public final int size;
+
+    public NotationFormatter(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        this.size = size;
+    }
+
+    public String format(int[] moves, int offset, int count) {
+        StringBuilder builder = new StringBuilder(count * 3);
+        format(moves, offset, count, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends moves separated by spaces.
+     */
+    public void format(int[] moves, int offset, int count, StringBuilder builder) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            if (i > offset) { builder.append(' '); }
+            boolean twice = i + 1 < end && moves[i + 1] == moves[i];
+            if (appendMove(moves[i], twice, builder)) { i++; }
+        }
+    }
+
+    /**
+     * Appends the move and returns whether it was appended as a double turn.
+     * @param twice whether the move may be appended as a double turn
+     */
+    public boolean appendMove(int move, boolean twice, StringBuilder builder) {
+        if (move < 0 || move >= size * 6)
+            throw new IllegalArgumentException("move must be in [0..size * 6)");
+        int axis = MoveTable.axisOf(size, move).ordinal();
+        int layer = MoveTable.layerOf(size, move);
+        boolean clockwise = MoveTable.isClockwise(move);
+
+        // prefer the face nearest to the layer, R over L for the middle one
+        boolean fromHighSide = size - 1 - layer <= layer;
+        char face = fromHighSide ? HIGH_FACES[axis] : LOW_FACES[axis];
+        int depth = fromHighSide ? size - 1 - layer : layer;
+        if (depth > 0) { builder.append(depth + 1); }
+        builder.append(face);
+        if (clockwise != NotationParser.isModelClockwise(face)) {
+            builder.append('\'');
+            return false;
+        }
+        if (twice) { builder.append('2'); }
+        return twice;
+    }
+}
@@ -0,0 +1,314 @@
+package ru.alexeymz.rubikscube.notation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Locale;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Streaming parser of NxN cube notation into move indices of {@link MoveTable}.
+ *
+ * Supported moves:
+ * <ul>
+ * <li>face turns <code>R L U D F B</code>, <code>3R</code> turns the third layer only;</li>
+ * <li>wide turns <code>Rw</code> or <code>r</code> (two layers), <code>3Rw</code> or <code>3r</code>
+ * (three outer layers);</li>
+ * <li>inner slices <code>M E S</code> turning all layers except outer ones;</li>
+ * <li>whole cube rotations <code>x y z</code>;</li>
+ * <li>suffixes <code>'</code>, <code>2</code>, <code>2'</code> and any other amount.</li>
+ * </ul>
+ * Every line is a separate algorithm; spaces, commas and parentheses separate moves,
+ * <code>//</code> starts a comment till the end of line.
+ *
+ * Input is read byte by byte into a reused buffer, parsed moves are passed to
+ * {@link Listener} in batches, so nothing is allocated per move or per line.
+ * Malformed notation throws {@link IllegalArgumentException} with line and column.
+ * Instances are not thread-safe.
+ */
+public final class NotationParser {
+    public interface Listener {
+        /**
+         * Called with parsed moves; the array is reused after the call returns.
+         */
+        void onMoves(int[] moves, int count);
+
+        /**
+         * Called after the last move of every non-empty line.
+         * @param line 1-based line number
+         */
+        void onAlgorithmEnd(int line);
+    }
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int IDLE = 0;
+    private static final int PREFIX = 1;
+    private static final int FACE = 2;
+    private static final int AMOUNT = 3;
+    private static final int PRIME = 4;
+    private static final int SLASH = 5;
+    private static final int COMMENT = 6;
+
+    public final int size;
+
+    private final int[] batch = new int[BATCH_SIZE];
+    private int batchCount;
+    private Listener listener;
+    private ByteBuffer buffer;
+
+    private int state;
+    private int line, column;
+    private int tokenColumn;
+    private boolean lineHasMoves;
+
+    private int prefix;
+    private char face;
+    private boolean wide;
+    private int amount;
+    private boolean prime;
+
+    public NotationParser(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        this.size = size;
+    }
+
+    public void parse(CharSequence text, Listener listener) {
+        begin(listener);
+        for (int i = 0; i < text.length(); i++) {
+            accept(text.charAt(i));
+        }
+        end();
+    }
+
+    /**
+     * Parses ASCII notation from the channel till its end; the channel is not closed.
+     */
+    public void parse(ReadableByteChannel channel, Listener listener) throws IOException {
+        if (buffer == null) { buffer = ByteBuffer.allocateDirect(BUFFER_SIZE); }
+        begin(listener);
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                accept((char)(buffer.get() & 0xFF));
+            }
+            buffer.clear();
+        }
+        end();
+    }
+
+    public void parse(File file, Listener listener) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            parse(input.getChannel(), listener);
+        } finally {
+            input.close();
+        }
+    }
+
+    private void begin(Listener listener) {
+        this.listener = listener;
+        batchCount = 0;
+        state = IDLE;
+        line = 1;
+        column = 0;
+        lineHasMoves = false;
+    }
+
+    private void end() {
+        accept('\n');
+        flush();
+        listener = null;
+    }
+
+    private void accept(char c) {
+        column++;
+        if (state == COMMENT) {
+            if (c == '\n') { endLine(); }
+            return;
+        }
+        if (state == SLASH) {
+            if (c != '/') { fail("'/' expected"); }
+            state = COMMENT;
+            return;
+        }
+
+        if (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (state == IDLE) {
+                startToken();
+                state = PREFIX;
+                prefix = digit;
+            } else if (state == PREFIX) {
+                prefix = checkedNumber(prefix, digit);
+            } else if (state == FACE) {
+                state = AMOUNT;
+                amount = digit;
+            } else if (state == AMOUNT) {
+                amount = checkedNumber(amount, digit);
+            } else {
+                fail("unexpected digit");
+            }
+        } else if (isFace(c)) {
+            if (state == IDLE) {
+                startToken();
+            } else if (state != PREFIX) {
+                fail("separator expected before '" + c + "'");
+            }
+            state = FACE;
+            face = c;
+        } else if (c == 'w') {
+            if (state != FACE || wide || !isOuterFace(face) || Character.isLowerCase(face))
+                fail("unexpected 'w'");
+            wide = true;
+        } else if (c == '\'') {
+            if (state != FACE && state != AMOUNT) { fail("unexpected '''"); }
+            state = PRIME;
+            prime = true;
+        } else if (c == ' ' || c == '\t' || c == '\r' || c == ',' || c == '(' || c == ')') {
+            endToken();
+        } else if (c == '\n') {
+            endToken();
+            endLine();
+        } else if (c == '/') {
+            endToken();
+            state = SLASH;
+        } else {
+            fail("unexpected character '" + c + "'");
+        }
+    }
+
+    private void startToken() {
+        tokenColumn = column;
+        prefix = -1;
+        face = 0;
+        wide = false;
+        amount = 1;
+        prime = false;
+    }
+
+    private void endLine() {
+        if (lineHasMoves) {
+            flush();
+            listener.onAlgorithmEnd(line);
+        }
+        lineHasMoves = false;
+        state = IDLE;
+        line++;
+        column = 0;
+    }
+
+    private void endToken() {
+        if (state == IDLE) { return; }
+        if (state == PREFIX) { fail("face expected"); }
+        if (face >= 'a' && face <= 'z' && isOuterFace(face)) {
+            wide = true;
+            face = Character.toUpperCase(face);
+        }
+
+        int turns = (prime ? 4 - amount % 4 : amount) % 4;
+
+        int from, to;
+        if (face == 'x' || face == 'y' || face == 'z') {
+            if (prefix != -1) { fail("layer prefix is not allowed for cube rotation"); }
+            from = 0;
+            to = size - 1;
+        } else if (face == 'M' || face == 'E' || face == 'S') {
+            if (prefix != -1) { fail("layer prefix is not allowed for slice"); }
+            if (size < 3) { fail("cube of size " + size + " has no inner slices"); }
+            from = 1;
+            to = size - 2;
+        } else {
+            if (prefix == 0 || prefix > size) {
+                fail("layer " + prefix + " is out of cube of size " + size);
+            }
+            if (wide) {
+                from = 0;
+                to = (prefix == -1 ? Math.min(2, size) : prefix) - 1;
+            } else {
+                from = to = prefix == -1 ? 0 : prefix - 1;
+            }
+        }
+        state = IDLE;
+        if (turns == 0) { return; }
+        lineHasMoves = true;
+
+        // face turn is clockwise looking at the face; maps to the model axis
+        // from the face side, see Axis for model orientation
+        Axis axis = axisOf(face);
+        boolean fromHighSide = face == 'R' || face == 'D' || face == 'B';
+        boolean modelClockwise = isModelClockwise(face) == (turns != 3);
+        for (int depth = from; depth <= to; depth++) {
+            int layer = fromHighSide ? size - 1 - depth : depth;
+            int move = MoveTable.indexOf(size, axis, layer, modelClockwise);
+            add(move);
+            if (turns == 2) { add(move); }
+        }
+    }
+
+    static Axis axisOf(char face) {
+        switch (face) {
+            case 'R': case 'L': case 'M': case 'x': return Axis.LEFT;
+            case 'U': case 'D': case 'E': case 'y': return Axis.TOP;
+            default: return Axis.DEPTH;
+        }
+    }
+
+    /**
+     * Returns whether clockwise turn of the face is clockwise rotation of the model layer.
+     */
+    static boolean isModelClockwise(char face) {
+        switch (face) {
+            case 'L': case 'M': case 'U': case 'y': case 'B': return true;
+            default: return false;
+        }
+    }
+
+    private static boolean isFace(char c) {
+        return isOuterFace(c) || c == 'M' || c == 'E' || c == 'S'
+            || c == 'x' || c == 'y' || c == 'z';
+    }
+
+    private static boolean isOuterFace(char c) {
+        switch (c) {
+            case 'R': case 'L': case 'U': case 'D': case 'F': case 'B':
+            case 'r': case 'l': case 'u': case 'd': case 'f': case 'b':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private int checkedNumber(int value, int digit) {
+        value = value * 10 + digit;
+        if (value > 1000000) { fail("number is too large"); }
+        return value;
+    }
+
+    private void add(int move) {
+        if (batchCount == batch.length) { flush(); }
+        batch[batchCount++] = move;
+    }
+
+    private void flush() {
+        if (batchCount > 0) {
+            listener.onMoves(batch, batchCount);
+            batchCount = 0;
+        }
+    }
+
+    private void fail(String message) {
+        int at = state == IDLE || state == SLASH || state == COMMENT ? column : tokenColumn;
+        state = IDLE;
+        batchCount = 0;
+        throw new IllegalArgumentException(String.format(Locale.US,
+            "Invalid notation at line %d, column %d: %s.", line, at, message));
+    }
+}
@@ -0,0 +1,34 @@
+package ru.alexeymz.rubikscube.replication;
+
+/**
+ * Constants of the move stream format shared by {@link MoveStreamWriter} and {@link MoveStreamReader}.
+ *
+ * A stream starts with magic, version byte and varint cube size, followed by frames.
+ * Each frame starts with a varint whose low 2 bits are the frame type and the rest is
+ * the payload:
+ * <ul>
+ *   <li>{@link #MOVE}: <code>timeDelta * moveCount + move</code>, so a 3x3 move
+ *       takes 1 byte when batched and 2 bytes within ~200 ms from the previous frame;</li>
+ *   <li>{@link #CHECKPOINT}: FNV-1a hash of stickers after all preceding moves;</li>
+ *   <li>{@link #SNAPSHOT}: number of moves since the stream source was created, followed by
+ *       varint absolute time and stickers packed by 3 bits;</li>
+ *   <li>{@link #TIME}: time delta too large to be packed with the move.</li>
+ * </ul>
+ * Moves use {@link ru.alexeymz.rubikscube.state.MoveTable} indices.
+ */
+final class MoveStream {
+    static final int MAGIC = 0x434D5653; // "CMVS"
+    static final int VERSION = 1;
+    static final int MAX_CUBE_SIZE = 1024;
+
+    static final int MOVE = 0;
+    static final int CHECKPOINT = 1;
+    static final int SNAPSHOT = 2;
+    static final int TIME = 3;
+    static final int TYPE_BITS = 2;
+
+    /** Time deltas in milliseconds from this value on are written as separate frames. */
+    static final long MAX_PACKED_DELTA = 1L << 24;
+
+    private MoveStream() {}
+}
@@ -0,0 +1,184 @@
+package ru.alexeymz.rubikscube.replication;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StateCodec;
+import ru.alexeymz.rubikscube.trace.SessionTrace;
+
+/**
+ * Reads a {@link MoveStream} written by {@link MoveStreamWriter} and keeps the replica state.
+ * Not thread-safe.
+ *
+ * Fields describe the last frame returned by {@link #next()}. A checkpoint that does not
+ * match the replica marks it out of sync until the next snapshot.
+ */
+public final class MoveStreamReader {
+    public static final int MOVE = MoveStream.MOVE;
+    public static final int CHECKPOINT = MoveStream.CHECKPOINT;
+    public static final int SNAPSHOT = MoveStream.SNAPSHOT;
+
+    private static final int BUFFER_LENGTH = 8192;
+
+    public final int size;
+
+    /** Type of the last frame. */
+    public int type;
+    /** Time of the last frame in the clock of the writer. */
+    public long timeMs;
+    /** Move of MOVE frame. */
+    public int move;
+    /** Moves applied since the writer was created. */
+    public long moveCount;
+
+    private final InputStream input;
+    private final MoveTable table;
+    private final byte[] stickers;
+    private final byte[] scratch;
+    private final byte[] packed;
+    private final byte[] buffer = new byte[BUFFER_LENGTH];
+    private int position;
+    private int limit;
+    private long bytesRead;
+
+    private boolean hasSnapshot;
+    private boolean inSync;
+    private int mismatchCount;
+
+    public MoveStreamReader(InputStream input) throws IOException {
+        this.input = input;
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | readByte();
+        }
+        if (magic != MoveStream.MAGIC)
+            throw new IOException("Not a move stream.");
+        int version = readByte();
+        if (version != MoveStream.VERSION)
+            throw new IOException("Unsupported move stream version " + version + ".");
+        long size = readVarint();
+        if (size <= 0 || size > MoveStream.MAX_CUBE_SIZE)
+            throw new IOException("Corrupted move stream header.");
+        this.size = (int)size;
+        this.table = MoveTable.forSize(this.size);
+        this.stickers = new byte[table.layout.stickerCount];
+        this.scratch = new byte[stickers.length];
+        this.packed = new byte[StateCodec.packedLength(stickers.length)];
+    }
+
+    /**
+     * Reads the next frame and applies it to the replica.
+     * @return <code>false</code> at the end of stream
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (!fill()) { return false; }
+            long frame = readVarint();
+            long payload = frame >>> MoveStream.TYPE_BITS;
+            switch ((int)frame & ((1 << MoveStream.TYPE_BITS) - 1)) {
+                case MoveStream.MOVE:
+                    if (!hasSnapshot)
+                        throw new IOException("Move before the first snapshot.");
+                    type = MOVE;
+                    timeMs += payload / table.moveCount;
+                    move = (int)(payload % table.moveCount);
+                    table.applyInPlace(move, stickers, scratch);
+                    moveCount++;
+                    return true;
+                case MoveStream.CHECKPOINT:
+                    type = CHECKPOINT;
+                    if ((SessionTrace.checksum(stickers) & 0xFFFFFFFFL) != payload) {
+                        inSync = false;
+                        mismatchCount++;
+                    }
+                    return true;
+                case MoveStream.SNAPSHOT:
+                    type = SNAPSHOT;
+                    moveCount = payload;
+                    timeMs = readVarint();
+                    readSnapshot();
+                    hasSnapshot = true;
+                    inSync = true;
+                    return true;
+                default:
+                    timeMs += payload;
+                    break;
+            }
+        }
+    }
+
+    public Rotation rotation() {
+        return table.rotationOf(move);
+    }
+
+    /**
+     * Copies replica stickers in {@link ru.alexeymz.rubikscube.state.StickerLayout} order.
+     */
+    public void read(byte[] target) {
+        System.arraycopy(stickers, 0, target, 0, stickers.length);
+    }
+
+    /**
+     * Returns whether the replica matched all checkpoints since the last snapshot.
+     */
+    public boolean isInSync() {
+        return inSync;
+    }
+
+    public int mismatchCount() {
+        return mismatchCount;
+    }
+
+    public long bytesRead() {
+        return bytesRead - (limit - position);
+    }
+
+    private void readSnapshot() throws IOException {
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = (byte)readByte();
+        }
+        StateCodec.unpack(packed, 0, stickers, stickers.length);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 63)
+                throw new IOException("Corrupted move stream.");
+            int b = readByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) { return value; }
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit && !refill())
+            throw new EOFException("Truncated move stream.");
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Makes sure there is unread data unless the stream has ended.
+     */
+    private boolean fill() throws IOException {
+        return position < limit || refill();
+    }
+
+    /**
+     * Reads more data into the buffer when it has been consumed; blocks until some is available.
+     */
+    private boolean refill() throws IOException {
+        int count;
+        do {
+            count = input.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) { return false; }
+        position = 0;
+        limit = count;
+        bytesRead += count;
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.alexeymz.rubikscube.replication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StateCodec;
+import ru.alexeymz.rubikscube.trace.SessionTrace;
+
+/**
+ * Writes moves of a cube to a replica in the {@link MoveStream} format. Not thread-safe.
+ *
+ * The stream starts with a snapshot of the given state, so a replica joining late gets its
+ * own writer created with the current state. The writer mirrors the state to emit a hash
+ * checkpoint every <code>checkpointInterval</code> moves. Frames are buffered until the
+ * buffer is full or {@link #flush()} is called.
+ */
+public final class MoveStreamWriter {
+    private static final int BUFFER_LENGTH = 8192;
+    /** Longest frame besides snapshot: two varints. */
+    private static final int MAX_FRAME_LENGTH = 20;
+
+    public final int size;
+
+    private final OutputStream output;
+    private final MoveTable table;
+    private final int checkpointInterval;
+    private final byte[] stickers;
+    private final byte[] scratch;
+    private byte[] buffer = new byte[BUFFER_LENGTH];
+    private int length;
+
+    private long lastTimeMs;
+    private long moveCount;
+    private long bytesWritten;
+    private int movesSinceCheckpoint;
+
+    /**
+     * @param stickers           current state in {@link ru.alexeymz.rubikscube.state.StickerLayout} order
+     * @param timeMs             current time in the clock of written moves
+     * @param checkpointInterval moves between hash checkpoints, 0 to write them on demand only
+     */
+    public MoveStreamWriter(OutputStream output, int size, byte[] stickers,
+                            long timeMs, int checkpointInterval) throws IOException {
+        if (size <= 0 || size > MoveStream.MAX_CUBE_SIZE)
+            throw new IllegalArgumentException("size must be in [1, " + MoveStream.MAX_CUBE_SIZE + "].");
+        if (checkpointInterval < 0)
+            throw new IllegalArgumentException("checkpointInterval must be >= 0.");
+        this.output = output;
+        this.size = size;
+        this.table = MoveTable.forSize(size);
+        if (stickers.length != table.layout.stickerCount)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        this.checkpointInterval = checkpointInterval;
+        this.stickers = stickers.clone();
+        this.scratch = new byte[stickers.length];
+        this.lastTimeMs = timeMs;
+
+        int magic = MoveStream.MAGIC;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte)(magic >>> shift);
+        }
+        buffer[length++] = MoveStream.VERSION;
+        writeVarint(size);
+        snapshot(timeMs);
+    }
+
+    public void move(Rotation rotation, long timeMs) throws IOException {
+        move(table.indexOf(rotation), timeMs);
+    }
+
+    public void move(int move, long timeMs) throws IOException {
+        if (move < 0 || move >= table.moveCount)
+            throw new IllegalArgumentException("move must be in [0, " + table.moveCount + ").");
+        long delta = advance(timeMs);
+        if (delta >= MoveStream.MAX_PACKED_DELTA) {
+            writeFrame(MoveStream.TIME, delta);
+            delta = 0;
+        }
+        writeFrame(MoveStream.MOVE, delta * table.moveCount + move);
+        table.applyInPlace(move, stickers, scratch);
+        moveCount++;
+        if (checkpointInterval > 0 && ++movesSinceCheckpoint == checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Writes hash of the current state for the replica to verify.
+     */
+    public void checkpoint() throws IOException {
+        writeFrame(MoveStream.CHECKPOINT, SessionTrace.checksum(stickers) & 0xFFFFFFFFL);
+        movesSinceCheckpoint = 0;
+    }
+
+    /**
+     * Writes the full current state, e.g. after the replica reported divergence.
+     */
+    public void snapshot(long timeMs) throws IOException {
+        advance(timeMs);
+        int packedLength = StateCodec.packedLength(stickers.length);
+        ensureCapacity(MAX_FRAME_LENGTH + packedLength);
+        writeVarint(moveCount << MoveStream.TYPE_BITS | MoveStream.SNAPSHOT);
+        writeVarint(timeMs);
+        StateCodec.pack(stickers, stickers.length, buffer, length);
+        length += packedLength;
+        movesSinceCheckpoint = 0;
+    }
+
+    public void flush() throws IOException {
+        drain();
+        output.flush();
+    }
+
+    public long moveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns bytes passed to the output stream so far, including buffered ones.
+     */
+    public long bytesWritten() {
+        return bytesWritten + length;
+    }
+
+    private long advance(long timeMs) {
+        if (timeMs < lastTimeMs)
+            throw new IllegalArgumentException("timeMs must not decrease.");
+        long delta = timeMs - lastTimeMs;
+        lastTimeMs = timeMs;
+        return delta;
+    }
+
+    private void writeFrame(int type, long payload) throws IOException {
+        ensureCapacity(MAX_FRAME_LENGTH);
+        writeVarint(payload << MoveStream.TYPE_BITS | type);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte)value;
+    }
+
+    private void ensureCapacity(int extra) throws IOException {
+        if (length + extra > buffer.length) {
+            drain();
+            // snapshots of large cubes
+            if (extra > buffer.length) { buffer = new byte[extra]; }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (length > 0) {
+            output.write(buffer, 0, length);
+            bytesWritten += length;
+            length = 0;
+        }
+    }
+}
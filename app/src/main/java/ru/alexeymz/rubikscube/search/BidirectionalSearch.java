@@ -0,0 +1,300 @@
+package ru.alexeymz.rubikscube.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.core.SixSided;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StateCodec;
+import ru.alexeymz.rubikscube.state.StickerLayout;
+
+/**
+ * Meet-in-the-middle search of the shortest layer rotation sequence which turns
+ * one exact sticker state into another.
+ *
+ * Both sides are expanded breadth-first, the smaller frontier first. Visited states
+ * are packed (3 bits per sticker) into {@link OffHeapStateSet} tagged with the move
+ * which reached them, so paths are restored by undoing moves from the meeting state.
+ *
+ * Move sequences are pruned to a canonical form: a move is never followed by its
+ * inverse or repeated a third time, and rotations of the same axis (which commute)
+ * go in increasing layer order (decreasing on the backward side).
+ *
+ * Visited sets and frontier buffers are kept between searches, so one instance
+ * should be reused for many searches and closed afterwards. Not thread-safe.
+ */
+public final class BidirectionalSearch {
+    private static final int START_TAG = OffHeapStateSet.MAX_TAG;
+
+    public final int size;
+
+    private final int maxDepth;
+    private final long maxStates;
+    private final File spillDirectory;
+
+    private final MoveTable moves;
+    private final StickerLayout layout;
+    private final int keyLength;
+
+    private final byte[] stickers;
+    private final byte[] moved;
+    private final byte[] key;
+
+    private Side forward;
+    private Side backward;
+
+    private boolean hasDeadline;
+    private long deadlineNanos;
+
+    /**
+     * @param maxDepth  maximal length of the result
+     * @param maxStates maximal number of visited states on each side
+     */
+    public BidirectionalSearch(int size, int maxDepth, long maxStates) {
+        this(size, maxDepth, maxStates, null);
+    }
+
+    /**
+     * @param spillDirectory directory for memory-mapped visited sets
+     *                       or <code>null</code> to keep them in direct buffers
+     */
+    public BidirectionalSearch(int size, int maxDepth, long maxStates, File spillDirectory) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth must be >= 0.");
+        if (maxStates <= 0)
+            throw new IllegalArgumentException("maxStates must be > 0.");
+        this.size = size;
+        this.maxDepth = maxDepth;
+        this.maxStates = maxStates;
+        this.spillDirectory = spillDirectory;
+        if (!isSupported(size))
+            throw new IllegalArgumentException("size is too large for move tags.");
+        this.moves = MoveTable.forSize(size);
+        this.layout = moves.layout;
+        this.keyLength = StateCodec.packedLength(layout.stickerCount);
+        this.stickers = new byte[layout.stickerCount];
+        this.moved = new byte[layout.stickerCount];
+        this.key = new byte[keyLength];
+    }
+
+    /**
+     * Returns whether moves of the cube size fit into visited set tags.
+     */
+    public static boolean isSupported(int size) {
+        return size > 0 && Axis.ordinalCount() * size * 2 < START_TAG;
+    }
+
+    public List<Rotation> search(DataCube<? extends SixSided<Integer>> from,
+                                 DataCube<? extends SixSided<Integer>> to)
+        throws InterruptedException
+    {
+        byte[] fromStickers = new byte[layout.stickerCount];
+        byte[] toStickers = new byte[layout.stickerCount];
+        layout.read(from, fromStickers);
+        layout.read(to, toStickers);
+        return search(fromStickers, toStickers);
+    }
+
+    /**
+     * @return rotations which turn <code>from</code> into <code>to</code> or
+     *         <code>null</code> if there is no such sequence within the limits
+     */
+    public List<Rotation> search(byte[] from, byte[] to) throws InterruptedException {
+        hasDeadline = false;
+        return doSearch(from, new byte[][] { to });
+    }
+
+    /**
+     * Same as {@link #search(byte[], byte[])} but gives up when {@link System#nanoTime()}
+     * passes the deadline.
+     */
+    public List<Rotation> search(byte[] from, byte[] to, long deadlineNanos)
+        throws InterruptedException
+    {
+        return search(from, new byte[][] { to }, deadlineNanos);
+    }
+
+    /**
+     * Searches the shortest sequence which turns <code>from</code> into any of the targets,
+     * e.g. into any orientation of the solved cube.
+     */
+    public List<Rotation> search(byte[] from, byte[][] targets, long deadlineNanos)
+        throws InterruptedException
+    {
+        this.hasDeadline = true;
+        this.deadlineNanos = deadlineNanos;
+        return doSearch(from, targets);
+    }
+
+    private boolean isPastDeadline() {
+        return hasDeadline && System.nanoTime() - deadlineNanos > 0;
+    }
+
+    private List<Rotation> doSearch(byte[] from, byte[][] targets) throws InterruptedException {
+        for (byte[] to : targets) {
+            if (Arrays.equals(from, to)) { return new ArrayList<Rotation>(); }
+        }
+
+        if (forward == null) {
+            forward = new Side(true);
+            backward = new Side(false);
+        }
+        try {
+            forward.start(new byte[][] { from });
+            backward.start(targets);
+            while (forward.depth + backward.depth < maxDepth) {
+                Side expanded = forward.frontierCount <= backward.frontierCount ? forward : backward;
+                Side other = expanded == forward ? backward : forward;
+                if (expanded.frontierCount == 0) { return null; }
+                if (expanded.visited.size() > maxStates) { return null; }
+
+                byte[] meeting = expanded.expand(other);
+                if (isPastDeadline()) { return null; }
+                if (meeting != null) {
+                    List<Rotation> path = forward.pathTo(meeting);
+                    List<Rotation> rest = backward.pathTo(meeting);
+                    Collections.reverse(rest);
+                    for (Rotation rotation : rest) {
+                        path.add(rotation.inverse());
+                    }
+                    return path;
+                }
+            }
+            return null;
+        } finally {
+            forward.visited.clear();
+            backward.visited.clear();
+        }
+    }
+
+    /**
+     * Releases visited sets; the instance must not be used afterwards.
+     */
+    public void close() {
+        if (forward != null) {
+            forward.visited.close();
+            backward.visited.close();
+        }
+    }
+
+    private boolean isAllowed(int move, int lastMove, int beforeLastMove, boolean ascending) {
+        if (lastMove == START_TAG) { return true; }
+        if (moves.axisOf(move) != moves.axisOf(lastMove)) { return true; }
+        int layer = moves.layerOf(move);
+        int lastLayer = moves.layerOf(lastMove);
+        if (layer == lastLayer) {
+            // same quarter turn twice is a half turn, third one is an inverse turn
+            return move == lastMove && beforeLastMove != move;
+        }
+        return ascending ? layer > lastLayer : layer < lastLayer;
+    }
+
+    private final class Side {
+        final boolean ascending;
+        final OffHeapStateSet visited;
+        byte[] frontier = new byte[0];
+        byte[] nextFrontier = new byte[0];
+        int frontierCount;
+        int depth;
+
+        Side(boolean ascending) {
+            this.ascending = ascending;
+            this.visited = new OffHeapStateSet(keyLength, Math.min(maxStates, 1 << 16), spillDirectory);
+        }
+
+        void start(byte[][] states) {
+            if (frontier.length < states.length * keyLength) {
+                frontier = new byte[states.length * keyLength];
+            }
+            frontierCount = 0;
+            for (byte[] state : states) {
+                StateCodec.pack(state, layout.stickerCount, frontier, frontierCount * keyLength);
+                if (visited.putIfAbsent(frontier, frontierCount * keyLength, START_TAG) < 0) {
+                    frontierCount++;
+                }
+            }
+            depth = 0;
+        }
+
+        /**
+         * Expands one frontier level.
+         *
+         * @return packed meeting state with the shortest total path or <code>null</code>
+         */
+        byte[] expand(Side other) throws InterruptedException {
+            if (nextFrontier.length < keyLength) { nextFrontier = new byte[keyLength * 16]; }
+            int nextCount = 0;
+            byte[] meeting = null;
+            int meetingLength = Integer.MAX_VALUE;
+
+            for (int i = 0; i < frontierCount; i++) {
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                if (isPastDeadline()) { break; }
+                int offset = i * keyLength;
+                int lastMove = visited.get(frontier, offset);
+                int beforeLastMove = START_TAG;
+                StateCodec.unpack(frontier, offset, stickers, layout.stickerCount);
+                if (lastMove != START_TAG) {
+                    moves.apply(MoveTable.inverseOf(lastMove), stickers, moved);
+                    StateCodec.pack(moved, layout.stickerCount, key, 0);
+                    beforeLastMove = visited.get(key, 0);
+                }
+
+                for (int move = 0; move < moves.moveCount; move++) {
+                    if (!isAllowed(move, lastMove, beforeLastMove, ascending)) { continue; }
+                    moves.apply(move, stickers, moved);
+                    StateCodec.pack(moved, layout.stickerCount, key, 0);
+                    if (visited.putIfAbsent(key, 0, move) >= 0) { continue; }
+
+                    if (other.visited.contains(key, 0)) {
+                        int length = depth + 1 + other.pathTo(key).size();
+                        if (length < meetingLength) {
+                            meetingLength = length;
+                            meeting = Arrays.copyOf(key, keyLength);
+                        }
+                    }
+
+                    if ((nextCount + 1) * keyLength > nextFrontier.length) {
+                        nextFrontier = Arrays.copyOf(nextFrontier, nextFrontier.length * 2);
+                    }
+                    System.arraycopy(key, 0, nextFrontier, nextCount * keyLength, keyLength);
+                    nextCount++;
+                }
+            }
+
+            byte[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierCount = nextCount;
+            depth++;
+            return meeting;
+        }
+
+        /**
+         * Returns moves which lead from the start of this side to the state.
+         */
+        List<Rotation> pathTo(byte[] packed) {
+            List<Rotation> path = new ArrayList<Rotation>();
+            byte[] current = Arrays.copyOf(packed, keyLength);
+            byte[] state = new byte[layout.stickerCount];
+            byte[] previous = new byte[layout.stickerCount];
+            int move;
+            while ((move = visited.get(current, 0)) != START_TAG) {
+                if (move < 0)
+                    throw new IllegalStateException("Broken search path.");
+                path.add(moves.rotationOf(move));
+                StateCodec.unpack(current, 0, state, layout.stickerCount);
+                moves.apply(MoveTable.inverseOf(move), state, previous);
+                StateCodec.pack(previous, layout.stickerCount, current, 0);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+}
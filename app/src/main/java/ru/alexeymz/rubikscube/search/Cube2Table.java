@@ -0,0 +1,306 @@
+package ru.alexeymz.rubikscube.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.CubieCodec;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Complete table of optimal quarter turn distances for 2x2 cube.
+ *
+ * Every state modulo whole cube rotation has an entry at its
+ * {@link CubieCodec#cube2Index} perfect hash. An entry holds distance modulo 3
+ * in 2 bits, which is enough to walk to the solved state: one of the neighbours
+ * always has entry <code>(value + 2) % 3</code> and it is one move closer.
+ */
+public final class Cube2Table {
+    public static final int STATE_COUNT = CubieCodec.CUBE2_STATE_COUNT;
+    public static final int TABLE_BYTES = (STATE_COUNT + 3) / 4;
+
+    private static final int MAGIC = 0x43324454; // "C2DT"
+    private static final int HEADER_BYTES = 8;
+    private static final int UNVISITED = 3;
+
+    private static final int PERMUTATIONS = 5040;
+    private static final int ORIENTATIONS = 729;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final ByteBuffer table;
+    private final int solvedIndex;
+
+    private Cube2Table(ByteBuffer table) {
+        this.table = table;
+        Scratch scratch = SCRATCH.get();
+        scratch.moves.layout.solved(scratch.stickers);
+        this.solvedIndex = scratch.codec.cube2Index(scratch.stickers);
+    }
+
+    /**
+     * Maps the table from the file, generating and writing it first if the file
+     * does not exist or is not a valid table.
+     */
+    public static Cube2Table load(File file, ExecutorService executor, int workerCount)
+        throws IOException, InterruptedException
+    {
+        if (!isValidFile(file)) {
+            ByteBuffer generated = generate(executor, workerCount);
+            File temp = new File(file.getPath() + ".tmp");
+            FileOutputStream output = new FileOutputStream(temp);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(STATE_COUNT).flip();
+                output.getChannel().write(header);
+                output.getChannel().write(generated);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file))
+                throw new IOException("Failed to rename " + temp + " to " + file + ".");
+        }
+        return map(file);
+    }
+
+    public static Cube2Table map(File file) throws IOException {
+        if (!isValidFile(file))
+            throw new IOException("Invalid 2x2 table file: " + file + ".");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return new Cube2Table(randomAccessFile.getChannel().map(
+                FileChannel.MapMode.READ_ONLY, HEADER_BYTES, TABLE_BYTES));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public static Cube2Table create(ExecutorService executor, int workerCount)
+        throws InterruptedException
+    {
+        return new Cube2Table(generate(executor, workerCount));
+    }
+
+    private static boolean isValidFile(File file) throws IOException {
+        if (!file.isFile() || file.length() != HEADER_BYTES + TABLE_BYTES) { return false; }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return randomAccessFile.readInt() == MAGIC && randomAccessFile.readInt() == STATE_COUNT;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns optimal number of quarter turns to solve the state.
+     */
+    public int distance(byte[] stickers) {
+        return solve(stickers).size();
+    }
+
+    /**
+     * Returns optimal solution of the 2x2 state as a sequence of layer rotations.
+     */
+    public List<Rotation> solve(byte[] stickers) {
+        Scratch scratch = SCRATCH.get();
+        MoveTable moves = scratch.moves;
+        byte[] current = scratch.stickers;
+        byte[] next = scratch.next;
+        System.arraycopy(stickers, 0, current, 0, moves.layout.stickerCount);
+
+        List<Rotation> solution = new ArrayList<Rotation>();
+        int index = scratch.codec.cube2Index(current);
+        while (index != solvedIndex) {
+            int closer = (value(index) + 2) % 3;
+            int found = -1;
+            for (int move = 0; move < moves.moveCount && found < 0; move++) {
+                moves.apply(move, current, next);
+                int nextIndex = scratch.codec.cube2Index(next);
+                if (value(nextIndex) == closer) {
+                    found = move;
+                    index = nextIndex;
+                }
+            }
+            if (found < 0)
+                throw new IllegalStateException("Corrupted 2x2 table at " + index + ".");
+            solution.add(moves.rotationOf(found));
+            byte[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return solution;
+    }
+
+    /**
+     * Returns distance modulo 3 of the state with specified index.
+     */
+    public int value(int index) {
+        return (table.get(index >> 2) >> ((index & 3) * 2)) & 3;
+    }
+
+    private static ByteBuffer generate(ExecutorService executor, int workerCount)
+        throws InterruptedException
+    {
+        if (workerCount <= 0)
+            throw new IllegalArgumentException("workerCount must be > 0.");
+
+        final CoordinateMoves moves = new CoordinateMoves();
+        final AtomicIntegerArray entries = new AtomicIntegerArray((STATE_COUNT + 15) / 16);
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, -1); // all entries UNVISITED
+        }
+
+        int[] frontier = new int[(STATE_COUNT + 31) / 32];
+        final int solved = moves.solvedIndex;
+        set(entries, solved, 0);
+        frontier[solved >> 5] |= 1 << (solved & 31);
+
+        final int chunk = (frontier.length + workerCount - 1) / workerCount;
+        for (int depth = 0; ; depth++) {
+            final int[] current = frontier;
+            final AtomicIntegerArray next = new AtomicIntegerArray(frontier.length);
+            final int value = (depth + 1) % 3;
+            final AtomicLong added = new AtomicLong();
+
+            List<Callable<Void>> workers = new ArrayList<Callable<Void>>(workerCount);
+            for (int w = 0; w < workerCount; w++) {
+                final int from = w * chunk;
+                final int to = Math.min(frontier.length, from + chunk);
+                workers.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        long localAdded = 0;
+                        for (int word = from; word < to; word++) {
+                            int bits = current[word];
+                            while (bits != 0) {
+                                int bit = Integer.numberOfTrailingZeros(bits);
+                                bits &= bits - 1;
+                                int index = (word << 5) + bit;
+                                for (int move = 0; move < CoordinateMoves.COUNT; move++) {
+                                    int neighbour = moves.apply(move, index);
+                                    if (set(entries, neighbour, value)) {
+                                        setBit(next, neighbour);
+                                        localAdded++;
+                                    }
+                                }
+                            }
+                        }
+                        added.addAndGet(localAdded);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("2x2 table generation failed.", e.getCause());
+                }
+            }
+            if (added.get() == 0) { break; }
+
+            frontier = new int[next.length()];
+            for (int i = 0; i < frontier.length; i++) {
+                frontier[i] = next.get(i);
+            }
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(TABLE_BYTES);
+        for (int i = 0; i < TABLE_BYTES; i++) {
+            table.put(i, (byte)(entries.get(i >> 2) >>> ((i & 3) * 8)));
+        }
+        return table;
+    }
+
+    /**
+     * Sets the entry if it is unvisited.
+     *
+     * @return true if the entry has been set by this call
+     */
+    private static boolean set(AtomicIntegerArray entries, int index, int value) {
+        int word = index >> 4;
+        int shift = (index & 15) * 2;
+        while (true) {
+            int current = entries.get(word);
+            if (((current >>> shift) & 3) != UNVISITED) { return false; }
+            int updated = current & ~(3 << shift) | (value << shift);
+            if (entries.compareAndSet(word, current, updated)) { return true; }
+        }
+    }
+
+    private static void setBit(AtomicIntegerArray bits, int index) {
+        int word = index >> 5;
+        int mask = 1 << (index & 31);
+        while (true) {
+            int current = bits.get(word);
+            if ((current & mask) != 0 || bits.compareAndSet(word, current, current | mask)) { return; }
+        }
+    }
+
+    /**
+     * Transition tables of permutation and orientation coordinates for rotations of
+     * the near layers, which keep corner 7 in place; far layer rotations are the
+     * same states modulo whole cube rotation.
+     */
+    private static final class CoordinateMoves {
+        static final int COUNT = 6;
+
+        final char[][] permutationMoves = new char[COUNT][PERMUTATIONS];
+        final char[][] orientationMoves = new char[COUNT][ORIENTATIONS];
+        final int solvedIndex;
+
+        CoordinateMoves() {
+            CubieCodec codec = new CubieCodec(2);
+            MoveTable table = MoveTable.forSize(2);
+            byte[] stickers = new byte[table.layout.stickerCount];
+            byte[] moved = new byte[stickers.length];
+
+            for (int move = 0; move < COUNT; move++) {
+                int stickerMove = table.indexOf(Axis.fromOrdinal(move / 2), 0, move % 2 != 0);
+                for (int p = 0; p < PERMUTATIONS; p++) {
+                    codec.fromCube2Index(p * ORIENTATIONS, stickers);
+                    table.apply(stickerMove, stickers, moved);
+                    permutationMoves[move][p] = (char)(codec.cube2Index(moved) / ORIENTATIONS);
+                }
+                for (int o = 0; o < ORIENTATIONS; o++) {
+                    codec.fromCube2Index(o, stickers);
+                    table.apply(stickerMove, stickers, moved);
+                    orientationMoves[move][o] = (char)(codec.cube2Index(moved) % ORIENTATIONS);
+                }
+            }
+
+            table.layout.solved(stickers);
+            solvedIndex = codec.cube2Index(stickers);
+        }
+
+        int apply(int move, int index) {
+            return permutationMoves[move][index / ORIENTATIONS] * ORIENTATIONS
+                + orientationMoves[move][index % ORIENTATIONS];
+        }
+    }
+
+    private static final class Scratch {
+        final CubieCodec codec = new CubieCodec(2);
+        final MoveTable moves = MoveTable.forSize(2);
+        final byte[] stickers = new byte[moves.layout.stickerCount];
+        final byte[] next = new byte[moves.layout.stickerCount];
+    }
+}
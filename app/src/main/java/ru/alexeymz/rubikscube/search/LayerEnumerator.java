@@ -0,0 +1,136 @@
+package ru.alexeymz.rubikscube.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.StateCodec;
+
+/**
+ * Parallel breadth-first enumeration of states reachable from the solved cube,
+ * counting states at each depth (quarter turns of any layer).
+ *
+ * Visited states are kept in {@link OffHeapStateSet} encoded with {@link StateCodec}
+ * and tagged with their depth, so 2x2 and 3x3 states are counted modulo whole cube rotation.
+ */
+public final class LayerEnumerator {
+    public interface Listener {
+        void onLayer(int depth, long stateCount);
+    }
+
+    private final int size;
+    private final ExecutorService executor;
+    private final int workerCount;
+    private final MoveTable moves;
+
+    public LayerEnumerator(int size, ExecutorService executor, int workerCount) {
+        if (workerCount <= 0)
+            throw new IllegalArgumentException("workerCount must be > 0.");
+        this.size = size;
+        this.executor = executor;
+        this.workerCount = workerCount;
+        this.moves = MoveTable.forSize(size);
+    }
+
+    public int keyLength() {
+        return new StateCodec(size).encodedLength;
+    }
+
+    /**
+     * Enumerates layers until <code>maxDepth</code> is reached, the state space is exhausted
+     * or <code>visited</code> grows over <code>maxStates</code>.
+     *
+     * @param visited empty set with {@link #keyLength()} keys
+     * @return state count at each enumerated depth
+     */
+    public long[] enumerate(final OffHeapStateSet visited, int maxDepth, long maxStates,
+                            Listener listener) throws InterruptedException
+    {
+        if (maxDepth < 0 || maxDepth > OffHeapStateSet.MAX_TAG)
+            throw new IllegalArgumentException("maxDepth must be in [0..OffHeapStateSet.MAX_TAG].");
+        StateCodec codec = new StateCodec(size);
+        if (visited.keyLength != codec.encodedLength)
+            throw new IllegalArgumentException("visited.keyLength must be equal to keyLength().");
+
+        DataCube<SmallCube> solved = RubiksCube.getDefaultCube(size);
+        byte[] stickers = new byte[codec.layout().stickerCount];
+        codec.layout().read(solved, stickers);
+        byte[] key = new byte[codec.encodedLength];
+        codec.encode(stickers, key, 0);
+        visited.putIfAbsent(key, 0, 0);
+
+        List<Long> counts = new ArrayList<Long>();
+        counts.add(1L);
+        if (listener != null) { listener.onLayer(0, 1); }
+
+        for (int depth = 0; depth < maxDepth && visited.size() <= maxStates; depth++) {
+            long count = expandLayer(visited, depth);
+            if (count == 0) { break; }
+            counts.add(count);
+            if (listener != null) { listener.onLayer(depth + 1, count); }
+        }
+
+        long[] result = new long[counts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    private long expandLayer(final OffHeapStateSet visited, final int depth)
+        throws InterruptedException
+    {
+        final AtomicInteger nextSegment = new AtomicInteger();
+        final AtomicLong added = new AtomicLong();
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(workerCount);
+        for (int w = 0; w < workerCount; w++) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    StateCodec codec = new StateCodec(size);
+                    int keyLength = codec.encodedLength;
+                    byte[] stickers = new byte[codec.layout().stickerCount];
+                    byte[] moved = new byte[stickers.length];
+                    byte[] key = new byte[keyLength];
+                    long localAdded = 0;
+
+                    int segment;
+                    while ((segment = nextSegment.getAndIncrement()) < visited.segmentCount()) {
+                        byte[] frontier = visited.collect(segment, depth);
+                        for (int offset = 0; offset < frontier.length; offset += keyLength) {
+                            if (Thread.currentThread().isInterrupted()) { return null; }
+                            codec.decode(frontier, offset, stickers);
+                            for (int move = 0; move < moves.moveCount; move++) {
+                                moves.apply(move, stickers, moved);
+                                codec.encode(moved, key, 0);
+                                if (visited.putIfAbsent(key, 0, depth + 1) < 0) {
+                                    localAdded++;
+                                }
+                            }
+                        }
+                    }
+                    added.addAndGet(localAdded);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : executor.invokeAll(workers)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Layer expansion failed.", e.getCause());
+            }
+        }
+        return added.get();
+    }
+}
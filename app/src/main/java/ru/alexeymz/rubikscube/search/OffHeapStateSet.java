@@ -0,0 +1,323 @@
+package ru.alexeymz.rubikscube.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Open-addressing hash set of fixed-width keys (packed cube states) stored outside of Java heap.
+ *
+ * The table is split into independently locked segments; inside a segment collisions
+ * are resolved by linear probing. Each slot is one flag byte followed by the key:
+ * flag 0 marks an empty slot, otherwise it holds <code>tag + 1</code>, where tag is
+ * a small value (<code>[0..MAX_TAG]</code>) attached to the key, e.g. search depth
+ * or last move.
+ *
+ * Segments are backed either by direct buffers or, when spill directory is specified,
+ * by memory-mapped files so that the OS can page them out to disk.
+ */
+public final class OffHeapStateSet {
+    public static final int MAX_TAG = 254;
+
+    private static final int SEGMENT_COUNT = 64;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    public final int keyLength;
+
+    private final int slotSize;
+    private final File spillDirectory;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public OffHeapStateSet(int keyLength, long expectedSize) {
+        this(keyLength, expectedSize, null);
+    }
+
+    /**
+     * @param spillDirectory directory for memory-mapped segment files
+     *                       or <code>null</code> to use direct buffers
+     */
+    public OffHeapStateSet(int keyLength, long expectedSize, File spillDirectory) {
+        if (keyLength <= 0)
+            throw new IllegalArgumentException("keyLength must be > 0.");
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expectedSize must be >= 0.");
+        if (spillDirectory != null && !spillDirectory.isDirectory())
+            throw new IllegalArgumentException("spillDirectory must be an existing directory.");
+
+        this.keyLength = keyLength;
+        this.slotSize = keyLength + 1;
+        this.spillDirectory = spillDirectory;
+
+        long perSegment = expectedSize / SEGMENT_COUNT * 4 / 3 + 1;
+        int capacity = MIN_SEGMENT_CAPACITY;
+        while (capacity < perSegment) { capacity <<= 1; }
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    public boolean add(byte[] key, int offset) {
+        return putIfAbsent(key, offset, 0) < 0;
+    }
+
+    public boolean contains(byte[] key, int offset) {
+        return get(key, offset) >= 0;
+    }
+
+    /**
+     * Inserts the key with the tag if it is not present yet.
+     *
+     * @return tag of existing key or -1 if the key has been inserted
+     */
+    public int putIfAbsent(byte[] key, int offset, int tag) {
+        if (tag < 0 || tag > MAX_TAG)
+            throw new IllegalArgumentException("tag must be in [0..MAX_TAG].");
+        long hash = hash(key, offset, keyLength);
+        Segment segment = segments[segmentOf(hash)];
+        synchronized (segment) {
+            return segment.putIfAbsent(key, offset, (int)hash, tag);
+        }
+    }
+
+    /**
+     * @return tag of the key or -1 if the key is absent
+     */
+    public int get(byte[] key, int offset) {
+        long hash = hash(key, offset, keyLength);
+        Segment segment = segments[segmentOf(hash)];
+        synchronized (segment) {
+            int slot = segment.find(key, offset, (int)hash);
+            return slot < 0 ? -1 : segment.flag(slot) - 1;
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns off-heap bytes occupied by the table.
+     */
+    public long capacityBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += (long)segment.capacity * slotSize;
+            }
+        }
+        return bytes;
+    }
+
+    public int segmentCount() {
+        return SEGMENT_COUNT;
+    }
+
+    /**
+     * Copies keys with specified tag from one segment.
+     * Keys inserted concurrently may or may not be included.
+     *
+     * @return concatenated keys, <code>keyLength</code> bytes each
+     */
+    public byte[] collect(int segmentIndex, int tag) {
+        Segment segment = segments[segmentIndex];
+        synchronized (segment) {
+            int matched = 0;
+            for (int slot = 0; slot < segment.capacity; slot++) {
+                if (segment.flag(slot) == tag + 1) { matched++; }
+            }
+            byte[] keys = new byte[matched * keyLength];
+            int position = 0;
+            for (int slot = 0; slot < segment.capacity; slot++) {
+                if (segment.flag(slot) == tag + 1) {
+                    segment.readKey(slot, keys, position);
+                    position += keyLength;
+                }
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Removes all keys; segments keep their grown capacity for reuse.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.wipe();
+            }
+        }
+    }
+
+    /**
+     * Releases segment files; the set must not be used afterwards.
+     */
+    public void close() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.release();
+            }
+        }
+    }
+
+    private static int segmentOf(long hash) {
+        return (int)(hash >>> 58) & (SEGMENT_COUNT - 1);
+    }
+
+    /**
+     * 64-bit FNV-1a hash with final avalanche.
+     */
+    static long hash(byte[] key, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= key[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private ByteBuffer allocateBuffer(int bytes, File[] file) {
+        if (spillDirectory == null) {
+            file[0] = null;
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            File segmentFile = File.createTempFile("states", ".seg", spillDirectory);
+            segmentFile.deleteOnExit();
+            RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFile, "rw");
+            try {
+                randomAccessFile.setLength(bytes);
+                file[0] = segmentFile;
+                return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to map state set segment.", e);
+        }
+    }
+
+    private final class Segment {
+        private ByteBuffer buffer;
+        private File file;
+        private int capacity;
+        private int count;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        void allocate(int capacity) {
+            File[] allocatedFile = new File[1];
+            this.buffer = allocateBuffer(capacity * slotSize, allocatedFile);
+            this.file = allocatedFile[0];
+            this.capacity = capacity;
+            this.count = 0;
+        }
+
+        void release() {
+            buffer = null;
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+            capacity = 0;
+            count = 0;
+        }
+
+        void wipe() {
+            for (int slot = 0; slot < capacity; slot++) {
+                buffer.put(slot * slotSize, (byte)0);
+            }
+            count = 0;
+        }
+
+        int flag(int slot) {
+            return buffer.get(slot * slotSize) & 0xFF;
+        }
+
+        void readKey(int slot, byte[] target, int offset) {
+            int base = slot * slotSize + 1;
+            for (int i = 0; i < keyLength; i++) {
+                target[offset + i] = buffer.get(base + i);
+            }
+        }
+
+        private boolean keyEquals(int slot, byte[] key, int offset) {
+            int base = slot * slotSize + 1;
+            for (int i = 0; i < keyLength; i++) {
+                if (buffer.get(base + i) != key[offset + i]) { return false; }
+            }
+            return true;
+        }
+
+        /**
+         * Returns slot of the key or <code>-(emptySlot + 1)</code> if the key is absent.
+         */
+        int find(byte[] key, int offset, int hash) {
+            int mask = capacity - 1;
+            int slot = hash & mask;
+            while (true) {
+                if (flag(slot) == 0) { return -(slot + 1); }
+                if (keyEquals(slot, key, offset)) { return slot; }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int putIfAbsent(byte[] key, int offset, int hash, int tag) {
+            int slot = find(key, offset, hash);
+            if (slot >= 0) { return flag(slot) - 1; }
+            slot = -slot - 1;
+            int base = slot * slotSize;
+            buffer.put(base, (byte)(tag + 1));
+            for (int i = 0; i < keyLength; i++) {
+                buffer.put(base + 1 + i, key[offset + i]);
+            }
+            count++;
+            if (count * 4L > capacity * 3L) {
+                grow();
+            }
+            return -1;
+        }
+
+        private void grow() {
+            if ((long)capacity * 2 * slotSize > Integer.MAX_VALUE)
+                throw new IllegalStateException("State set segment is full.");
+
+            ByteBuffer oldBuffer = buffer;
+            File oldFile = file;
+            int oldCapacity = capacity;
+            allocate(capacity * 2);
+
+            byte[] key = new byte[keyLength];
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int base = slot * slotSize;
+                int flag = oldBuffer.get(base) & 0xFF;
+                if (flag == 0) { continue; }
+                for (int i = 0; i < keyLength; i++) {
+                    key[i] = oldBuffer.get(base + 1 + i);
+                }
+                int target = -find(key, 0, (int)hash(key, 0, keyLength)) - 1;
+                int targetBase = target * slotSize;
+                buffer.put(targetBase, (byte)flag);
+                for (int i = 0; i < keyLength; i++) {
+                    buffer.put(targetBase + 1 + i, key[i]);
+                }
+                count++;
+            }
+            if (oldFile != null) {
+                oldFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.alexeymz.rubikscube.session;
+
+/**
+ * Handle of a cube hosted by {@link CubeSessionManager}.
+ *
+ * Stickers live in a pooled chunk shared with other sessions of the same size,
+ * the move queue exists only while moves are pending, so an idle session
+ * takes this object and its stickers only.
+ */
+public final class CubeSession {
+    /** Estimated size of the session object and its state lock. */
+    static final int OVERHEAD_BYTES = 96;
+
+    public final long id;
+    public final int size;
+
+    final int slot;
+    final byte[] chunk;
+    final int offset;
+    final int stickerCount;
+    /** Guards stickers, which are written by the single draining task only. */
+    final Object stateLock = new Object();
+
+    // guarded by this
+    /** Ring buffer of queued moves, length is a power of two. */
+    int[] pending;
+    int pendingHead;
+    int pendingCount;
+    boolean scheduled;
+    boolean closed;
+
+    // written by the draining task under stateLock
+    long appliedMoves;
+    long busyNanos;
+
+    CubeSession(long id, int size, int slot, byte[] chunk, int stickerCount) {
+        this.id = id;
+        this.size = size;
+        this.slot = slot;
+        this.chunk = chunk;
+        this.stickerCount = stickerCount;
+        this.offset = StatePool.offsetOf(slot, stickerCount);
+    }
+
+    public synchronized int pendingMoveCount() {
+        return pendingCount;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public long appliedMoveCount() {
+        synchronized (stateLock) {
+            return appliedMoves;
+        }
+    }
+
+    /**
+     * Returns moves applied per second of draining time, 0 before the first move.
+     */
+    public double movesPerSecond() {
+        synchronized (stateLock) {
+            return busyNanos == 0 ? 0 : appliedMoves * 1e9 / busyNanos;
+        }
+    }
+
+    /**
+     * Returns estimated memory taken by the session: stickers, the object itself
+     * and the pending move queue, if any.
+     */
+    public synchronized long memoryBytes() {
+        return stickerCount + OVERHEAD_BYTES + (pending == null ? 0 : pending.length * 4L);
+    }
+}
@@ -0,0 +1,311 @@
+package ru.alexeymz.rubikscube.session;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Hosts many cubes in one process.
+ *
+ * States of sessions of the same size are kept in a shared {@link StatePool} and
+ * are changed through immutable {@link MoveTable} shared by all sessions of that size.
+ * Submitted moves are queued per session and applied by at most one task per session
+ * at a time on the given executor, so a session has a single writer and busy sessions
+ * do not block each other beyond executor capacity. When the executor rejects
+ * a follow-up task, the draining thread keeps applying the queued moves itself.
+ */
+public final class CubeSessionManager {
+    /** Default limit of moves waiting to be applied in one session. */
+    public static final int DEFAULT_MAX_PENDING_MOVES = 4096;
+    /** Moves applied by one task before it yields the executor to other sessions. */
+    static final int MOVES_PER_TASK = 1024;
+    private static final int INITIAL_QUEUE_LENGTH = 16;
+
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>();
+    private static final ThreadLocal<int[]> batches = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[MOVES_PER_TASK];
+        }
+    };
+
+    private final Executor executor;
+    private final int maxPendingMoves;
+    private final Map<Integer, StatePool> pools = new HashMap<Integer, StatePool>();
+    private final Map<Long, CubeSession> sessions = new HashMap<Long, CubeSession>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong appliedMoves = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public CubeSessionManager(Executor executor) {
+        this(executor, DEFAULT_MAX_PENDING_MOVES);
+    }
+
+    public CubeSessionManager(Executor executor, int maxPendingMoves) {
+        if (executor == null)
+            throw new IllegalArgumentException("executor must be not null.");
+        if (maxPendingMoves <= 0)
+            throw new IllegalArgumentException("maxPendingMoves must be > 0.");
+        this.executor = executor;
+        this.maxPendingMoves = maxPendingMoves;
+    }
+
+    /**
+     * Creates a session with a solved cube of the given size.
+     */
+    public CubeSession create(int size) {
+        MoveTable table = MoveTable.forSize(size);
+        StatePool pool;
+        synchronized (pools) {
+            pool = pools.get(size);
+            if (pool == null) {
+                pool = new StatePool(table.layout.stickerCount);
+                pools.put(size, pool);
+            }
+        }
+        int slot = pool.allocate();
+        CubeSession session = new CubeSession(
+            nextId.incrementAndGet(), size, slot, pool.chunkOf(slot), pool.stickerCount);
+        byte[] solved = new byte[pool.stickerCount];
+        table.layout.solved(solved);
+        synchronized (session.stateLock) {
+            System.arraycopy(solved, 0, session.chunk, session.offset, solved.length);
+        }
+        synchronized (sessions) {
+            sessions.put(session.id, session);
+        }
+        return session;
+    }
+
+    /**
+     * @return session with the id or <code>null</code> if there is no such open session
+     */
+    public CubeSession get(long id) {
+        synchronized (sessions) {
+            return sessions.get(id);
+        }
+    }
+
+    /**
+     * Closes the session dropping its pending moves and returns its state to the pool.
+     */
+    public void close(CubeSession session) {
+        synchronized (sessions) {
+            if (sessions.remove(session.id) == null) { return; }
+        }
+        synchronized (session) {
+            session.closed = true;
+            session.pending = null;
+            session.pendingHead = 0;
+            session.pendingCount = 0;
+        }
+        // wait for a running task to leave the state before reusing it
+        synchronized (session.stateLock) {
+            poolOf(session.size).free(session.slot);
+        }
+    }
+
+    public boolean submit(CubeSession session, int move) {
+        return submit(session, new int[] { move }, 0, 1);
+    }
+
+    /**
+     * Queues moves (see {@link MoveTable} for indices) to be applied to the session.
+     * @return <code>false</code> if the session is closed or its queue has no room for all moves,
+     *         in this case none of the moves is queued
+     */
+    public boolean submit(CubeSession session, int[] moves, int offset, int count) {
+        int moveCount = session.size * 6;
+        for (int i = offset; i < offset + count; i++) {
+            if (moves[i] < 0 || moves[i] >= moveCount)
+                throw new IllegalArgumentException("move must be in [0, " + moveCount + ").");
+        }
+        boolean schedule;
+        synchronized (session) {
+            if (session.closed || session.pendingCount + count > maxPendingMoves) { return false; }
+            int[] pending = session.pending;
+            int required = session.pendingCount + count;
+            if (pending == null || pending.length < required) {
+                int length = pending == null ? INITIAL_QUEUE_LENGTH : pending.length;
+                while (length < required) { length *= 2; }
+                int[] grown = new int[length];
+                if (pending != null) { copyOut(session, grown, session.pendingCount); }
+                session.pending = pending = grown;
+                session.pendingHead = 0;
+            }
+            int tail = (session.pendingHead + session.pendingCount) & (pending.length - 1);
+            int first = Math.min(count, pending.length - tail);
+            System.arraycopy(moves, offset, pending, tail, first);
+            System.arraycopy(moves, offset + first, pending, 0, count - first);
+            session.pendingCount = required;
+            schedule = !session.scheduled;
+            session.scheduled = true;
+        }
+        if (schedule) { schedule(session); }
+        return true;
+    }
+
+    /**
+     * Copies current stickers of the session, see {@link ru.alexeymz.rubikscube.state.StickerLayout}.
+     * Moves still pending are not applied.
+     */
+    public void read(CubeSession session, byte[] stickers) {
+        synchronized (session.stateLock) {
+            if (session.isClosed())
+                throw new IllegalStateException("Session " + session.id + " is closed.");
+            System.arraycopy(session.chunk, session.offset, stickers, 0, session.stickerCount);
+        }
+    }
+
+    /**
+     * Copies the first count queued moves of the session to target, in order.
+     */
+    private static void copyOut(CubeSession session, int[] target, int count) {
+        int[] pending = session.pending;
+        int first = Math.min(count, pending.length - session.pendingHead);
+        System.arraycopy(pending, session.pendingHead, target, 0, first);
+        System.arraycopy(pending, 0, target, first, count - first);
+    }
+
+    /**
+     * Starts a draining task; if the executor rejects it, the session is left
+     * unscheduled and the exception is passed to the submitter.
+     */
+    private void schedule(CubeSession session) {
+        try {
+            executor.execute(drainTask(session));
+        } catch (RejectedExecutionException e) {
+            synchronized (session) {
+                session.scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    private Runnable drainTask(final CubeSession session) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                drain(session);
+            }
+        };
+    }
+
+    private void drain(CubeSession session) {
+        while (drainBatch(session)) {
+            try {
+                // continue in a new task to let other sessions run
+                executor.execute(drainTask(session));
+                return;
+            } catch (RejectedExecutionException e) {
+                // no one else would apply the queued moves, keep draining here
+            }
+        }
+    }
+
+    /**
+     * Applies up to {@link #MOVES_PER_TASK} queued moves of the session.
+     * @return <code>true</code> if moves are still pending and the session stays scheduled
+     */
+    private boolean drainBatch(CubeSession session) {
+        int[] batch = batches.get();
+        int count;
+        synchronized (session) {
+            if (session.closed) { return false; }
+            count = Math.min(session.pendingCount, MOVES_PER_TASK);
+            copyOut(session, batch, count);
+            session.pendingHead = (session.pendingHead + count) & (session.pending.length - 1);
+            session.pendingCount -= count;
+        }
+
+        MoveTable table = MoveTable.forSize(session.size);
+        byte[] buffer = scratch.get();
+        if (buffer == null || buffer.length < session.stickerCount) {
+            buffer = new byte[session.stickerCount];
+            scratch.set(buffer);
+        }
+        synchronized (session.stateLock) {
+            if (session.isClosed()) { return false; }
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                table.applyInPlace(batch[i], session.chunk, session.offset, buffer);
+            }
+            long elapsed = System.nanoTime() - start;
+            session.appliedMoves += count;
+            session.busyNanos += elapsed;
+            busyNanos.addAndGet(elapsed);
+        }
+        appliedMoves.addAndGet(count);
+
+        synchronized (session) {
+            if (session.pendingCount == 0) {
+                session.scheduled = false;
+                // idle sessions keep no queue
+                session.pending = null;
+                session.pendingHead = 0;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private StatePool poolOf(int size) {
+        synchronized (pools) {
+            return pools.get(size);
+        }
+    }
+
+    public int sessionCount() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    public long appliedMoveCount() {
+        return appliedMoves.get();
+    }
+
+    /**
+     * Returns bytes reserved by state pools of all sizes.
+     */
+    public long pooledBytes() {
+        long bytes = 0;
+        synchronized (pools) {
+            for (StatePool pool : pools.values()) {
+                bytes += pool.capacityBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a human readable report of memory usage and throughput.
+     */
+    public String format() {
+        CubeSession[] open;
+        synchronized (sessions) {
+            open = sessions.values().toArray(new CubeSession[sessions.size()]);
+        }
+        long sessionBytes = 0;
+        for (CubeSession session : open) {
+            sessionBytes += session.memoryBytes();
+        }
+        long nanos = busyNanos.get();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US,
+            "%d sessions, %d bytes in sessions, %d bytes pooled, %d moves, %.0f moves/s%n",
+            open.length, sessionBytes, pooledBytes(), appliedMoves.get(),
+            nanos == 0 ? 0.0 : appliedMoves.get() * 1e9 / nanos));
+        for (CubeSession session : open) {
+            sb.append(String.format(Locale.US, "  #%d %dx%d: %d bytes, %d moves, %d pending, %.0f moves/s%n",
+                session.id, session.size, session.size, session.memoryBytes(),
+                session.appliedMoveCount(), session.pendingMoveCount(), session.movesPerSecond()));
+        }
+        return sb.toString();
+    }
+}
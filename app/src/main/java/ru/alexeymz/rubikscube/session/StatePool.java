@@ -0,0 +1,53 @@
+package ru.alexeymz.rubikscube.session;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sticker states of one cube size kept in shared chunks of
+ * {@link #SLOTS_PER_CHUNK} states, so a session state is an offset rather than an array.
+ * Freed slots are reused; chunks are never released.
+ */
+final class StatePool {
+    static final int SLOTS_PER_CHUNK = 256;
+
+    final int stickerCount;
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private int[] free = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    StatePool(int stickerCount) {
+        this.stickerCount = stickerCount;
+    }
+
+    synchronized int allocate() {
+        if (freeCount > 0) { return free[--freeCount]; }
+        if (slotCount == chunks.size() * SLOTS_PER_CHUNK) {
+            chunks.add(new byte[SLOTS_PER_CHUNK * stickerCount]);
+        }
+        return slotCount++;
+    }
+
+    synchronized void free(int slot) {
+        if (freeCount == free.length) {
+            int[] grown = new int[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = slot;
+    }
+
+    synchronized byte[] chunkOf(int slot) {
+        return chunks.get(slot / SLOTS_PER_CHUNK);
+    }
+
+    static int offsetOf(int slot, int stickerCount) {
+        return (slot % SLOTS_PER_CHUNK) * stickerCount;
+    }
+
+    synchronized long capacityBytes() {
+        return (long)chunks.size() * SLOTS_PER_CHUNK * stickerCount + free.length * 4L;
+    }
+}
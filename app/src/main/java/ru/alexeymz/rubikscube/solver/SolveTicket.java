@@ -0,0 +1,119 @@
+package ru.alexeymz.rubikscube.solver;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Pending result of a request to {@link SolverService}.
+ */
+public final class SolveTicket {
+    public enum Status {
+        PENDING,
+        /** Solution is available, empty for the solved state. */
+        SOLVED,
+        /** No solution within search limits. */
+        NOT_FOUND,
+        /** Deadline passed before a solution was found. */
+        TIMEOUT,
+        CANCELLED,
+        /** Worker queue was full. */
+        REJECTED,
+        /** Search failed with an error. */
+        FAILED,
+    }
+
+    public interface Listener {
+        /**
+         * Called once when the ticket is done, on a worker thread or the cancelling thread.
+         */
+        void onDone(SolveTicket ticket);
+    }
+
+    public final int size;
+    public final long deadlineNanos;
+
+    final SolverService service;
+    final int symmetry;
+    final long startNanos;
+    private final Listener listener;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // guarded by service jobs lock
+    SolverService.Job job;
+    Future<?> expiry;
+
+    private volatile Status status = Status.PENDING;
+    private volatile List<Rotation> solution;
+    private volatile long latencyNanos;
+
+    SolveTicket(SolverService service, int size, int symmetry,
+                long startNanos, long deadlineNanos, Listener listener) {
+        this.service = service;
+        this.size = size;
+        this.symmetry = symmetry;
+        this.startNanos = startNanos;
+        this.deadlineNanos = deadlineNanos;
+        this.listener = listener;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * @return solution of SOLVED ticket, <code>null</code> otherwise
+     */
+    public List<Rotation> solution() {
+        return solution;
+    }
+
+    public long latencyNanos() {
+        return latencyNanos;
+    }
+
+    public boolean isDone() {
+        return status != Status.PENDING;
+    }
+
+    /**
+     * Waits for the ticket to be done and returns its final status.
+     */
+    public Status await() throws InterruptedException {
+        done.await();
+        return status;
+    }
+
+    /**
+     * @return final status or PENDING if the ticket is not done within the timeout
+     */
+    public Status await(long timeout, TimeUnit unit) throws InterruptedException {
+        done.await(timeout, unit);
+        return status;
+    }
+
+    /**
+     * Cancels the request. The search is interrupted unless other requests wait for it.
+     */
+    public void cancel() {
+        service.detach(this, Status.CANCELLED);
+    }
+
+    /**
+     * Sets the final result; returns false if the ticket is already done.
+     */
+    boolean finish(Status status, List<Rotation> solution) {
+        synchronized (this) {
+            if (this.status != Status.PENDING) { return false; }
+            this.solution = solution;
+            this.latencyNanos = System.nanoTime() - startNanos;
+            this.status = status;
+        }
+        done.countDown();
+        if (listener != null) { listener.onDone(this); }
+        return true;
+    }
+}
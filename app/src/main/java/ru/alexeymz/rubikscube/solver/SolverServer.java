@@ -0,0 +1,275 @@
+package ru.alexeymz.rubikscube.solver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.notation.NotationFormatter;
+import ru.alexeymz.rubikscube.notation.NotationParser;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Line protocol for {@link SolverService} on a loopback socket.
+ *
+ * Requests, one per line:
+ * <pre>
+ * SOLVE &lt;id&gt; &lt;size&gt; &lt;timeoutMs&gt; &lt;scramble in NxN notation&gt;
+ * STATE &lt;id&gt; &lt;size&gt; &lt;timeoutMs&gt; &lt;sticker colors as digits 0..6&gt;
+ * CANCEL &lt;id&gt;
+ * STATS
+ * </pre>
+ * Responses go in completion order: <code>&lt;id&gt; SOLVED &lt;length&gt; &lt;moves&gt;</code>,
+ * <code>&lt;id&gt; NOT_FOUND|TIMEOUT|CANCELLED|REJECTED|FAILED</code>,
+ * <code>&lt;id&gt; ERROR &lt;message&gt;</code> or <code>STATS &lt;report&gt;</code>.
+ * Closing the connection cancels its pending requests.
+ * Every connection is served by its own thread, which writes all responses, and a reader
+ * thread; searches run on the service workers, which only queue responses.
+ */
+public final class SolverServer {
+    private static final String TAG = "SolverServer";
+    /** Marks the end of responses of a connection, compared by identity. */
+    private static final String END = new String("END");
+
+    private final SolverService service;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+
+    /**
+     * @param port port on the loopback interface, 0 for any free one
+     */
+    public SolverServer(SolverService service, int port) throws IOException {
+        this.service = service;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        this.acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, TAG);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            Thread connection = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    new Connection(socket).serve();
+                }
+            }, TAG + "-" + socket.getPort());
+            connection.setDaemon(true);
+            connection.start();
+        }
+    }
+
+    private final class Connection implements SolveTicket.Listener {
+        private final Socket socket;
+        private final Map<String, SolveTicket> pending = new HashMap<String, SolveTicket>();
+        private final Map<SolveTicket, String> ids = new HashMap<SolveTicket, String>();
+        /** Lines to write, ended by {@link #END}. */
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Reads requests on a separate thread and writes responses on this one.
+         */
+        void serve() {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readRequests();
+                }
+            }, Thread.currentThread().getName() + "-reader");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+                String line;
+                while ((line = responses.take()) != END) {
+                    writer.write(line);
+                    writer.write('\n');
+                    // one flush for responses queued together
+                    if (responses.isEmpty()) { writer.flush(); }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                // connection dropped
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeSocket();
+            }
+        }
+
+        private void readRequests() {
+            try {
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    handle(line.trim());
+                }
+            } catch (IOException e) {
+                // connection dropped
+            } finally {
+                List<SolveTicket> tickets;
+                synchronized (this) {
+                    tickets = new ArrayList<SolveTicket>(pending.values());
+                }
+                for (SolveTicket ticket : tickets) {
+                    ticket.cancel();
+                }
+                // responses of cancelled tickets are written before the socket is closed
+                responses.add(END);
+            }
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+
+        private void handle(String line) {
+            if (line.length() == 0) { return; }
+            String[] parts = line.split("\\s+", 5);
+            String command = parts[0];
+            if (command.equals("STATS")) {
+                write("STATS " + service.format());
+                return;
+            }
+            String id = parts.length > 1 ? parts[1] : "-";
+            if (command.equals("CANCEL") && parts.length == 2) {
+                SolveTicket ticket;
+                synchronized (this) {
+                    ticket = pending.get(id);
+                }
+                if (ticket != null) { ticket.cancel(); }
+                return;
+            }
+            if (!command.equals("SOLVE") && !command.equals("STATE") || parts.length < 4) {
+                write(id + " ERROR Unknown request.");
+                return;
+            }
+            synchronized (this) {
+                if (pending.containsKey(id)) {
+                    write(id + " ERROR Duplicate id.");
+                    return;
+                }
+            }
+            try {
+                int size = Integer.parseInt(parts[2]);
+                long timeoutMs = Long.parseLong(parts[3]);
+                String body = parts.length > 4 ? parts[4] : "";
+                // register before submitting, the listener may be called right away
+                SolveTicket ticket;
+                synchronized (this) {
+                    ticket = command.equals("SOLVE")
+                        ? service.submit(size, parseScramble(size, body), timeoutMs, this)
+                        : service.submit(size, parseStickers(size, body), timeoutMs, this);
+                    if (!ticket.isDone()) {
+                        pending.put(id, ticket);
+                        ids.put(ticket, id);
+                        return;
+                    }
+                }
+                write(id + " " + response(ticket));
+            } catch (IllegalArgumentException e) {
+                write(id + " ERROR " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onDone(SolveTicket ticket) {
+            String id;
+            synchronized (this) {
+                id = ids.remove(ticket);
+                if (id == null) { return; }
+                pending.remove(id);
+            }
+            write(id + " " + response(ticket));
+        }
+
+        /**
+         * Queues the line for the connection thread; called from any thread.
+         */
+        private void write(String line) {
+            responses.add(line);
+        }
+    }
+
+    private static String response(SolveTicket ticket) {
+        if (ticket.status() != SolveTicket.Status.SOLVED) { return ticket.status().name(); }
+        List<Rotation> solution = ticket.solution();
+        MoveTable table = MoveTable.forSize(ticket.size);
+        int[] moves = new int[solution.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = table.indexOf(solution.get(i));
+        }
+        return "SOLVED " + moves.length + " "
+            + new NotationFormatter(ticket.size).format(moves, 0, moves.length);
+    }
+
+    static List<Rotation> parseScramble(int size, String notation) {
+        final MoveTable table = MoveTable.forSize(size);
+        final List<Rotation> scramble = new ArrayList<Rotation>();
+        new NotationParser(size).parse(notation, new NotationParser.Listener() {
+            @Override
+            public void onMoves(int[] moves, int count) {
+                for (int i = 0; i < count; i++) {
+                    scramble.add(table.rotationOf(moves[i]));
+                }
+            }
+
+            @Override
+            public void onAlgorithmEnd(int line) {
+            }
+        });
+        return scramble;
+    }
+
+    static byte[] parseStickers(int size, String digits) {
+        if (digits.length() != 6 * size * size)
+            throw new IllegalArgumentException("State must have 6 * size^2 digits.");
+        byte[] stickers = new byte[digits.length()];
+        for (int i = 0; i < stickers.length; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '6')
+                throw new IllegalArgumentException("Invalid sticker color at " + i + ".");
+            stickers[i] = (byte)(c - '0');
+        }
+        return stickers;
+    }
+}
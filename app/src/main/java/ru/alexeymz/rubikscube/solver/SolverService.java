@@ -0,0 +1,411 @@
+package ru.alexeymz.rubikscube.solver;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.metrics.RollingHistogram;
+import ru.alexeymz.rubikscube.search.BidirectionalSearch;
+import ru.alexeymz.rubikscube.search.Cube2Table;
+import ru.alexeymz.rubikscube.state.CubieCodec;
+import ru.alexeymz.rubikscube.state.MoveTable;
+import ru.alexeymz.rubikscube.state.SolvedTracker;
+import ru.alexeymz.rubikscube.state.Symmetries;
+
+/**
+ * Solves cube states on a bounded worker pool.
+ *
+ * Requests are reduced to the canonical state under 48 symmetries, and requests for
+ * the same canonical state waiting at the same time share one search; the solution
+ * is mapped back to each request by conjugating its moves. 2x2 states are solved by
+ * {@link Cube2Table} when one is set, others by {@link BidirectionalSearch} toward
+ * any of 24 orientations of the solved cube.
+ *
+ * Every request has a deadline; a request whose deadline passes, or which is cancelled,
+ * is detached from its search, and the search is interrupted once no request waits for it.
+ * A request joins a running search only if the search deadline is not earlier than its own.
+ * 2x2 and 3x3 states are validated on submit; a search failing on a worker finishes
+ * its requests as {@link SolveTicket.Status#FAILED}.
+ *
+ * Each worker keeps its {@link BidirectionalSearch} between requests of the same size
+ * and closes it when the worker stops.
+ */
+public final class SolverService {
+    private static final String TAG = "SolverService";
+    private static final long LATENCY_WINDOW_MS = 60000;
+    private static final int LATENCY_SLICES = 12;
+
+    /** Codecs validating submitted states, indexed by size. */
+    private static final ThreadLocal<CubieCodec[]> CODECS = new ThreadLocal<CubieCodec[]>() {
+        @Override
+        protected CubieCodec[] initialValue() {
+            return new CubieCodec[] { null, null, new CubieCodec(2), new CubieCodec(3) };
+        }
+    };
+
+    private final int maxDepth;
+    private final long maxStates;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timer;
+    private volatile Cube2Table cube2Table;
+    private final ThreadLocal<BidirectionalSearch> workerSearch = new ThreadLocal<BidirectionalSearch>();
+
+    private final Map<StateKey, Job> jobs = new HashMap<StateKey, Job>();
+
+    private final RollingHistogram latencyMs = new RollingHistogram(LATENCY_WINDOW_MS, LATENCY_SLICES);
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * @param workerCount maximal number of concurrent searches
+     * @param queueLength maximal number of searches waiting for a worker
+     * @param maxDepth    maximal solution length of {@link BidirectionalSearch}
+     * @param maxStates   maximal number of visited states on each side of a search
+     */
+    public SolverService(int workerCount, int queueLength, int maxDepth, long maxStates) {
+        if (workerCount <= 0)
+            throw new IllegalArgumentException("workerCount must be > 0.");
+        if (queueLength <= 0)
+            throw new IllegalArgumentException("queueLength must be > 0.");
+        this.maxDepth = maxDepth;
+        this.maxStates = maxStates;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueLength), threadFactory(TAG, new Runnable() {
+                @Override
+                public void run() {
+                    closeWorkerSearch();
+                }
+            }));
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory(TAG + "-timer", null));
+    }
+
+    /**
+     * @param onExit called on the thread when it stops, or <code>null</code>
+     */
+    private static ThreadFactory threadFactory(final String name, final Runnable onExit) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            runnable.run();
+                        } finally {
+                            if (onExit != null) { onExit.run(); }
+                        }
+                    }
+                }, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public void setCube2Table(Cube2Table table) {
+        cube2Table = table;
+    }
+
+    /**
+     * Requests a solution of the scramble applied to the solved cube.
+     */
+    public SolveTicket submit(int size, List<Rotation> scramble, long timeoutMs,
+                              SolveTicket.Listener listener) {
+        MoveTable table = MoveTable.forSize(size);
+        byte[] stickers = new byte[table.layout.stickerCount];
+        byte[] scratch = new byte[stickers.length];
+        table.layout.solved(stickers);
+        for (Rotation rotation : scramble) {
+            table.applyInPlace(table.indexOf(rotation), stickers, scratch);
+        }
+        return submit(size, stickers, timeoutMs, listener);
+    }
+
+    /**
+     * Requests a solution of the state.
+     *
+     * @param stickers state in {@link ru.alexeymz.rubikscube.state.StickerLayout} order
+     * @param listener called when the ticket is done or <code>null</code>
+     * @throws IllegalArgumentException if the size is not supported or 2x2 or 3x3 state
+     *         is not reachable, see {@link CubieCodec#validate}
+     */
+    public SolveTicket submit(int size, byte[] stickers, long timeoutMs, SolveTicket.Listener listener) {
+        if (!BidirectionalSearch.isSupported(size))
+            throw new IllegalArgumentException("size is not supported.");
+        if (stickers.length != 6 * size * size)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        if (timeoutMs < 0)
+            throw new IllegalArgumentException("timeoutMs must be >= 0.");
+        if (size == 2 || size == 3) { CODECS.get()[size].validate(stickers); }
+        submitted.incrementAndGet();
+        long now = System.nanoTime();
+        byte[] canonical = new byte[stickers.length];
+        int symmetry = Symmetries.forSize(size).canonicalize(stickers, canonical);
+        SolveTicket ticket = new SolveTicket(this, size, symmetry, now,
+            now + TimeUnit.MILLISECONDS.toNanos(timeoutMs), listener);
+        StateKey key = new StateKey(size, canonical);
+
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(key);
+            if (job != null && (!job.started || job.deadlineNanos - ticket.deadlineNanos >= 0)) {
+                job.tickets.add(ticket);
+                job.deadlineNanos = Math.max(job.deadlineNanos, ticket.deadlineNanos);
+                ticket.job = job;
+                coalesced.incrementAndGet();
+                scheduleExpiry(ticket);
+                return ticket;
+            }
+            job = new Job(key, ticket.deadlineNanos);
+            job.tickets.add(ticket);
+            // a running job with earlier deadline keeps serving its tickets
+            Job previous = jobs.put(key, job);
+            try {
+                job.future = workers.submit(job);
+                ticket.job = job;
+                scheduleExpiry(ticket);
+                return ticket;
+            } catch (RejectedExecutionException e) {
+                if (previous != null) {
+                    jobs.put(key, previous);
+                } else {
+                    jobs.remove(key);
+                }
+            }
+        }
+        finish(ticket, SolveTicket.Status.REJECTED, null);
+        return ticket;
+    }
+
+    private void scheduleExpiry(final SolveTicket ticket) {
+        ticket.expiry = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                detach(ticket, SolveTicket.Status.TIMEOUT);
+            }
+        }, ticket.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Finishes the ticket with the status and stops its search if nobody else waits for it.
+     */
+    void detach(SolveTicket ticket, SolveTicket.Status status) {
+        synchronized (jobs) {
+            Job job = ticket.job;
+            if (job != null) {
+                job.tickets.remove(ticket);
+                ticket.job = null;
+                if (job.tickets.isEmpty()) {
+                    if (jobs.get(job.key) == job) { jobs.remove(job.key); }
+                    job.future.cancel(true);
+                    workers.purge();
+                }
+            }
+        }
+        finish(ticket, status, null);
+    }
+
+    private void finish(SolveTicket ticket, SolveTicket.Status status, List<Rotation> solution) {
+        Future<?> expiry = ticket.expiry;
+        if (expiry != null) { expiry.cancel(false); }
+        if (ticket.finish(status, solution)) {
+            latencyMs.record(TimeUnit.NANOSECONDS.toMillis(ticket.latencyNanos()));
+        }
+    }
+
+    /**
+     * Search for one canonical state shared by all tickets waiting for it.
+     */
+    final class Job implements Runnable {
+        final StateKey key;
+        final List<SolveTicket> tickets = new ArrayList<SolveTicket>();
+        // guarded by jobs
+        long deadlineNanos;
+        boolean started;
+        Future<?> future;
+
+        Job(StateKey key, long deadlineNanos) {
+            this.key = key;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void run() {
+            long deadline;
+            synchronized (jobs) {
+                if (tickets.isEmpty()) { return; }
+                started = true;
+                deadline = deadlineNanos;
+            }
+            searches.incrementAndGet();
+            List<Rotation> solution = null;
+            SolveTicket.Status status;
+            try {
+                solution = solve(key.size, key.stickers, deadline);
+                status = solution != null ? SolveTicket.Status.SOLVED
+                    : System.nanoTime() - deadline >= 0 ? SolveTicket.Status.TIMEOUT
+                    : SolveTicket.Status.NOT_FOUND;
+            } catch (InterruptedException e) {
+                // cancelled, tickets are already detached
+                return;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Search failed.", e);
+                status = SolveTicket.Status.FAILED;
+            }
+            SolveTicket[] waiting;
+            synchronized (jobs) {
+                if (jobs.get(key) == this) { jobs.remove(key); }
+                waiting = tickets.toArray(new SolveTicket[tickets.size()]);
+                for (SolveTicket ticket : waiting) {
+                    ticket.job = null;
+                }
+                tickets.clear();
+            }
+            for (SolveTicket ticket : waiting) {
+                finish(ticket, status, solution == null ? null : conjugate(ticket, solution));
+            }
+        }
+    }
+
+    private List<Rotation> solve(int size, byte[] stickers, long deadlineNanos) throws InterruptedException {
+        // any orientation of the solved cube is solved, the search may end at any of them
+        if (new SolvedTracker(size, stickers).isSolved()) { return Collections.emptyList(); }
+        Cube2Table cube2 = cube2Table;
+        if (size == 2 && cube2 != null) { return cube2.solve(stickers); }
+        BidirectionalSearch search = workerSearch.get();
+        if (search == null || search.size != size) {
+            closeWorkerSearch();
+            search = new BidirectionalSearch(size, maxDepth, maxStates);
+            workerSearch.set(search);
+        }
+        try {
+            return search.search(stickers, Symmetries.forSize(size).solvedOrientations(), deadlineNanos);
+        } catch (RuntimeException e) {
+            // do not reuse a search left in unknown state
+            closeWorkerSearch();
+            throw e;
+        }
+    }
+
+    private void closeWorkerSearch() {
+        BidirectionalSearch search = workerSearch.get();
+        if (search != null) {
+            workerSearch.remove();
+            search.close();
+        }
+    }
+
+    /**
+     * Maps solution of the canonical state to the state of the ticket.
+     */
+    private static List<Rotation> conjugate(SolveTicket ticket, List<Rotation> solution) {
+        if (ticket.symmetry == 0) { return solution; }
+        MoveTable table = MoveTable.forSize(ticket.size);
+        Symmetries symmetries = Symmetries.forSize(ticket.size);
+        List<Rotation> result = new ArrayList<Rotation>(solution.size());
+        for (Rotation rotation : solution) {
+            result.add(table.rotationOf(symmetries.conjugateMove(ticket.symmetry, table.indexOf(rotation))));
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of searches waiting for a worker.
+     */
+    public int queueDepth() {
+        return workers.getQueue().size();
+    }
+
+    public int activeCount() {
+        return workers.getActiveCount();
+    }
+
+    public long submittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * Returns number of requests served by a search started for another request.
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    public long searchCount() {
+        return searches.get();
+    }
+
+    /**
+     * Returns latency percentiles in milliseconds over the last minute, e.g. 0.99 for p99.
+     */
+    public long latencyMs(double fraction) {
+        return latencyMs.snapshot().percentile(fraction);
+    }
+
+    public String format() {
+        RollingHistogram.Snapshot latency = latencyMs.snapshot();
+        return String.format(Locale.US,
+            "queue=%d active=%d submitted=%d coalesced=%d searches=%d p50=%dms p95=%dms p99=%dms max=%dms",
+            queueDepth(), activeCount(), submitted.get(), coalesced.get(), searches.get(),
+            latency.percentile(0.5), latency.percentile(0.95), latency.percentile(0.99), latency.max);
+    }
+
+    /**
+     * Cancels all pending requests and stops workers.
+     */
+    public void shutdown() {
+        List<SolveTicket> pending = new ArrayList<SolveTicket>();
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                pending.addAll(job.tickets);
+            }
+        }
+        for (SolveTicket ticket : pending) {
+            detach(ticket, SolveTicket.Status.CANCELLED);
+        }
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    static final class StateKey {
+        final int size;
+        final byte[] stickers;
+        private final int hash;
+
+        StateKey(int size, byte[] stickers) {
+            this.size = size;
+            this.stickers = stickers;
+            this.hash = Arrays.hashCode(stickers) * 31 + size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof StateKey)) { return false; }
+            StateKey key = (StateKey)other;
+            return size == key.size && Arrays.equals(stickers, key.stickers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
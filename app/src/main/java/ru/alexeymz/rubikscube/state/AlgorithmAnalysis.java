@@ -0,0 +1,155 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Order and cycle structure of a {@link CompiledAlgorithm}, computed from its sticker
+ * and part permutations in O(m log m) time and O(m) memory for m moved stickers and
+ * parts, independently of the cube size and however large the order is.
+ *
+ * {@link #order} is the number of repetitions which return every sticker to its place.
+ * {@link #solvedOrder} is the number of repetitions which return the solved cube to
+ * a solved looking one: stickers of the same color are interchangeable, so it can be
+ * smaller, e.g. for algorithms swapping center pieces of big cubes.
+ */
+public final class AlgorithmAnalysis {
+    public final int size;
+    public final BigInteger order;
+    public final BigInteger solvedOrder;
+
+    private final int[] stickerCycles;
+    private final int[] partCycles;
+    private final int[] affectedParts;
+
+    private AlgorithmAnalysis(int size, BigInteger order, BigInteger solvedOrder,
+                              int[] stickerCycles, int[] partCycles, int[] affectedParts) {
+        this.size = size;
+        this.order = order;
+        this.solvedOrder = solvedOrder;
+        this.stickerCycles = stickerCycles;
+        this.partCycles = partCycles;
+        this.affectedParts = affectedParts;
+    }
+
+    public static AlgorithmAnalysis of(CompiledAlgorithm algorithm) {
+        final int perSide = algorithm.size * algorithm.size;
+
+        int[] targets = algorithm.stickerTargets;
+        int[] sources = algorithm.stickerSources;
+        int[] stickerCycles = new int[targets.length];
+        int cycleCount = 0;
+        BigInteger order = BigInteger.ONE;
+        BigInteger solvedOrder = BigInteger.ONE;
+        // reused buffer with colors of the current cycle
+        int[] colors = new int[targets.length];
+        boolean[] visited = new boolean[targets.length];
+        for (int k = 0; k < targets.length; k++) {
+            if (visited[k]) { continue; }
+            int length = 0;
+            for (int i = k; !visited[i]; i = indexOfMoved(targets, sources[i])) {
+                visited[i] = true;
+                // solved cube has color of the side on every sticker
+                colors[length++] = targets[i] / perSide;
+            }
+            stickerCycles[cycleCount++] = length;
+            order = lcm(order, length);
+            solvedOrder = lcm(solvedOrder, colorPeriod(colors, length));
+        }
+        stickerCycles = Arrays.copyOf(stickerCycles, cycleCount);
+        Arrays.sort(stickerCycles);
+
+        targets = algorithm.partTargets;
+        sources = algorithm.partSources;
+        // parts turned in place are cycles of length 1
+        int[] partCycles = new int[targets.length];
+        cycleCount = 0;
+        visited = new boolean[targets.length];
+        for (int k = 0; k < targets.length; k++) {
+            if (visited[k]) { continue; }
+            int length = 0;
+            for (int i = k; !visited[i]; i = indexOfMoved(targets, sources[i])) {
+                visited[i] = true;
+                length++;
+            }
+            partCycles[cycleCount++] = length;
+        }
+        partCycles = Arrays.copyOf(partCycles, cycleCount);
+        Arrays.sort(partCycles);
+
+        return new AlgorithmAnalysis(algorithm.size, order, solvedOrder,
+            stickerCycles, partCycles, algorithm.partTargets.clone());
+    }
+
+    /**
+     * Returns whether the algorithm does not change the cube.
+     */
+    public boolean isIdentity() {
+        return stickerCycles.length == 0;
+    }
+
+    /**
+     * Returns lengths of sticker cycles in ascending order.
+     */
+    public int[] stickerCycles() {
+        return stickerCycles.clone();
+    }
+
+    /**
+     * Returns lengths of part cycles in ascending order; parts turned in place
+     * are cycles of length 1.
+     */
+    public int[] partCycles() {
+        return partCycles.clone();
+    }
+
+    /**
+     * Returns {@link ru.alexeymz.rubikscube.core.CubeCoords#toIndex} of moved or turned parts
+     * in ascending order.
+     */
+    public int[] affectedParts() {
+        return affectedParts.clone();
+    }
+
+    public int affectedPartCount() {
+        return affectedParts.length;
+    }
+
+    @Override
+    public String toString() {
+        return "order " + order + " (looks solved after " + solvedOrder + "), "
+            + affectedParts.length + " parts affected, part cycles " + Arrays.toString(partCycles)
+            + ", sticker cycles " + Arrays.toString(stickerCycles);
+    }
+
+    /**
+     * Returns position of the element in ascending moved targets; a moved element
+     * comes from another moved one, so it is always found.
+     */
+    private static int indexOfMoved(int[] targets, int element) {
+        int index = Arrays.binarySearch(targets, element);
+        if (index < 0)
+            throw new IllegalStateException("Element " + element + " is not moved.");
+        return index;
+    }
+
+    /**
+     * Returns the smallest period of the cyclic color sequence, a divisor of its length.
+     */
+    private static int colorPeriod(int[] colors, int length) {
+        for (int period = 1; period < length; period++) {
+            if (length % period != 0) { continue; }
+            boolean periodic = true;
+            for (int i = period; i < length && periodic; i++) {
+                periodic = colors[i] == colors[i - period];
+            }
+            if (periodic) { return period; }
+        }
+        return length;
+    }
+
+    private static BigInteger lcm(BigInteger value, int length) {
+        BigInteger other = BigInteger.valueOf(length);
+        return value.divide(value.gcd(other)).multiply(other);
+    }
+}
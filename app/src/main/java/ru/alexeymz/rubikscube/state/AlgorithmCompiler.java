@@ -0,0 +1,183 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Compiles move sequences into {@link CompiledAlgorithm}s and keeps them in an LRU cache.
+ *
+ * Sequences are normalized before lookup: consecutive moves of the same axis commute,
+ * so they are merged per layer and sorted, and moves cancelling each other are removed.
+ * E.g. <code>R L R'</code>, <code>L</code> and <code>U U' L</code> share one cache entry.
+ * The cache is bounded by the total number of moved stickers of cached algorithms.
+ * Thread-safe.
+ */
+public final class AlgorithmCompiler {
+    private static final class Key {
+        final int size;
+        final int[] moves;
+        final int hash;
+
+        Key(int size, int[] moves) {
+            this.size = size;
+            this.moves = moves;
+            this.hash = 31 * size + Arrays.hashCode(moves);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Key)) { return false; }
+            Key other = (Key)o;
+            return size == other.size && Arrays.equals(moves, other.moves);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final int maxCachedStickers;
+    private final LinkedHashMap<Key, CompiledAlgorithm> cache =
+        new LinkedHashMap<Key, CompiledAlgorithm>(16, 0.75f, true);
+    private long cachedStickers;
+    private long hits, misses;
+
+    /**
+     * @param maxCachedStickers limit of total moved sticker count of cached algorithms
+     */
+    public AlgorithmCompiler(int maxCachedStickers) {
+        if (maxCachedStickers <= 0)
+            throw new IllegalArgumentException("maxCachedStickers must be > 0.");
+        this.maxCachedStickers = maxCachedStickers;
+    }
+
+    public CompiledAlgorithm compile(int size, List<Rotation> rotations) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        MoveTable table = MoveTable.forSize(size);
+        int[] moves = new int[rotations.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = table.indexOf(rotations.get(i));
+        }
+        return compile(size, moves, 0, moves.length);
+    }
+
+    /**
+     * @param moves move indices of {@link MoveTable}
+     */
+    public CompiledAlgorithm compile(int size, int[] moves, int offset, int count) {
+        Key key = new Key(size, normalize(size, moves, offset, count));
+        synchronized (this) {
+            CompiledAlgorithm compiled = cache.get(key);
+            if (compiled != null) {
+                hits++;
+                return compiled;
+            }
+            misses++;
+        }
+
+        // compiled outside of the lock, so a long compilation does not block lookups
+        CompiledAlgorithm compiled = CompiledAlgorithm.compile(
+            StickerLayout.forSize(size), key.moves, 0, key.moves.length);
+        synchronized (this) {
+            CompiledAlgorithm previous = cache.put(key, compiled);
+            if (previous != null) { cachedStickers -= previous.movedStickerCount(); }
+            cachedStickers += compiled.movedStickerCount();
+            Iterator<CompiledAlgorithm> eldest = cache.values().iterator();
+            while (cachedStickers > maxCachedStickers && cache.size() > 1) {
+                cachedStickers -= eldest.next().movedStickerCount();
+                eldest.remove();
+            }
+        }
+        return compiled;
+    }
+
+    public synchronized int cachedCount() {
+        return cache.size();
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        cachedStickers = 0;
+    }
+
+    /**
+     * Returns canonical form of the sequence: every run of same-axis moves is replaced
+     * by its net turns in ascending layer order, clockwise moves for half turns.
+     */
+    public static int[] normalize(int size, int[] moves, int offset, int count) {
+        MoveTable table = MoveTable.forSize(size);
+        final int moveCount = table.moveCount;
+        int[] result = new int[count];
+        int resultCount = 0;
+        // starts of emitted runs in result, to reopen a run when the next one cancels out
+        int[] runStarts = new int[count + 1];
+        int runCount = 0;
+        int[] turns = new int[size];
+        int runAxis = -1;
+
+        for (int i = offset; i < offset + count; i++) {
+            int move = moves[i];
+            if (move < 0 || move >= moveCount)
+                throw new IllegalArgumentException("move must be in [0..size * 6)");
+            int axis = table.axisOf(move).ordinal();
+            if (axis != runAxis) {
+                int start = resultCount;
+                resultCount = emitRun(table, turns, runAxis, result, resultCount);
+                if (resultCount > start) { runStarts[runCount++] = start; }
+                runAxis = axis;
+                if (runCount > 0 && table.axisOf(result[runStarts[runCount - 1]]).ordinal() == axis) {
+                    runCount--;
+                    for (int k = runStarts[runCount]; k < resultCount; k++) {
+                        addTurn(table, turns, result[k]);
+                    }
+                    resultCount = runStarts[runCount];
+                }
+            }
+            addTurn(table, turns, move);
+        }
+        resultCount = emitRun(table, turns, runAxis, result, resultCount);
+        return Arrays.copyOf(result, resultCount);
+    }
+
+    private static void addTurn(MoveTable table, int[] turns, int move) {
+        int layer = table.layerOf(move);
+        turns[layer] = (turns[layer] + (MoveTable.isClockwise(move) ? 1 : 3)) & 3;
+    }
+
+    private static int emitRun(MoveTable table, int[] turns, int axis, int[] result, int resultCount) {
+        if (axis < 0) { return resultCount; }
+        for (int layer = 0; layer < table.size; layer++) {
+            int clockwise = table.indexOf(Axis.fromOrdinal(axis), layer, true);
+            switch (turns[layer]) {
+                case 1:
+                    result[resultCount++] = clockwise;
+                    break;
+                case 2:
+                    result[resultCount++] = clockwise;
+                    result[resultCount++] = clockwise;
+                    break;
+                case 3:
+                    result[resultCount++] = MoveTable.inverseOf(clockwise);
+                    break;
+            }
+            turns[layer] = 0;
+        }
+        return resultCount;
+    }
+}
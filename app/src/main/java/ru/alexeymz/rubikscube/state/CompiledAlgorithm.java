@@ -0,0 +1,176 @@
+package ru.alexeymz.rubikscube.state;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.IntSixSided;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+/**
+ * Move sequence collapsed into a single transform of a cube of fixed size:
+ * sticker permutation for {@link StickerLayout} states and part permutation
+ * with orientation map for models. Only moved stickers and parts are stored,
+ * so applying an algorithm costs about as much as applying one move.
+ *
+ * Created by {@link AlgorithmCompiler}; instances are immutable and shared between threads.
+ */
+public final class CompiledAlgorithm {
+    public final int size;
+    /** Number of moves of the normalized sequence. */
+    public final int moveCount;
+
+    final int[] stickerTargets;
+    final int[] stickerSources;
+    final int[] partTargets;
+    final int[] partSources;
+    /** New side <code>s</code> of i-th moved part is old side <code>partSides[i * 6 + s]</code>. */
+    private final byte[] partSides;
+
+    private CompiledAlgorithm(int size, int moveCount, int[] stickerTargets, int[] stickerSources,
+                              int[] partTargets, int[] partSources, byte[] partSides) {
+        this.size = size;
+        this.moveCount = moveCount;
+        this.stickerTargets = stickerTargets;
+        this.stickerSources = stickerSources;
+        this.partTargets = partTargets;
+        this.partSources = partSources;
+        this.partSides = partSides;
+    }
+
+    public int movedStickerCount() {
+        return stickerTargets.length;
+    }
+
+    public int movedPartCount() {
+        return partTargets.length;
+    }
+
+    /**
+     * Applies the algorithm in place using <code>scratch</code> of at least sticker count length.
+     */
+    public void apply(byte[] stickers, byte[] scratch) {
+        for (int i = 0; i < stickerSources.length; i++) {
+            scratch[i] = stickers[stickerSources[i]];
+        }
+        for (int i = 0; i < stickerTargets.length; i++) {
+            stickers[stickerTargets[i]] = scratch[i];
+        }
+    }
+
+    /**
+     * Moves and reorients surface parts of the model the same way
+     * {@link DataCube#rotateLayer} does; inner cells are not moved.
+     * @param scratch array of at least {@link #movedPartCount()} length
+     */
+    public <T extends IntSixSided> void apply(DataCube<T> cube, Object[] scratch) {
+        if (cube.size != size)
+            throw new IllegalArgumentException("cube.size must be equal to algorithm size.");
+        for (int i = 0; i < partSources.length; i++) {
+            int source = partSources[i];
+            scratch[i] = cube.get(source % size, source / size % size, source / size / size);
+        }
+        for (int i = 0; i < partTargets.length; i++) {
+            int target = partTargets[i];
+            @SuppressWarnings("unchecked")
+            T part = (T)scratch[i];
+            scratch[i] = null;
+            cube.set(target % size, target / size % size, target / size / size, part);
+            if (part != null) { reorient(part, i * 6); }
+        }
+    }
+
+    private void reorient(IntSixSided part, int offset) {
+        int v0 = part.getInt(0), v1 = part.getInt(1), v2 = part.getInt(2);
+        int v3 = part.getInt(3), v4 = part.getInt(4), v5 = part.getInt(5);
+        for (int side = 0; side < 6; side++) {
+            int value;
+            switch (partSides[offset + side]) {
+                case 0: value = v0; break;
+                case 1: value = v1; break;
+                case 2: value = v2; break;
+                case 3: value = v3; break;
+                case 4: value = v4; break;
+                default: value = v5; break;
+            }
+            part.setInt(side, value);
+        }
+    }
+
+    /**
+     * Traces moves on a cube with uniquely labelled part sides.
+     * @param moves move indices of {@link MoveTable}
+     */
+    static CompiledAlgorithm compile(StickerLayout layout, int[] moves, int offset, int count) {
+        final int size = layout.size;
+        final int sideCount = CubeSide.values().length;
+        DataCube<SmallCube> cube = new DataCube<SmallCube>(size);
+        for (int i = 0; i < layout.stickerCount; i++) {
+            int part = layout.partIndexOf(i);
+            if (cube.get(layout.leftOf(i), layout.topOf(i), layout.depthOf(i)) != null) { continue; }
+            SmallCube labelled = new SmallCube();
+            for (int side = 0; side < sideCount; side++) {
+                labelled.setInt(side, part * sideCount + side);
+            }
+            cube.set(layout.leftOf(i), layout.topOf(i), layout.depthOf(i), labelled);
+        }
+
+        MoveTable table = MoveTable.forSize(size);
+        for (int i = offset; i < offset + count; i++) {
+            int move = moves[i];
+            cube.rotateLayer(table.axisOf(move), table.layerOf(move), MoveTable.isClockwise(move));
+        }
+
+        int[] stickerSources = new int[layout.stickerCount];
+        int movedStickers = 0;
+        for (int i = 0; i < layout.stickerCount; i++) {
+            int label = cube.get(layout.leftOf(i), layout.topOf(i), layout.depthOf(i))
+                .getInt(layout.sideOf(i).ordinal());
+            int part = label / sideCount;
+            stickerSources[i] = layout.indexOf(part % size, part / size % size, part / size / size,
+                CubeSide.fromOrdinal(label % sideCount));
+            if (stickerSources[i] != i) { movedStickers++; }
+        }
+
+        int partCount = size * size * size;
+        int movedParts = 0;
+        for (int index = 0; index < partCount; index++) {
+            if (isMoved(cube, index, sideCount)) { movedParts++; }
+        }
+
+        int[] stickerTargets = new int[movedStickers];
+        int[] movedStickerSources = new int[movedStickers];
+        for (int i = 0, k = 0; i < layout.stickerCount; i++) {
+            if (stickerSources[i] != i) {
+                stickerTargets[k] = i;
+                movedStickerSources[k] = stickerSources[i];
+                k++;
+            }
+        }
+
+        int[] partTargets = new int[movedParts];
+        int[] partSources = new int[movedParts];
+        byte[] partSides = new byte[movedParts * sideCount];
+        for (int index = 0, k = 0; index < partCount; index++) {
+            if (!isMoved(cube, index, sideCount)) { continue; }
+            SmallCube part = cube.get(index % size, index / size % size, index / size / size);
+            partTargets[k] = index;
+            partSources[k] = part.getInt(0) / sideCount;
+            for (int side = 0; side < sideCount; side++) {
+                partSides[k * sideCount + side] = (byte)(part.getInt(side) % sideCount);
+            }
+            k++;
+        }
+
+        return new CompiledAlgorithm(size, count, stickerTargets, movedStickerSources,
+            partTargets, partSources, partSides);
+    }
+
+    private static boolean isMoved(DataCube<SmallCube> cube, int index, int sideCount) {
+        int size = cube.size;
+        SmallCube part = cube.get(index % size, index / size % size, index / size / size);
+        if (part == null) { return false; }
+        for (int side = 0; side < sideCount; side++) {
+            if (part.getInt(side) != index * sideCount + side) { return true; }
+        }
+        return false;
+    }
+}
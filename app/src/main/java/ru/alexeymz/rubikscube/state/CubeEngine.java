@@ -0,0 +1,29 @@
+package ru.alexeymz.rubikscube.state;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Cube state with layer rotations of the same semantics as {@link ru.alexeymz.rubikscube.core.DataCube},
+ * without the model. Use {@link CubeEngines#create} to get the fastest one for a size.
+ * Implementations are not thread-safe.
+ */
+public interface CubeEngine {
+    int size();
+
+    /**
+     * @param move move index of {@link MoveTable}
+     */
+    void apply(int move);
+
+    void apply(Rotation rotation);
+
+    /**
+     * Copies state to stickers in {@link StickerLayout} order.
+     */
+    void read(byte[] stickers);
+
+    /**
+     * Replaces state with stickers in {@link StickerLayout} order.
+     */
+    void write(byte[] stickers);
+}
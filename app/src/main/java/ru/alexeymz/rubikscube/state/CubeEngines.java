@@ -0,0 +1,22 @@
+package ru.alexeymz.rubikscube.state;
+
+/**
+ * Chooses {@link CubeEngine} implementation by cube size.
+ */
+public final class CubeEngines {
+    private CubeEngines() {}
+
+    /**
+     * Returns engine with solved cube: {@link PackedCubeEngine} for 2x2 and 3x3,
+     * which is faster per move there, see {@code CubeEngineBenchmark},
+     * {@link StickerEngine} for other sizes.
+     */
+    public static CubeEngine create(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        if (size == 2 || size == 3) {
+            return new PackedCubeEngine(size);
+        }
+        return new StickerEngine(size);
+    }
+}
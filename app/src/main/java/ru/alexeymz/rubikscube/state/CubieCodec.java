@@ -0,0 +1,389 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.Arrays;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+
+/**
+ * Permutation and orientation coordinates of corners (2x2 and 3x3) and edges (3x3).
+ *
+ * Corner position index is <code>(depth ? 4 : 0) + (top ? 2 : 0) + (left ? 1 : 0)</code>
+ * where a flag is set for the far layer. Corner stickers are ordered starting from
+ * UP/DOWN side and going around the corner in the same rotational direction for
+ * every corner, so orientation is the slot of UP/DOWN colored sticker and quarter
+ * turns keep the sum of corner orientations divisible by 3.
+ * Edge orientation is 0 when the primary sticker of the piece (UP/DOWN, otherwise
+ * FRONT/BACK) is on the primary side of its position.
+ *
+ * States are normalized by a whole cube rotation before decomposition: 3x3 centers
+ * are put to their home sides, 2x2 corner at position 7 is put home with orientation 0.
+ *
+ * Instances use internal scratch buffers and must not be shared between threads.
+ */
+public final class CubieCodec {
+    public static final int CORNER_COUNT = 8;
+    public static final int EDGE_COUNT = 12;
+
+    /** 7! * 3^6 - 2x2 states modulo whole cube rotation. */
+    public static final int CUBE2_STATE_COUNT = 5040 * 729;
+
+    private static final int[] FACTORIALS = {
+        1, 1, 2, 6, 24, 120, 720, 5040, 40320, 362880, 3628800, 39916800, 479001600,
+    };
+
+    private static final int UP_COLOR = CubeSide.UP.ordinal() + 1;
+    private static final int DOWN_COLOR = CubeSide.DOWN.ordinal() + 1;
+
+    public final int size;
+    public final int edgeCount;
+
+    private final StickerLayout layout;
+    private final Symmetries symmetries;
+
+    // piece layout, also used by PackedCubeEngine
+    final int[][] cornerStickers = new int[CORNER_COUNT][3];
+    final byte[][] cornerColors = new byte[CORNER_COUNT][3];
+    final int[][] edgeStickers;
+    final byte[][] edgeColors;
+    final byte[] cornerByMask = new byte[1 << 7];
+    final byte[] edgeByMask = new byte[1 << 7];
+    private final int[] centerStickers;
+
+    /** Rotation that normalizes the state, keyed by location of reference piece. */
+    private final byte[] normalizingRotations;
+
+    private final byte[] normalized;
+    private final byte[] solved;
+
+    public final byte[] cornerPermutation = new byte[CORNER_COUNT];
+    public final byte[] cornerOrientation = new byte[CORNER_COUNT];
+    public final byte[] edgePermutation;
+    public final byte[] edgeOrientation;
+
+    public CubieCodec(int size) {
+        if (size != 2 && size != 3)
+            throw new IllegalArgumentException("size must be 2 or 3.");
+
+        this.size = size;
+        this.edgeCount = size == 3 ? EDGE_COUNT : 0;
+        this.layout = StickerLayout.forSize(size);
+        this.symmetries = Symmetries.forSize(size);
+        this.normalized = new byte[layout.stickerCount];
+        this.solved = new byte[layout.stickerCount];
+        this.edgeStickers = new int[edgeCount][2];
+        this.edgeColors = new byte[edgeCount][2];
+        this.edgePermutation = new byte[edgeCount];
+        this.edgeOrientation = new byte[edgeCount];
+        layout.solved(solved);
+
+        final int max = size - 1;
+        for (int c = 0; c < CORNER_COUNT; c++) {
+            int left = (c & 1) == 0 ? 0 : max;
+            int top = (c & 2) == 0 ? 0 : max;
+            int depth = (c & 4) == 0 ? 0 : max;
+            CubeSide x = left == 0 ? CubeSide.LEFT : CubeSide.RIGHT;
+            CubeSide y = top == 0 ? CubeSide.UP : CubeSide.DOWN;
+            CubeSide z = depth == 0 ? CubeSide.FRONT : CubeSide.BACK;
+            // sign of determinant of side normals (y, x, z) chooses direction around the corner
+            int sx = left == 0 ? -1 : 1, sy = top == 0 ? -1 : 1, sz = depth == 0 ? -1 : 1;
+            boolean direct = -sy * sx * sz > 0;
+            CubeSide[] sides = direct
+                ? new CubeSide[] { y, x, z }
+                : new CubeSide[] { y, z, x };
+            for (int k = 0; k < 3; k++) {
+                cornerStickers[c][k] = layout.indexOf(left, top, depth, sides[k]);
+                cornerColors[c][k] = solved[cornerStickers[c][k]];
+            }
+        }
+
+        int edge = 0;
+        for (int left = 0; left < size && edgeCount > 0; left++) {
+            for (int top = 0; top < size; top++) {
+                for (int depth = 0; depth < size; depth++) {
+                    int middles = (left == 1 ? 1 : 0) + (top == 1 ? 1 : 0) + (depth == 1 ? 1 : 0);
+                    if (middles != 1) { continue; }
+                    CubeSide x = left == 0 ? CubeSide.LEFT : CubeSide.RIGHT;
+                    CubeSide y = top == 0 ? CubeSide.UP : CubeSide.DOWN;
+                    CubeSide z = depth == 0 ? CubeSide.FRONT : CubeSide.BACK;
+                    CubeSide primary = top != 1 ? y : z;
+                    CubeSide secondary = left != 1 ? x : (top != 1 ? z : y);
+                    edgeStickers[edge][0] = layout.indexOf(left, top, depth, primary);
+                    edgeStickers[edge][1] = layout.indexOf(left, top, depth, secondary);
+                    edgeColors[edge][0] = solved[edgeStickers[edge][0]];
+                    edgeColors[edge][1] = solved[edgeStickers[edge][1]];
+                    edge++;
+                }
+            }
+        }
+
+        Arrays.fill(cornerByMask, (byte)-1);
+        Arrays.fill(edgeByMask, (byte)-1);
+        for (int c = 0; c < CORNER_COUNT; c++) {
+            cornerByMask[colorMask(cornerColors[c])] = (byte)c;
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            edgeByMask[colorMask(edgeColors[e])] = (byte)e;
+        }
+
+        byte[] rotated = new byte[layout.stickerCount];
+        if (size == 3) {
+            centerStickers = new int[] {
+                layout.indexOf(CubeSide.UP, 1, 1),
+                layout.indexOf(CubeSide.FRONT, 1, 1),
+            };
+            normalizingRotations = new byte[8 * 8];
+            for (int r = 0; r < Symmetries.ROTATION_COUNT; r++) {
+                symmetries.transform(r, solved, rotated);
+                int key = rotated[centerStickers[0]] * 8 + rotated[centerStickers[1]];
+                normalizingRotations[key] = (byte)symmetries.inverse(r);
+            }
+        } else {
+            centerStickers = null;
+            normalizingRotations = new byte[CORNER_COUNT * 3];
+            for (int r = 0; r < Symmetries.ROTATION_COUNT; r++) {
+                symmetries.transform(r, solved, rotated);
+                int key = locateCorner(rotated, CORNER_COUNT - 1);
+                normalizingRotations[key] = (byte)symmetries.inverse(r);
+            }
+        }
+    }
+
+    private static int colorMask(byte[] colors) {
+        int mask = 0;
+        for (byte color : colors) {
+            mask |= 1 << color;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns <code>position * 3 + orientation</code> of the corner piece.
+     */
+    private int locateCorner(byte[] stickers, int corner) {
+        int mask = colorMask(cornerColors[corner]);
+        for (int p = 0; p < CORNER_COUNT; p++) {
+            int[] slots = cornerStickers[p];
+            int pieceMask = (1 << stickers[slots[0]]) | (1 << stickers[slots[1]]) | (1 << stickers[slots[2]]);
+            if (pieceMask == mask) {
+                for (int k = 0; k < 3; k++) {
+                    if (stickers[slots[k]] == cornerColors[corner][0]) { return p * 3 + k; }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Corner " + corner + " not found.");
+    }
+
+    /**
+     * Returns whole cube rotation which brings the state to normalized orientation.
+     */
+    public int normalizingRotation(byte[] stickers) {
+        if (size == 3) {
+            int key = stickers[centerStickers[0]] * 8 + stickers[centerStickers[1]];
+            if (stickers[centerStickers[0]] == 0 || stickers[centerStickers[1]] == 0)
+                throw new IllegalArgumentException("Center stickers must be colored.");
+            return normalizingRotations[key];
+        } else {
+            return normalizingRotations[locateCorner(stickers, CORNER_COUNT - 1)];
+        }
+    }
+
+    /**
+     * Fills permutation and orientation fields from normalized sticker state.
+     */
+    public void decompose(byte[] stickers) {
+        symmetries.transform(normalizingRotation(stickers), stickers, normalized);
+
+        for (int p = 0; p < CORNER_COUNT; p++) {
+            int[] slots = cornerStickers[p];
+            byte a = normalized[slots[0]], b = normalized[slots[1]], c = normalized[slots[2]];
+            int corner = cornerByMask[(1 << a) | (1 << b) | (1 << c)];
+            if (corner < 0)
+                throw new IllegalArgumentException("Invalid corner at position " + p + ".");
+            int orientation = a == UP_COLOR || a == DOWN_COLOR ? 0
+                : b == UP_COLOR || b == DOWN_COLOR ? 1 : 2;
+            byte[] colors = cornerColors[corner];
+            if (normalized[slots[(orientation + 1) % 3]] != colors[1])
+                throw new IllegalArgumentException("Mirrored corner at position " + p + ".");
+            cornerPermutation[p] = (byte)corner;
+            cornerOrientation[p] = (byte)orientation;
+        }
+
+        for (int p = 0; p < edgeCount; p++) {
+            int[] slots = edgeStickers[p];
+            byte a = normalized[slots[0]], b = normalized[slots[1]];
+            int edge = edgeByMask[(1 << a) | (1 << b)];
+            if (edge < 0)
+                throw new IllegalArgumentException("Invalid edge at position " + p + ".");
+            edgePermutation[p] = (byte)edge;
+            edgeOrientation[p] = (byte)(a == edgeColors[edge][0] ? 0 : 1);
+        }
+    }
+
+    /**
+     * Decomposes the state and checks that it is reachable by layer rotations: every piece
+     * occurs once, corner twists and edge flips add up, and 3x3 corner and edge permutations
+     * have the same parity.
+     * @throws IllegalArgumentException if the state is not reachable
+     */
+    public void validate(byte[] stickers) {
+        decompose(stickers);
+        if (size == 3) {
+            for (CubeSide side : CubeSide.values()) {
+                int center = layout.indexOf(side, 1, 1);
+                if (normalized[center] != solved[center])
+                    throw new IllegalArgumentException("Invalid center at side " + side + ".");
+            }
+        }
+        if (twistRemainder(cornerOrientation, CORNER_COUNT, 3) != 0)
+            throw new IllegalArgumentException("Corner twists do not add up.");
+        boolean cornerParity = parityOf(cornerPermutation, CORNER_COUNT, "corner");
+        if (edgeCount > 0) {
+            if (twistRemainder(edgeOrientation, edgeCount, 2) != 0)
+                throw new IllegalArgumentException("Edge flips do not add up.");
+            if (parityOf(edgePermutation, edgeCount, "edge") != cornerParity)
+                throw new IllegalArgumentException("Corner and edge permutation parities differ.");
+        }
+    }
+
+    /**
+     * Returns whether the permutation is odd.
+     * @throws IllegalArgumentException if a piece occurs twice
+     */
+    private static boolean parityOf(byte[] permutation, int count, String piece) {
+        int seen = 0;
+        boolean odd = false;
+        for (int i = 0; i < count; i++) {
+            if ((seen & (1 << permutation[i])) != 0)
+                throw new IllegalArgumentException("Duplicate " + piece + " " + permutation[i] + ".");
+            seen |= 1 << permutation[i];
+            for (int j = i + 1; j < count; j++) {
+                if (permutation[j] < permutation[i]) { odd = !odd; }
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Writes normalized sticker state from permutation and orientation fields.
+     */
+    public void compose(byte[] stickers) {
+        System.arraycopy(solved, 0, stickers, 0, layout.stickerCount);
+        for (int p = 0; p < CORNER_COUNT; p++) {
+            int[] slots = cornerStickers[p];
+            byte[] colors = cornerColors[cornerPermutation[p]];
+            int orientation = cornerOrientation[p];
+            for (int k = 0; k < 3; k++) {
+                stickers[slots[(orientation + k) % 3]] = colors[k];
+            }
+        }
+        for (int p = 0; p < edgeCount; p++) {
+            int[] slots = edgeStickers[p];
+            byte[] colors = edgeColors[edgePermutation[p]];
+            int orientation = edgeOrientation[p];
+            stickers[slots[orientation]] = colors[0];
+            stickers[slots[1 - orientation]] = colors[1];
+        }
+    }
+
+    /**
+     * Perfect hash of normalized 2x2 state in <code>[0..CUBE2_STATE_COUNT)</code>.
+     */
+    public int cube2Index(byte[] stickers) {
+        if (size != 2)
+            throw new IllegalStateException("cube2Index is defined only for 2x2 cube.");
+        decompose(stickers);
+        // corner 7 is at home position after normalization
+        return rankPermutation(cornerPermutation, CORNER_COUNT - 1) * 729
+            + rankOrientation(cornerOrientation, CORNER_COUNT - 2, 3);
+    }
+
+    public void fromCube2Index(int index, byte[] stickers) {
+        if (size != 2)
+            throw new IllegalStateException("fromCube2Index is defined only for 2x2 cube.");
+        if (index < 0 || index >= CUBE2_STATE_COUNT)
+            throw new IllegalArgumentException("index must be in [0..CUBE2_STATE_COUNT).");
+        unrankPermutation(index / 729, cornerPermutation, CORNER_COUNT - 1);
+        cornerPermutation[CORNER_COUNT - 1] = CORNER_COUNT - 1;
+        unrankOrientation(index % 729, cornerOrientation, CORNER_COUNT - 2, 3);
+        cornerOrientation[CORNER_COUNT - 2] = (byte)twistRemainder(cornerOrientation, CORNER_COUNT - 2, 3);
+        cornerOrientation[CORNER_COUNT - 1] = 0;
+        compose(stickers);
+    }
+
+    public long cornerCoordinate() {
+        return (long)rankPermutation(cornerPermutation, CORNER_COUNT) * 2187
+            + rankOrientation(cornerOrientation, CORNER_COUNT - 1, 3);
+    }
+
+    public long edgeCoordinate() {
+        return (long)rankPermutation(edgePermutation, EDGE_COUNT) * 2048
+            + rankOrientation(edgeOrientation, EDGE_COUNT - 1, 2);
+    }
+
+    public void setCornerCoordinate(long coordinate) {
+        unrankPermutation((int)(coordinate / 2187), cornerPermutation, CORNER_COUNT);
+        unrankOrientation((int)(coordinate % 2187), cornerOrientation, CORNER_COUNT - 1, 3);
+        cornerOrientation[CORNER_COUNT - 1] = (byte)twistRemainder(cornerOrientation, CORNER_COUNT - 1, 3);
+    }
+
+    public void setEdgeCoordinate(long coordinate) {
+        unrankPermutation((int)(coordinate / 2048), edgePermutation, EDGE_COUNT);
+        unrankOrientation((int)(coordinate % 2048), edgeOrientation, EDGE_COUNT - 1, 2);
+        edgeOrientation[EDGE_COUNT - 1] = (byte)twistRemainder(edgeOrientation, EDGE_COUNT - 1, 2);
+    }
+
+    private static int twistRemainder(byte[] orientation, int count, int base) {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += orientation[i];
+        }
+        return (base - sum % base) % base;
+    }
+
+    /**
+     * Lehmer code of permutation of <code>[0..count)</code>.
+     */
+    static int rankPermutation(byte[] permutation, int count) {
+        int rank = 0;
+        for (int i = 0; i < count; i++) {
+            int smaller = 0;
+            for (int j = i + 1; j < count; j++) {
+                if (permutation[j] < permutation[i]) { smaller++; }
+            }
+            rank += smaller * FACTORIALS[count - 1 - i];
+        }
+        return rank;
+    }
+
+    static void unrankPermutation(int rank, byte[] permutation, int count) {
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            int factorial = FACTORIALS[count - 1 - i];
+            int smaller = rank / factorial;
+            rank %= factorial;
+            for (int value = 0; value < count; value++) {
+                if ((used & (1 << value)) != 0) { continue; }
+                if (smaller-- == 0) {
+                    permutation[i] = (byte)value;
+                    used |= 1 << value;
+                    break;
+                }
+            }
+        }
+    }
+
+    static int rankOrientation(byte[] orientation, int count, int base) {
+        int rank = 0;
+        for (int i = 0; i < count; i++) {
+            rank = rank * base + orientation[i];
+        }
+        return rank;
+    }
+
+    static void unrankOrientation(int rank, byte[] orientation, int count, int base) {
+        for (int i = count - 1; i >= 0; i--) {
+            orientation[i] = (byte)(rank % base);
+            rank /= base;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+/**
+ * Sticker permutations of every layer rotation for a cube of fixed size,
+ * traced from {@link DataCube#rotateLayer} so they have exactly the same semantics.
+ *
+ * Move index is <code>(axis * size + layer) * 2 + (clockwise ? 1 : 0)</code>.
+ * Only moved stickers are stored. Instances are immutable and shared between threads.
+ */
+public final class MoveTable {
+    private static final Map<Integer, MoveTable> cache = new HashMap<Integer, MoveTable>();
+
+    public final int size;
+    public final int moveCount;
+    public final StickerLayout layout;
+
+    final int[][] targets;
+    final int[][] sources;
+
+    private MoveTable(StickerLayout layout) {
+        this.size = layout.size;
+        this.layout = layout;
+        this.moveCount = Axis.ordinalCount() * size * 2;
+        this.targets = new int[moveCount][];
+        this.sources = new int[moveCount][];
+
+        for (int move = 0; move < moveCount; move++) {
+            final Axis axis = axisOf(move);
+            final int layer = layerOf(move);
+            final boolean clockwise = isClockwise(move);
+            int[] traced = layout.traceTransform(new StickerLayout.CubeTransform() {
+                @Override
+                public void apply(DataCube<SmallCube> cube) {
+                    cube.rotateLayer(axis, layer, clockwise);
+                }
+            });
+
+            int moved = 0;
+            for (int i = 0; i < traced.length; i++) {
+                if (traced[i] != i) { moved++; }
+            }
+            targets[move] = new int[moved];
+            sources[move] = new int[moved];
+            int k = 0;
+            for (int i = 0; i < traced.length; i++) {
+                if (traced[i] != i) {
+                    targets[move][k] = i;
+                    sources[move][k] = traced[i];
+                    k++;
+                }
+            }
+        }
+    }
+
+    public static MoveTable forSize(int size) {
+        StickerLayout layout = StickerLayout.forSize(size);
+        synchronized (cache) {
+            MoveTable table = cache.get(size);
+            if (table == null) {
+                table = new MoveTable(layout);
+                cache.put(size, table);
+            }
+            return table;
+        }
+    }
+
+    public int indexOf(Axis axis, int layer, boolean clockwise) {
+        if (layer < 0 || layer >= size)
+            throw new IllegalArgumentException("layer must be in [0..size)");
+        return indexOf(size, axis, layer, clockwise);
+    }
+
+    public int indexOf(Rotation rotation) {
+        return indexOf(rotation.axis, rotation.layer, rotation.clockwise);
+    }
+
+    /**
+     * Returns move index of a cube of the size without building its table.
+     */
+    public static int indexOf(int size, Axis axis, int layer, boolean clockwise) {
+        return (axis.ordinal() * size + layer) * 2 + (clockwise ? 1 : 0);
+    }
+
+    public static Axis axisOf(int size, int move) {
+        return Axis.fromOrdinal(move / 2 / size);
+    }
+
+    public static int layerOf(int size, int move) {
+        return (move / 2) % size;
+    }
+
+    public static Rotation rotationOf(int size, int move) {
+        return Rotation.of(axisOf(size, move), layerOf(size, move), isClockwise(move));
+    }
+
+    public Axis axisOf(int move) {
+        return axisOf(size, move);
+    }
+
+    public int layerOf(int move) {
+        return layerOf(size, move);
+    }
+
+    public static boolean isClockwise(int move) {
+        return (move & 1) != 0;
+    }
+
+    public static int inverseOf(int move) {
+        return move ^ 1;
+    }
+
+    public Rotation rotationOf(int move) {
+        return rotationOf(size, move);
+    }
+
+    /**
+     * Writes the result of the move applied to <code>stickers</code> into <code>target</code>.
+     */
+    public void apply(int move, byte[] stickers, byte[] target) {
+        System.arraycopy(stickers, 0, target, 0, layout.stickerCount);
+        int[] moveTargets = targets[move];
+        int[] moveSources = sources[move];
+        for (int i = 0; i < moveTargets.length; i++) {
+            target[moveTargets[i]] = stickers[moveSources[i]];
+        }
+    }
+
+    /**
+     * Applies the move in place using <code>scratch</code> of at least sticker count length.
+     */
+    public void applyInPlace(int move, byte[] stickers, byte[] scratch) {
+        applyInPlace(move, stickers, 0, scratch);
+    }
+
+    /**
+     * Same as {@link #applyInPlace(int, byte[], byte[])} for stickers starting at the offset.
+     */
+    public void applyInPlace(int move, byte[] stickers, int offset, byte[] scratch) {
+        int[] moveTargets = targets[move];
+        int[] moveSources = sources[move];
+        for (int i = 0; i < moveSources.length; i++) {
+            scratch[i] = stickers[offset + moveSources[i]];
+        }
+        for (int i = 0; i < moveTargets.length; i++) {
+            stickers[offset + moveTargets[i]] = scratch[i];
+        }
+    }
+}
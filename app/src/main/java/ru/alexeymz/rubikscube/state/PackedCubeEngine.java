@@ -0,0 +1,363 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.Arrays;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * 2x2 and 3x3 engine keeping pieces packed into a few primitives.
+ *
+ * Each of 8 corner positions takes 6 bits of a <code>long</code> (piece number and
+ * orientation as in {@link CubieCodec}), each of 12 edge positions takes 5 bits of another
+ * one (piece number and flip). Every move is a 4-cycle of corners or edges, so it copies
+ * unaffected positions with masks and moves the others with eight unrolled shifts without
+ * branches. Corner twists are then added to all orientations at once, with a spare bit
+ * per field for the carry before taking them modulo 3, and edge flips are XORed in.
+ * 3x3 centers, moved by middle layer rotations, are one of 24 layouts changed by lookup.
+ * Move tables are derived from {@link MoveTable}, so rotations have the same semantics
+ * as {@link ru.alexeymz.rubikscube.core.DataCube#rotateLayer}.
+ */
+public final class PackedCubeEngine implements CubeEngine {
+    private static final int CORNER_BITS = 6;
+    private static final int CORNER_MASK = (1 << CORNER_BITS) - 1;
+    /** Lowest bit of every corner field. */
+    private static final long CORNER_ONES = 0x041041041041L;
+    private static final int EDGE_BITS = 5;
+    private static final int EDGE_MASK = (1 << EDGE_BITS) - 1;
+    private static final int CENTER_BITS = 3;
+    private static final int CENTER_MASK = (1 << CENTER_BITS) - 1;
+    private static final int SIDE_COUNT = 6;
+    /** Number of positions of a kind changed by a move. */
+    private static final int CYCLE = 4;
+    /** Corners and edges. */
+    private static final int KINDS = 2;
+    /** Step moving the always zero top bit of a <code>long</code> to bit 0, a no-op. */
+    private static final int NO_STEP = 63;
+
+    private static final Tables[] cache = new Tables[4];
+
+    /**
+     * Per-move changes of positions, shared by engines of the same size.
+     */
+    private static final class Tables {
+        final MoveTable moves;
+        final CubieCodec codec;
+        final int[] centerStickers;
+        final byte[] solved;
+
+        /*
+         * Every move of 2x2 and 3x3 cycles exactly four corners or edges or none.
+         * A move is two keep masks (corners, edges) at <code>move * 2</code>, eight steps
+         * <code>source shift | target shift << 8</code> at <code>move * 8</code>, four per kind,
+         * and corner twists and edge flips to add to the moved fields. Unused steps shift
+         * from the always zero top bit, so every move runs the same straight-line code.
+         */
+        final long[] keeps;
+        final int[] steps;
+        final long[] twists;
+        final long[] flips;
+        final boolean hasEdges;
+        final int moveCount;
+        /*
+         * Centers only move as the whole cube turns, so their layout is one of 24,
+         * stored as an index into packed layouts and moved by lookup.
+         */
+        final int[] centerLayouts;
+        final byte[] centerMoves;
+
+        Tables(int size) {
+            moves = MoveTable.forSize(size);
+            codec = new CubieCodec(size);
+            StickerLayout layout = moves.layout;
+            solved = new byte[layout.stickerCount];
+            layout.solved(solved);
+            int edgeCount = codec.edgeCount;
+            centerStickers = new int[size == 3 ? SIDE_COUNT : 0];
+            for (int side = 0; side < centerStickers.length; side++) {
+                centerStickers[side] = layout.indexOf(CubeSide.fromOrdinal(side), 1, 1);
+            }
+
+            // position and slot of every corner, edge or center sticker
+            int[] pieceOf = new int[layout.stickerCount];
+            int[] slotOf = new int[layout.stickerCount];
+            for (int p = 0; p < CubieCodec.CORNER_COUNT; p++) {
+                for (int k = 0; k < 3; k++) {
+                    pieceOf[codec.cornerStickers[p][k]] = p;
+                    slotOf[codec.cornerStickers[p][k]] = k;
+                }
+            }
+            for (int p = 0; p < edgeCount; p++) {
+                for (int k = 0; k < 2; k++) {
+                    pieceOf[codec.edgeStickers[p][k]] = p;
+                    slotOf[codec.edgeStickers[p][k]] = k;
+                }
+            }
+            for (int p = 0; p < centerStickers.length; p++) {
+                pieceOf[centerStickers[p]] = p;
+            }
+
+            moveCount = moves.moveCount;
+            hasEdges = codec.edgeCount > 0;
+            keeps = new long[moveCount * KINDS];
+            steps = new int[moveCount * KINDS * CYCLE];
+            twists = new long[moveCount];
+            flips = new long[moveCount];
+            Arrays.fill(steps, NO_STEP);
+            int[][] centerChanges = new int[moveCount][];
+            int[] sources = new int[layout.stickerCount];
+            int[] buffer = new int[CubieCodec.EDGE_COUNT];
+            for (int move = 0; move < moves.moveCount; move++) {
+                for (int i = 0; i < sources.length; i++) {
+                    sources[i] = i;
+                }
+                for (int i = 0; i < moves.targets[move].length; i++) {
+                    sources[moves.targets[move][i]] = moves.sources[move][i];
+                }
+
+                int count = collect(codec.cornerStickers, 3, sources, pieceOf, slotOf, buffer);
+                checkCycle(count);
+                keeps[move * KINDS] = keepMask(buffer, count, CORNER_BITS, CORNER_MASK);
+                for (int k = 0; k < count; k++) {
+                    steps[move * KINDS * CYCLE + k] = step(buffer[k], CORNER_BITS);
+                    twists[move] |= (long)(buffer[k] & 15) << ((buffer[k] >>> 8) * CORNER_BITS);
+                }
+
+                count = collect(codec.edgeStickers, 2, sources, pieceOf, slotOf, buffer);
+                checkCycle(count);
+                keeps[move * KINDS + 1] = keepMask(buffer, count, EDGE_BITS, EDGE_MASK);
+                for (int k = 0; k < count; k++) {
+                    steps[move * KINDS * CYCLE + CYCLE + k] = step(buffer[k], EDGE_BITS);
+                    flips[move] |= (long)(buffer[k] & 1) << ((buffer[k] >>> 8) * EDGE_BITS);
+                }
+
+                count = 0;
+                for (int p = 0; p < centerStickers.length; p++) {
+                    int source = pieceOf[sources[centerStickers[p]]];
+                    if (source != p) { buffer[count++] = p << 8 | source << 4; }
+                }
+                checkCycle(count);
+                centerChanges[move] = Arrays.copyOf(buffer, count);
+            }
+
+            // enumerate center layouts reachable from the solved one
+            int[] found = new int[Symmetries.ROTATION_COUNT];
+            byte[] transitions = new byte[Symmetries.ROTATION_COUNT * moveCount];
+            int foundCount = 1;
+            for (int p = 0; p < centerStickers.length; p++) {
+                found[0] |= p << (p * CENTER_BITS);
+            }
+            for (int index = 0; index < foundCount; index++) {
+                for (int move = 0; move < moveCount; move++) {
+                    int next = found[index];
+                    for (int change : centerChanges[move]) {
+                        int target = (change >>> 8) * CENTER_BITS;
+                        int source = ((change >>> 4) & 15) * CENTER_BITS;
+                        next = next & ~(CENTER_MASK << target)
+                            | (found[index] >>> source & CENTER_MASK) << target;
+                    }
+                    int nextIndex = indexOf(found, foundCount, next);
+                    if (nextIndex < 0) {
+                        nextIndex = foundCount;
+                        found[foundCount++] = next;
+                    }
+                    transitions[index * moveCount + move] = (byte)nextIndex;
+                }
+            }
+            centerLayouts = Arrays.copyOf(found, foundCount);
+            centerMoves = Arrays.copyOf(transitions, foundCount * moveCount);
+        }
+
+        static int indexOf(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) { return i; }
+            }
+            return -1;
+        }
+
+        /**
+         * Packs a change <code>target << 8 | source << 4</code> of {@link #collect} as a step.
+         */
+        private static int step(int change, int bits) {
+            return ((change >>> 4) & 15) * bits | (change >>> 8) * bits << 8;
+        }
+
+        /**
+         * Finds positions changed by the move given by sticker sources.
+         */
+        private static int collect(int[][] slots, int slotCount, int[] sources,
+                                   int[] pieceOf, int[] slotOf, int[] result) {
+            int count = 0;
+            for (int p = 0; p < slots.length; p++) {
+                int source = pieceOf[sources[slots[p][0]]];
+                // sticker at source slot j moves to target slot j + twist
+                int twist = (slotCount - slotOf[sources[slots[p][0]]]) % slotCount;
+                for (int k = 1; k < slotCount; k++) {
+                    int from = sources[slots[p][k]];
+                    if (pieceOf[from] != source || (slotOf[from] + twist) % slotCount != k)
+                        throw new IllegalStateException("Move does not keep piece layout.");
+                }
+                if (source != p || twist != 0) {
+                    result[count++] = p << 8 | source << 4 | twist;
+                }
+            }
+            return count;
+        }
+
+        private static void checkCycle(int count) {
+            if (count != 0 && count != CYCLE)
+                throw new IllegalStateException("Move changes " + count + " positions of a kind.");
+        }
+
+        private static long keepMask(int[] moved, int count, int bits, long fieldMask) {
+            long keep = -1L;
+            for (int k = 0; k < count; k++) {
+                keep &= ~(fieldMask << ((moved[k] >>> 8) * bits));
+            }
+            return keep;
+        }
+    }
+
+    private final int size;
+    private final Tables tables;
+
+    private long corners;
+    private long edges;
+    /** Index of {@link Tables#centerLayouts}. */
+    private int centers;
+
+    public PackedCubeEngine(int size) {
+        if (size != 2 && size != 3)
+            throw new IllegalArgumentException("size must be 2 or 3.");
+        this.size = size;
+        synchronized (cache) {
+            if (cache[size] == null) { cache[size] = new Tables(size); }
+            this.tables = cache[size];
+        }
+        write(tables.solved);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void apply(int move) {
+        final Tables t = tables;
+        final long[] keeps = t.keeps;
+        final int[] steps = t.steps;
+        final int k = move * KINDS;
+        final int at = k * CYCLE;
+        // shifts use only the low bits of a step: the source shift, or the target one after >>> 8
+        final long c = corners;
+        final int c0 = steps[at], c1 = steps[at + 1], c2 = steps[at + 2], c3 = steps[at + 3];
+        final long twisted = ((c & keeps[k])
+            | (c >>> c0 & CORNER_MASK) << (c0 >>> 8)
+            | (c >>> c1 & CORNER_MASK) << (c1 >>> 8)
+            | (c >>> c2 & CORNER_MASK) << (c2 >>> 8)
+            | (c >>> c3 & CORNER_MASK) << (c3 >>> 8)) + t.twists[move];
+        // orientations are now in [0..4], take 3 from those of at least 3
+        final long wrapped = (twisted + CORNER_ONES) >>> 2 & CORNER_ONES;
+        corners = twisted - wrapped - (wrapped << 1);
+        if (!t.hasEdges) { return; }
+        final long e = edges;
+        final int e0 = steps[at + 4], e1 = steps[at + 5], e2 = steps[at + 6], e3 = steps[at + 7];
+        edges = ((e & keeps[k + 1])
+            | (e >>> e0 & EDGE_MASK) << (e0 >>> 8)
+            | (e >>> e1 & EDGE_MASK) << (e1 >>> 8)
+            | (e >>> e2 & EDGE_MASK) << (e2 >>> 8)
+            | (e >>> e3 & EDGE_MASK) << (e3 >>> 8)) ^ t.flips[move];
+        centers = t.centerMoves[centers * t.moveCount + move];
+    }
+
+    @Override
+    public void apply(Rotation rotation) {
+        apply(tables.moves.indexOf(rotation));
+    }
+
+    @Override
+    public void read(byte[] stickers) {
+        CubieCodec codec = tables.codec;
+        for (int p = 0; p < CubieCodec.CORNER_COUNT; p++) {
+            int field = (int)(corners >>> (p * CORNER_BITS)) & CORNER_MASK;
+            int[] slots = codec.cornerStickers[p];
+            byte[] colors = codec.cornerColors[field >>> 3];
+            int orientation = field & 7;
+            for (int k = 0; k < 3; k++) {
+                stickers[slots[(orientation + k) % 3]] = colors[k];
+            }
+        }
+        for (int p = 0; p < codec.edgeCount; p++) {
+            int field = (int)(edges >>> (p * EDGE_BITS)) & EDGE_MASK;
+            int[] slots = codec.edgeStickers[p];
+            byte[] colors = codec.edgeColors[field >>> 1];
+            int orientation = field & 1;
+            stickers[slots[orientation]] = colors[0];
+            stickers[slots[1 - orientation]] = colors[1];
+        }
+        int centerLayout = tables.centerLayouts[centers];
+        for (int p = 0; p < tables.centerStickers.length; p++) {
+            int piece = (centerLayout >>> (p * CENTER_BITS)) & CENTER_MASK;
+            stickers[tables.centerStickers[p]] = tables.solved[tables.centerStickers[piece]];
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if stickers do not form valid pieces
+     */
+    @Override
+    public void write(byte[] stickers) {
+        if (stickers.length != tables.solved.length)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        CubieCodec codec = tables.codec;
+        long newCorners = 0;
+        for (int p = 0; p < CubieCodec.CORNER_COUNT; p++) {
+            int[] slots = codec.cornerStickers[p];
+            int corner = codec.cornerByMask[colorMask(stickers, slots, 3)];
+            if (corner < 0)
+                throw new IllegalArgumentException("Invalid corner at position " + p + ".");
+            byte[] colors = codec.cornerColors[corner];
+            int orientation = 0;
+            while (stickers[slots[orientation]] != colors[0]) { orientation++; }
+            if (stickers[slots[(orientation + 1) % 3]] != colors[1])
+                throw new IllegalArgumentException("Mirrored corner at position " + p + ".");
+            newCorners |= (long)(corner << 3 | orientation) << (p * CORNER_BITS);
+        }
+        long newEdges = 0;
+        for (int p = 0; p < codec.edgeCount; p++) {
+            int[] slots = codec.edgeStickers[p];
+            int edge = codec.edgeByMask[colorMask(stickers, slots, 2)];
+            if (edge < 0)
+                throw new IllegalArgumentException("Invalid edge at position " + p + ".");
+            int orientation = stickers[slots[0]] == codec.edgeColors[edge][0] ? 0 : 1;
+            newEdges |= (long)(edge << 1 | orientation) << (p * EDGE_BITS);
+        }
+        int newCenters = 0;
+        for (int p = 0; p < tables.centerStickers.length; p++) {
+            int piece = 0;
+            while (piece < SIDE_COUNT && tables.solved[tables.centerStickers[piece]] != stickers[tables.centerStickers[p]]) {
+                piece++;
+            }
+            if (piece == SIDE_COUNT)
+                throw new IllegalArgumentException("Invalid center at side " + p + ".");
+            newCenters |= piece << (p * CENTER_BITS);
+        }
+        int centerIndex = Tables.indexOf(tables.centerLayouts, tables.centerLayouts.length, newCenters);
+        if (centerIndex < 0)
+            throw new IllegalArgumentException("Centers are not a rotation of solved ones.");
+        corners = newCorners;
+        edges = newEdges;
+        centers = centerIndex;
+    }
+
+    private static int colorMask(byte[] stickers, int[] slots, int count) {
+        int mask = 0;
+        for (int k = 0; k < count; k++) {
+            int color = stickers[slots[k]];
+            if (color < 0 || color > SIDE_COUNT) { return 0; }
+            mask |= 1 << color;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.alexeymz.rubikscube.state;
+
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Sticker {@link CubeEngine} with per-side color counters, updated on every move
+ * from {@link MoveTable} by touching only the moved stickers, so solved state and
+ * progress are known in O(1) without scanning the model.
+ *
+ * A side matches when all its stickers have one color; progress of a side is the
+ * number of stickers of its center color (for even sizes, of its most common color).
+ * Not thread-safe.
+ */
+public final class SolvedTracker implements CubeEngine {
+    private static final int SIDE_COUNT = 6;
+    /** Sticker values are 0 for no color and 1..6 for face colors. */
+    private static final int COLOR_COUNT = 7;
+
+    public final int size;
+
+    private final MoveTable moves;
+    private final int perSide;
+    private final byte[] stickers;
+    private final byte[] scratch;
+    private final int[] counts = new int[SIDE_COUNT * COLOR_COUNT];
+    private final boolean[] uniform = new boolean[SIDE_COUNT];
+    private int uniformSides;
+
+    /**
+     * @param stickers initial state in {@link StickerLayout} order
+     */
+    public SolvedTracker(int size, byte[] stickers) {
+        this.size = size;
+        this.moves = MoveTable.forSize(size);
+        this.perSide = size * size;
+        this.stickers = new byte[moves.layout.stickerCount];
+        this.scratch = new byte[moves.layout.stickerCount];
+        reset(stickers);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void read(byte[] stickers) {
+        if (stickers.length != this.stickers.length)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        System.arraycopy(this.stickers, 0, stickers, 0, stickers.length);
+    }
+
+    @Override
+    public void write(byte[] stickers) {
+        reset(stickers);
+    }
+
+    /**
+     * Replaces tracked state with a full scan of the stickers.
+     */
+    public void reset(byte[] stickers) {
+        if (stickers.length != this.stickers.length)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        System.arraycopy(stickers, 0, this.stickers, 0, stickers.length);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        for (int i = 0; i < stickers.length; i++) {
+            int color = colorOf(stickers[i]);
+            if (color >= COLOR_COUNT)
+                throw new IllegalArgumentException("sticker colors must be in [0..6].");
+            counts[(i / perSide) * COLOR_COUNT + color]++;
+        }
+        uniformSides = 0;
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            uniform[side] = isUniform(side);
+            if (uniform[side]) { uniformSides++; }
+        }
+    }
+
+    /**
+     * Applies the move to tracked state.
+     * @param move move index of {@link MoveTable}
+     */
+    @Override
+    public void apply(int move) {
+        int[] targets = moves.targets[move];
+        int[] sources = moves.sources[move];
+        for (int i = 0; i < sources.length; i++) {
+            scratch[i] = stickers[sources[i]];
+        }
+        int touchedSides = 0;
+        for (int i = 0; i < targets.length; i++) {
+            int target = targets[i];
+            int side = target / perSide;
+            counts[side * COLOR_COUNT + colorOf(stickers[target])]--;
+            counts[side * COLOR_COUNT + colorOf(scratch[i])]++;
+            stickers[target] = scratch[i];
+            touchedSides |= 1 << side;
+        }
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            if ((touchedSides & (1 << side)) == 0) { continue; }
+            boolean nowUniform = isUniform(side);
+            if (nowUniform != uniform[side]) {
+                uniform[side] = nowUniform;
+                uniformSides += nowUniform ? 1 : -1;
+            }
+        }
+    }
+
+    @Override
+    public void apply(Rotation rotation) {
+        apply(moves.indexOf(rotation));
+    }
+
+    public boolean isSolved() {
+        return uniformSides == SIDE_COUNT;
+    }
+
+    /**
+     * Returns whether all stickers of the side have the same color.
+     */
+    public boolean isSolved(CubeSide side) {
+        return uniform[side.ordinal()];
+    }
+
+    /**
+     * Returns number of side stickers of the side center color.
+     */
+    public int matchingCount(CubeSide side) {
+        int base = side.ordinal() * COLOR_COUNT;
+        if (size % 2 == 1) {
+            int center = side.ordinal() * perSide + (size / 2) * size + size / 2;
+            return counts[base + colorOf(stickers[center])];
+        }
+        int max = 0;
+        for (int color = 0; color < COLOR_COUNT; color++) {
+            max = Math.max(max, counts[base + color]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns fraction of stickers of their side color, 1 for solved cube.
+     */
+    public float progress() {
+        int matching = 0;
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            matching += matchingCount(CubeSide.fromOrdinal(side));
+        }
+        return (float)matching / stickers.length;
+    }
+
+    private boolean isUniform(int side) {
+        int color = colorOf(stickers[side * perSide]);
+        return counts[side * COLOR_COUNT + color] == perSide;
+    }
+
+    private static int colorOf(byte sticker) {
+        return sticker & 0xFF;
+    }
+}
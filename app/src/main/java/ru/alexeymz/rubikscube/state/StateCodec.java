@@ -0,0 +1,135 @@
+package ru.alexeymz.rubikscube.state;
+
+/**
+ * Compact fixed-width byte encoding of cube state.
+ *
+ * <ul>
+ *   <li>2x2: 3 bytes, {@link CubieCodec#cube2Index} of the state modulo whole cube rotation;</li>
+ *   <li>3x3: 9 bytes, corner (27 bits) and edge (40 bits) permutation/orientation
+ *       ranks, modulo whole cube rotation;</li>
+ *   <li>other sizes: 3 bits per sticker in {@link StickerLayout} order.</li>
+ * </ul>
+ *
+ * Instances must not be shared between threads.
+ */
+public final class StateCodec {
+    public final int size;
+    public final int encodedLength;
+
+    private final StickerLayout layout;
+    private final CubieCodec cubies;
+    private final Symmetries symmetries;
+    private final byte[] canonical;
+
+    public StateCodec(int size) {
+        this.size = size;
+        this.layout = StickerLayout.forSize(size);
+        this.cubies = size == 2 || size == 3 ? new CubieCodec(size) : null;
+        this.symmetries = Symmetries.forSize(size);
+        this.canonical = new byte[layout.stickerCount];
+        switch (size) {
+            case 2: encodedLength = 3; break;
+            case 3: encodedLength = 9; break;
+            default: encodedLength = packedLength(layout.stickerCount); break;
+        }
+    }
+
+    public StickerLayout layout() {
+        return layout;
+    }
+
+    public void encode(byte[] stickers, byte[] target, int offset) {
+        switch (size) {
+            case 2:
+                writeBytes(cubies.cube2Index(stickers), target, offset, 3);
+                break;
+            case 3:
+                cubies.decompose(stickers);
+                writeBytes(cubies.cornerCoordinate(), target, offset, 4);
+                writeBytes(cubies.edgeCoordinate(), target, offset + 4, 5);
+                break;
+            default:
+                pack(stickers, layout.stickerCount, target, offset);
+                break;
+        }
+    }
+
+    public void decode(byte[] source, int offset, byte[] stickers) {
+        switch (size) {
+            case 2:
+                cubies.fromCube2Index((int)readBytes(source, offset, 3), stickers);
+                break;
+            case 3:
+                cubies.setCornerCoordinate(readBytes(source, offset, 4));
+                cubies.setEdgeCoordinate(readBytes(source, offset + 4, 5));
+                cubies.compose(stickers);
+                break;
+            default:
+                unpack(source, offset, stickers, layout.stickerCount);
+                break;
+        }
+    }
+
+    /**
+     * Encodes the representative of the state under 48 symmetries with color relabeling.
+     */
+    public void encodeCanonical(byte[] stickers, byte[] target, int offset) {
+        symmetries.canonicalize(stickers, canonical);
+        encode(canonical, target, offset);
+    }
+
+    public static int packedLength(int stickerCount) {
+        return (stickerCount * 3 + 7) / 8;
+    }
+
+    /**
+     * Packs sticker colors (3 bits each) into <code>packedLength(count)</code> bytes.
+     */
+    public static void pack(byte[] stickers, int count, byte[] target, int offset) {
+        int accumulator = 0;
+        int bits = 0;
+        int position = offset;
+        for (int i = 0; i < count; i++) {
+            accumulator |= (stickers[i] & 7) << bits;
+            bits += 3;
+            if (bits >= 8) {
+                target[position++] = (byte)accumulator;
+                accumulator >>>= 8;
+                bits -= 8;
+            }
+        }
+        if (bits > 0) {
+            target[position] = (byte)accumulator;
+        }
+    }
+
+    public static void unpack(byte[] source, int offset, byte[] stickers, int count) {
+        int accumulator = 0;
+        int bits = 0;
+        int position = offset;
+        for (int i = 0; i < count; i++) {
+            if (bits < 3) {
+                accumulator |= (source[position++] & 0xFF) << bits;
+                bits += 8;
+            }
+            stickers[i] = (byte)(accumulator & 7);
+            accumulator >>>= 3;
+            bits -= 3;
+        }
+    }
+
+    private static void writeBytes(long value, byte[] target, int offset, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            target[offset + i] = (byte)value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readBytes(byte[] source, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (source[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.alexeymz.rubikscube.state;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Engine for any size keeping one byte per sticker and applying moves from {@link MoveTable}.
+ */
+public final class StickerEngine implements CubeEngine {
+    private final MoveTable moves;
+    private final byte[] stickers;
+    private final byte[] scratch;
+
+    public StickerEngine(int size) {
+        this.moves = MoveTable.forSize(size);
+        this.stickers = new byte[moves.layout.stickerCount];
+        this.scratch = new byte[moves.layout.stickerCount];
+        moves.layout.solved(stickers);
+    }
+
+    @Override
+    public int size() {
+        return moves.size;
+    }
+
+    @Override
+    public void apply(int move) {
+        moves.applyInPlace(move, stickers, scratch);
+    }
+
+    @Override
+    public void apply(Rotation rotation) {
+        apply(moves.indexOf(rotation));
+    }
+
+    @Override
+    public void read(byte[] stickers) {
+        System.arraycopy(this.stickers, 0, stickers, 0, this.stickers.length);
+    }
+
+    @Override
+    public void write(byte[] stickers) {
+        if (stickers.length != this.stickers.length)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        System.arraycopy(stickers, 0, this.stickers, 0, stickers.length);
+    }
+}
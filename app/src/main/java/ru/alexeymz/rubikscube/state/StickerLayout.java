@@ -0,0 +1,190 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.SixSided;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+/**
+ * Flat sticker indexing for a cube of fixed size.
+ *
+ * Stickers are numbered side by side in {@link CubeSide} order, each side
+ * taking <code>size * size</code> consecutive indices. Inside a side the two
+ * coordinates which are not on the side axis go in (left, top, depth) order,
+ * e.g. sticker of UP side at (left, depth) has index
+ * <code>UP * size^2 + left * size + depth</code>.
+ *
+ * Sticker value is the color number stored in {@link SixSided} part
+ * (0 for no color, 1..6 for face colors).
+ */
+public final class StickerLayout {
+    private static final Map<Integer, StickerLayout> layouts = new HashMap<Integer, StickerLayout>();
+
+    public final int size;
+    public final int stickerCount;
+
+    private final int[] partIndices;
+    private final CubeSide[] sides;
+
+    private StickerLayout(int size) {
+        this.size = size;
+        this.stickerCount = 6 * size * size;
+        this.partIndices = new int[stickerCount];
+        this.sides = new CubeSide[stickerCount];
+
+        final int max = size - 1;
+        for (CubeSide side : CubeSide.values()) {
+            boolean far = side == CubeSide.RIGHT || side == CubeSide.DOWN || side == CubeSide.BACK;
+            int fixed = far ? max : 0;
+            for (int a = 0; a < size; a++) {
+                for (int b = 0; b < size; b++) {
+                    int index = indexOf(side, a, b);
+                    sides[index] = side;
+                    switch (side.axis()) {
+                        case LEFT:
+                            partIndices[index] = CubeCoords.toIndex(size, fixed, a, b);
+                            break;
+                        case TOP:
+                            partIndices[index] = CubeCoords.toIndex(size, a, fixed, b);
+                            break;
+                        case DEPTH:
+                            partIndices[index] = CubeCoords.toIndex(size, a, b, fixed);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    public static StickerLayout forSize(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        synchronized (layouts) {
+            StickerLayout layout = layouts.get(size);
+            if (layout == null) {
+                layout = new StickerLayout(size);
+                layouts.put(size, layout);
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * @param a first coordinate on the side in (left, top, depth) order
+     * @param b second coordinate on the side in (left, top, depth) order
+     */
+    public int indexOf(CubeSide side, int a, int b) {
+        return (side.ordinal() * size + a) * size + b;
+    }
+
+    /**
+     * Returns sticker index of specified part side or -1 if the side is not on cube surface.
+     */
+    public int indexOf(int left, int top, int depth, CubeSide side) {
+        final int max = size - 1;
+        switch (side) {
+            case LEFT:  return left  == 0   ? indexOf(side, top, depth) : -1;
+            case RIGHT: return left  == max ? indexOf(side, top, depth) : -1;
+            case UP:    return top   == 0   ? indexOf(side, left, depth) : -1;
+            case DOWN:  return top   == max ? indexOf(side, left, depth) : -1;
+            case FRONT: return depth == 0   ? indexOf(side, left, top) : -1;
+            case BACK:  return depth == max ? indexOf(side, left, top) : -1;
+            default: return -1;
+        }
+    }
+
+    public CubeSide sideOf(int sticker) {
+        return sides[sticker];
+    }
+
+    /**
+     * Returns {@link CubeCoords#toIndex} of the part which holds the sticker.
+     */
+    public int partIndexOf(int sticker) {
+        return partIndices[sticker];
+    }
+
+    public int leftOf(int sticker) {
+        return partIndices[sticker] % size;
+    }
+
+    public int topOf(int sticker) {
+        return (partIndices[sticker] / size) % size;
+    }
+
+    public int depthOf(int sticker) {
+        return (partIndices[sticker] / size) / size;
+    }
+
+    public void read(DataCube<? extends SixSided<Integer>> cube, byte[] stickers) {
+        checkCube(cube);
+        for (int i = 0; i < stickerCount; i++) {
+            SixSided<Integer> part = cube.get(leftOf(i), topOf(i), depthOf(i));
+            Integer color = part == null ? null : part.get(sides[i]);
+            stickers[i] = color == null ? 0 : color.byteValue();
+        }
+    }
+
+    /**
+     * Writes sticker colors into existing parts of the cube; parts without
+     * stickers on cube surface are left untouched.
+     */
+    public void write(byte[] stickers, DataCube<? extends SixSided<Integer>> cube) {
+        checkCube(cube);
+        for (int i = 0; i < stickerCount; i++) {
+            SixSided<Integer> part = cube.get(leftOf(i), topOf(i), depthOf(i));
+            if (part == null)
+                throw new IllegalArgumentException("cube has no part at sticker " + i + ".");
+            part.set(sides[i], (int)stickers[i]);
+        }
+    }
+
+    /**
+     * Fills stickers of the solved cube in {@link ru.alexeymz.rubikscube.elements.RubiksCube#getDefaultCube}
+     * orientation: each side has color <code>side.ordinal() + 1</code>.
+     */
+    public void solved(byte[] stickers) {
+        final int perSide = size * size;
+        for (int i = 0; i < stickerCount; i++) {
+            stickers[i] = (byte)(i / perSide + 1);
+        }
+    }
+
+    private void checkCube(DataCube<?> cube) {
+        if (cube.size != size)
+            throw new IllegalArgumentException("cube.size must be equal to layout size.");
+    }
+
+    /**
+     * Applies the transform to a cube with uniquely labelled stickers and returns
+     * sticker source table: <code>after[i] == before[sources[i]]</code>.
+     */
+    int[] traceTransform(CubeTransform transform) {
+        DataCube<SmallCube> cube = new DataCube<SmallCube>(size);
+        for (int i = 0; i < stickerCount; i++) {
+            int left = leftOf(i), top = topOf(i), depth = depthOf(i);
+            SmallCube part = cube.get(left, top, depth);
+            if (part == null) {
+                part = new SmallCube();
+                cube.set(left, top, depth, part);
+            }
+            part.set(sides[i], i + 1);
+        }
+
+        transform.apply(cube);
+
+        int[] sources = new int[stickerCount];
+        for (int i = 0; i < stickerCount; i++) {
+            sources[i] = cube.get(leftOf(i), topOf(i), depthOf(i)).get(sides[i]) - 1;
+        }
+        return sources;
+    }
+
+    interface CubeTransform {
+        void apply(DataCube<SmallCube> cube);
+    }
+}
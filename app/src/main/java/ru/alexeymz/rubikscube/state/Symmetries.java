@@ -0,0 +1,296 @@
+package ru.alexeymz.rubikscube.state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+
+/**
+ * 48 symmetries of the cube (24 whole cube rotations, each optionally combined
+ * with left-right mirroring) as sticker permutations of {@link StickerLayout}.
+ *
+ * Symmetries <code>[0..ROTATION_COUNT)</code> are rotations, symmetry 0 is identity.
+ * Instances are immutable and shared between threads.
+ */
+public final class Symmetries {
+    public static final int COUNT = 48;
+    public static final int ROTATION_COUNT = 24;
+    /** Mask of all symmetries. */
+    private static final long ALL = (1L << COUNT) - 1;
+    /** Sticker colors are in [0..6]. */
+    private static final int COLOR_BITS = 3;
+
+    private static final Map<Integer, Symmetries> cache = new HashMap<Integer, Symmetries>();
+
+    public final StickerLayout layout;
+
+    private final int[][] sources = new int[COUNT][];
+    private final byte[][] colorMaps = new byte[COUNT][];
+    private final int[] inverses = new int[COUNT];
+    /** <code>sources[s][i]</code> at <code>i * COUNT + s</code>, for {@link #canonicalize}. */
+    private final int[] sourceColumns;
+    /** <code>colorMaps[s][color]</code> at <code>s << COLOR_BITS | color</code>. */
+    private final byte[] flatColorMaps = new byte[COUNT << COLOR_BITS];
+    /** Conjugated moves by symmetry, built on first use. */
+    private volatile int[][] moveMaps;
+
+    private Symmetries(StickerLayout layout) {
+        this.layout = layout;
+
+        List<int[]> rotations = new ArrayList<int[]>();
+        int[] identity = new int[layout.stickerCount];
+        for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+        }
+        rotations.add(identity);
+
+        int[][] generators = new int[Axis.ordinalCount()][];
+        for (int i = 0; i < generators.length; i++) {
+            final Axis axis = Axis.fromOrdinal(i);
+            generators[i] = layout.traceTransform(new StickerLayout.CubeTransform() {
+                @Override
+                public void apply(DataCube<SmallCube> cube) {
+                    cube.rotateAround(axis);
+                }
+            });
+        }
+
+        // closure of generators gives all 24 rotations
+        for (int i = 0; i < rotations.size(); i++) {
+            for (int[] generator : generators) {
+                int[] composed = compose(rotations.get(i), generator);
+                if (indexOf(rotations, composed) < 0) {
+                    rotations.add(composed);
+                }
+            }
+        }
+        if (rotations.size() != ROTATION_COUNT)
+            throw new IllegalStateException("Unexpected rotation count: " + rotations.size());
+
+        int[] mirror = createMirror(layout);
+        List<int[]> all = new ArrayList<int[]>(rotations);
+        for (int[] rotation : rotations) {
+            all.add(compose(mirror, rotation));
+        }
+
+        for (int s = 0; s < COUNT; s++) {
+            sources[s] = all.get(s);
+            colorMaps[s] = createColorMap(layout, sources[s]);
+        }
+        for (int s = 0; s < COUNT; s++) {
+            int[] inverse = new int[layout.stickerCount];
+            for (int i = 0; i < inverse.length; i++) {
+                inverse[sources[s][i]] = i;
+            }
+            inverses[s] = indexOf(all, inverse);
+        }
+        sourceColumns = new int[layout.stickerCount * COUNT];
+        for (int s = 0; s < COUNT; s++) {
+            for (int i = 0; i < layout.stickerCount; i++) {
+                sourceColumns[i * COUNT + s] = sources[s][i];
+            }
+            System.arraycopy(colorMaps[s], 0, flatColorMaps, s << COLOR_BITS, colorMaps[s].length);
+        }
+    }
+
+    public static Symmetries forSize(int size) {
+        StickerLayout layout = StickerLayout.forSize(size);
+        synchronized (cache) {
+            Symmetries symmetries = cache.get(size);
+            if (symmetries == null) {
+                symmetries = new Symmetries(layout);
+                cache.put(size, symmetries);
+            }
+            return symmetries;
+        }
+    }
+
+    public boolean isRotation(int symmetry) {
+        return symmetry < ROTATION_COUNT;
+    }
+
+    public int inverse(int symmetry) {
+        return inverses[symmetry];
+    }
+
+    /**
+     * Rotates (or mirrors) the whole cube in space keeping sticker colors as is.
+     */
+    public void transform(int symmetry, byte[] stickers, byte[] target) {
+        int[] source = sources[symmetry];
+        for (int i = 0; i < source.length; i++) {
+            target[i] = stickers[source[i]];
+        }
+    }
+
+    /**
+     * Returns solved cube in each of {@link #ROTATION_COUNT} orientations, identity first.
+     */
+    public byte[][] solvedOrientations() {
+        byte[] solved = new byte[layout.stickerCount];
+        layout.solved(solved);
+        byte[][] orientations = new byte[ROTATION_COUNT][solved.length];
+        for (int rotation = 0; rotation < orientations.length; rotation++) {
+            transform(rotation, solved, orientations[rotation]);
+        }
+        return orientations;
+    }
+
+    /**
+     * Conjugates the state with the symmetry: transforms the whole cube and relabels
+     * colors so that the solved cube stays solved.
+     */
+    public void conjugate(int symmetry, byte[] stickers, byte[] target) {
+        int[] source = sources[symmetry];
+        byte[] colorMap = colorMaps[symmetry];
+        for (int i = 0; i < source.length; i++) {
+            target[i] = colorMap[stickers[source[i]]];
+        }
+    }
+
+    /**
+     * Writes lexicographically minimal conjugate of the state into <code>target</code>.
+     *
+     * Symmetries are compared one sticker position at a time, keeping only those giving
+     * the smallest value so far as bits of a mask; most are rejected on the first position,
+     * and only the winner is written out.
+     *
+     * @return symmetry which maps the state to its representative
+     */
+    public int canonicalize(byte[] stickers, byte[] target) {
+        final int[] columns = sourceColumns;
+        final byte[] colors = flatColorMaps;
+        final int count = layout.stickerCount;
+        long candidates = ALL;
+        for (int i = 0; i < count && (candidates & (candidates - 1)) != 0; i++) {
+            final int at = i * COUNT;
+            int min = Integer.MAX_VALUE;
+            long kept = 0;
+            for (long rest = candidates; rest != 0; rest &= rest - 1) {
+                int s = Long.numberOfTrailingZeros(rest);
+                int value = colors[s << COLOR_BITS | stickers[columns[at + s]]];
+                if (value < min) {
+                    min = value;
+                    kept = 0;
+                }
+                if (value == min) { kept |= 1L << s; }
+            }
+            candidates = kept;
+        }
+        // a symmetric state has several equal conjugates, the lowest symmetry is reported
+        int best = Long.numberOfTrailingZeros(candidates);
+        conjugate(best, stickers, target);
+        return best;
+    }
+
+    /**
+     * Returns the move which does to a state what <code>move</code> does to its conjugate:
+     * if moves solve <code>conjugate(symmetry, stickers)</code>, their conjugated moves
+     * solve <code>stickers</code>. Moves are {@link MoveTable} indices.
+     */
+    public int conjugateMove(int symmetry, int move) {
+        int[][] maps = moveMaps;
+        if (maps == null) {
+            synchronized (this) {
+                if (moveMaps == null) { moveMaps = createMoveMaps(MoveTable.forSize(layout.size)); }
+                maps = moveMaps;
+            }
+        }
+        return maps[symmetry][move];
+    }
+
+    private int[][] createMoveMaps(MoveTable table) {
+        int[][] maps = new int[COUNT][table.moveCount];
+        int[] permutation = new int[layout.stickerCount];
+        for (int s = 0; s < COUNT; s++) {
+            int[] source = sources[s];
+            int[] inverse = sources[inverses[s]];
+            for (int move = 0; move < table.moveCount; move++) {
+                // permutation of the move between the symmetry and its inverse
+                for (int i = 0; i < permutation.length; i++) {
+                    permutation[i] = i;
+                }
+                int[] targets = table.targets[move];
+                for (int k = 0; k < targets.length; k++) {
+                    permutation[targets[k]] = table.sources[move][k];
+                }
+                int[] conjugated = new int[permutation.length];
+                for (int i = 0; i < conjugated.length; i++) {
+                    conjugated[i] = source[permutation[inverse[i]]];
+                }
+                maps[s][move] = findMove(table, conjugated);
+            }
+        }
+        return maps;
+    }
+
+    private static int findMove(MoveTable table, int[] permutation) {
+        int moved = 0;
+        for (int i = 0; i < permutation.length; i++) {
+            if (permutation[i] != i) { moved++; }
+        }
+        for (int move = 0; move < table.moveCount; move++) {
+            int[] targets = table.targets[move];
+            int[] sources = table.sources[move];
+            int k = 0;
+            while (k < targets.length && permutation[targets[k]] == sources[k]) { k++; }
+            if (k == targets.length && movedCount(targets, sources) == moved) { return move; }
+        }
+        throw new IllegalStateException("Symmetry does not map moves to moves.");
+    }
+
+    private static int movedCount(int[] targets, int[] sources) {
+        int count = 0;
+        for (int k = 0; k < targets.length; k++) {
+            if (targets[k] != sources[k]) { count++; }
+        }
+        return count;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] result = new int[first.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = first[second[i]];
+        }
+        return result;
+    }
+
+    private static int indexOf(List<int[]> permutations, int[] permutation) {
+        for (int i = 0; i < permutations.size(); i++) {
+            if (Arrays.equals(permutations.get(i), permutation)) { return i; }
+        }
+        return -1;
+    }
+
+    private static int[] createMirror(StickerLayout layout) {
+        final int max = layout.size - 1;
+        int[] mirror = new int[layout.stickerCount];
+        for (int i = 0; i < mirror.length; i++) {
+            CubeSide side = layout.sideOf(i);
+            if (side == CubeSide.LEFT) {
+                side = CubeSide.RIGHT;
+            } else if (side == CubeSide.RIGHT) {
+                side = CubeSide.LEFT;
+            }
+            mirror[i] = layout.indexOf(max - layout.leftOf(i), layout.topOf(i), layout.depthOf(i), side);
+        }
+        return mirror;
+    }
+
+    private static byte[] createColorMap(StickerLayout layout, int[] source) {
+        // color 0 means "no color", colors 1..6 are CubeSide ordinals + 1
+        byte[] colorMap = new byte[CubeSide.values().length + 1];
+        for (int i = 0; i < source.length; i++) {
+            int from = layout.sideOf(source[i]).ordinal();
+            int to = layout.sideOf(i).ordinal();
+            colorMap[from + 1] = (byte)(to + 1);
+        }
+        return colorMap;
+    }
+}
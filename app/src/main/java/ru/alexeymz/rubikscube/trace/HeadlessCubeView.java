@@ -0,0 +1,66 @@
+package ru.alexeymz.rubikscube.trace;
+
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Stand-in for {@link ru.alexeymz.rubikscube.view.CubeView} without GL: follows the
+ * same layer animation protocol and permutes part ids when an animation completes.
+ * Whole cube orientation is not modelled, since nothing in the replay depends on it.
+ */
+final class HeadlessCubeView {
+    private final DataCube<Integer> parts;
+
+    private Rotation animatedRotation;
+    private double animationStartTimeMs;
+    private double animationDurationMs;
+
+    /**
+     * @param partIds part id at every {@link CubeCoords#toIndex} position
+     */
+    HeadlessCubeView(int size, int[] partIds) {
+        this.parts = new DataCube<Integer>(size);
+        for (int l = 0; l < size; l++) {
+            for (int t = 0; t < size; t++) {
+                for (int d = 0; d < size; d++) {
+                    parts.set(l, t, d, partIds[CubeCoords.toIndex(size, l, t, d)]);
+                }
+            }
+        }
+    }
+
+    int partAt(int left, int top, int depth) {
+        return parts.get(left, top, depth);
+    }
+
+    boolean isAnimationInProgress() {
+        return animatedRotation != null;
+    }
+
+    void beginLayerRotation(Rotation rotation, double durationMs, double currentTimeMs) {
+        if (isAnimationInProgress())
+            throw new IllegalStateException("Animation already in progress.");
+        animatedRotation = rotation;
+        animationStartTimeMs = currentTimeMs;
+        animationDurationMs = durationMs;
+    }
+
+    /**
+     * Advances the layer animation, same as one rendered frame.
+     */
+    void update(double absoluteTimeMs) {
+        if (!isAnimationInProgress()) { return; }
+        double endTime = animationStartTimeMs + animationDurationMs;
+        if (absoluteTimeMs >= endTime) {
+            parts.rotateLayer(animatedRotation.axis, animatedRotation.layer, animatedRotation.clockwise);
+            animatedRotation = null;
+        }
+    }
+
+    void endAnimation() {
+        if (!isAnimationInProgress())
+            throw new IllegalStateException("No animation in progress.");
+        update(animationStartTimeMs + animationDurationMs);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.alexeymz.rubikscube.trace;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Result of {@link TraceReplayer#replay}.
+ */
+public final class ReplayReport {
+    public final int eventCount;
+    public final int rotationCount;
+    /** Wall time of the whole replay. */
+    public final long replayNanos;
+    /** Sorted wall time of processing single events. */
+    private final long[] eventNanos;
+    /** Sorted recorded time from queuing a rotation to its start. */
+    private final long[] queueLatencyMs;
+
+    /** Started rotations which differ from the queued or undone ones. */
+    public final int mismatchedRotations;
+    /** Whether the trace has final state checksum. */
+    public final boolean hasExpectedState;
+    /**
+     * Whether model state after applying the recorded rotations matches recorded checksum,
+     * i.e. the log is complete and uncorrupted.
+     */
+    public final boolean stateMatches;
+    /** Whether stub view parts are in the same places as model parts. */
+    public final boolean viewMatchesModel;
+
+    ReplayReport(int eventCount, int rotationCount, long replayNanos,
+                 long[] eventNanos, long[] queueLatencyMs, int mismatchedRotations,
+                 boolean hasExpectedState, boolean stateMatches, boolean viewMatchesModel) {
+        this.eventCount = eventCount;
+        this.rotationCount = rotationCount;
+        this.replayNanos = replayNanos;
+        this.eventNanos = eventNanos;
+        this.queueLatencyMs = queueLatencyMs;
+        this.mismatchedRotations = mismatchedRotations;
+        this.hasExpectedState = hasExpectedState;
+        this.stateMatches = stateMatches;
+        this.viewMatchesModel = viewMatchesModel;
+        Arrays.sort(eventNanos);
+        Arrays.sort(queueLatencyMs);
+    }
+
+    /**
+     * Returns whether the replay reproduced the recorded session exactly.
+     */
+    public boolean isConsistent() {
+        return mismatchedRotations == 0 && stateMatches && viewMatchesModel;
+    }
+
+    public double eventsPerSecond() {
+        return replayNanos == 0 ? 0 : eventCount * 1e9 / replayNanos;
+    }
+
+    public double rotationsPerSecond() {
+        return replayNanos == 0 ? 0 : rotationCount * 1e9 / replayNanos;
+    }
+
+    /**
+     * @param fraction percentile in [0..1], e.g. 0.95 for p95
+     */
+    public long eventNanosPercentile(double fraction) {
+        return percentile(eventNanos, fraction);
+    }
+
+    /**
+     * @param fraction percentile in [0..1], e.g. 0.95 for p95
+     */
+    public long queueLatencyMsPercentile(double fraction) {
+        return percentile(queueLatencyMs, fraction);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) { return 0; }
+        int rank = (int)Math.ceil(fraction * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+            "%d events, %d rotations in %.2f ms (%.0f events/s, %.0f rotations/s)%n" +
+            "event    p50 %d p95 %d p99 %d ns%n" +
+            "queued   p50 %d p95 %d p99 %d ms%n" +
+            "%s: %d mismatched rotations, state %s, view %s",
+            eventCount, rotationCount, replayNanos / 1e6, eventsPerSecond(), rotationsPerSecond(),
+            eventNanosPercentile(0.50), eventNanosPercentile(0.95), eventNanosPercentile(0.99),
+            queueLatencyMsPercentile(0.50), queueLatencyMsPercentile(0.95), queueLatencyMsPercentile(0.99),
+            isConsistent() ? "consistent" : "INCONSISTENT", mismatchedRotations,
+            hasExpectedState ? (stateMatches ? "matches" : "differs") : "not recorded",
+            viewMatchesModel ? "matches" : "differs");
+    }
+}
@@ -0,0 +1,219 @@
+package ru.alexeymz.rubikscube.trace;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.state.MoveTable;
+
+/**
+ * Immutable recorded interaction session, see {@link TraceRecorder}.
+ *
+ * Events are stored as a type byte, a zigzag varint time delta in milliseconds
+ * from the previous event and a type-specific payload of varints, so a typical
+ * event takes 3-5 bytes.
+ */
+public final class SessionTrace {
+    /** Tap at (x, y) pixels. */
+    public static final int TAP = 1;
+    /** Scroll by (dx, dy) pixels. */
+    public static final int SCROLL = 2;
+    /** Rotation added to the queue of pending rotations. */
+    public static final int ROTATION_QUEUED = 3;
+    /** Rotation applied to the model, with animation duration. */
+    public static final int ROTATION_STARTED = 4;
+    /** Undo rotation applied to the model, with animation duration. */
+    public static final int UNDO_STARTED = 5;
+    /** Undo mode switched on or off. */
+    public static final int UNDO_MODE = 6;
+    /** Checksum of the model stickers at the end of the session. */
+    public static final int STATE = 7;
+
+    private static final int MAGIC = 0x43545243; // "CTRC"
+    private static final int VERSION = 1;
+    private static final int MAX_CUBE_SIZE = 1024;
+
+    /** Scroll distances are stored in fixed point with this many fractions per pixel. */
+    static final float SCROLL_SCALE = 16;
+
+    public final int cubeSize;
+    public final int eventCount;
+    private final byte[] initialStickers;
+    private final byte[] data;
+
+    SessionTrace(int cubeSize, byte[] initialStickers, int eventCount, byte[] data) {
+        this.cubeSize = cubeSize;
+        this.initialStickers = initialStickers;
+        this.eventCount = eventCount;
+        this.data = data;
+    }
+
+    /**
+     * Copies model state at the session start in
+     * {@link ru.alexeymz.rubikscube.state.StickerLayout} order.
+     */
+    public void getInitialStickers(byte[] stickers) {
+        System.arraycopy(initialStickers, 0, stickers, 0, initialStickers.length);
+    }
+
+    /**
+     * Returns size of the encoded events in bytes.
+     */
+    public int byteCount() {
+        return data.length;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeByte(VERSION);
+        dataOutput.writeInt(cubeSize);
+        dataOutput.write(initialStickers);
+        dataOutput.writeInt(eventCount);
+        dataOutput.writeInt(data.length);
+        dataOutput.write(data);
+        dataOutput.flush();
+    }
+
+    public static SessionTrace read(InputStream input) throws IOException {
+        DataInputStream dataInput = new DataInputStream(input);
+        if (dataInput.readInt() != MAGIC)
+            throw new IOException("Not a session trace.");
+        int version = dataInput.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported session trace version " + version + ".");
+        int cubeSize = dataInput.readInt();
+        if (cubeSize <= 0 || cubeSize > MAX_CUBE_SIZE)
+            throw new IOException("Corrupted session trace header.");
+        byte[] initialStickers = new byte[6 * cubeSize * cubeSize];
+        dataInput.readFully(initialStickers);
+        int eventCount = dataInput.readInt();
+        int length = dataInput.readInt();
+        if (eventCount < 0 || length < 0)
+            throw new IOException("Corrupted session trace header.");
+        byte[] data = new byte[length];
+        dataInput.readFully(data);
+        return new SessionTrace(cubeSize, initialStickers, eventCount, data);
+    }
+
+    /**
+     * FNV-1a hash of stickers, used to compare end states.
+     */
+    public static int checksum(byte[] stickers) {
+        int hash = 0x811C9DC5;
+        for (byte sticker : stickers) {
+            hash = (hash ^ (sticker & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    static int moveOf(int cubeSize, Rotation rotation) {
+        return MoveTable.indexOf(cubeSize, rotation.axis, rotation.layer, rotation.clockwise);
+    }
+
+    static Rotation rotationOf(int cubeSize, int move) {
+        return MoveTable.rotationOf(cubeSize, move);
+    }
+
+    /**
+     * Iterates over events; fields are valid after {@link #next()} returned true.
+     */
+    public final class Cursor {
+        private int position;
+        private int index;
+
+        public int type;
+        /** Time since the start of the session in milliseconds. */
+        public long timeMs;
+        /** Tap position or scroll distance. */
+        public float x, y;
+        /** Rotation of ROTATION_* and UNDO_STARTED events. */
+        public Rotation rotation;
+        /** Animation duration of ROTATION_STARTED and UNDO_STARTED events. */
+        public int durationMs;
+        /** New value of UNDO_MODE event. */
+        public boolean enabled;
+        /** Checksum of STATE event. */
+        public int checksum;
+
+        private Cursor() {}
+
+        public boolean next() {
+            if (index == eventCount) { return false; }
+            if (position >= data.length)
+                throw new IllegalStateException("Truncated session trace.");
+            type = data[position++];
+            timeMs += unzigzag(readVarint());
+            rotation = null;
+            switch (type) {
+                case TAP:
+                    x = unzigzag(readVarint());
+                    y = unzigzag(readVarint());
+                    break;
+                case SCROLL:
+                    x = unzigzag(readVarint()) / SCROLL_SCALE;
+                    y = unzigzag(readVarint()) / SCROLL_SCALE;
+                    break;
+                case ROTATION_QUEUED:
+                    rotation = rotationOf(cubeSize, (int)readVarint());
+                    break;
+                case ROTATION_STARTED:
+                case UNDO_STARTED:
+                    rotation = rotationOf(cubeSize, (int)readVarint());
+                    durationMs = (int)readVarint();
+                    break;
+                case UNDO_MODE:
+                    enabled = readVarint() != 0;
+                    break;
+                case STATE:
+                    checksum = (int)readVarint();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown trace event type " + type + ".");
+            }
+            index++;
+            return true;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position >= data.length || shift > 63)
+                    throw new IllegalStateException("Truncated session trace.");
+                int b = data[position++];
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0) { return value; }
+            }
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SessionTrace)) { return false; }
+        SessionTrace trace = (SessionTrace)other;
+        return cubeSize == trace.cubeSize && eventCount == trace.eventCount
+            && Arrays.equals(initialStickers, trace.initialStickers)
+            && Arrays.equals(data, trace.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data) * 31 + cubeSize;
+    }
+}
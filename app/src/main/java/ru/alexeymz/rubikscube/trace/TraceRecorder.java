@@ -0,0 +1,115 @@
+package ru.alexeymz.rubikscube.trace;
+
+import java.util.Arrays;
+
+import ru.alexeymz.rubikscube.core.Rotation;
+
+/**
+ * Appends interaction events to a growing {@link SessionTrace}. Not thread-safe.
+ */
+public final class TraceRecorder {
+    public final int cubeSize;
+
+    private final byte[] initialStickers;
+    private final long startTimeMs;
+    private long lastTimeMs;
+    private byte[] data = new byte[256];
+    private int length;
+    private int eventCount;
+
+    /**
+     * @param initialStickers model state at the session start
+     * @param startTimeMs     time of the session start in the clock of recorded events
+     */
+    public TraceRecorder(int cubeSize, byte[] initialStickers, long startTimeMs) {
+        if (cubeSize <= 0)
+            throw new IllegalArgumentException("cubeSize must be > 0.");
+        if (initialStickers.length != 6 * cubeSize * cubeSize)
+            throw new IllegalArgumentException("initialStickers must have 6 * cubeSize^2 elements.");
+        this.cubeSize = cubeSize;
+        this.initialStickers = initialStickers.clone();
+        this.startTimeMs = startTimeMs;
+        this.lastTimeMs = startTimeMs;
+    }
+
+    public void tap(long timeMs, float x, float y) {
+        begin(SessionTrace.TAP, timeMs);
+        writeVarint(SessionTrace.zigzag(Math.round(x)));
+        writeVarint(SessionTrace.zigzag(Math.round(y)));
+    }
+
+    public void scroll(long timeMs, float dx, float dy) {
+        begin(SessionTrace.SCROLL, timeMs);
+        writeVarint(SessionTrace.zigzag(Math.round(dx * SessionTrace.SCROLL_SCALE)));
+        writeVarint(SessionTrace.zigzag(Math.round(dy * SessionTrace.SCROLL_SCALE)));
+    }
+
+    public void rotationQueued(long timeMs, Rotation rotation) {
+        begin(SessionTrace.ROTATION_QUEUED, timeMs);
+        writeVarint(SessionTrace.moveOf(cubeSize, rotation));
+    }
+
+    /**
+     * @param undo whether the rotation is taken from the undo stack
+     */
+    public void rotationStarted(long timeMs, Rotation rotation, boolean undo, double durationMs) {
+        begin(undo ? SessionTrace.UNDO_STARTED : SessionTrace.ROTATION_STARTED, timeMs);
+        writeVarint(SessionTrace.moveOf(cubeSize, rotation));
+        writeVarint(Math.max(0, Math.round(durationMs)));
+    }
+
+    public void undoMode(long timeMs, boolean enabled) {
+        begin(SessionTrace.UNDO_MODE, timeMs);
+        writeVarint(enabled ? 1 : 0);
+    }
+
+    /**
+     * Records checksum of the final model state and returns the trace.
+     * The recorder can be used further to continue the session.
+     */
+    public SessionTrace finish(long timeMs, byte[] stickers) {
+        begin(SessionTrace.STATE, timeMs);
+        writeVarint(SessionTrace.checksum(stickers) & 0xFFFFFFFFL);
+        return snapshot();
+    }
+
+    /**
+     * Returns events recorded so far.
+     */
+    public SessionTrace snapshot() {
+        return new SessionTrace(cubeSize, initialStickers, eventCount, Arrays.copyOf(data, length));
+    }
+
+    public int eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns time of the last event since the session start.
+     */
+    public long elapsedMs() {
+        return lastTimeMs - startTimeMs;
+    }
+
+    private void begin(int type, long timeMs) {
+        ensureCapacity(1 + 10 * 3);
+        data[length++] = (byte)type;
+        writeVarint(SessionTrace.zigzag(timeMs - lastTimeMs));
+        lastTimeMs = timeMs;
+        eventCount++;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[length++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte)value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.alexeymz.rubikscube.trace;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.DataCube;
+import ru.alexeymz.rubikscube.core.Rotation;
+import ru.alexeymz.rubikscube.elements.RubiksCube;
+import ru.alexeymz.rubikscube.elements.SmallCube;
+import ru.alexeymz.rubikscube.state.StickerLayout;
+
+/**
+ * Replays {@link SessionTrace} against the model and a headless view at full speed.
+ *
+ * Recorded time drives animations, so the replay is deterministic and does not wait.
+ * Every event is timed; rotations are checked against the queue and the undo stack
+ * kept the same way as in {@link ru.alexeymz.rubikscube.CubeSurfaceView}, and the
+ * final state is compared with the recorded checksum.
+ *
+ * The model is driven by the recorded {@link SessionTrace#ROTATION_STARTED} and
+ * {@link SessionTrace#UNDO_STARTED} events, not by re-running taps through picking
+ * and gesture handling, which need a GL surface. Taps and scrolls are only timed.
+ * So the checksum verifies the integrity of the log (no rotation was lost, reordered
+ * or corrupted on the way to the file), not the gesture logic that produced it.
+ */
+public final class TraceReplayer {
+    private TraceReplayer() {}
+
+    public static ReplayReport replay(SessionTrace trace) {
+        final int size = trace.cubeSize;
+        StickerLayout layout = StickerLayout.forSize(size);
+        byte[] stickers = new byte[layout.stickerCount];
+        trace.getInitialStickers(stickers);
+
+        DataCube<SmallCube> model = RubiksCube.getDefaultCube(size);
+        layout.write(stickers, model);
+        Map<SmallCube, Integer> partIds = new IdentityHashMap<SmallCube, Integer>();
+        int[] initialIds = new int[size * size * size];
+        for (int i = 0; i < initialIds.length; i++) {
+            CubeCoords coords = CubeCoords.fromIndex(size, i);
+            SmallCube part = model.get(coords);
+            initialIds[i] = part == null ? -1 : i;
+            if (part != null) { partIds.put(part, i); }
+        }
+        HeadlessCubeView view = new HeadlessCubeView(size, initialIds);
+
+        Deque<Rotation> queued = new ArrayDeque<Rotation>();
+        Deque<Long> queuedTimes = new ArrayDeque<Long>();
+        Deque<Rotation> undoStack = new ArrayDeque<Rotation>();
+        long[] eventNanos = new long[trace.eventCount];
+        long[] queueLatencies = new long[trace.eventCount];
+        int latencyCount = 0;
+        int rotationCount = 0;
+        int mismatched = 0;
+        boolean hasExpectedState = false;
+        boolean stateMatches = true;
+
+        SessionTrace.Cursor cursor = trace.cursor();
+        long replayStart = System.nanoTime();
+        int index = 0;
+        while (cursor.next()) {
+            long eventStart = System.nanoTime();
+            view.update(cursor.timeMs);
+            switch (cursor.type) {
+                case SessionTrace.TAP:
+                case SessionTrace.SCROLL:
+                case SessionTrace.UNDO_MODE:
+                    break;
+                case SessionTrace.ROTATION_QUEUED:
+                    queued.addLast(cursor.rotation);
+                    queuedTimes.addLast(cursor.timeMs);
+                    break;
+                case SessionTrace.ROTATION_STARTED:
+                case SessionTrace.UNDO_STARTED: {
+                    Rotation rotation = cursor.rotation;
+                    if (cursor.type == SessionTrace.ROTATION_STARTED) {
+                        Rotation expected = queued.pollFirst();
+                        Long queuedTime = queuedTimes.pollFirst();
+                        // rotations queued before recording started can not be checked
+                        if (expected != null) {
+                            if (!expected.equals(rotation)) { mismatched++; }
+                            queueLatencies[latencyCount++] = cursor.timeMs - queuedTime;
+                        }
+                        undoStack.push(rotation.inverse());
+                    } else {
+                        Rotation expected = undoStack.pollFirst();
+                        if (expected != null && !expected.equals(rotation)) { mismatched++; }
+                    }
+                    if (view.isAnimationInProgress()) { view.endAnimation(); }
+                    view.beginLayerRotation(rotation, cursor.durationMs, cursor.timeMs);
+                    model.rotateLayer(rotation.axis, rotation.layer, rotation.clockwise);
+                    rotationCount++;
+                    break;
+                }
+                case SessionTrace.STATE:
+                    layout.read(model, stickers);
+                    hasExpectedState = true;
+                    stateMatches = SessionTrace.checksum(stickers) == cursor.checksum;
+                    break;
+            }
+            eventNanos[index++] = System.nanoTime() - eventStart;
+        }
+        if (view.isAnimationInProgress()) { view.endAnimation(); }
+        long replayNanos = System.nanoTime() - replayStart;
+
+        boolean viewMatchesModel = true;
+        for (int i = 0; i < initialIds.length && viewMatchesModel; i++) {
+            CubeCoords coords = CubeCoords.fromIndex(size, i);
+            SmallCube part = model.get(coords);
+            int expectedId = part == null ? -1 : partIds.get(part);
+            viewMatchesModel = view.partAt(coords.left, coords.top, coords.depth) == expectedId;
+        }
+
+        long[] latencies = new long[latencyCount];
+        System.arraycopy(queueLatencies, 0, latencies, 0, latencyCount);
+        return new ReplayReport(trace.eventCount, rotationCount, replayNanos,
+            eventNanos, latencies, mismatched, hasExpectedState, stateMatches, viewMatchesModel);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.alexeymz.rubikscube.view;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.alexeymz.rubikscube.graphics.PngEncoder;
+import ru.alexeymz.rubikscube.graphics.Quaternion;
+
+/**
+ * Renders many cube states into PNG images on an executor.
+ *
+ * Each task owns a {@link SoftwareRasterizer}, a pixel buffer and a {@link PngEncoder}
+ * and takes states one by one until none are left, so buffers are allocated once
+ * per task rather than per image. The encoder is closed when its task ends.
+ */
+public final class CubeImageExporter {
+    /**
+     * Receives encoded images; called from executor threads, in no particular order.
+     */
+    public interface ImageSink {
+        void onImage(int index, byte[] png) throws IOException;
+    }
+
+    private final int size;
+    private final int width;
+    private final int height;
+    private final int[] colorMap;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * @param parallelism number of tasks submitted to the executor for a batch
+     */
+    public CubeImageExporter(int size, int width, int height, int[] colorMap,
+                             ExecutorService executor, int parallelism) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be > 0.");
+        if (colorMap == null || colorMap.length < 7)
+            throw new IllegalArgumentException("colorMap");
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be > 0.");
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        this.colorMap = colorMap.clone();
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Renders every state and passes its PNG to the sink, waiting for the whole batch.
+     * @param states       stickers in {@link ru.alexeymz.rubikscube.state.StickerLayout} order
+     * @param orientations orientation of every state, or a single one for all of them
+     */
+    public void export(final byte[][] states, final Quaternion[] orientations, final ImageSink sink)
+            throws IOException, InterruptedException {
+        if (orientations.length != 1 && orientations.length != states.length)
+            throw new IllegalArgumentException("orientations must have 1 or states.length elements.");
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    SoftwareRasterizer rasterizer = new SoftwareRasterizer(size, width, height, colorMap);
+                    PngEncoder encoder = new PngEncoder();
+                    try {
+                        int[] pixels = new int[width * height];
+                        int index;
+                        while ((index = next.getAndIncrement()) < states.length) {
+                            Quaternion orientation = orientations[orientations.length == 1 ? 0 : index];
+                            rasterizer.render(states[index], orientation, pixels);
+                            sink.onImage(index, encoder.encode(pixels, width, height));
+                        }
+                        return null;
+                    } finally {
+                        encoder.close();
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // stop remaining tasks at their next state
+            next.set(states.length);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) { throw (IOException)cause; }
+            if (cause instanceof RuntimeException) { throw (RuntimeException)cause; }
+            if (cause instanceof Error) { throw (Error)cause; }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -1,23 +1,28 @@
 package ru.alexeymz.rubikscube.view;
 
 import static android.opengl.GLES20.*;
-import static ru.alexeymz.rubikscube.graphics.MathUtils.*;
 
 import android.graphics.Color;
-import android.opengl.Matrix;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.Locale;
 
-import ru.alexeymz.rubikscube.core.Axis;
 import ru.alexeymz.rubikscube.core.CubeCoords;
 import ru.alexeymz.rubikscube.core.CubeSide;
 import ru.alexeymz.rubikscube.core.DataCube;
 import ru.alexeymz.rubikscube.core.Rotation;
 import ru.alexeymz.rubikscube.elements.RubiksCube;
 import ru.alexeymz.rubikscube.elements.SmallCube;
+import ru.alexeymz.rubikscube.graphics.CountingGl;
+import ru.alexeymz.rubikscube.graphics.Gl;
+import ru.alexeymz.rubikscube.graphics.GlFramebuffer;
+import ru.alexeymz.rubikscube.graphics.GlProgram;
+import ru.alexeymz.rubikscube.graphics.GlResources;
+import ru.alexeymz.rubikscube.graphics.ProgramBinaryCache;
+import ru.alexeymz.rubikscube.graphics.TripleBuffer;
+import ru.alexeymz.rubikscube.metrics.EngineMetrics;
+import ru.alexeymz.rubikscube.state.StickerLayout;
 import ru.alexeymz.rubikscube.utils.CollectionUtils;
 
 public class CubeView {
@@ -62,14 +67,16 @@ public class CubeView {
         "  gl_FragColor = vec4(vColor, 1.0);",
         "}");
 
-    private int screenProgram;
-    private int touchProgram;
+    private final GlResources resources;
+    private final GlProgram screenProgram;
+    private final GlProgram touchProgram;
+    private final GlFramebuffer pickingFramebuffer;
 
     private int worldUniform;
     private int partIndexUniform;
     private int sidesUniform;
 
-    private static final float[] VERTICES = {
+    static final float[] VERTICES = {
         -.5f, +.5f, +.5f,  //   1----2
         -.5f, +.5f, -.5f,  //  /:   /|
         +.5f, +.5f, -.5f,  // 0----3 |
@@ -79,7 +86,7 @@ public class CubeView {
         +.5f, -.5f, -.5f,
         +.5f, -.5f, +.5f,
     };
-    private static final short[] INDICES = {
+    static final short[] INDICES = {
         0, 2, 1,  //    0 5
         0, 3, 2,  //    |/
         4, 6, 7,  // 2--o--3
@@ -94,7 +101,7 @@ public class CubeView {
         5, 1, 2,
     };
     private static final float[] SIDE_VERTICES = new float[INDICES.length * 3];
-    private static final float[] SIDE_NUMS = new float[INDICES.length];
+    static final float[] SIDE_NUMS = new float[INDICES.length];
     static {
         for (int i = 0; i < INDICES.length; i++) {
             int vertex = i * 3;
@@ -118,14 +125,9 @@ public class CubeView {
 
     private static final int EMPTY_SPACE_ALPHA = 0;
 
-    private int textureWidth, textureHeight;
-    private int[] fbo = new int[1];
-    private int[] texture = new int[1];
-    private int[] depthRB = new int[1];
     private float[] clearColor = new float[4];
 
     private final float[] colorMap = new float[7 * 3];
-    private final float[] cubeSides = new float[6];
 
     private FloatBuffer vertexBuffer;
     private FloatBuffer sideNumBuffer;
@@ -133,38 +135,59 @@ public class CubeView {
 
     private RubiksCube rubiksCube;
     private DataCube<CubePart> viewCube;
+    private PartTransforms transforms;
+    /** Prepared frames, handed over from the preparing thread to GL thread. */
+    private TripleBuffer<DrawList> drawLists;
+    /** Whether part matrices or places have changed since the last prepared frame. */
+    private boolean partsChanged = true;
+    private PartSideCoords preparedSelection;
+
+    private StickerLayout layout;
+    /** Pick results of surface stickers, created on first use and reused. */
+    private PartSideCoords[] pickResults;
+
+    private final CountingGl gl;
+    private final EngineMetrics metrics;
+    private long drawPartsNanos;
 
     private Rotation animatedRotation;
     private double animationStartTimeMs;
-    private double animationOffsetTimeMs;
     private double animationDurationMs;
 
     public CubeView(RubiksCube rubiksCube, DataCube<SmallCube> model,
                     int[] colorMap, boolean removeBlackParts,
-                    int screenWidth, int screenHeight) {
+                    int screenWidth, int screenHeight, EngineMetrics metrics, Gl gl,
+                    ProgramBinaryCache programCache) {
         if (colorMap == null || colorMap.length < 7)
             throw new IllegalArgumentException("colorMap");
+        if (metrics == null)
+            throw new IllegalArgumentException("metrics");
 
         this.rubiksCube = rubiksCube;
-        this.textureWidth = screenWidth;
-        this.textureHeight = screenHeight;
+        this.metrics = metrics;
+        this.gl = new CountingGl(gl);
         initializeView(model, removeBlackParts);
+        int capacity = drawnPartCount(model.size);
+        drawLists = new TripleBuffer<DrawList>(
+            new DrawList(capacity), new DrawList(capacity), new DrawList(capacity));
+        prepareFrame();
+        layout = StickerLayout.forSize(model.size);
+        pickResults = new PartSideCoords[layout.stickerCount];
         initializeBuffers();
-        initFramebuffer(screenWidth, screenHeight);
-        initializePrograms();
+        resources = new GlResources(this.gl);
+        screenProgram = resources.add(new GlProgram(vertexShaderCode, fragmentShaderCode, programCache));
+        touchProgram = resources.add(new GlProgram(touchShaderCode, fragmentShaderCode, programCache));
+        pickingFramebuffer = resources.add(new GlFramebuffer(screenWidth, screenHeight));
+        resources.ensureAllCreated();
         createColorMap(colorMap);
     }
 
     private void initializeView(DataCube<SmallCube> model, boolean removeBlackParts) {
         viewCube = new DataCube<CubePart>(model.size);
-        float[] partTransform = new float[16];
-        Matrix.setIdentityM(partTransform, 0);
         float scaleFactor = 0.9f * 2f / model.size;
-        Matrix.scaleM(partTransform, 0, scaleFactor, scaleFactor, scaleFactor);
+        transforms = new PartTransforms(model.size, scaleFactor);
         EmptyCubePart emptyPart = new EmptyCubePart();
 
-        float[] position = new float[3];
-
         int maxIndex = model.size - 1;
         for (int i = 0; i < model.size; i++) {
             for (int j = 0; j < model.size; j++) {
@@ -174,16 +197,12 @@ public class CubeView {
 
                     if (model.get(i, j, k) == null || removeBlackParts && isInnerCube) {
                         viewCube.set(i, j, k, emptyPart);
+                        transforms.setVisible(CubeCoords.toIndex(model.size, i, j, k), false);
                     } else {
                         CubePart part = new DefaultCubePart();
                         paintCubePart(part, model.get(i, j, k));
-
-                        copy(partTransform, part.world, 16);
-                        new CubeCoords(i, j, k).getPositionInSpace(position, 0, model.size);
-
-                        setPosition(part.world, position[0], position[1], position[2]);
-
                         viewCube.set(i, j, k, part);
+                        transforms.setVisible(CubeCoords.toIndex(model.size, i, j, k), true);
                     }
                 }
             }
@@ -191,8 +210,8 @@ public class CubeView {
     }
 
     private void paintCubePart(CubePart part, SmallCube model) {
-        for (CubeSide side : CubeSide.values()) {
-            part.set(side, model.get(side));
+        for (int side = 0; side < 6; side++) {
+            part.setInt(side, model.getInt(side));
         }
     }
 
@@ -219,78 +238,31 @@ public class CubeView {
             throw new IllegalStateException("Animation already in progress.");
 
         animatedRotation = rotation;
-        animationStartTimeMs = animationOffsetTimeMs = currentTimeMs;
+        animationStartTimeMs = currentTimeMs;
         animationDurationMs = durationMs;
     }
 
-    private void rotateLayer(float counterClockwiseAngle) {
-        int animatedLayer = animatedRotation.layer;
-        float angle = counterClockwiseAngle;
-        for (int i = 0; i < viewCube.size; i++) {
-            for (int j = 0; j < viewCube.size; j++) {
-                switch (animatedRotation.axis) {
-                    case LEFT:
-                        rotateAround(viewCube.get(animatedLayer, i, j).world,
-                                0, 0, 0, -angle, 0, 0);
-                        break;
-                    case TOP:
-                        rotateAround(viewCube.get(i, animatedLayer, j).world,
-                                0, 0, 0, 0, angle, 0);
-                        break;
-                    case DEPTH:
-                        rotateAround(viewCube.get(i, j, animatedLayer).world,
-                                0, 0, 0, 0, 0, -angle);
-                        break;
-                }
-            }
-        }
-    }
-
-    private void rotateLayerParts(float counterClockwiseAngle) {
-        int animatedLayer = animatedRotation.layer;
-        float angle = counterClockwiseAngle;
-        for (int i = 0; i < viewCube.size; i++) {
-            for (int j = 0; j < viewCube.size; j++) {
-                float[] world;
-                switch (animatedRotation.axis) {
-                    case LEFT:
-                        world = viewCube.get(animatedLayer, i, j).world;
-                        rotateAround(world, world[X], world[Y], world[Z], -angle, 0, 0);
-                        break;
-                    case TOP:
-                        world = viewCube.get(i, animatedLayer, j).world;
-                        rotateAround(world, world[X], world[Y], world[Z], 0, angle, 0);
-                        break;
-                    case DEPTH:
-                        world = viewCube.get(i, j, animatedLayer).world;
-                        rotateAround(world, world[X], world[Y], world[Z], 0, 0, -angle);
-                        break;
-                }
-            }
-        }
-    }
-
     public void updateAnimation(double absoluteTimeMs) {
         if (!isAnimationInProgress()) { return; }
 
         double endTime = animationStartTimeMs + animationDurationMs;
-        double elapsed = Math.min(absoluteTimeMs, endTime) - animationOffsetTimeMs;
-
-        float invertMultiplier = animatedRotation.clockwise ? -1 : +1;
-        double remainder = animationDurationMs == 0 ? 1 : (elapsed / animationDurationMs);
-        rotateLayer((float)(90.0 * remainder) * invertMultiplier);
-
-        animationOffsetTimeMs = absoluteTimeMs;
         if (absoluteTimeMs >= endTime) {
-            // finish rotation:
-            //   1. rotate back parts around itself to make LEFT/TOP/FRONT/etc sides
-            //      facing the right direction
-            //   2. swap parts in viewCube to make part's position consistent its cube coords
-            rotateLayerParts(-90 * invertMultiplier);
+            // finish rotation: swap parts in viewCube to make part's position
+            // consistent its cube coords, then put the layer back unrotated
             viewCube.rotateLayer(
                 animatedRotation.axis, animatedRotation.layer, animatedRotation.clockwise);
+            transforms.resetLayer(animatedRotation.axis, animatedRotation.layer);
 
             animatedRotation = null;
+            partsChanged = true;
+        } else {
+            // angle is computed from the start each time, so rounding errors do not accumulate
+            float invertMultiplier = animatedRotation.clockwise ? -1 : +1;
+            double elapsed = absoluteTimeMs - animationStartTimeMs;
+            double progress = animationDurationMs == 0 ? 1 : (elapsed / animationDurationMs);
+            transforms.rotateLayer(animatedRotation.axis, animatedRotation.layer,
+                (float)(90.0 * progress) * invertMultiplier);
+            partsChanged = true;
         }
     }
 
@@ -313,178 +285,175 @@ public class CubeView {
         readPixelsBuffer.position(0);
     }
 
-    private void initFramebuffer(int width, int height) {
-        glGenFramebuffers(1, fbo, 0);
-        glBindFramebuffer(GL_FRAMEBUFFER, fbo[0]);
-
-        // texture
-        glGenTextures(1, texture, 0);
-        glBindTexture(GL_TEXTURE_2D, texture[0]);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, null);
-        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture[0], 0);
-
-        // depth renderbuffer
-        glGenRenderbuffers(1, depthRB, 0);
-        glBindRenderbuffer(GL_RENDERBUFFER, depthRB[0]);
-        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT16, width, height);
-        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depthRB[0]);
-
-        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
-        if (status != GL_FRAMEBUFFER_COMPLETE) {
-            throw new IllegalStateException(String.format(
-                "Error creating FBO: framebuffer is incomplete. Status: %s", status));
-        }
-
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
-    }
-
     private static ByteBuffer createDirectBuffer(int size) {
         return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
     }
 
-    private void initializePrograms() {
-        screenProgram = createProgram(vertexShaderCode, fragmentShaderCode);
-        touchProgram = createProgram(touchShaderCode, fragmentShaderCode);
-    }
-
-    private int createProgram(String vertexShaderCode, String fragmentShaderCode) {
-        int vertexShader = loadShader(GL_VERTEX_SHADER, vertexShaderCode);
-        int fragmentShader = loadShader(GL_FRAGMENT_SHADER, fragmentShaderCode);
-
-        int program = glCreateProgram();         // create empty OpenGL ES Program
-        glAttachShader(program, vertexShader);   // add the vertex shader to program
-        glAttachShader(program, fragmentShader); // add the fragment shader to program
-        glLinkProgram(program);                  // creates OpenGL ES program executables
-        int[] status = new int[1];
-        glGetProgramiv(program, GL_LINK_STATUS, status, 0);
-        if (status[0] != GL_TRUE) {
-            throw new IllegalStateException(String.format(Locale.US,
-                "Shader link error:%n%s", glGetProgramInfoLog(program)));
-        }
-        return program;
+    /**
+     * Called on GL context (re)creation: GL objects are created again on next use,
+     * the model and the view state are kept.
+     */
+    public void onSurfaceCreated() {
+        resources.onContextCreated();
     }
 
-    private static int loadShader(int type, String shaderCode) {
-        // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
-        // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
-        int shader = glCreateShader(type);
-
-        // add the source code to the shader and compile it
-        glShaderSource(shader, shaderCode);
-        glCompileShader(shader);
-        int[] status = new int[1];
-        glGetShaderiv(shader, GL_COMPILE_STATUS, status, 0);
-        if (status[0] != GL_TRUE) {
-            throw new IllegalStateException(String.format(
-                Locale.US, "Shader compile error:%n%s",
-                glGetShaderInfoLog(shader)));
-        }
-
-        return shader;
+    /**
+     * Resizes picking framebuffer attachments in place.
+     */
+    public void onSurfaceChanged(int width, int height) {
+        pickingFramebuffer.resize(width, height);
     }
 
-    public void draw(float[] mvp, double absoluteTimeMs) {
-        draw(mvp, absoluteTimeMs, true);
-
-        glBindFramebuffer(GL_FRAMEBUFFER, fbo[0]);
-        glViewport(0, 0, textureWidth, textureHeight);
-        glGetFloatv(GL_COLOR_CLEAR_VALUE, clearColor, 0);
-        glClearColor(1, 1, 1, EMPTY_SPACE_ALPHA);
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-
-        draw(mvp, absoluteTimeMs, false);
-
-        glClearColor(clearColor[0], clearColor[1], clearColor[2], clearColor[3]);
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    /**
+     * Number of parts enumerated by {@link #collectParts}: surface parts, with
+     * every part of 1x1x1 cube listed twice.
+     */
+    private static int drawnPartCount(int size) {
+        int inner = Math.max(0, size - 2);
+        return 2 * size * size + 2 * inner * size + 2 * inner * inner;
     }
 
-    private void draw(float[] mvp, double absoluteTimeMs, boolean renderToScreen) {
-        int program = renderToScreen ? screenProgram : touchProgram;
-        glUseProgram(program);
-
-        int positionAttribute = glGetAttribLocation(program, "vPosition");
-        int sideNumAttribute = glGetAttribLocation(program, "iSideNum");
-
-        glEnableVertexAttribArray(positionAttribute);
-        glEnableVertexAttribArray(sideNumAttribute);
-
-        glVertexAttribPointer(positionAttribute, 3 /* coords per vertex */,
-                GL_FLOAT, false, 0, vertexBuffer);
-        glVertexAttribPointer(sideNumAttribute, 1 /* index per vertex */,
-                GL_FLOAT, false, 0, sideNumBuffer);
-
-        int mvpUniform = glGetUniformLocation(program, "mMVP");
-        glUniformMatrix4fv(mvpUniform, 1, false, mvp, 0);
-        if (renderToScreen) {
-            int colorMapUniform = glGetUniformLocation(program, "vsColorMap");
-            glUniform3fv(colorMapUniform, 7, colorMap, 0);
-            int timeUniform = glGetUniformLocation(program, "fAbsTimeMs");
-            glUniform1f(timeUniform, (float)(absoluteTimeMs % 100000));
-
-            PartSideCoords selection = rubiksCube.getSelection();
-            int selectedPartIndexUniform = glGetUniformLocation(program, "iSelectedPartIndex");
-            glUniform1f(selectedPartIndexUniform,
-                selection == null ? -1 : selection.location.toIndex(viewCube.size));
-            int selectedSideUniform = glGetUniformLocation(program, "iSelectedSide");
-            glUniform1f(selectedSideUniform, selection == null ? -1 : selection.side.ordinal());
+    /**
+     * Builds draw list of the current state and hands it over to {@link #draw}.
+     * Call on the thread which changes the cube after changes; GL thread keeps
+     * submitting previously prepared list meanwhile. Does nothing if neither parts
+     * nor the selection have changed, e.g. on frames which only pulse the selection.
+     */
+    public void prepareFrame() {
+        PartSideCoords selection = rubiksCube.getSelection();
+        if (!partsChanged && selection == preparedSelection) { return; }
+        long start = System.nanoTime();
+        DrawList list = drawLists.back();
+        list.clear();
+        if (selection != null) {
+            list.selectedPartIndex = selection.location.toIndex(viewCube.size);
+            list.selectedSide = selection.side.ordinal();
         }
-        worldUniform = glGetUniformLocation(program, "mWorld");
-        sidesUniform = glGetUniformLocation(program, "fsSides");
-        partIndexUniform = glGetUniformLocation(program, "iPartIndex");
-
-        drawParts(renderToScreen);
-
-        glDisableVertexAttribArray(positionAttribute);
-        glDisableVertexAttribArray(sideNumAttribute);
+        collectParts(list);
+        drawLists.publish();
+        partsChanged = false;
+        preparedSelection = selection;
+        metrics.framePrepNanos.record(System.nanoTime() - start);
     }
 
-    private void drawParts(boolean toScreen) {
+    private void collectParts(DrawList list) {
         final int maxIndex = viewCube.size - 1;
 
-        // draw Up and Down sides
+        // Up and Down sides
         for (int i = 0; i < viewCube.size; i++) {
             for (int j = 0; j < viewCube.size; j++) {
-                drawPart(i, 0, j, toScreen);
-                drawPart(i, maxIndex, j, toScreen);
+                collectPart(list, i, 0, j);
+                collectPart(list, i, maxIndex, j);
             }
         }
 
-        // draw Left and Right sides without up and down rows
+        // Left and Right sides without up and down rows
         for (int i = 1; i < maxIndex; i++) {
             for (int j = 0; j < viewCube.size; j++) {
-                drawPart(0, i, j, toScreen);
-                drawPart(maxIndex, i, j, toScreen);
+                collectPart(list, 0, i, j);
+                collectPart(list, maxIndex, i, j);
             }
         }
 
-        // draw Front and Back sides without side rows and columns
+        // Front and Back sides without side rows and columns
         for (int i = 1; i < maxIndex; i++) {
             for (int j = 1; j < maxIndex; j++) {
-                drawPart(i, j, 0, toScreen);
-                drawPart(i, j, maxIndex, toScreen);
+                collectPart(list, i, j, 0);
+                collectPart(list, i, j, maxIndex);
             }
         }
     }
 
-    private void drawPart(int left, int top, int depth, boolean renderToScreen) {
+    private void collectPart(DrawList list, int left, int top, int depth) {
         CubePart part = viewCube.get(left, top, depth);
+        // empty parts have zero world matrix and would not be visible anyway
+        if (part instanceof EmptyCubePart) { return; }
+        list.add(transforms.data, CubeCoords.toIndex(viewCube.size, left, top, depth), part);
+    }
 
-        glUniformMatrix4fv(worldUniform, 1, false, part.world, 0);
+    /**
+     * Submits the latest list prepared by {@link #prepareFrame}.
+     */
+    public void draw(float[] mvp, double absoluteTimeMs) {
+        gl.resetCounts();
+        drawPartsNanos = 0;
 
+        resources.ensureAllCreated();
+        drawLists.acquire();
+        DrawList list = drawLists.front();
+        draw(list, mvp, absoluteTimeMs, true);
+
+        pickingFramebuffer.bind();
+        gl.glViewport(0, 0, pickingFramebuffer.width(), pickingFramebuffer.height());
+        gl.glGetFloatv(GL_COLOR_CLEAR_VALUE, clearColor, 0);
+        gl.glClearColor(1, 1, 1, EMPTY_SPACE_ALPHA);
+        gl.glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+        draw(list, mvp, absoluteTimeMs, false);
+
+        gl.glClearColor(clearColor[0], clearColor[1], clearColor[2], clearColor[3]);
+        gl.glBindFramebuffer(GL_FRAMEBUFFER, 0);
+
+        long now = System.currentTimeMillis();
+        metrics.drawCalls.record(gl.drawCallCount(), now);
+        metrics.uniformUploads.record(gl.uniformUploadCount(), now);
+        metrics.drawPartsNanos.record(drawPartsNanos, now);
+    }
+
+    private void draw(DrawList list, float[] mvp, double absoluteTimeMs, boolean renderToScreen) {
+        int program = (renderToScreen ? screenProgram : touchProgram).handle();
+        gl.glUseProgram(program);
+
+        int positionAttribute = gl.glGetAttribLocation(program, "vPosition");
+        int sideNumAttribute = gl.glGetAttribLocation(program, "iSideNum");
+
+        gl.glEnableVertexAttribArray(positionAttribute);
+        gl.glEnableVertexAttribArray(sideNumAttribute);
+
+        gl.glVertexAttribPointer(positionAttribute, 3 /* coords per vertex */,
+                GL_FLOAT, false, 0, vertexBuffer);
+        gl.glVertexAttribPointer(sideNumAttribute, 1 /* index per vertex */,
+                GL_FLOAT, false, 0, sideNumBuffer);
+
+        int mvpUniform = gl.glGetUniformLocation(program, "mMVP");
+        gl.glUniformMatrix4fv(mvpUniform, 1, false, mvp, 0);
         if (renderToScreen) {
-            for (int i = 0; i < cubeSides.length; i++) {
-                cubeSides[i] = part.get(CubeSide.fromOrdinal(i));
-            }
-            glUniform1fv(sidesUniform, cubeSides.length, cubeSides, 0);
+            int colorMapUniform = gl.glGetUniformLocation(program, "vsColorMap");
+            gl.glUniform3fv(colorMapUniform, 7, colorMap, 0);
+            int timeUniform = gl.glGetUniformLocation(program, "fAbsTimeMs");
+            gl.glUniform1f(timeUniform, (float)(absoluteTimeMs % 100000));
+
+            int selectedPartIndexUniform = gl.glGetUniformLocation(program, "iSelectedPartIndex");
+            gl.glUniform1f(selectedPartIndexUniform, list.selectedPartIndex);
+            int selectedSideUniform = gl.glGetUniformLocation(program, "iSelectedSide");
+            gl.glUniform1f(selectedSideUniform, list.selectedSide);
         }
+        worldUniform = gl.glGetUniformLocation(program, "mWorld");
+        sidesUniform = gl.glGetUniformLocation(program, "fsSides");
+        partIndexUniform = gl.glGetUniformLocation(program, "iPartIndex");
 
-        glUniform1f(partIndexUniform, CubeCoords.toIndex(
-                viewCube.size, left, top, depth));
+        long drawPartsStart = System.nanoTime();
+        drawParts(list, renderToScreen);
+        drawPartsNanos += System.nanoTime() - drawPartsStart;
 
-        // Draw the triangles
-        glDrawArrays(GL_TRIANGLES, 0, SIDE_VERTICES.length / 3);
+        gl.glDisableVertexAttribArray(positionAttribute);
+        gl.glDisableVertexAttribArray(sideNumAttribute);
+    }
+
+    private void drawParts(DrawList list, boolean renderToScreen) {
+        for (int i = 0; i < list.count; i++) {
+            gl.glUniformMatrix4fv(worldUniform, 1, false,
+                list.worlds, i * PartTransforms.MATRIX_SIZE);
+
+            if (renderToScreen) {
+                gl.glUniform1fv(sidesUniform, DrawList.SIDES, list.sides, i * DrawList.SIDES);
+            }
+
+            gl.glUniform1f(partIndexUniform, list.partIndices[i]);
+
+            // Draw the triangles
+            gl.glDrawArrays(GL_TRIANGLES, 0, SIDE_VERTICES.length / 3);
+        }
     }
 
     /**
@@ -492,10 +461,11 @@ public class CubeView {
      * Works for cubes sizes less or equal to <code>floor(pow(2^16, 1/3)) == 40</code>.
      */
     public PartSideCoords locationAtPixel(int x, int y) {
-        glBindFramebuffer(GL_FRAMEBUFFER, fbo[0]);
-        glReadPixels(x, textureHeight - y, 1, 1,
+        resources.ensureAllCreated();
+        pickingFramebuffer.bind();
+        gl.glReadPixels(x, pickingFramebuffer.height() - y, 1, 1,
             GL_RGBA, GL_UNSIGNED_BYTE, readPixelsBuffer.position(0));
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        gl.glBindFramebuffer(GL_FRAMEBUFFER, 0);
         int r = (int)readPixelsBuffer.get() & 0xFF;
         int g = (int)readPixelsBuffer.get() & 0xFF;
         int b = (int)readPixelsBuffer.get() & 0xFF;
@@ -504,8 +474,29 @@ public class CubeView {
         int partIndex = (r << 8) + g;
         int sideNumber = b;
         if (a == EMPTY_SPACE_ALPHA || sideNumber >= 6) { return null; }
-        return new PartSideCoords(
-            CubeCoords.fromIndex(viewCube.size, partIndex),
-            CubeSide.fromOrdinal(sideNumber));
+        return partSideAt(partIndex, sideNumber);
+    }
+
+    /**
+     * Returns shared instance for stickers on cube surface; sides inside
+     * the cube (visible through gaps between parts) are allocated.
+     */
+    private PartSideCoords partSideAt(int partIndex, int sideNumber) {
+        int size = viewCube.size;
+        int left = partIndex % size;
+        int top = partIndex / size % size;
+        int depth = partIndex / size / size;
+        if (depth >= size) { return null; }
+        CubeSide side = CubeSide.fromOrdinal(sideNumber);
+        int sticker = layout.indexOf(left, top, depth, side);
+        if (sticker < 0) {
+            return new PartSideCoords(new CubeCoords(left, top, depth), side);
+        }
+        PartSideCoords result = pickResults[sticker];
+        if (result == null) {
+            result = new PartSideCoords(new CubeCoords(left, top, depth), side);
+            pickResults[sticker] = result;
+        }
+        return result;
     }
 }
@@ -2,6 +2,7 @@ package ru.alexeymz.rubikscube.view;
 
 import ru.alexeymz.rubikscube.core.Axis;
 import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.core.IntSixSided;
 import ru.alexeymz.rubikscube.core.RotateUtils;
 
 public class DefaultCubePart extends CubePart {
@@ -17,8 +18,18 @@ public class DefaultCubePart extends CubePart {
         sides[side.ordinal()] = value;
     }
 
+    @Override
+    public int getInt(int side) {
+        return sides[side];
+    }
+
+    @Override
+    public void setInt(int side, int value) {
+        sides[side] = value;
+    }
+
     @Override
     public void rotateAround(Axis axis) {
-        RotateUtils.rotate(this, axis, false);
+        RotateUtils.rotate((IntSixSided)this, axis, false);
     }
 }
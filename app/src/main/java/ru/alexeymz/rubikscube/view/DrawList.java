@@ -0,0 +1,40 @@
+package ru.alexeymz.rubikscube.view;
+
+/**
+ * Everything {@link CubeView} submits for one frame, in draw order: world matrix,
+ * side colors and index of every visible surface part plus the selection.
+ */
+final class DrawList {
+    static final int SIDES = 6;
+
+    final float[] worlds;
+    final float[] sides;
+    final float[] partIndices;
+    int count;
+
+    float selectedPartIndex = -1;
+    float selectedSide = -1;
+
+    DrawList(int capacity) {
+        worlds = new float[capacity * PartTransforms.MATRIX_SIZE];
+        sides = new float[capacity * SIDES];
+        partIndices = new float[capacity];
+    }
+
+    void clear() {
+        count = 0;
+        selectedPartIndex = -1;
+        selectedSide = -1;
+    }
+
+    void add(float[] transforms, int partIndex, CubePart part) {
+        System.arraycopy(transforms, PartTransforms.offsetOf(partIndex),
+            worlds, count * PartTransforms.MATRIX_SIZE, PartTransforms.MATRIX_SIZE);
+        int offset = count * SIDES;
+        for (int side = 0; side < SIDES; side++) {
+            sides[offset + side] = part.getInt(side);
+        }
+        partIndices[count] = partIndex;
+        count++;
+    }
+}
@@ -12,4 +12,10 @@ public class EmptyCubePart extends CubePart {
 
     @Override
     public void set(CubeSide side, Integer value) {}
+
+    @Override
+    public int getInt(int side) { return 0; }
+
+    @Override
+    public void setInt(int side, int value) {}
 }
@@ -0,0 +1,122 @@
+package ru.alexeymz.rubikscube.view;
+
+import android.opengl.Matrix;
+
+import ru.alexeymz.rubikscube.core.Axis;
+import ru.alexeymz.rubikscube.core.CubeCoords;
+
+/**
+ * World matrices of all cube parts in one contiguous array, 16 floats per part
+ * indexed by {@link CubeCoords#toIndex}, so a part matrix can be passed to
+ * {@code glUniformMatrix4fv} directly at {@link #offsetOf} without copying.
+ *
+ * Matrices belong to positions rather than to parts: a layer of DEPTH axis is one
+ * contiguous range, a layer of TOP axis is a run of {@code size} matrices per depth.
+ * Position stays empty or not after any layer rotation (parts inside the cube
+ * stay inside), so empty positions keep zero matrix.
+ */
+final class PartTransforms {
+    static final int MATRIX_SIZE = 16;
+
+    final int size;
+    final float[] data;
+
+    private final float scale;
+    private final boolean[] visible;
+    private final float[] rotation = new float[16];
+
+    PartTransforms(int size, float scale) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        this.size = size;
+        this.scale = scale;
+        this.data = new float[size * size * size * MATRIX_SIZE];
+        this.visible = new boolean[size * size * size];
+    }
+
+    static int offsetOf(int index) {
+        return index * MATRIX_SIZE;
+    }
+
+    void setVisible(int index, boolean value) {
+        visible[index] = value;
+        Matrix.setIdentityM(rotation, 0);
+        transformRange(index, 1);
+    }
+
+    /**
+     * Puts every part of the layer at its place without rotation.
+     */
+    void resetLayer(Axis axis, int layer) {
+        Matrix.setIdentityM(rotation, 0);
+        transformLayer(axis, layer);
+    }
+
+    /**
+     * Sets matrices of the layer parts to their places rotated around cube center
+     * by counter-clockwise angle in degrees, in the same direction as the axis.
+     */
+    void rotateLayer(Axis axis, int layer, float angle) {
+        switch (axis) {
+            case LEFT:
+                Matrix.setRotateM(rotation, 0, angle, -1, 0, 0);
+                break;
+            case TOP:
+                Matrix.setRotateM(rotation, 0, angle, 0, 1, 0);
+                break;
+            case DEPTH:
+                Matrix.setRotateM(rotation, 0, angle, 0, 0, -1);
+                break;
+        }
+        transformLayer(axis, layer);
+    }
+
+    private void transformLayer(Axis axis, int layer) {
+        switch (axis) {
+            case LEFT:
+                for (int i = layer; i < visible.length; i += size) {
+                    transformRange(i, 1);
+                }
+                break;
+            case TOP:
+                for (int depth = 0; depth < size; depth++) {
+                    transformRange(CubeCoords.toIndex(size, 0, layer, depth), size);
+                }
+                break;
+            case DEPTH:
+                transformRange(CubeCoords.toIndex(size, 0, 0, layer), size * size);
+                break;
+        }
+    }
+
+    /**
+     * Writes {@code rotation * translate(position) * scale} for parts [start, start + count).
+     */
+    private void transformRange(int start, int count) {
+        float[] r = rotation;
+        float shift = ((float)size - 1) / 2;
+        float step = 2f / size;
+        int end = start + count;
+        for (int index = start; index < end; index++) {
+            int m = index * MATRIX_SIZE;
+            if (!visible[index]) {
+                for (int i = 0; i < MATRIX_SIZE; i++) { data[m + i] = 0; }
+                continue;
+            }
+            // same as CubeCoords.getPositionInSpace
+            float x = (index % size - shift) * step;
+            float y = (-(index / size % size) + shift) * step;
+            float z = (-(index / size / size) + shift) * step;
+            for (int column = 0; column < 3; column++) {
+                data[m + column * 4]     = r[column * 4] * scale;
+                data[m + column * 4 + 1] = r[column * 4 + 1] * scale;
+                data[m + column * 4 + 2] = r[column * 4 + 2] * scale;
+                data[m + column * 4 + 3] = 0;
+            }
+            data[m + 12] = r[0] * x + r[4] * y + r[8] * z;
+            data[m + 13] = r[1] * x + r[5] * y + r[9] * z;
+            data[m + 14] = r[2] * x + r[6] * y + r[10] * z;
+            data[m + 15] = 1;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ru.alexeymz.rubikscube.view;
+
+import java.util.Arrays;
+
+import ru.alexeymz.rubikscube.core.CubeCoords;
+import ru.alexeymz.rubikscube.core.CubeSide;
+import ru.alexeymz.rubikscube.graphics.Quaternion;
+import ru.alexeymz.rubikscube.state.StickerLayout;
+
+/**
+ * Headless renderer of cube states into ARGB pixel arrays, without GL.
+ *
+ * Draws the same picture as {@link CubeView} does on screen: surface parts built from
+ * {@link CubeView#VERTICES} with side numbers {@link CubeView#SIDE_NUMS}, colored through
+ * the 7-entry color map, seen by the camera of {@link ru.alexeymz.rubikscube.CubeRenderer}.
+ * Triangles facing away are culled, the rest are filled with a depth buffer.
+ *
+ * Instances keep their buffers between frames and must not be shared between threads.
+ */
+public final class SoftwareRasterizer {
+    /** Same as {@link ru.alexeymz.rubikscube.elements.RubiksCube} default colors. */
+    public static final int[] DEFAULT_COLORS = {
+        0xFF000000, 0xFFFF0000, 0xFFFF7F00, 0xFF0000FF, 0xFF00FF00, 0xFFFFFFFF, 0xFFFFFF00,
+    };
+    /** Cornflower blue, same as {@link ru.alexeymz.rubikscube.CubeRenderer}. */
+    public static final int DEFAULT_BACKGROUND = 0xFF6495ED;
+
+    private static final float EYE_DISTANCE = 5;
+    private static final float FIELD_OF_VIEW = 45;
+    private static final int CORNER_COUNT = CubeView.VERTICES.length / 3;
+    private static final int TRIANGLE_COUNT = CubeView.INDICES.length / 3;
+    private static final int SIDE_COUNT = 6;
+
+    /** Outward normals of part sides in {@link CubeSide} order. */
+    private static final float[] SIDE_NORMALS = new float[SIDE_COUNT * 3];
+    /** Side of every triangle of {@link CubeView#INDICES}. */
+    private static final int[] TRIANGLE_SIDES = new int[TRIANGLE_COUNT];
+    static {
+        for (int t = 0; t < TRIANGLE_COUNT; t++) {
+            int side = (int)CubeView.SIDE_NUMS[t * 3];
+            TRIANGLE_SIDES[t] = side;
+            // part side is the plane where all three vertices share a coordinate
+            for (int c = 0; c < 3; c++) {
+                float value = CubeView.VERTICES[CubeView.INDICES[t * 3] * 3 + c];
+                if (value == CubeView.VERTICES[CubeView.INDICES[t * 3 + 1] * 3 + c]
+                        && value == CubeView.VERTICES[CubeView.INDICES[t * 3 + 2] * 3 + c]) {
+                    SIDE_NORMALS[side * 3 + c] = Math.signum(value);
+                }
+            }
+        }
+    }
+
+    public final int size;
+    public final int width;
+    public final int height;
+
+    private final int[] colors = new int[7];
+    private int background = DEFAULT_BACKGROUND;
+
+    private final int partCount;
+    /** Part centers, 3 floats per drawn part. */
+    private final float[] centers;
+    /** Sticker of every part side or -1, {@link #SIDE_COUNT} ints per drawn part. */
+    private final int[] sideStickers;
+    private final float partScale;
+    private final float focal;
+
+    private final float[] rotation = new float[16];
+    private final float[] rotatedNormals = new float[SIDE_COUNT * 3];
+    private final float[] screen = new float[CORNER_COUNT * 3];
+    private final float[] viewCorners = new float[CORNER_COUNT * 3];
+    private final float[] depth;
+
+    public SoftwareRasterizer(int size, int width, int height) {
+        this(size, width, height, DEFAULT_COLORS);
+    }
+
+    /**
+     * @param colorMap ARGB colors, non-color first, then face colors, as in {@link CubeView}
+     */
+    public SoftwareRasterizer(int size, int width, int height, int[] colorMap) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0.");
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be > 0.");
+        if (colorMap == null || colorMap.length < 7)
+            throw new IllegalArgumentException("colorMap");
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = colorMap[i] | 0xFF000000;
+        }
+        this.depth = new float[width * height];
+        this.partScale = 0.9f * 2f / size;
+        this.focal = (float)(1 / Math.tan(Math.toRadians(FIELD_OF_VIEW / 2)));
+
+        // surface parts only, as CubeView removes inner ones
+        StickerLayout layout = StickerLayout.forSize(size);
+        int max = size - 1;
+        int count = 0;
+        float[] centers = new float[size * size * size * 3];
+        int[] sideStickers = new int[size * size * size * SIDE_COUNT];
+        CubeSide[] sides = CubeSide.values();
+        for (int index = 0; index < size * size * size; index++) {
+            CubeCoords coords = CubeCoords.fromIndex(size, index);
+            if (coords.left != 0 && coords.top != 0 && coords.depth != 0
+                    && coords.left != max && coords.top != max && coords.depth != max) {
+                continue;
+            }
+            coords.getPositionInSpace(centers, count * 3, size);
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                sideStickers[count * SIDE_COUNT + side] =
+                    layout.indexOf(coords.left, coords.top, coords.depth, sides[side]);
+            }
+            count++;
+        }
+        this.partCount = count;
+        this.centers = centers;
+        this.sideStickers = sideStickers;
+    }
+
+    public void setBackground(int argb) {
+        background = argb;
+    }
+
+    public void render(byte[] stickers, Quaternion orientation, int[] pixels) {
+        orientation.toMatrix(rotation, 0);
+        render(stickers, rotation, pixels);
+    }
+
+    /**
+     * Draws the cube with stickers in {@link StickerLayout} order.
+     * @param rotation column-major model matrix, only its rotation part is used
+     * @param pixels   ARGB target of at least <code>width * height</code> length, row by row
+     */
+    public void render(byte[] stickers, float[] rotation, int[] pixels) {
+        if (stickers.length != 6 * size * size)
+            throw new IllegalArgumentException("stickers length must be equal to sticker count.");
+        int pixelCount = width * height;
+        Arrays.fill(pixels, 0, pixelCount, background);
+        Arrays.fill(depth, 0, pixelCount, 0f);
+
+        float[] r = rotation;
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            float nx = SIDE_NORMALS[side * 3], ny = SIDE_NORMALS[side * 3 + 1], nz = SIDE_NORMALS[side * 3 + 2];
+            rotatedNormals[side * 3]     = r[0] * nx + r[4] * ny + r[8] * nz;
+            rotatedNormals[side * 3 + 1] = r[1] * nx + r[5] * ny + r[9] * nz;
+            rotatedNormals[side * 3 + 2] = r[2] * nx + r[6] * ny + r[10] * nz;
+        }
+
+        float halfWidth = width / 2f, halfHeight = height / 2f;
+        // the same vertical field of view for any aspect ratio
+        float scale = focal * halfHeight;
+        for (int part = 0; part < partCount; part++) {
+            float cx = centers[part * 3], cy = centers[part * 3 + 1], cz = centers[part * 3 + 2];
+            for (int v = 0; v < CORNER_COUNT; v++) {
+                float x = cx + CubeView.VERTICES[v * 3] * partScale;
+                float y = cy + CubeView.VERTICES[v * 3 + 1] * partScale;
+                float z = cz + CubeView.VERTICES[v * 3 + 2] * partScale;
+                float vx = r[0] * x + r[4] * y + r[8] * z;
+                float vy = r[1] * x + r[5] * y + r[9] * z;
+                float vz = r[2] * x + r[6] * y + r[10] * z - EYE_DISTANCE;
+                viewCorners[v * 3] = vx;
+                viewCorners[v * 3 + 1] = vy;
+                viewCorners[v * 3 + 2] = vz;
+                float inverseDepth = -1 / vz;
+                screen[v * 3] = halfWidth + vx * inverseDepth * scale;
+                screen[v * 3 + 1] = halfHeight - vy * inverseDepth * scale;
+                screen[v * 3 + 2] = inverseDepth;
+            }
+            for (int t = 0; t < TRIANGLE_COUNT; t++) {
+                int side = TRIANGLE_SIDES[t];
+                int a = CubeView.INDICES[t * 3];
+                // visible if the normal looks at the eye from the side plane
+                float facing = -(rotatedNormals[side * 3] * viewCorners[a * 3]
+                    + rotatedNormals[side * 3 + 1] * viewCorners[a * 3 + 1]
+                    + rotatedNormals[side * 3 + 2] * viewCorners[a * 3 + 2]);
+                if (facing <= 0) { continue; }
+                int sticker = sideStickers[part * SIDE_COUNT + side];
+                int color = colors[sticker < 0 ? 0 : stickers[sticker]];
+                fillTriangle(a, CubeView.INDICES[t * 3 + 1], CubeView.INDICES[t * 3 + 2], color, pixels);
+            }
+        }
+    }
+
+    /**
+     * Fills pixels whose centers are inside the triangle and closer than drawn ones.
+     * Depth is interpolated as inverse view distance, larger is closer.
+     */
+    private void fillTriangle(int a, int b, int c, int color, int[] pixels) {
+        float ax = screen[a * 3], ay = screen[a * 3 + 1], az = screen[a * 3 + 2];
+        float bx = screen[b * 3], by = screen[b * 3 + 1], bz = screen[b * 3 + 2];
+        float cx = screen[c * 3], cy = screen[c * 3 + 1], cz = screen[c * 3 + 2];
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0) { return; }
+        if (area < 0) {
+            float tx = bx, ty = by, tz = bz;
+            bx = cx; by = cy; bz = cz;
+            cx = tx; cy = ty; cz = tz;
+            area = -area;
+        }
+        int minX = Math.max(0, (int)Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int maxX = Math.min(width - 1, (int)Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        int minY = Math.max(0, (int)Math.floor(Math.min(ay, Math.min(by, cy))));
+        int maxY = Math.min(height - 1, (int)Math.ceil(Math.max(ay, Math.max(by, cy))));
+        if (minX > maxX || minY > maxY) { return; }
+
+        // barycentric weights of pixel centers, stepped by pixel
+        float inverseArea = 1 / area;
+        float px = minX + 0.5f, py = minY + 0.5f;
+        float e0dx = by - cy, e0dy = cx - bx;
+        float e1dx = cy - ay, e1dy = ax - cx;
+        float e2dx = ay - by, e2dy = bx - ax;
+        float e0Row = e0dy * (py - by) + e0dx * (px - bx);
+        float e1Row = e1dy * (py - cy) + e1dx * (px - cx);
+        float e2Row = e2dy * (py - ay) + e2dx * (px - ax);
+        for (int y = minY; y <= maxY; y++) {
+            float e0 = e0Row, e1 = e1Row, e2 = e2Row;
+            int offset = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                if (e0 >= 0 && e1 >= 0 && e2 >= 0) {
+                    float z = (e0 * az + e1 * bz + e2 * cz) * inverseArea;
+                    if (z > depth[offset + x]) {
+                        depth[offset + x] = z;
+                        pixels[offset + x] = color;
+                    }
+                }
+                e0 += e0dx;
+                e1 += e1dx;
+                e2 += e2dx;
+            }
+            e0Row += e0dy;
+            e1Row += e1dy;
+            e2Row += e2dy;
+        }
+    }
+}